@@ -0,0 +1,118 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2012 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+
+/**
+ * The synthetic case the benchmarks run against: a SyntheticFatImage added to
+ * a new case. The image and the case are made once and kept in the directory
+ * of the system property tsk.bench.dir (by default a directory in the
+ * temporary directory). Each benchmark trial works on its own copy of the
+ * case, so that blackboard writes of one benchmark do not change the others.
+ */
+final class BenchmarkFixture {
+
+	static final int DIRECTORIES = 16;
+	static final int FILES_PER_DIRECTORY = 64;
+	static final int FILE_SIZE = 16 * 1024;
+	static final int BIG_FILE_SIZE = 8 * 1024 * 1024;
+	//change when the shape changes, so that old fixtures are not reused
+	private static final String NAME = "fixture-v1";
+	private final SleuthkitCase sk;
+	private final File db;
+
+	private BenchmarkFixture(SleuthkitCase sk, File db) {
+		this.sk = sk;
+		this.db = db;
+	}
+
+	/**
+	 * Open a copy of the fixture case, making the fixture first if needed
+	 *
+	 * @return the open fixture, must be closed
+	 * @throws Exception thrown if the fixture could not be made or opened
+	 */
+	static synchronized BenchmarkFixture open() throws Exception {
+		File dir = new File(System.getProperty("tsk.bench.dir",
+				new File(System.getProperty("java.io.tmpdir"), "tsk-bench").getPath()));
+		if (!dir.isDirectory() && !dir.mkdirs()) {
+			throw new IOException("Could not create fixture directory " + dir);
+		}
+		File template = new File(dir, NAME + ".db");
+		if (!template.exists()) {
+			create(dir, template);
+		}
+		File copy = File.createTempFile(NAME + "-", ".db", dir);
+		Files.copy(template.toPath(), copy.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		return new BenchmarkFixture(SleuthkitCase.openCase(copy.getPath()), copy);
+	}
+
+	private static void create(File dir, File template) throws Exception {
+		File image = new File(dir, NAME + ".img");
+		SyntheticFatImage.write(image, DIRECTORIES, FILES_PER_DIRECTORY, FILE_SIZE, BIG_FILE_SIZE, 1);
+		//made under another name, so that a failed run leaves no template
+		File partial = new File(dir, NAME + ".partial.db");
+		Files.deleteIfExists(partial.toPath());
+		SleuthkitCase sk = SleuthkitCase.newCase(partial.getPath());
+		try {
+			SleuthkitJNI.CaseDbHandle.AddImageProcess process = sk.makeAddImageProcess("", false, false);
+			process.run(new String[]{image.getPath()});
+			process.commit();
+		} finally {
+			sk.close();
+		}
+		Files.move(partial.toPath(), template.toPath());
+	}
+
+	SleuthkitCase getCase() {
+		return sk;
+	}
+
+	Image getImage() throws TskCoreException {
+		return sk.getImages().get(0);
+	}
+
+	/**
+	 * Find a file of the fixture
+	 *
+	 * @param name name of the file
+	 * @return the first file of the name
+	 * @throws TskCoreException thrown if there is no such file
+	 */
+	FsContent getFile(String name) throws TskCoreException {
+		List<FsContent> files = sk.findFiles(getImage(), name);
+		if (files.isEmpty()) {
+			throw new TskCoreException("No file " + name + " in the fixture");
+		}
+		return files.get(0);
+	}
+
+	/**
+	 * Close the case and delete the copy
+	 */
+	void close() throws IOException {
+		sk.close();
+		Files.deleteIfExists(db.toPath());
+	}
+}
@@ -0,0 +1,92 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2012 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sleuthkit.datamodel.BlackboardArtifact.ARTIFACT_TYPE;
+import org.sleuthkit.datamodel.BlackboardAttribute.ATTRIBUTE_TYPE;
+
+/**
+ * Latency of blackboard writes: a new artifact, and a keyword hit's set of
+ * attributes added to an artifact in one transaction.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BlackboardBenchmark {
+
+	private static final String MODULE = "BlackboardBenchmark";
+	private BenchmarkFixture fixture;
+	private SleuthkitCase sk;
+	private long objId;
+	private BlackboardArtifact artifact;
+
+	@Setup
+	public void setUp() throws Exception {
+		fixture = BenchmarkFixture.open();
+		sk = fixture.getCase();
+		objId = fixture.getFile(SyntheticFatImage.BIG_FILE_NAME).getId();
+	}
+
+	@Setup(Level.Iteration)
+	public void newArtifact() throws TskCoreException {
+		//the attributes of an iteration go to one artifact
+		artifact = sk.newBlackboardArtifact(ARTIFACT_TYPE.TSK_KEYWORD_HIT, objId);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		fixture.close();
+	}
+
+	@Benchmark
+	public BlackboardArtifact newBlackboardArtifact() throws TskCoreException {
+		return sk.newBlackboardArtifact(ARTIFACT_TYPE.TSK_KEYWORD_HIT, objId);
+	}
+
+	@Benchmark
+	public BlackboardArtifact addBlackboardAttributes() throws TskCoreException {
+		List<BlackboardAttribute> attributes = new ArrayList<BlackboardAttribute>(4);
+		attributes.add(new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_KEYWORD.getTypeID(), MODULE, "keyword"));
+		attributes.add(new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_KEYWORD_REGEXP.getTypeID(), MODULE, "key.*"));
+		attributes.add(new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_KEYWORD_PREVIEW.getTypeID(), MODULE, "a keyword in context"));
+		attributes.add(new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_SET_NAME.getTypeID(), MODULE, "benchmark"));
+		//adds them with SleuthkitCase.addBlackboardAttributes()
+		artifact.addAttributes(attributes);
+		return artifact;
+	}
+}
@@ -0,0 +1,99 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2012 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Latency of the case database lookups used to browse a case: a file by id,
+ * the children of a directory and files by name.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CaseDbBenchmark {
+
+	private BenchmarkFixture fixture;
+	private SleuthkitCase sk;
+	private Image image;
+	private Content directory;
+	private long[] fileIds;
+	private String[] fileNames;
+	//same sequence of lookups in every run
+	private final Random random = new Random(1);
+
+	@Setup
+	public void setUp() throws Exception {
+		fixture = BenchmarkFixture.open();
+		sk = fixture.getCase();
+		image = fixture.getImage();
+		directory = fixture.getFile("D0000");
+		List<Long> ids = new ArrayList<Long>();
+		for (FsContent file : sk.findFilesWhere("meta_type = " + TskData.TSK_FS_META_TYPE_ENUM.TSK_FS_META_TYPE_REG.getValue())) {
+			ids.add(file.getId());
+		}
+		fileIds = new long[ids.size()];
+		for (int i = 0; i < fileIds.length; i++) {
+			fileIds[i] = ids.get(i);
+		}
+		fileNames = new String[BenchmarkFixture.FILES_PER_DIRECTORY];
+		for (int i = 0; i < fileNames.length; i++) {
+			fileNames[i] = String.format("F%05d.BIN", i);
+		}
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		fixture.close();
+	}
+
+	@Benchmark
+	public AbstractFile getAbstractFileById() throws TskCoreException {
+		return sk.getAbstractFileById(fileIds[random.nextInt(fileIds.length)]);
+	}
+
+	@Benchmark
+	public List<Content> getChildren() throws TskCoreException {
+		return directory.getChildren();
+	}
+
+	@Benchmark
+	public List<FsContent> findFiles() throws TskCoreException {
+		//each name is in every directory
+		return sk.findFiles(image, fileNames[random.nextInt(fileNames.length)]);
+	}
+}
@@ -0,0 +1,85 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2012 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time of Hash.calculateMd5() for one big file and for a directory of small
+ * files, where the cost per file (opening it and storing the hash) dominates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HashBenchmark {
+
+	private BenchmarkFixture fixture;
+	private FsContent bigFile;
+	private List<FsContent> smallFiles;
+	private Hash hash;
+
+	@Setup
+	public void setUp() throws Exception {
+		fixture = BenchmarkFixture.open();
+		bigFile = fixture.getFile(SyntheticFatImage.BIG_FILE_NAME);
+		smallFiles = new ArrayList<FsContent>();
+		for (Content child : fixture.getFile("D0000").getChildren()) {
+			if (child instanceof File) {
+				smallFiles.add((FsContent) child);
+			}
+		}
+		hash = new Hash();
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		fixture.close();
+	}
+
+	@Benchmark
+	public String md5BigFile() throws IOException {
+		return hash.calculateMd5(bigFile);
+	}
+
+	@Benchmark
+	public int md5SmallFiles() throws IOException {
+		int hashes = 0;
+		for (FsContent file : smallFiles) {
+			hashes += hash.calculateMd5(file).length();
+		}
+		return hashes;
+	}
+}
@@ -0,0 +1,115 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2012 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time to read the big file of the fixture through Content.read() and
+ * ReadContentInputStream, by buffer size. The file is in the operating system
+ * cache after the warmup, so this measures the cost of the calls rather than
+ * of the storage.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReadBenchmark {
+
+	@Param({"512", "4096", "65536", "1048576"})
+	public int bufferSize;
+	private BenchmarkFixture fixture;
+	private FsContent file;
+	private byte[] buf;
+	private ByteBuffer directBuf;
+
+	@Setup
+	public void setUp() throws Exception {
+		fixture = BenchmarkFixture.open();
+		file = fixture.getFile(SyntheticFatImage.BIG_FILE_NAME);
+		buf = new byte[bufferSize];
+		directBuf = ByteBuffer.allocateDirect(bufferSize);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		fixture.close();
+	}
+
+	@Benchmark
+	public long readArray() throws TskCoreException {
+		final long size = file.getSize();
+		long total = 0;
+		while (total < size) {
+			final int read = file.read(buf, total, Math.min(bufferSize, size - total));
+			if (read <= 0) {
+				break;
+			}
+			total += read;
+		}
+		return total;
+	}
+
+	@Benchmark
+	public long readDirectBuffer() throws TskCoreException {
+		final long size = file.getSize();
+		long total = 0;
+		while (total < size) {
+			directBuf.clear();
+			final int read = file.read(directBuf, total);
+			if (read <= 0) {
+				break;
+			}
+			total += read;
+		}
+		return total;
+	}
+
+	@Benchmark
+	public long readInputStream() throws IOException {
+		InputStream in = new ReadContentInputStream(file);
+		try {
+			long total = 0;
+			int read;
+			while ((read = in.read(buf)) != -1) {
+				total += read;
+			}
+			return total;
+		} finally {
+			in.close();
+		}
+	}
+}
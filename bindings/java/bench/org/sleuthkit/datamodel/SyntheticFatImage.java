@@ -0,0 +1,241 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2012 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+/**
+ * Writes a FAT16 raw image with a fixed layout, so that benchmarks have a file
+ * system to read without real evidence. The root directory holds the big file
+ * BIG.BIN and the directories D0000, D0001, ..., each holding the files
+ * F00000.BIN, F00001.BIN, ... The files are filled with seeded random data and
+ * stored in consecutive clusters, so the same arguments give the same image.
+ */
+final class SyntheticFatImage {
+
+	static final int SECTOR_SIZE = 512;
+	static final String BIG_FILE_NAME = "BIG.BIN";
+	private static final int SECTORS_PER_CLUSTER = 4;
+	private static final int CLUSTER_SIZE = SECTOR_SIZE * SECTORS_PER_CLUSTER;
+	private static final int DIR_ENTRY_SIZE = 32;
+	private static final int ROOT_ENTRIES = 512;
+	//cluster counts that make the sleuthkit detect FAT16
+	private static final int MIN_CLUSTERS = 4085 + 11;
+	private static final int MAX_CLUSTERS = 65524;
+	private static final int ATTR_DIRECTORY = 0x10;
+	private static final int ATTR_ARCHIVE = 0x20;
+	//2012-01-01 12:00:00 in DOS format
+	private static final int DOS_DATE = (2012 - 1980) << 9 | 1 << 5 | 1;
+	private static final int DOS_TIME = 12 << 11;
+	private final RandomAccessFile out;
+	private final ByteBuffer fat;
+	private final long dataStart;
+	private final Random random;
+	private int nextCluster = 2;
+
+	private SyntheticFatImage(RandomAccessFile out, int clusters, long dataStart, long seed) {
+		this.out = out;
+		this.fat = ByteBuffer.allocate((clusters + 2) * 2).order(ByteOrder.LITTLE_ENDIAN);
+		this.dataStart = dataStart;
+		this.random = new Random(seed);
+	}
+
+	/**
+	 * Write an image
+	 *
+	 * @param path image file to create or replace
+	 * @param directories number of directories in the root directory
+	 * @param filesPerDirectory number of files in each directory
+	 * @param fileSize size of the files in the directories
+	 * @param bigFileSize size of BIG.BIN
+	 * @param seed seed of the file content
+	 * @throws IOException thrown if the image could not be written
+	 * @throws IllegalArgumentException thrown if the files do not fit in FAT16
+	 */
+	static void write(File path, int directories, int filesPerDirectory, int fileSize, int bigFileSize, long seed) throws IOException {
+		if (directories + 1 > ROOT_ENTRIES) {
+			throw new IllegalArgumentException("Too many directories: " + directories);
+		}
+		final long dirClusters = clusters((2L + filesPerDirectory) * DIR_ENTRY_SIZE);
+		final long needed = clusters(bigFileSize) + directories * (dirClusters + filesPerDirectory * clusters(fileSize));
+		if (needed > MAX_CLUSTERS) {
+			throw new IllegalArgumentException("Files do not fit in a FAT16 image: " + needed + " clusters");
+		}
+		final int clusters = (int) Math.max(needed, MIN_CLUSTERS);
+		final int fatSectors = ((clusters + 2) * 2 + SECTOR_SIZE - 1) / SECTOR_SIZE;
+		final int rootSectors = ROOT_ENTRIES * DIR_ENTRY_SIZE / SECTOR_SIZE;
+		final long dataStart = (1L + 2 * fatSectors + rootSectors) * SECTOR_SIZE;
+		final long totalSectors = dataStart / SECTOR_SIZE + (long) clusters * SECTORS_PER_CLUSTER;
+
+		RandomAccessFile out = new RandomAccessFile(path, "rw");
+		try {
+			out.setLength(0);
+			out.setLength(totalSectors * SECTOR_SIZE);
+			SyntheticFatImage image = new SyntheticFatImage(out, clusters, dataStart, seed);
+			out.seek(0);
+			out.write(bootSector(totalSectors, fatSectors, seed));
+
+			ByteBuffer root = newDirectory(ROOT_ENTRIES);
+			int bigCluster = image.writeFile(bigFileSize);
+			putEntry(root, BIG_FILE_NAME, ATTR_ARCHIVE, bigCluster, bigFileSize);
+			for (int d = 0; d < directories; d++) {
+				int dirCluster = image.allocate((int) dirClusters * CLUSTER_SIZE);
+				ByteBuffer dir = newDirectory((int) dirClusters * CLUSTER_SIZE / DIR_ENTRY_SIZE);
+				putEntry(dir, ".", ATTR_DIRECTORY, dirCluster, 0);
+				putEntry(dir, "..", ATTR_DIRECTORY, 0, 0);
+				for (int f = 0; f < filesPerDirectory; f++) {
+					putEntry(dir, String.format("F%05d.BIN", f), ATTR_ARCHIVE, image.writeFile(fileSize), fileSize);
+				}
+				image.writeCluster(dirCluster, dir.array());
+				putEntry(root, String.format("D%04d", d), ATTR_DIRECTORY, dirCluster, 0);
+			}
+
+			//both copies of the FAT, then the root directory
+			image.fat.putShort(0, (short) 0xFFF8);
+			image.fat.putShort(2, (short) 0xFFFF);
+			for (int copy = 0; copy < 2; copy++) {
+				out.seek((1L + copy * fatSectors) * SECTOR_SIZE);
+				out.write(image.fat.array());
+			}
+			out.seek((1L + 2 * fatSectors) * SECTOR_SIZE);
+			out.write(root.array());
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * @return number of clusters needed for a size
+	 */
+	private static long clusters(long size) {
+		return (size + CLUSTER_SIZE - 1) / CLUSTER_SIZE;
+	}
+
+	/**
+	 * Allocate a chain of consecutive clusters
+	 *
+	 * @param size number of bytes the chain must hold
+	 * @return first cluster, 0 for an empty chain
+	 */
+	private int allocate(long size) {
+		final int count = (int) clusters(size);
+		if (count == 0) {
+			return 0;
+		}
+		final int first = nextCluster;
+		for (int i = 0; i < count; i++) {
+			final int cluster = first + i;
+			fat.putShort(cluster * 2, (short) (i == count - 1 ? 0xFFFF : cluster + 1));
+		}
+		nextCluster += count;
+		return first;
+	}
+
+	/**
+	 * Allocate and write a file of random data
+	 *
+	 * @return first cluster of the file
+	 */
+	private int writeFile(int size) throws IOException {
+		final int first = allocate(size);
+		byte[] data = new byte[CLUSTER_SIZE];
+		out.seek(clusterOffset(first));
+		for (int written = 0; written < size; written += data.length) {
+			random.nextBytes(data);
+			out.write(data, 0, Math.min(data.length, size - written));
+		}
+		return first;
+	}
+
+	private void writeCluster(int cluster, byte[] data) throws IOException {
+		out.seek(clusterOffset(cluster));
+		out.write(data);
+	}
+
+	private long clusterOffset(int cluster) {
+		return dataStart + (long) (cluster - 2) * CLUSTER_SIZE;
+	}
+
+	private static byte[] bootSector(long totalSectors, int fatSectors, long seed) {
+		ByteBuffer boot = ByteBuffer.allocate(SECTOR_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		boot.put(new byte[]{(byte) 0xEB, 0x3C, (byte) 0x90});
+		boot.put(ascii("MSDOS5.0", 8));
+		boot.putShort((short) SECTOR_SIZE);
+		boot.put((byte) SECTORS_PER_CLUSTER);
+		boot.putShort((short) 1); //reserved sectors
+		boot.put((byte) 2); //number of FATs
+		boot.putShort((short) ROOT_ENTRIES);
+		boot.putShort((short) (totalSectors < 0x10000 ? totalSectors : 0));
+		boot.put((byte) 0xF8); //fixed disk
+		boot.putShort((short) fatSectors);
+		boot.putShort((short) 63); //sectors per track
+		boot.putShort((short) 255); //heads
+		boot.putInt(0); //hidden sectors
+		boot.putInt((int) (totalSectors < 0x10000 ? 0 : totalSectors));
+		boot.put((byte) 0x80); //drive number
+		boot.put((byte) 0);
+		boot.put((byte) 0x29); //extended boot signature
+		boot.putInt((int) seed); //volume serial number
+		boot.put(ascii("SYNTHETIC", 11));
+		boot.put(ascii("FAT16", 8));
+		boot.put(510, (byte) 0x55);
+		boot.put(511, (byte) 0xAA);
+		return boot.array();
+	}
+
+	private static ByteBuffer newDirectory(int entries) {
+		return ByteBuffer.allocate(entries * DIR_ENTRY_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	/**
+	 * Add a short name entry at the position of a directory buffer
+	 */
+	private static void putEntry(ByteBuffer dir, String name, int attributes, int cluster, int size) {
+		final int dot = name.startsWith(".") ? -1 : name.indexOf('.');
+		dir.put(ascii(dot < 0 ? name : name.substring(0, dot), 8));
+		dir.put(ascii(dot < 0 ? "" : name.substring(dot + 1), 3));
+		dir.put((byte) attributes);
+		dir.put((byte) 0);
+		dir.put((byte) 0); //creation time, tenths of seconds
+		dir.putShort((short) DOS_TIME);
+		dir.putShort((short) DOS_DATE);
+		dir.putShort((short) DOS_DATE); //access date
+		dir.putShort((short) 0); //high cluster, FAT32 only
+		dir.putShort((short) DOS_TIME);
+		dir.putShort((short) DOS_DATE);
+		dir.putShort((short) cluster);
+		dir.putInt(size);
+	}
+
+	/**
+	 * @return the string in ASCII, padded with spaces to a length
+	 */
+	private static byte[] ascii(String s, int length) {
+		byte[] bytes = new byte[length];
+		for (int i = 0; i < length; i++) {
+			bytes[i] = (byte) (i < s.length() ? s.charAt(i) : ' ');
+		}
+		return bytes;
+	}
+}
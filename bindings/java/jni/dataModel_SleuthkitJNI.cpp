@@ -10,6 +10,7 @@
  */
 #include "tsk3/tsk_tools_i.h"
 #include "tsk3/auto/tsk_case_db.h"
+#include "tsk3/img/raw.h"
 #include "jni.h"
 #include "dataModel_SleuthkitJNI.h"
 #include <locale.h>
@@ -430,6 +431,98 @@ JNIEXPORT jint JNICALL Java_org_sleuthkit_datamodel_SleuthkitJNI_knownBadDbLooku
     return (int) file_known;
 }
 
+/*
+ * Look up each hash of an array in a hash database, in a single call.
+ * Null elements are not looked up and reported as unknown.
+ * @param env pointer to java environment this was called from
+ * @param db the database to look in, may be NULL
+ * @param hashes array of hash strings
+ * @param hitKnown status to report for hashes found in the database
+ * @return array with a TSK_DB_FILES_KNOWN_ENUM value per hash, NULL on error
+ */
+static jintArray
+lookupHashes(JNIEnv * env, TSK_HDB_INFO * db, jobjectArray hashes,
+    TSK_DB_FILES_KNOWN_ENUM hitKnown)
+{
+    jsize count = env->GetArrayLength(hashes);
+    jintArray result = env->NewIntArray(count);
+    if (result == NULL) {
+        return NULL;
+    }
+    if (count == 0 || db == NULL) {
+        // all unknown, the new array is zero-filled
+        return result;
+    }
+
+    jint *known = (jint *) tsk_malloc(count * sizeof(jint));
+    if (known == NULL) {
+        setThrowTskCoreError(env);
+        return NULL;
+    }
+
+    for (jsize i = 0; i < count; i++) {
+        known[i] = TSK_DB_FILES_KNOWN_UNKNOWN;
+        jstring hash = (jstring) env->GetObjectArrayElement(hashes, i);
+        if (hash == NULL) {
+            continue;
+        }
+        const char *md5 = (const char *) env->GetStringUTFChars(hash, NULL);
+        if (md5 == NULL) {
+            // the string could not be copied, fail the whole batch
+            env->DeleteLocalRef(hash);
+            free(known);
+            // normally an OutOfMemoryError is already pending
+            if (!env->ExceptionCheck()) {
+                setThrowTskCoreError(env, "Error getting hash string");
+            }
+            return NULL;
+        }
+        int8_t retval = tsk_hdb_lookup_str(db, md5, TSK_HDB_FLAG_QUICK, NULL, NULL);
+        env->ReleaseStringUTFChars(hash, md5);
+        env->DeleteLocalRef(hash);
+
+        if (retval == -1) {
+            free(known);
+            setThrowTskCoreError(env);
+            return NULL;
+        } else if (retval) {
+            known[i] = hitKnown;
+        }
+    }
+
+    env->SetIntArrayRegion(result, 0, count, known);
+    free(known);
+    return result;
+}
+
+/*
+ * Class:     org_sleuthkit_datamodel_SleuthkitJNI
+ * Method:    nsrlDbLookupBatch
+ * Signature: ([Ljava/lang/String;)[I
+ */
+JNIEXPORT jintArray JNICALL Java_org_sleuthkit_datamodel_SleuthkitJNI_nsrlDbLookupBatch
+(JNIEnv * env, jclass obj, jobjectArray hashes){
+
+    return lookupHashes(env, m_NSRLDb, hashes, TSK_DB_FILES_KNOWN_KNOWN);
+}
+
+/*
+ * Class:     org_sleuthkit_datamodel_SleuthkitJNI
+ * Method:    knownBadDbLookupBatch
+ * Signature: ([Ljava/lang/String;I)[I
+ */
+JNIEXPORT jintArray JNICALL Java_org_sleuthkit_datamodel_SleuthkitJNI_knownBadDbLookupBatch
+(JNIEnv * env, jclass obj, jobjectArray hashes, jint dbHandle){
+
+    if(dbHandle < 1 || (size_t) dbHandle > m_knownbads.size()) {
+        setThrowTskCoreError(env, "Invalid database handle");
+        return NULL;
+    }
+
+    return lookupHashes(env, m_knownbads.at(dbHandle-1), hashes,
+        TSK_DB_FILES_KNOWN_KNOWN_BAD);
+}
+
 /*
  * Create an add-image process that can later be run with specific inputs
  * @return the pointer to the process or NULL on error
@@ -923,6 +1016,51 @@ Java_org_sleuthkit_datamodel_SleuthkitJNI_readImgNat(JNIEnv * env,
     return copiedbytes;
 }
 
+/*
+ * Read bytes from the given image into a part of an existing array. The
+ * image is read straight into the array, which is pinned (or copied by
+ * JVMs that cannot pin it) for the duration of the read.
+ * @return number of bytes read from the image, -1 on error
+ * @param env pointer to java environment this was called from
+ * @param obj the java object this was called from
+ * @param a_img_info the pointer to the image object
+ * @param jbuf the array to read into
+ * @param jbuf_offset where in the array to start
+ * @param offset the offset in bytes to start at
+ * @param len number of bytes to read
+ */
+JNIEXPORT jint JNICALL
+Java_org_sleuthkit_datamodel_SleuthkitJNI_readImgToArrayNat(JNIEnv * env,
+    jclass obj, jlong a_img_info, jbyteArray jbuf, jint jbuf_offset, jlong offset, jlong len)
+{
+    if (jbuf_offset < 0 || len < 0 || jbuf_offset + len > env->GetArrayLength(jbuf)) {
+        setThrowTskCoreError(env, "Read does not fit in the buffer");
+        return -1;
+    }
+
+    TSK_IMG_INFO *img_info = castImgInfo(env, a_img_info);
+    if (img_info == 0) {
+        //exception already set
+        return -1;
+    }
+
+    // no JNI calls are allowed until the array is released
+    jbyte * array = (jbyte *) env->GetPrimitiveArrayCritical(jbuf, NULL);
+    if (array == NULL) {
+        //OutOfMemoryError already set
+        return -1;
+    }
+    ssize_t bytesread =
+        tsk_img_read(img_info, (TSK_OFF_T) offset, (char *) (array + jbuf_offset), (size_t) len);
+    env->ReleasePrimitiveArrayCritical(jbuf, array, bytesread == -1 ? JNI_ABORT : 0);
+
+    if (bytesread == -1) {
+        setThrowTskCoreError(env, tsk_error_get());
+        return -1;
+    }
+    return (jint) bytesread;
+}
+
 
 /*
  * Read bytes from the given volume system
@@ -1186,6 +1324,410 @@ Java_org_sleuthkit_datamodel_SleuthkitJNI_readFileNat(JNIEnv * env,
 }
 
 
+/** get the address in a direct java.nio.ByteBuffer to read into.
+ * @param env JNI env
+ * @param jbuf direct ByteBuffer to read to
+ * @param pos position in the buffer to start at
+ * @param len number of bytes that will be written
+ * @returns address of position pos in the buffer or NULL (and sets an exception) if the buffer
+ * is not direct or too small
+ */
+static char *
+getDirectBufferPos(JNIEnv * env, jobject jbuf, jint pos, jlong len)
+{
+    char *addr = (char *) env->GetDirectBufferAddress(jbuf);
+    if (addr == NULL) {
+        setThrowTskCoreError(env, "Buffer to read to is not a direct buffer");
+        return NULL;
+    }
+    jlong capacity = env->GetDirectBufferCapacity(jbuf);
+    if (pos < 0 || len < 0 || (jlong) pos + len > capacity) {
+        setThrowTskCoreError(env, "Read would overflow the buffer");
+        return NULL;
+    }
+    return addr + pos;
+}
+
+/*
+ * Read bytes from the given image directly into a direct ByteBuffer
+ * @return number of bytes read from the image, -1 on error
+ * @param env pointer to java environment this was called from
+ * @param obj the java object this was called from
+ * @param a_img_info the pointer to the image object
+ * @param jbuf direct buffer to read to
+ * @param pos position in the buffer to start at
+ * @param offset the offset in bytes to start at
+ * @param len number of bytes to read
+ */
+JNIEXPORT jint JNICALL
+Java_org_sleuthkit_datamodel_SleuthkitJNI_readImgDirectNat(JNIEnv * env,
+    jclass obj, jlong a_img_info, jobject jbuf, jint pos, jlong offset, jlong len)
+{
+    TSK_IMG_INFO *img_info = castImgInfo(env, a_img_info);
+    if (img_info == 0) {
+        //exception already set
+        return -1;
+    }
+    char *buf = getDirectBufferPos(env, jbuf, pos, len);
+    if (buf == NULL) {
+        //exception already set
+        return -1;
+    }
+
+    ssize_t bytesread =
+        tsk_img_read(img_info, (TSK_OFF_T) offset, buf, (size_t) len);
+    if (bytesread == -1) {
+        setThrowTskCoreError(env, tsk_error_get());
+    }
+    return (jint) bytesread;
+}
+
+/*
+ * Read bytes from the given volume system directly into a direct ByteBuffer
+ * @return number of bytes read from the volume system, -1 on error
+ * @param env pointer to java environment this was called from
+ * @param obj the java object this was called from
+ * @param a_vs_info the pointer to the volume system object
+ * @param jbuf direct buffer to read to
+ * @param pos position in the buffer to start at
+ * @param offset the offset in blocks to start at
+ * @param len number of bytes to read
+ */
+JNIEXPORT jint JNICALL
+Java_org_sleuthkit_datamodel_SleuthkitJNI_readVsDirectNat(JNIEnv * env,
+    jclass obj, jlong a_vs_info, jobject jbuf, jint pos, jlong offset, jlong len)
+{
+    TSK_VS_INFO *vs_info = castVsInfo(env, a_vs_info);
+    if (vs_info == 0) {
+        //exception already set
+        return -1;
+    }
+    char *buf = getDirectBufferPos(env, jbuf, pos, len);
+    if (buf == NULL) {
+        //exception already set
+        return -1;
+    }
+
+    ssize_t bytesread = tsk_vs_read_block(vs_info, (TSK_DADDR_T) offset, buf,
+        (size_t) len);
+    if (bytesread == -1) {
+        setThrowTskCoreError(env, tsk_error_get());
+    }
+    return (jint) bytesread;
+}
+
+/*
+ * Read bytes from the given volume directly into a direct ByteBuffer
+ * @return number of bytes read from the volume, -1 on error
+ * @param env pointer to java environment this was called from
+ * @param obj the java object this was called from
+ * @param a_vol_info the pointer to the volume object
+ * @param jbuf direct buffer to read to
+ * @param pos position in the buffer to start at
+ * @param offset the offset in bytes to start at
+ * @param len number of bytes to read
+ */
+JNIEXPORT jint JNICALL
+Java_org_sleuthkit_datamodel_SleuthkitJNI_readVolDirectNat(JNIEnv * env,
+    jclass obj, jlong a_vol_info, jobject jbuf, jint pos, jlong offset, jlong len)
+{
+    TSK_VS_PART_INFO *vol_part_info = castVsPartInfo(env, a_vol_info);
+    if (vol_part_info == 0) {
+        //exception already set
+        return -1;
+    }
+    char *buf = getDirectBufferPos(env, jbuf, pos, len);
+    if (buf == NULL) {
+        //exception already set
+        return -1;
+    }
+
+    ssize_t bytesread =
+        tsk_vs_part_read(vol_part_info, (TSK_OFF_T) offset, buf,
+        (size_t) len);
+    if (bytesread == -1) {
+        setThrowTskCoreError(env, tsk_error_get());
+    }
+    return (jint) bytesread;
+}
+
+/*
+ * Read bytes from the given file system directly into a direct ByteBuffer
+ * @return number of bytes read from the file system, -1 on error
+ * @param env pointer to java environment this was called from
+ * @param obj the java object this was called from
+ * @param a_fs_info the pointer to the file system object
+ * @param jbuf direct buffer to read to
+ * @param pos position in the buffer to start at
+ * @param offset the offset in bytes to start at
+ * @param len number of bytes to read
+ */
+JNIEXPORT jint JNICALL
+Java_org_sleuthkit_datamodel_SleuthkitJNI_readFsDirectNat(JNIEnv * env,
+    jclass obj, jlong a_fs_info, jobject jbuf, jint pos, jlong offset, jlong len)
+{
+    TSK_FS_INFO *fs_info = castFsInfo(env, a_fs_info);
+    if (fs_info == 0) {
+        //exception already set
+        return -1;
+    }
+    char *buf = getDirectBufferPos(env, jbuf, pos, len);
+    if (buf == NULL) {
+        //exception already set
+        return -1;
+    }
+
+    ssize_t bytesread =
+        tsk_fs_read(fs_info, (TSK_OFF_T) offset, buf, (size_t) len);
+    if (bytesread == -1) {
+        setThrowTskCoreError(env, tsk_error_get());
+    }
+    return (jint) bytesread;
+}
+
+/*
+ * Read bytes from the given file directly into a direct ByteBuffer
+ * @return number of bytes read, or -1 on error
+ * @param env pointer to java environment this was called from
+ * @param obj the java object this was called from
+ * @param a_file_handle the pointer to the TSK_JNI_FILEHANDLE object
+ * @param jbuf direct buffer to read to
+ * @param pos position in the buffer to start at
+ * @param offset the offset in bytes to start at
+ * @param len number of bytes to read
+ */
+JNIEXPORT jint JNICALL
+Java_org_sleuthkit_datamodel_SleuthkitJNI_readFileDirectNat(JNIEnv * env,
+    jclass obj, jlong a_file_handle, jobject jbuf, jint pos, jlong offset, jlong len)
+{
+    const TSK_JNI_FILEHANDLE *file_handle = castFsFile(env, a_file_handle);
+    if (file_handle == 0) {
+        //exception already set
+        return -1;
+    }
+    char *buf = getDirectBufferPos(env, jbuf, pos, len);
+    if (buf == NULL) {
+        //exception already set
+        return -1;
+    }
+
+    ssize_t bytesread = tsk_fs_attr_read(file_handle->fs_attr, (TSK_OFF_T) offset, buf, (size_t) len,
+        TSK_FS_FILE_READ_FLAG_NONE);
+    if (bytesread == -1) {
+        setThrowTskCoreError(env, tsk_error_get());
+    }
+    return (jint) bytesread;
+}
+
+/** reads one run of a vectored read, returns bytes read or -1 on error */
+typedef ssize_t (*RUN_READ_FUNC) (void *src, TSK_OFF_T offset, char *buf, size_t len);
+
+static ssize_t
+readImgRun(void *src, TSK_OFF_T offset, char *buf, size_t len)
+{
+    return tsk_img_read((TSK_IMG_INFO *) src, offset, buf, len);
+}
+
+static ssize_t
+readFileRun(void *src, TSK_OFF_T offset, char *buf, size_t len)
+{
+    return tsk_fs_attr_read((const TSK_FS_ATTR *) src, offset, buf, len,
+        TSK_FS_FILE_READ_FLAG_NONE);
+}
+
+/*
+ * Read a list of runs back to back into a direct ByteBuffer or a byte array,
+ * in one call. Direct buffers are read into without a copy, arrays through a
+ * stack buffer. Stops after the first run that is cut short.
+ * @return number of bytes read, -1 on error
+ * @param env pointer to java environment this was called from
+ * @param read_func reads a run from src
+ * @param src the image or attribute to read from
+ * @param joffsets offset of each run
+ * @param jlengths length of each run
+ * @param jdirect direct buffer to read to, or NULL to read to jarray
+ * @param jarray array to read to if jdirect is NULL
+ * @param pos position in the buffer or array to start at
+ */
+static jint
+readRuns(JNIEnv * env, RUN_READ_FUNC read_func, void *src,
+    jlongArray joffsets, jintArray jlengths, jobject jdirect, jbyteArray jarray, jint pos)
+{
+    jsize count = env->GetArrayLength(joffsets);
+    if (env->GetArrayLength(jlengths) != count) {
+        setThrowTskCoreError(env, "Number of run offsets and lengths differ");
+        return -1;
+    }
+    jlong *offsets = env->GetLongArrayElements(joffsets, NULL);
+    if (offsets == NULL) {
+        //OutOfMemoryError already thrown
+        return -1;
+    }
+    jint *lengths = env->GetIntArrayElements(jlengths, NULL);
+    if (lengths == NULL) {
+        env->ReleaseLongArrayElements(joffsets, offsets, JNI_ABORT);
+        return -1;
+    }
+
+    jlong total = 0;
+    bool valid = true;
+    for (jsize i = 0; i < count; i++) {
+        if (lengths[i] < 0) {
+            valid = false;
+        }
+        total += lengths[i];
+    }
+
+    char *dst = NULL;
+    if (!valid) {
+        setThrowTskCoreError(env, "Negative run length");
+    }
+    else if (jdirect != NULL) {
+        dst = getDirectBufferPos(env, jdirect, pos, total);
+        valid = dst != NULL;
+    }
+    else if (pos < 0 || (jlong) pos + total > env->GetArrayLength(jarray)) {
+        setThrowTskCoreError(env, "Read would overflow the buffer");
+        valid = false;
+    }
+
+    jlong done = 0;
+    char fixed_buf[FIXED_BUF_SIZE];
+    for (jsize i = 0; valid && i < count; i++) {
+        const size_t len = (size_t) lengths[i];
+        ssize_t run_read = 0;
+        if (dst != NULL) {
+            run_read = read_func(src, (TSK_OFF_T) offsets[i], dst + done, len);
+        }
+        else {
+            while ((size_t) run_read < len) {
+                size_t chunk = len - run_read;
+                if (chunk > FIXED_BUF_SIZE) {
+                    chunk = FIXED_BUF_SIZE;
+                }
+                ssize_t chunk_read = read_func(src, (TSK_OFF_T) offsets[i] + run_read, fixed_buf, chunk);
+                if (chunk_read == -1) {
+                    run_read = -1;
+                    break;
+                }
+                env->SetByteArrayRegion(jarray, (jsize) (pos + done + run_read),
+                    (jsize) chunk_read, (jbyte *) fixed_buf);
+                run_read += chunk_read;
+                if ((size_t) chunk_read < chunk) {
+                    break;
+                }
+            }
+        }
+        if (run_read == -1) {
+            setThrowTskCoreError(env, tsk_error_get());
+            valid = false;
+            break;
+        }
+        done += run_read;
+        if ((size_t) run_read < len) {
+            //end of the content
+            break;
+        }
+    }
+
+    env->ReleaseIntArrayElements(jlengths, lengths, JNI_ABORT);
+    env->ReleaseLongArrayElements(joffsets, offsets, JNI_ABORT);
+    return valid ? (jint) done : -1;
+}
+
+/*
+ * Read runs of the given image into a direct ByteBuffer
+ * @return number of bytes read from the image, -1 on error
+ * @param env pointer to java environment this was called from
+ * @param obj the java object this was called from
+ * @param a_img_info the pointer to the image object
+ * @param offsets byte offset of each run
+ * @param lengths length of each run
+ * @param jbuf direct buffer to read to
+ * @param pos position in the buffer to start at
+ */
+JNIEXPORT jint JNICALL
+Java_org_sleuthkit_datamodel_SleuthkitJNI_readImgVNat(JNIEnv * env,
+    jclass obj, jlong a_img_info, jlongArray offsets, jintArray lengths, jobject jbuf, jint pos)
+{
+    TSK_IMG_INFO *img_info = castImgInfo(env, a_img_info);
+    if (img_info == 0) {
+        //exception already set
+        return -1;
+    }
+    return readRuns(env, readImgRun, img_info, offsets, lengths, jbuf, NULL, pos);
+}
+
+/*
+ * Read runs of the given image into a byte array
+ * @return number of bytes read from the image, -1 on error
+ * @param env pointer to java environment this was called from
+ * @param obj the java object this was called from
+ * @param a_img_info the pointer to the image object
+ * @param offsets byte offset of each run
+ * @param lengths length of each run
+ * @param jbuf array to read to
+ * @param pos position in the array to start at
+ */
+JNIEXPORT jint JNICALL
+Java_org_sleuthkit_datamodel_SleuthkitJNI_readImgVArrayNat(JNIEnv * env,
+    jclass obj, jlong a_img_info, jlongArray offsets, jintArray lengths, jbyteArray jbuf, jint pos)
+{
+    TSK_IMG_INFO *img_info = castImgInfo(env, a_img_info);
+    if (img_info == 0) {
+        //exception already set
+        return -1;
+    }
+    return readRuns(env, readImgRun, img_info, offsets, lengths, NULL, jbuf, pos);
+}
+
+/*
+ * Read runs of the given file into a direct ByteBuffer
+ * @return number of bytes read from the file, -1 on error
+ * @param env pointer to java environment this was called from
+ * @param obj the java object this was called from
+ * @param a_file_handle the pointer to the file handle
+ * @param offsets byte offset of each run
+ * @param lengths length of each run
+ * @param jbuf direct buffer to read to
+ * @param pos position in the buffer to start at
+ */
+JNIEXPORT jint JNICALL
+Java_org_sleuthkit_datamodel_SleuthkitJNI_readFileVNat(JNIEnv * env,
+    jclass obj, jlong a_file_handle, jlongArray offsets, jintArray lengths, jobject jbuf, jint pos)
+{
+    const TSK_JNI_FILEHANDLE *file_handle = castFsFile(env, a_file_handle);
+    if (file_handle == 0) {
+        //exception already set
+        return -1;
+    }
+    return readRuns(env, readFileRun, file_handle->fs_attr, offsets, lengths, jbuf, NULL, pos);
+}
+
+/*
+ * Read runs of the given file into a byte array
+ * @return number of bytes read from the file, -1 on error
+ * @param env pointer to java environment this was called from
+ * @param obj the java object this was called from
+ * @param a_file_handle the pointer to the file handle
+ * @param offsets byte offset of each run
+ * @param lengths length of each run
+ * @param jbuf array to read to
+ * @param pos position in the array to start at
+ */
+JNIEXPORT jint JNICALL
+Java_org_sleuthkit_datamodel_SleuthkitJNI_readFileVArrayNat(JNIEnv * env,
+    jclass obj, jlong a_file_handle, jlongArray offsets, jintArray lengths, jbyteArray jbuf, jint pos)
+{
+    const TSK_JNI_FILEHANDLE *file_handle = castFsFile(env, a_file_handle);
+    if (file_handle == 0) {
+        //exception already set
+        return -1;
+    }
+    return readRuns(env, readFileRun, file_handle->fs_attr, offsets, lengths, NULL, jbuf, pos);
+}
+
+
 /*
  * Close the given image
  * @param env pointer to java environment this was called from
@@ -1236,6 +1778,112 @@ JNIEXPORT void JNICALL Java_org_sleuthkit_datamodel_SleuthkitJNI_closeFsNat
     tsk_fs_close(fs_info);
 }
 
+/*
+ * Get the size of the image info structure, including its read cache
+ * @param env pointer to java environment this was called from
+ * @param obj the java object this was called from
+ * @return size in bytes
+ */
+JNIEXPORT jlong JNICALL Java_org_sleuthkit_datamodel_SleuthkitJNI_getImgInfoSizeNat
+    (JNIEnv * env, jclass obj) {
+    return (jlong) sizeof(TSK_IMG_INFO);
+}
+
+/*
+ * Get the files of a raw image, in the order they are read
+ * @param env pointer to java environment this was called from
+ * @param obj the java object this was called from
+ * @param a_img_info the image info pointer
+ * @return the file paths, NULL if the image is not a raw image of files
+ */
+JNIEXPORT jobjectArray JNICALL Java_org_sleuthkit_datamodel_SleuthkitJNI_getRawImgSegmentsNat
+    (JNIEnv * env, jclass obj, jlong a_img_info) {
+    TSK_IMG_INFO *img_info = castImgInfo(env, a_img_info);
+    if (img_info == 0) {
+        //exception already set
+        return NULL;
+    }
+    if (!TSK_IMG_TYPE_ISRAW(img_info->itype)) {
+        return NULL;
+    }
+    IMG_RAW_INFO *raw_info = (IMG_RAW_INFO *) img_info;
+    if (raw_info->is_winobj) {
+        // devices are not mapped
+        return NULL;
+    }
+
+    jobjectArray segments =
+        env->NewObjectArray(raw_info->num_img,
+        env->FindClass("java/lang/String"), NULL);
+    if (segments == NULL) {
+        //exception already set
+        return NULL;
+    }
+    for (int i = 0; i < raw_info->num_img; i++) {
+#ifdef TSK_WIN32
+        jstring path =
+            env->NewString((const jchar *) raw_info->images[i],
+            (jsize) TSTRLEN(raw_info->images[i]));
+#else
+        jstring path = env->NewStringUTF(raw_info->images[i]);
+#endif
+        if (path == NULL) {
+            //exception already set
+            return NULL;
+        }
+        env->SetObjectArrayElement(segments, i, path);
+        env->DeleteLocalRef(path);
+    }
+    return segments;
+}
+
+/*
+ * Get the size of the file system info structure
+ * @param env pointer to java environment this was called from
+ * @param obj the java object this was called from
+ * @return size in bytes
+ */
+JNIEXPORT jlong JNICALL Java_org_sleuthkit_datamodel_SleuthkitJNI_getFsInfoSizeNat
+    (JNIEnv * env, jclass obj) {
+    return (jlong) sizeof(TSK_FS_INFO);
+}
+
+/*
+ * Estimate the memory held by an open file handle
+ * @param env pointer to java environment this was called from
+ * @param obj the java object this was called from
+ * @param a_file_handle the file handle
+ * @return size in bytes
+ */
+JNIEXPORT jlong JNICALL Java_org_sleuthkit_datamodel_SleuthkitJNI_getFileHandleSizeNat
+    (JNIEnv * env, jclass obj, jlong a_file_handle) {
+    TSK_JNI_FILEHANDLE *file_handle = castFsFile(env, a_file_handle);
+    if (file_handle == 0) {
+        //exception already set
+        return 0;
+    }
+
+    jlong size = sizeof(TSK_JNI_FILEHANDLE) + sizeof(TSK_FS_FILE);
+    TSK_FS_FILE *fs_file = file_handle->fs_file;
+    if (fs_file->meta != NULL) {
+        size += sizeof(TSK_FS_META);
+        int attr_count = tsk_fs_file_attr_getsize(fs_file);
+        for (int i = 0; i < attr_count; i++) {
+            const TSK_FS_ATTR *fs_attr = tsk_fs_file_attr_get_idx(fs_file, i);
+            if (fs_attr == NULL) {
+                continue;
+            }
+            size += sizeof(TSK_FS_ATTR) + fs_attr->rd.buf_size;
+            for (TSK_FS_ATTR_RUN *run = fs_attr->nrd.run; run != NULL; run = run->next) {
+                size += sizeof(TSK_FS_ATTR_RUN);
+            }
+        }
+        //looking up the attributes may have set an error
+        tsk_error_reset();
+    }
+    return size;
+}
+
 /*
  * Close the given file
  * @param env pointer to java environment this was called from
@@ -97,6 +97,22 @@ JNIEXPORT jint JNICALL Java_org_sleuthkit_datamodel_SleuthkitJNI_knownBadDbLooku
 JNIEXPORT jint JNICALL Java_org_sleuthkit_datamodel_SleuthkitJNI_nsrlDbLookup
   (JNIEnv *, jclass, jstring);
 
+/*
+ * Class:     org_sleuthkit_datamodel_SleuthkitJNI
+ * Method:    knownBadDbLookupBatch
+ * Signature: ([Ljava/lang/String;I)[I
+ */
+JNIEXPORT jintArray JNICALL Java_org_sleuthkit_datamodel_SleuthkitJNI_knownBadDbLookupBatch
+  (JNIEnv *, jclass, jobjectArray, jint);
+
+/*
+ * Class:     org_sleuthkit_datamodel_SleuthkitJNI
+ * Method:    nsrlDbLookupBatch
+ * Signature: ([Ljava/lang/String;)[I
+ */
+JNIEXPORT jintArray JNICALL Java_org_sleuthkit_datamodel_SleuthkitJNI_nsrlDbLookupBatch
+  (JNIEnv *, jclass, jobjectArray);
+
 /*
  * Class:     org_sleuthkit_datamodel_SleuthkitJNI
  * Method:    getIndexSizeNat
@@ -193,6 +209,46 @@ JNIEXPORT jlong JNICALL Java_org_sleuthkit_datamodel_SleuthkitJNI_openFileNat
 JNIEXPORT jint JNICALL Java_org_sleuthkit_datamodel_SleuthkitJNI_readImgNat
   (JNIEnv *, jclass, jlong, jbyteArray, jlong, jlong);
 
+/*
+ * Class:     org_sleuthkit_datamodel_SleuthkitJNI
+ * Method:    readImgToArrayNat
+ * Signature: (J[BIJJ)I
+ */
+JNIEXPORT jint JNICALL Java_org_sleuthkit_datamodel_SleuthkitJNI_readImgToArrayNat
+  (JNIEnv *, jclass, jlong, jbyteArray, jint, jlong, jlong);
+
+/*
+ * Class:     org_sleuthkit_datamodel_SleuthkitJNI
+ * Method:    readImgVNat
+ * Signature: (J[J[ILjava/nio/ByteBuffer;I)I
+ */
+JNIEXPORT jint JNICALL Java_org_sleuthkit_datamodel_SleuthkitJNI_readImgVNat
+  (JNIEnv *, jclass, jlong, jlongArray, jintArray, jobject, jint);
+
+/*
+ * Class:     org_sleuthkit_datamodel_SleuthkitJNI
+ * Method:    readImgVArrayNat
+ * Signature: (J[J[I[BI)I
+ */
+JNIEXPORT jint JNICALL Java_org_sleuthkit_datamodel_SleuthkitJNI_readImgVArrayNat
+  (JNIEnv *, jclass, jlong, jlongArray, jintArray, jbyteArray, jint);
+
+/*
+ * Class:     org_sleuthkit_datamodel_SleuthkitJNI
+ * Method:    readFileVNat
+ * Signature: (J[J[ILjava/nio/ByteBuffer;I)I
+ */
+JNIEXPORT jint JNICALL Java_org_sleuthkit_datamodel_SleuthkitJNI_readFileVNat
+  (JNIEnv *, jclass, jlong, jlongArray, jintArray, jobject, jint);
+
+/*
+ * Class:     org_sleuthkit_datamodel_SleuthkitJNI
+ * Method:    readFileVArrayNat
+ * Signature: (J[J[I[BI)I
+ */
+JNIEXPORT jint JNICALL Java_org_sleuthkit_datamodel_SleuthkitJNI_readFileVArrayNat
+  (JNIEnv *, jclass, jlong, jlongArray, jintArray, jbyteArray, jint);
+
 /*
  * Class:     org_sleuthkit_datamodel_SleuthkitJNI
  * Method:    readVsNat
@@ -225,6 +281,46 @@ JNIEXPORT jint JNICALL Java_org_sleuthkit_datamodel_SleuthkitJNI_readFsNat
 JNIEXPORT jint JNICALL Java_org_sleuthkit_datamodel_SleuthkitJNI_readFileNat
   (JNIEnv *, jclass, jlong, jbyteArray, jlong, jlong);
 
+/*
+ * Class:     org_sleuthkit_datamodel_SleuthkitJNI
+ * Method:    readImgDirectNat
+ * Signature: (JLjava/nio/ByteBuffer;IJJ)I
+ */
+JNIEXPORT jint JNICALL Java_org_sleuthkit_datamodel_SleuthkitJNI_readImgDirectNat
+  (JNIEnv *, jclass, jlong, jobject, jint, jlong, jlong);
+
+/*
+ * Class:     org_sleuthkit_datamodel_SleuthkitJNI
+ * Method:    readVsDirectNat
+ * Signature: (JLjava/nio/ByteBuffer;IJJ)I
+ */
+JNIEXPORT jint JNICALL Java_org_sleuthkit_datamodel_SleuthkitJNI_readVsDirectNat
+  (JNIEnv *, jclass, jlong, jobject, jint, jlong, jlong);
+
+/*
+ * Class:     org_sleuthkit_datamodel_SleuthkitJNI
+ * Method:    readVolDirectNat
+ * Signature: (JLjava/nio/ByteBuffer;IJJ)I
+ */
+JNIEXPORT jint JNICALL Java_org_sleuthkit_datamodel_SleuthkitJNI_readVolDirectNat
+  (JNIEnv *, jclass, jlong, jobject, jint, jlong, jlong);
+
+/*
+ * Class:     org_sleuthkit_datamodel_SleuthkitJNI
+ * Method:    readFsDirectNat
+ * Signature: (JLjava/nio/ByteBuffer;IJJ)I
+ */
+JNIEXPORT jint JNICALL Java_org_sleuthkit_datamodel_SleuthkitJNI_readFsDirectNat
+  (JNIEnv *, jclass, jlong, jobject, jint, jlong, jlong);
+
+/*
+ * Class:     org_sleuthkit_datamodel_SleuthkitJNI
+ * Method:    readFileDirectNat
+ * Signature: (JLjava/nio/ByteBuffer;IJJ)I
+ */
+JNIEXPORT jint JNICALL Java_org_sleuthkit_datamodel_SleuthkitJNI_readFileDirectNat
+  (JNIEnv *, jclass, jlong, jobject, jint, jlong, jlong);
+
 /*
  * Class:     org_sleuthkit_datamodel_SleuthkitJNI
  * Method:    closeImgNat
@@ -257,6 +353,38 @@ JNIEXPORT void JNICALL Java_org_sleuthkit_datamodel_SleuthkitJNI_closeFsNat
 JNIEXPORT void JNICALL Java_org_sleuthkit_datamodel_SleuthkitJNI_closeFileNat
   (JNIEnv *, jclass, jlong);
 
+/*
+ * Class:     org_sleuthkit_datamodel_SleuthkitJNI
+ * Method:    getRawImgSegmentsNat
+ * Signature: (J)[Ljava/lang/String;
+ */
+JNIEXPORT jobjectArray JNICALL Java_org_sleuthkit_datamodel_SleuthkitJNI_getRawImgSegmentsNat
+  (JNIEnv *, jclass, jlong);
+
+/*
+ * Class:     org_sleuthkit_datamodel_SleuthkitJNI
+ * Method:    getImgInfoSizeNat
+ * Signature: ()J
+ */
+JNIEXPORT jlong JNICALL Java_org_sleuthkit_datamodel_SleuthkitJNI_getImgInfoSizeNat
+  (JNIEnv *, jclass);
+
+/*
+ * Class:     org_sleuthkit_datamodel_SleuthkitJNI
+ * Method:    getFsInfoSizeNat
+ * Signature: ()J
+ */
+JNIEXPORT jlong JNICALL Java_org_sleuthkit_datamodel_SleuthkitJNI_getFsInfoSizeNat
+  (JNIEnv *, jclass);
+
+/*
+ * Class:     org_sleuthkit_datamodel_SleuthkitJNI
+ * Method:    getFileHandleSizeNat
+ * Signature: (J)J
+ */
+JNIEXPORT jlong JNICALL Java_org_sleuthkit_datamodel_SleuthkitJNI_getFileHandleSizeNat
+  (JNIEnv *, jclass, jlong);
+
 /*
  * Class:     org_sleuthkit_datamodel_SleuthkitJNI
  * Method:    createLookupIndexNat
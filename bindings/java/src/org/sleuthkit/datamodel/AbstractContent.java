@@ -18,6 +18,7 @@
  */
 package org.sleuthkit.datamodel;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import org.sleuthkit.datamodel.BlackboardArtifact.ARTIFACT_TYPE;
 import org.sleuthkit.datamodel.SleuthkitCase.ObjectInfo;
@@ -45,6 +46,48 @@ public abstract class AbstractContent implements Content {
 		this.parentId = -1;
 	}
 
+	/*
+	 * This base implementation reads through a temporary array. Content types
+	 * that read through the tsk core override it to read into direct buffers
+	 * without a copy.
+	 */
+	@Override
+	public int read(ByteBuffer dst, long offset) throws TskCoreException {
+		byte[] buf = new byte[dst.remaining()];
+		int bytesRead = read(buf, offset, buf.length);
+		if (bytesRead > 0) {
+			dst.put(buf, 0, bytesRead);
+		}
+		return bytesRead;
+	}
+
+	/*
+	 * This base implementation reads the ranges one at a time. Content types
+	 * that read through the tsk core override it to read them in one call.
+	 */
+	@Override
+	public int readRanges(long[] offsets, int[] lengths, ByteBuffer dst) throws TskCoreException {
+		SleuthkitJNI.checkRuns(offsets, lengths, dst);
+		final int limit = dst.limit();
+		int bytesRead = 0;
+		try {
+			for (int i = 0; i < offsets.length; i++) {
+				dst.limit(dst.position() + lengths[i]);
+				int lenRead = lengths[i] == 0 ? 0 : read(dst, offsets[i]);
+				dst.limit(limit);
+				if (lenRead > 0) {
+					bytesRead += lenRead;
+				}
+				if (lenRead != lengths[i]) {
+					break;
+				}
+			}
+		} finally {
+			dst.limit(limit);
+		}
+		return bytesRead;
+	}
+
 	@Override
 	public String getName() {
 		return this.name;
@@ -74,14 +117,19 @@ public abstract class AbstractContent implements Content {
 	@Override
 	public synchronized Content getParent() throws TskCoreException {
 		if (parent == null) {
-			ObjectInfo parentInfo = null;
-			try {
-				parentInfo = db.getParentInfo(this);
-			} catch (TskCoreException ex) {
-				// there is not parent; not an error if we've got an Image
-				return null;
+			long parentObjId = parentId;
+			if (parentObjId == UNKNOWN_ID) {
+				ObjectInfo parentInfo = null;
+				try {
+					parentInfo = db.getParentInfo(this);
+				} catch (TskCoreException ex) {
+					// there is not parent; not an error if we've got an Image
+					return null;
+				}
+				parentObjId = parentInfo.id;
 			}
-			parent = db.getContentById(parentInfo.id);
+			//shared parent objects come from the case content cache
+			parent = db.getContentById(parentObjId);
 		}
 		return parent;
 	}
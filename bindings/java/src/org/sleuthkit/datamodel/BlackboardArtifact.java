@@ -18,6 +18,7 @@
  */
 package org.sleuthkit.datamodel;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import org.sleuthkit.datamodel.BlackboardAttribute.ATTRIBUTE_TYPE;
@@ -136,6 +137,10 @@ public class BlackboardArtifact implements SleuthkitVisitableItem {
 	private String artifactTypeName;
 	private String displayName;
 	private SleuthkitCase Case;
+	//attributes read with the artifact, null if they are queried on request
+	private volatile List<BlackboardAttribute> attributes;
+	//attribute writes of the case when the attributes were read
+	private volatile long attributeWritesRead;
 
 	/**
 	 * Constructor for an artifact. Should only be used by SleuthkitCase
@@ -203,6 +208,7 @@ public class BlackboardArtifact implements SleuthkitVisitableItem {
 	public void addAttribute(BlackboardAttribute attr) throws TskCoreException {
 		attr.setArtifactID(artifactID);
 		attr.setCase(Case);
+		attributes = null;
 		Case.addBlackboardAttribute(attr);
 	}
 
@@ -220,6 +226,7 @@ public class BlackboardArtifact implements SleuthkitVisitableItem {
 			attr.setArtifactID(artifactID);
 			attr.setCase(Case);
 		}
+		this.attributes = null;
 		Case.addBlackboardAttributes(attributes);
 	}
 
@@ -229,9 +236,25 @@ public class BlackboardArtifact implements SleuthkitVisitableItem {
 	 * @throws TskException exception thrown if a critical error occurs within tsk core and attributes were not queried
 	 */
 	public List<BlackboardAttribute> getAttributes() throws TskCoreException {
+		final List<BlackboardAttribute> loaded = attributes;
+		if (loaded != null && attributeWritesRead == Case.getAttributeWrites()) {
+			return new ArrayList<BlackboardAttribute>(loaded);
+		}
 		//return Case.getMatchingAttributes("WHERE artifact_id = " + artifactID);
 		return Case.getBlackboardAttributes(this);
 	}
+
+	/**
+	 * Set the attributes of this artifact, read together with the artifact,
+	 * so that getAttributes() does not query them. They are dropped when an
+	 * attribute is added, to this or any other artifact of the case.
+	 * @param attributes all attributes of this artifact, or null to query them
+	 * @param attributeWrites SleuthkitCase.getAttributeWrites() before they were read
+	 */
+	void setAttributes(List<BlackboardAttribute> attributes, long attributeWrites) {
+		this.attributeWritesRead = attributeWrites;
+		this.attributes = attributes;
+	}
 	
 
 	/**
@@ -0,0 +1,133 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2012 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * In memory copy of the artifact or attribute types of a case, indexed by
+ * type id, so that the names of the types are looked up without a query.
+ *
+ * The types are held in an immutable snapshot of arrays indexed by id, read
+ * without locking. Adding types replaces the snapshot, so a reader sees
+ * either all or none of the types of an update.
+ */
+final class BlackboardTypeRegistry {
+
+	/**
+	 * The types at one point in time
+	 */
+	private static final class Snapshot {
+
+		private final String[] names;
+		private final String[] displayNames;
+		private final Map<String, Integer> ids;
+
+		Snapshot(String[] names, String[] displayNames, Map<String, Integer> ids) {
+			this.names = names;
+			this.displayNames = displayNames;
+			this.ids = ids;
+		}
+	}
+	private volatile Snapshot snapshot = new Snapshot(new String[0], new String[0], new HashMap<String, Integer>());
+
+	/**
+	 * Add or replace types
+	 *
+	 * @param typeIds ids of the types
+	 * @param names names of the types
+	 * @param displayNames display names of the types
+	 */
+	synchronized void putAll(int[] typeIds, String[] names, String[] displayNames) {
+		final Snapshot current = snapshot;
+		int length = current.names.length;
+		for (int typeId : typeIds) {
+			if (typeId < 0) {
+				throw new IllegalArgumentException("Negative type id: " + typeId);
+			}
+			length = Math.max(length, typeId + 1);
+		}
+		String[] newNames = Arrays.copyOf(current.names, length);
+		String[] newDisplayNames = Arrays.copyOf(current.displayNames, length);
+		Map<String, Integer> newIds = new HashMap<String, Integer>(current.ids);
+		for (int i = 0; i < typeIds.length; i++) {
+			if (newNames[typeIds[i]] != null) {
+				newIds.remove(newNames[typeIds[i]]);
+			}
+			newNames[typeIds[i]] = names[i];
+			newDisplayNames[typeIds[i]] = displayNames[i];
+			newIds.put(names[i], typeIds[i]);
+		}
+		snapshot = new Snapshot(newNames, newDisplayNames, newIds);
+	}
+
+	/**
+	 * Add or replace a type
+	 *
+	 * @param typeId id of the type
+	 * @param name name of the type
+	 * @param displayName display name of the type
+	 */
+	void put(int typeId, String name, String displayName) {
+		putAll(new int[]{typeId}, new String[]{name}, new String[]{displayName});
+	}
+
+	/**
+	 * @param typeId id of a type
+	 * @return name of the type, null if not known
+	 */
+	String getName(int typeId) {
+		final String[] names = snapshot.names;
+		return typeId >= 0 && typeId < names.length ? names[typeId] : null;
+	}
+
+	/**
+	 * @param typeId id of a type
+	 * @return display name of the type, null if not known
+	 */
+	String getDisplayName(int typeId) {
+		final Snapshot current = snapshot;
+		return typeId >= 0 && typeId < current.names.length && current.names[typeId] != null
+				? current.displayNames[typeId] : null;
+	}
+
+	/**
+	 * @param name name of a type
+	 * @return id of the type, -1 if not known
+	 */
+	int getId(String name) {
+		final Integer typeId = snapshot.ids.get(name);
+		return typeId == null ? -1 : typeId;
+	}
+
+	/**
+	 * @return highest type id known, -1 if there are none
+	 */
+	int getMaxId() {
+		final String[] names = snapshot.names;
+		for (int i = names.length - 1; i >= 0; i--) {
+			if (names[i] != null) {
+				return i;
+			}
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,385 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2012 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.sleuthkit.datamodel.BlackboardArtifact.ARTIFACT_TYPE;
+
+/**
+ * Asynchronous writer for blackboard artifacts and attributes.
+ *
+ * Submitted artifacts and attributes are put on a bounded queue (submitting
+ * blocks while the queue is full) and written by a single writer thread, in
+ * large transactions with batched inserts. Artifact ids are allocated at
+ * submission time, so the returned artifact can be used right away, e.g. to
+ * submit more attributes for it. The returned futures complete (and the
+ * callbacks are called) once the data is committed.
+ *
+ * Get the writer of a case with SleuthkitCase.getBlackboardWriter(). It is
+ * stopped when the case is closed.
+ */
+public class BlackboardWriter {
+
+	/**
+	 * Notified on the writer thread when a submission has been written or
+	 * could not be written. Implementations should return quickly.
+	 *
+	 * @param <T> type of the written item
+	 */
+	public interface Callback<T> {
+
+		/**
+		 * Called after the submission has been committed
+		 *
+		 * @param result the written item
+		 */
+		void written(T result);
+
+		/**
+		 * Called if the transaction with the submission failed. Nothing
+		 * from the submission was written.
+		 *
+		 * @param ex the error
+		 */
+		void failed(TskCoreException ex);
+	}
+	/**
+	 * Default number of pending submissions before submitting blocks
+	 */
+	public static final int DEFAULT_QUEUE_SIZE = 10000;
+	/**
+	 * Default maximum number of submissions written in one transaction
+	 */
+	public static final int DEFAULT_BATCH_SIZE = 2000;
+	private static final Logger logger = Logger.getLogger(BlackboardWriter.class.getName());
+	private final SleuthkitCase skCase;
+	private final int batchSize;
+	private final BlockingQueue<Submission<?>> queue;
+	private final Thread writerThread;
+	private volatile boolean closed = false;
+	//held shared while submitting and exclusively to close, so that nothing
+	//is put on the queue after the writer thread took what was left
+	private final ReadWriteLock closeLock = new ReentrantReadWriteLock();
+	//put on the queue to stop the writer thread
+	private final Submission<Void> stopMarker = new Submission<Void>(null, Collections.<BlackboardAttribute>emptyList(), null, null);
+
+	/**
+	 * Create and start a writer for the case
+	 *
+	 * @param skCase case to write to
+	 */
+	BlackboardWriter(SleuthkitCase skCase) {
+		this(skCase, DEFAULT_QUEUE_SIZE, DEFAULT_BATCH_SIZE);
+	}
+
+	/**
+	 * Create and start a writer for the case
+	 *
+	 * @param skCase case to write to
+	 * @param queueSize number of pending submissions before submitting blocks
+	 * @param batchSize maximum number of submissions per transaction
+	 */
+	BlackboardWriter(SleuthkitCase skCase, int queueSize, int batchSize) {
+		this.skCase = skCase;
+		this.batchSize = batchSize;
+		this.queue = new ArrayBlockingQueue<Submission<?>>(queueSize);
+		this.writerThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				writeLoop();
+			}
+		}, "BlackboardWriter");
+		this.writerThread.setDaemon(true);
+		this.writerThread.start();
+	}
+
+	/**
+	 * Submit a new artifact together with its attributes
+	 *
+	 * @param artifactType type of the artifact
+	 * @param obj_id the content object id associated with this artifact
+	 * @param attributes attributes of the artifact, may be empty
+	 * @param callback notified when written, may be null
+	 * @return future of the artifact, completed when it is written
+	 * @throws TskCoreException thrown if the writer is closed, the thread was
+	 * interrupted while waiting for space in the queue or the type is unknown
+	 */
+	public Future<BlackboardArtifact> newArtifact(ARTIFACT_TYPE artifactType, long obj_id,
+			Collection<BlackboardAttribute> attributes, Callback<BlackboardArtifact> callback) throws TskCoreException {
+		BlackboardArtifact artifact = new BlackboardArtifact(skCase, skCase.allocateArtifactId(), obj_id,
+				artifactType.getTypeID(), artifactType.getLabel(), artifactType.getDisplayName());
+		return submit(artifact, true, attributes, callback);
+	}
+
+	/**
+	 * Submit a new artifact together with its attributes
+	 *
+	 * @param artifactTypeID type id of the artifact (must exist in database)
+	 * @param obj_id the content object id associated with this artifact
+	 * @param attributes attributes of the artifact, may be empty
+	 * @param callback notified when written, may be null
+	 * @return future of the artifact, completed when it is written
+	 * @throws TskCoreException thrown if the writer is closed, the thread was
+	 * interrupted while waiting for space in the queue or the type is unknown
+	 */
+	public Future<BlackboardArtifact> newArtifact(int artifactTypeID, long obj_id,
+			Collection<BlackboardAttribute> attributes, Callback<BlackboardArtifact> callback) throws TskCoreException {
+		String artifactTypeName = skCase.getArtifactTypeString(artifactTypeID);
+		String artifactDisplayName = skCase.getArtifactTypeDisplayName(artifactTypeID);
+		BlackboardArtifact artifact = new BlackboardArtifact(skCase, skCase.allocateArtifactId(), obj_id,
+				artifactTypeID, artifactTypeName, artifactDisplayName);
+		return submit(artifact, true, attributes, callback);
+	}
+
+	/**
+	 * Submit attributes for an artifact. The artifact can be an existing one
+	 * or one submitted to this writer.
+	 *
+	 * @param artifact artifact the attributes belong to
+	 * @param attributes attributes to add
+	 * @param callback notified when written, may be null
+	 * @return future of the artifact, completed when the attributes are written
+	 * @throws TskCoreException thrown if the writer is closed or the thread
+	 * was interrupted while waiting for space in the queue
+	 */
+	public Future<BlackboardArtifact> addAttributes(BlackboardArtifact artifact,
+			Collection<BlackboardAttribute> attributes, Callback<BlackboardArtifact> callback) throws TskCoreException {
+		return submit(artifact, false, attributes, callback);
+	}
+
+	/**
+	 * Wait until everything submitted before this call is written
+	 *
+	 * @throws TskCoreException thrown if the writer is closed, the thread was
+	 * interrupted, or the last batch failed
+	 */
+	public void flush() throws TskCoreException {
+		Submission<Void> marker = new Submission<Void>(null, Collections.<BlackboardAttribute>emptyList(), null, null);
+		enqueue(marker);
+		waitFor(marker);
+	}
+
+	/**
+	 * Write what is pending and stop the writer thread. Further submissions
+	 * fail.
+	 */
+	public void close() {
+		closeLock.writeLock().lock();
+		try {
+			if (closed) {
+				return;
+			}
+			closed = true;
+		} finally {
+			closeLock.writeLock().unlock();
+		}
+		try {
+			queue.put(stopMarker);
+			writerThread.join();
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			logger.log(Level.WARNING, "Interrupted while stopping the blackboard writer", ex);
+		}
+	}
+
+	private Future<BlackboardArtifact> submit(BlackboardArtifact artifact, boolean isNew,
+			Collection<BlackboardAttribute> attributes, Callback<BlackboardArtifact> callback) throws TskCoreException {
+		List<BlackboardAttribute> attrs = new ArrayList<BlackboardAttribute>(attributes);
+		for (BlackboardAttribute attr : attrs) {
+			attr.setArtifactID(artifact.getArtifactID());
+			attr.setCase(skCase);
+		}
+		//attributes the artifact was read with are out of date
+		artifact.setAttributes(null, 0);
+		Submission<BlackboardArtifact> submission = new Submission<BlackboardArtifact>(
+				isNew ? artifact : null, attrs, artifact, callback);
+		enqueue(submission);
+		return submission;
+	}
+
+	private void enqueue(Submission<?> submission) throws TskCoreException {
+		closeLock.readLock().lock();
+		try {
+			if (closed) {
+				throw new TskCoreException("Blackboard writer is closed");
+			}
+			queue.put(submission);
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new TskCoreException("Interrupted while waiting for the blackboard writer", ex);
+		} finally {
+			closeLock.readLock().unlock();
+		}
+	}
+
+	private static void waitFor(Future<?> future) throws TskCoreException {
+		try {
+			future.get();
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new TskCoreException("Interrupted while waiting for the blackboard writer", ex);
+		} catch (ExecutionException ex) {
+			throw new TskCoreException("Error writing to the blackboard", ex);
+		}
+	}
+
+	private void writeLoop() {
+		final List<Submission<?>> batch = new ArrayList<Submission<?>>(batchSize);
+		boolean stop = false;
+		while (!stop) {
+			try {
+				batch.add(queue.take());
+			} catch (InterruptedException ex) {
+				logger.log(Level.WARNING, "Blackboard writer interrupted, pending submissions are dropped", ex);
+				break;
+			}
+			queue.drainTo(batch, batchSize - 1);
+			stop = batch.remove(stopMarker);
+			write(batch);
+			batch.clear();
+		}
+
+		//stop submissions, then fail what is left. Submitters blocked on a
+		//full queue hold the lock, so drain while waiting for it.
+		TskCoreException ex = new TskCoreException("Blackboard writer is closed");
+		boolean locked = false;
+		while (!locked) {
+			failPending(ex);
+			try {
+				locked = closeLock.writeLock().tryLock(10, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				//keep trying, the thread is stopping anyway
+			}
+		}
+		try {
+			closed = true;
+			failPending(ex);
+		} finally {
+			closeLock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Fail the submissions on the queue, when the writer thread stops
+	 */
+	private void failPending(TskCoreException ex) {
+		List<Submission<?>> rest = new ArrayList<Submission<?>>();
+		queue.drainTo(rest);
+		rest.remove(stopMarker);
+		for (Submission<?> submission : rest) {
+			submission.fail(ex);
+		}
+	}
+
+	private void write(List<Submission<?>> batch) {
+		if (batch.isEmpty()) {
+			return;
+		}
+		List<BlackboardArtifact> artifacts = new ArrayList<BlackboardArtifact>();
+		List<BlackboardAttribute> attributes = new ArrayList<BlackboardAttribute>();
+		for (Submission<?> submission : batch) {
+			if (submission.newArtifact != null) {
+				artifacts.add(submission.newArtifact);
+			}
+			attributes.addAll(submission.attributes);
+		}
+
+		try {
+			if (!artifacts.isEmpty() || !attributes.isEmpty()) {
+				skCase.addBlackboardBatch(artifacts, attributes);
+			}
+		} catch (TskCoreException ex) {
+			logger.log(Level.SEVERE, "Error writing " + artifacts.size() + " artifacts and "
+					+ attributes.size() + " attributes to the blackboard", ex);
+			for (Submission<?> submission : batch) {
+				submission.fail(ex);
+			}
+			return;
+		} catch (RuntimeException ex) {
+			TskCoreException tskEx = new TskCoreException("Error writing to the blackboard", ex);
+			for (Submission<?> submission : batch) {
+				submission.fail(tskEx);
+			}
+			return;
+		}
+
+		for (Submission<?> submission : batch) {
+			submission.succeed();
+		}
+	}
+
+	/**
+	 * One unit of work on the queue, and its future
+	 */
+	private static class Submission<T> extends FutureTask<T> {
+
+		private static final Runnable NOOP = new Runnable() {
+			@Override
+			public void run() {
+			}
+		};
+		private final BlackboardArtifact newArtifact;
+		private final List<BlackboardAttribute> attributes;
+		private final T result;
+		private final Callback<T> callback;
+
+		Submission(BlackboardArtifact newArtifact, List<BlackboardAttribute> attributes, T result, Callback<T> callback) {
+			super(NOOP, null);
+			this.newArtifact = newArtifact;
+			this.attributes = attributes;
+			this.result = result;
+			this.callback = callback;
+		}
+
+		void succeed() {
+			set(result);
+			if (callback != null) {
+				try {
+					callback.written(result);
+				} catch (RuntimeException ex) {
+					logger.log(Level.WARNING, "Error in blackboard writer callback", ex);
+				}
+			}
+		}
+
+		void fail(TskCoreException ex) {
+			setException(ex);
+			if (callback != null) {
+				try {
+					callback.failed(ex);
+				} catch (RuntimeException e) {
+					logger.log(Level.WARNING, "Error in blackboard writer callback", e);
+				}
+			}
+		}
+	}
+}
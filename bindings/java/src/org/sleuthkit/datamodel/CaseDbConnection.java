@@ -0,0 +1,237 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2012 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A JDBC connection to the case database together with the prepared statements
+ * created on it.
+ *
+ * Prepared statements are bound to the connection that created them, so every
+ * connection keeps its own set, prepared lazily on first use. SleuthkitCase
+ * keeps one connection for writes and a bounded pool of connections that
+ * reader threads borrow while they hold the case lock.
+ *
+ * Instances are not thread-safe and must only be used by one thread at a time.
+ */
+class CaseDbConnection {
+
+	/**
+	 * The prepared statements used by SleuthkitCase, with their SQL.
+	 */
+	enum PREPARED_STATEMENT {
+
+		SELECT_ATTRIBUTES_OF_ARTIFACT("SELECT artifact_id, source, context, attribute_type_id, value_type, "
+		+ "value_byte, value_text, value_int32, value_int64, value_double "
+		+ "FROM blackboard_attributes WHERE artifact_id = ?"),
+		SELECT_ARTIFACT_BY_ID("SELECT obj_id, artifact_type_id FROM blackboard_artifacts WHERE artifact_id = ?"),
+		SELECT_ARTIFACTS_BY_TYPE("SELECT artifact_id, obj_id FROM blackboard_artifacts "
+		+ "WHERE artifact_type_id = ?"),
+		COUNT_ARTIFACTS_OF_TYPE("SELECT COUNT(*) FROM blackboard_artifacts WHERE artifact_type_id = ?"),
+		COUNT_ARTIFACTS_FROM_SOURCE("SELECT COUNT(*) FROM blackboard_artifacts WHERE obj_id = ?"),
+		SELECT_ARTIFACTS_BY_SOURCE_AND_TYPE("SELECT artifact_id FROM blackboard_artifacts WHERE obj_id = ? AND artifact_type_id = ?"),
+		COUNT_ARTIFACTS_BY_SOURCE_AND_TYPE("SELECT COUNT(*) FROM blackboard_artifacts WHERE obj_id = ? AND artifact_type_id = ?"),
+		SELECT_FILE_CHILDREN("SELECT tsk_files.* "
+		+ "FROM tsk_objects JOIN tsk_files "
+		+ "ON tsk_objects.obj_id=tsk_files.obj_id "
+		+ "WHERE (tsk_objects.par_obj_id = ? "
+		+ "AND tsk_files.type = ? )"),
+		SELECT_FILE_CHILDREN_IDS("SELECT tsk_files.obj_id "
+		+ "FROM tsk_objects JOIN tsk_files "
+		+ "ON tsk_objects.obj_id=tsk_files.obj_id "
+		+ "WHERE (tsk_objects.par_obj_id = ? "
+		+ "AND tsk_files.type = ? )"),
+		SELECT_FILE_BY_ID("SELECT * FROM tsk_files WHERE obj_id = ? LIMIT 1"),
+		INSERT_ARTIFACT("INSERT INTO blackboard_artifacts (artifact_id, obj_id, artifact_type_id) "
+		+ "VALUES (?, ?, ?)"),
+		INSERT_STRING_ATTRIBUTE("INSERT INTO blackboard_attributes (artifact_id, source, context, attribute_type_id, value_type, value_text) "
+		+ "VALUES (?,?,?,?,?,?)"),
+		INSERT_BYTE_ATTRIBUTE("INSERT INTO blackboard_attributes (artifact_id, source, context, attribute_type_id, value_type, value_byte) "
+		+ "VALUES (?,?,?,?,?,?)"),
+		INSERT_INT_ATTRIBUTE("INSERT INTO blackboard_attributes (artifact_id, source, context, attribute_type_id, value_type, value_int32) "
+		+ "VALUES (?,?,?,?,?,?)"),
+		INSERT_LONG_ATTRIBUTE("INSERT INTO blackboard_attributes (artifact_id, source, context, attribute_type_id, value_type, value_int64) "
+		+ "VALUES (?,?,?,?,?,?)"),
+		INSERT_DOUBLE_ATTRIBUTE("INSERT INTO blackboard_attributes (artifact_id, source, context, attribute_type_id, value_type, value_double) "
+		+ "VALUES (?,?,?,?,?,?)"),
+		// file systems are children of the image, or of a volume in a
+		// volume system of the image, so three ancestors are enough
+		SELECT_FILE_SYSTEMS_OF_IMAGE("SELECT fs.*, o0.par_obj_id AS fs_par_obj_id FROM tsk_fs_info AS fs "
+		+ "JOIN tsk_objects AS o0 ON o0.obj_id = fs.obj_id "
+		+ "LEFT JOIN tsk_objects AS o1 ON o1.obj_id = o0.par_obj_id "
+		+ "LEFT JOIN tsk_objects AS o2 ON o2.obj_id = o1.par_obj_id "
+		+ "WHERE ? IN (o0.par_obj_id, o1.par_obj_id, o2.par_obj_id) "
+		+ "ORDER BY fs.obj_id"),
+		SELECT_FILES_BY_NAME_AND_FS("SELECT * FROM tsk_files WHERE LOWER(name) LIKE ? and LOWER(name) NOT LIKE '%journal%' AND fs_obj_id = ?"),
+		SELECT_FILES_BY_NAME_PARENT_AND_FS("SELECT * FROM tsk_files WHERE LOWER(name) LIKE ? AND LOWER(name) NOT LIKE '%journal%' AND LOWER(parent_path) LIKE ? AND fs_obj_id = ?"),
+		UPDATE_FILE_MD5("UPDATE tsk_files SET md5 = ? WHERE obj_id = ?"),
+		UPDATE_FILE_KNOWN("UPDATE tsk_files SET known = ? WHERE obj_id = ?"),
+		SELECT_FILE_RANGES("SELECT obj_id, byte_start, byte_len, sequence FROM tsk_file_layout "
+		+ "WHERE obj_id = ? ORDER BY sequence");
+		private final String sql;
+
+		private PREPARED_STATEMENT(String sql) {
+			this.sql = sql;
+		}
+
+		/**
+		 * Get the SQL of the statement
+		 *
+		 * @return SQL string
+		 */
+		String getSQL() {
+			return sql;
+		}
+	}
+	private Connection connection;
+	private final Map<PREPARED_STATEMENT, PreparedStatement> preparedStatements =
+			new EnumMap<PREPARED_STATEMENT, PreparedStatement>(PREPARED_STATEMENT.class);
+	//statements used for batches. sqlite-jdbc fails a single execution of a
+	//statement that was once batched, so they are kept apart.
+	private final Map<PREPARED_STATEMENT, PreparedStatement> batchStatements =
+			new EnumMap<PREPARED_STATEMENT, PreparedStatement>(PREPARED_STATEMENT.class);
+	private static final Logger logger = Logger.getLogger(CaseDbConnection.class.getName());
+
+	/**
+	 * Open a new connection to the case database
+	 *
+	 * @param dbPath path to the database
+	 * @throws SQLException thrown if the connection could not be opened or
+	 * configured
+	 */
+	CaseDbConnection(String dbPath) throws SQLException {
+		connection = DriverManager.getConnection("jdbc:sqlite:" + dbPath);
+		configure();
+	}
+
+	private void configure() throws SQLException {
+		//this should match SleuthkitJNI db setup
+		final Statement statement = connection.createStatement();
+		try {
+			//reduce i/o operations, we have no OS crash recovery anyway
+			statement.execute("PRAGMA synchronous = OFF;");
+			//allow to query while in transaction - no need read locks
+			statement.execute("PRAGMA read_uncommitted = True;");
+		} finally {
+			statement.close();
+		}
+	}
+
+	/**
+	 * Get the underlying JDBC connection
+	 *
+	 * @return the connection
+	 */
+	Connection getConnection() {
+		return connection;
+	}
+
+	/**
+	 * Create a new statement on this connection. Caller is responsible for
+	 * closing it.
+	 *
+	 * @return new statement
+	 * @throws SQLException thrown if the statement could not be created
+	 */
+	Statement createStatement() throws SQLException {
+		return connection.createStatement();
+	}
+
+	/**
+	 * Get the prepared statement of the given type for this connection,
+	 * preparing it on first use. The statement is owned by the connection and
+	 * must not be closed by the caller.
+	 *
+	 * @param statementType the statement to get
+	 * @return prepared statement with cleared parameters
+	 * @throws SQLException thrown if the statement could not be prepared
+	 */
+	PreparedStatement getPreparedStatement(PREPARED_STATEMENT statementType) throws SQLException {
+		return getStatement(preparedStatements, statementType);
+	}
+
+	/**
+	 * Get the prepared statement of the given type for batches (addBatch()
+	 * and executeBatch()), not the one of getPreparedStatement(). Getting it
+	 * clears its batch, so get it once before batching. The statement is
+	 * owned by the connection and must not be closed by the caller.
+	 *
+	 * @param statementType the statement to get
+	 * @return prepared statement with cleared parameters and batch
+	 * @throws SQLException thrown if the statement could not be prepared
+	 */
+	PreparedStatement getBatchStatement(PREPARED_STATEMENT statementType) throws SQLException {
+		return getStatement(batchStatements, statementType);
+	}
+
+	private PreparedStatement getStatement(Map<PREPARED_STATEMENT, PreparedStatement> statements,
+			PREPARED_STATEMENT statementType) throws SQLException {
+		PreparedStatement statement = statements.get(statementType);
+		if (statement == null) {
+			statement = connection.prepareStatement(statementType.getSQL());
+			statements.put(statementType, statement);
+		} else {
+			try {
+				statement.clearParameters();
+			} catch (SQLException ex) {
+				//sqlite-jdbc closes a statement whose execution failed
+				statement = connection.prepareStatement(statementType.getSQL());
+				statements.put(statementType, statement);
+			}
+		}
+		return statement;
+	}
+
+	/**
+	 * Close the prepared statements and the connection
+	 */
+	void close() {
+		closeStatements(preparedStatements);
+		closeStatements(batchStatements);
+
+		try {
+			if (connection != null) {
+				connection.close();
+				connection = null;
+			}
+		} catch (SQLException ex) {
+			logger.log(Level.WARNING, "Error closing connection.", ex);
+		}
+	}
+
+	private static void closeStatements(Map<PREPARED_STATEMENT, PreparedStatement> statements) {
+		for (PreparedStatement statement : statements.values()) {
+			try {
+				statement.close();
+			} catch (SQLException ex) {
+				logger.log(Level.WARNING, "Error closing prepared statement", ex);
+			}
+		}
+		statements.clear();
+	}
+}
@@ -0,0 +1,226 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2012 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Iterator over the results of a case database query that reads the rows
+ * lazily, a batch of rows (the fetch size) at a time, and creates the objects
+ * as it goes. Memory use does not depend on the size of the result.
+ *
+ * A cursor reads through its own database connection. The case lock is held
+ * only while a batch is read, so writes (also from the iterating thread) are
+ * not blocked between batches. The cursor must be closed when not read to the
+ * end; it closes itself once the last row was returned. Typical use:
+ *
+ * <pre>
+ * CaseDbCursor&lt;AbstractFile&gt; files = skCase.streamFilesWhere("size &gt; 0");
+ * try {
+ *	while (files.hasNext()) {
+ *		AbstractFile file = files.next();
+ *		...
+ *	}
+ * } finally {
+ *	files.close();
+ * }
+ * </pre>
+ *
+ * The rows are those of the database as of the query; later writes are not
+ * seen by an open cursor. To give it that snapshot, sqlite keeps the write
+ * ahead log from being checkpointed while the cursor is open, so the log grows
+ * for as long as a cursor is kept open during writes (e.g. a long scan while
+ * ingest adds artifacts). Close cursors as soon as they are not needed. At most
+ * SleuthkitCase.MAX_OPEN_CURSORS cursors are open per case; opening one more
+ * waits for a cursor to be closed and fails if none is closed in time.
+ *
+ * Errors while reading are thrown from hasNext() and next() as
+ * IllegalStateException with the TskCoreException as the cause, as Iterator
+ * does not allow checked exceptions.
+ *
+ * @param <T> type of the objects the rows map to
+ */
+public class CaseDbCursor<T> implements Iterator<T>, AutoCloseable {
+
+	/**
+	 * Creates the object of the current row of a result set
+	 *
+	 * @param <T> type of the objects
+	 */
+	interface RowMapper<T> {
+
+		/**
+		 * Map the current row, without moving the result set
+		 *
+		 * @param rs result set positioned at the row
+		 * @return the object of the row
+		 * @throws SQLException thrown if the row could not be read
+		 */
+		T map(ResultSet rs) throws SQLException;
+	}
+
+	/**
+	 * Creates objects from groups of consecutive rows, such as an artifact
+	 * from the rows of a join with its attributes. map() collects the rows and
+	 * returns an object, or null if it is not complete yet.
+	 *
+	 * @param <T> type of the objects
+	 */
+	interface GroupMapper<T> extends RowMapper<T> {
+
+		/**
+		 * Called after the last row of the result
+		 *
+		 * @return the object of the last group, null if there was none
+		 */
+		T finish();
+	}
+	/**
+	 * Default number of rows read at a time
+	 */
+	public static final int DEFAULT_FETCH_SIZE = 1000;
+	private static final Logger logger = Logger.getLogger(CaseDbCursor.class.getName());
+	private final SleuthkitCase skCase;
+	private final CaseDbConnection connection;
+	private final Statement statement;
+	private final ResultSet rs;
+	private final RowMapper<T> mapper;
+	private final int fetchSize;
+	private final Queue<T> fetched;
+	private boolean exhausted = false;
+	private boolean closed = false;
+
+	/**
+	 * Create a cursor. It takes ownership of the connection, statement and
+	 * result set and closes them.
+	 *
+	 * @param skCase case of the query
+	 * @param connection connection of the cursor
+	 * @param statement the executed statement
+	 * @param rs result set of the statement
+	 * @param fetchSize number of rows to read at a time
+	 * @param mapper creates the objects of the rows
+	 */
+	CaseDbCursor(SleuthkitCase skCase, CaseDbConnection connection, Statement statement, ResultSet rs,
+			int fetchSize, RowMapper<T> mapper) {
+		this.skCase = skCase;
+		this.connection = connection;
+		this.statement = statement;
+		this.rs = rs;
+		this.fetchSize = fetchSize;
+		this.mapper = mapper;
+		this.fetched = new ArrayDeque<T>(fetchSize);
+	}
+
+	@Override
+	public synchronized boolean hasNext() {
+		//a batch of rows may not complete an object of a group mapper
+		while (fetched.isEmpty() && !exhausted && !closed) {
+			fetch();
+		}
+		return !fetched.isEmpty();
+	}
+
+	@Override
+	public synchronized T next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		return fetched.poll();
+	}
+
+	/**
+	 * Not supported, the results are read only
+	 */
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException("Query results cannot be removed");
+	}
+
+	/**
+	 * Release the result set and the connection of the cursor. Rows not read
+	 * yet are dropped.
+	 */
+	@Override
+	public synchronized void close() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		try {
+			rs.close();
+			statement.close();
+		} catch (SQLException ex) {
+			logger.log(Level.WARNING, "Error closing cursor result set", ex);
+		}
+		connection.close();
+		skCase.cursorClosed(this);
+	}
+
+	/**
+	 * @return true if the cursor is closed
+	 */
+	public synchronized boolean isClosed() {
+		return closed;
+	}
+
+	/**
+	 * Read the next batch of rows, closing the cursor at the end of the result
+	 */
+	private void fetch() {
+		skCase.acquireSharedLock();
+		try {
+			for (int i = 0; i < fetchSize; i++) {
+				if (!rs.next()) {
+					exhausted = true;
+					break;
+				}
+				final T mapped = mapper.map(rs);
+				if (mapped != null) {
+					fetched.add(mapped);
+				}
+			}
+			if (exhausted && mapper instanceof GroupMapper) {
+				final T last = ((GroupMapper<T>) mapper).finish();
+				if (last != null) {
+					fetched.add(last);
+				}
+			}
+		} catch (SQLException ex) {
+			exhausted = true;
+			fetched.clear();
+			close();
+			throw new IllegalStateException(new TskCoreException("Error reading query results", ex));
+		} finally {
+			skCase.releaseSharedLock();
+		}
+		if (exhausted) {
+			//the fetched rows stay available
+			close();
+		}
+	}
+}
@@ -18,6 +18,7 @@
  */
 package org.sleuthkit.datamodel;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -38,6 +39,36 @@ public interface Content extends SleuthkitVisitableItem {
 	 */
 	public int read(byte[] buf, long offset, long len) throws TskCoreException;
 
+	/**
+	 * Read data from the content object into the remaining space of the
+	 * buffer, starting at its position. The position is advanced by the number
+	 * of bytes read. Direct buffers are filled by the tsk core without an
+	 * intermediate copy where the content type supports it.
+	 *
+	 * @param dst buffer to copy read data to
+	 * @param offset offset in the content to start reading from
+	 * @return num of bytes read, or -1 on error
+	 * @throws TskCoreException if critical error occurred during read in the
+	 * tsk core
+	 */
+	public int read(ByteBuffer dst, long offset) throws TskCoreException;
+
+	/**
+	 * Read several ranges of the content object, back to back into the
+	 * remaining space of the buffer, starting at its position. The position is
+	 * advanced by the number of bytes read. Reading stops after a range that
+	 * is cut short by the end of the content. Content types that read through
+	 * the tsk core read all ranges in a single call into the core.
+	 *
+	 * @param offsets offset in the content of each range
+	 * @param lengths length of each range
+	 * @param dst buffer to copy read data to, with room for all ranges
+	 * @return num of bytes read
+	 * @throws TskCoreException if critical error occurred during read in the
+	 * tsk core
+	 */
+	public int readRanges(long[] offsets, int[] lengths, ByteBuffer dst) throws TskCoreException;
+
 	/**
 	 * Get the size of the content
 	 *
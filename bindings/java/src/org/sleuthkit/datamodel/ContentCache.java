@@ -0,0 +1,277 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2012 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Size bounded, least recently used cache of the Content objects of a case,
+ * keyed by object id. Content looked up by id (including the parents walked
+ * to by getParent() and getImage()) is served from the cache, so the same
+ * object is not read from the database and created again.
+ *
+ * Values are held strongly, or through soft or weak references so that the
+ * garbage collector can reclaim them before the size bound is reached.
+ *
+ * Get the cache of a case with SleuthkitCase.getContentCache().
+ */
+public class ContentCache {
+
+	/**
+	 * How the cached Content objects are referenced
+	 */
+	public enum ReferenceType {
+
+		/**
+		 * Kept until evicted by the size bound
+		 */
+		STRONG,
+		/**
+		 * Reclaimed by the garbage collector when memory runs low
+		 */
+		SOFT,
+		/**
+		 * Reclaimed by the garbage collector once no longer used elsewhere
+		 */
+		WEAK
+	}
+	/**
+	 * Default maximum number of cached objects
+	 */
+	public static final int DEFAULT_MAX_SIZE = 10000;
+	private final int maxSize;
+	private final ReferenceType referenceType;
+	private final Map<Long, Object> entries;
+	private final ReferenceQueue<Content> collected = new ReferenceQueue<Content>();
+	private long hits = 0;
+	private long misses = 0;
+	private long evictions = 0;
+
+	/**
+	 * Create a cache
+	 *
+	 * @param maxSize maximum number of cached objects, 0 disables the cache
+	 * @param referenceType how the cached objects are referenced
+	 */
+	ContentCache(final int maxSize, ReferenceType referenceType) {
+		if (maxSize < 0) {
+			throw new IllegalArgumentException("Cache size must not be negative");
+		}
+		this.maxSize = maxSize;
+		this.referenceType = referenceType;
+		this.entries = new LinkedHashMap<Long, Object>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, Object> eldest) {
+				if (size() > maxSize) {
+					evictions++;
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * Get a cached object
+	 *
+	 * @param objId object id
+	 * @return the object, or null if not cached
+	 */
+	synchronized Content get(long objId) {
+		if (maxSize == 0) {
+			return null;
+		}
+		purge();
+		Object entry = entries.get(objId);
+		Content content = entry == null ? null : dereference(entry);
+		if (content == null) {
+			misses++;
+		} else {
+			hits++;
+		}
+		return content;
+	}
+
+	/**
+	 * Get a cached object of a given class
+	 *
+	 * @param objId object id
+	 * @param type expected class of the object
+	 * @return the object, or null if not cached or of another class
+	 */
+	synchronized <T extends Content> T get(long objId, Class<T> type) {
+		Content content = get(objId);
+		if (content != null && !type.isInstance(content)) {
+			//counted as a hit by get(), but the caller reads the database
+			hits--;
+			misses++;
+			return null;
+		}
+		return type.cast(content);
+	}
+
+	/**
+	 * Add an object, replacing any cached object with the same id
+	 *
+	 * @param content the object
+	 */
+	synchronized void put(Content content) {
+		if (maxSize == 0 || content == null) {
+			return;
+		}
+		purge();
+		final Long objId = content.getId();
+		switch (referenceType) {
+			case SOFT:
+				entries.put(objId, new SoftEntry(objId, content, collected));
+				break;
+			case WEAK:
+				entries.put(objId, new WeakEntry(objId, content, collected));
+				break;
+			default:
+				entries.put(objId, content);
+		}
+	}
+
+	/**
+	 * Remove an object whose database row changed
+	 *
+	 * @param objId object id
+	 */
+	synchronized void invalidate(long objId) {
+		entries.remove(objId);
+	}
+
+	/**
+	 * Remove all objects
+	 */
+	public synchronized void clear() {
+		entries.clear();
+		while (collected.poll() != null) {
+			//drop references that were already cleared
+		}
+	}
+
+	/**
+	 * @return maximum number of cached objects
+	 */
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * @return how the cached objects are referenced
+	 */
+	public ReferenceType getReferenceType() {
+		return referenceType;
+	}
+
+	/**
+	 * @return number of cached objects
+	 */
+	public synchronized int size() {
+		purge();
+		return entries.size();
+	}
+
+	/**
+	 * @return number of lookups served from the cache
+	 */
+	public synchronized long getHitCount() {
+		return hits;
+	}
+
+	/**
+	 * @return number of lookups that went to the database
+	 */
+	public synchronized long getMissCount() {
+		return misses;
+	}
+
+	/**
+	 * @return number of objects evicted by the size bound
+	 */
+	public synchronized long getEvictionCount() {
+		return evictions;
+	}
+
+	/**
+	 * @return fraction of the lookups served from the cache, 0 if there were
+	 * none
+	 */
+	public synchronized double getHitRatio() {
+		final long lookups = hits + misses;
+		return lookups == 0 ? 0 : (double) hits / lookups;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "ContentCache{" + "size=" + entries.size() + ", maxSize=" + maxSize
+				+ ", referenceType=" + referenceType + ", hits=" + hits + ", misses=" + misses
+				+ ", evictions=" + evictions + '}';
+	}
+
+	private static Content dereference(Object entry) {
+		if (entry instanceof Reference) {
+			return (Content) ((Reference<?>) entry).get();
+		}
+		return (Content) entry;
+	}
+
+	/**
+	 * Remove the entries whose objects were reclaimed by the garbage collector
+	 */
+	private void purge() {
+		Reference<? extends Content> ref;
+		while ((ref = collected.poll()) != null) {
+			final Long objId = ref instanceof SoftEntry ? ((SoftEntry) ref).objId : ((WeakEntry) ref).objId;
+			//only if not replaced by a newer object in the meantime
+			if (entries.get(objId) == ref) {
+				entries.remove(objId);
+			}
+		}
+	}
+
+	private static class SoftEntry extends SoftReference<Content> {
+
+		private final Long objId;
+
+		SoftEntry(Long objId, Content content, ReferenceQueue<Content> queue) {
+			super(content, queue);
+			this.objId = objId;
+		}
+	}
+
+	private static class WeakEntry extends WeakReference<Content> {
+
+		private final Long objId;
+
+		WeakEntry(Long objId, Content content, ReferenceQueue<Content> queue) {
+			super(content, queue);
+			this.objId = objId;
+		}
+	}
+}
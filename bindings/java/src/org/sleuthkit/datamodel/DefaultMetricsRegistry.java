@@ -0,0 +1,175 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2012 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Metrics registry keeping the metrics in memory. Timers are histograms with
+ * a bucket per power of two nanoseconds, so recording is a few atomic
+ * increments and the percentiles are within a factor of two.
+ *
+ * A timer named x gives the values x.count, x.mean_us, x.p50_us, x.p99_us and
+ * x.max_us in the snapshot, in microseconds.
+ */
+public class DefaultMetricsRegistry implements MetricsRegistry {
+
+	private static final Logger logger = Logger.getLogger(DefaultMetricsRegistry.class.getName());
+	private final ConcurrentMap<String, HistogramTimer> timers = new ConcurrentHashMap<String, HistogramTimer>();
+	private final ConcurrentMap<String, AtomicCounter> counters = new ConcurrentHashMap<String, AtomicCounter>();
+	private final ConcurrentMap<String, Gauge> gauges = new ConcurrentHashMap<String, Gauge>();
+
+	/**
+	 * Histogram of durations, bucket i counting durations of less than 2^i
+	 * nanoseconds
+	 */
+	private static final class HistogramTimer implements Timer {
+
+		private static final int BUCKETS = 64;
+		private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+		private final AtomicLong count = new AtomicLong();
+		private final AtomicLong total = new AtomicLong();
+		private final AtomicLong max = new AtomicLong();
+
+		@Override
+		public void record(long nanos) {
+			if (nanos < 0) {
+				nanos = 0;
+			}
+			//at most 63, as the sign bit is clear
+			buckets.incrementAndGet(BUCKETS - Long.numberOfLeadingZeros(nanos));
+			count.incrementAndGet();
+			total.addAndGet(nanos);
+			long current = max.get();
+			while (nanos > current && !max.compareAndSet(current, nanos)) {
+				current = max.get();
+			}
+		}
+
+		/**
+		 * @param fraction fraction of the durations, 0 to 1
+		 * @return upper bound in nanoseconds of the bucket holding the
+		 * duration at the fraction
+		 */
+		private long percentile(double fraction) {
+			long n = 0;
+			for (int i = 0; i < BUCKETS; i++) {
+				n += buckets.get(i);
+			}
+			final long rank = (long) Math.ceil(n * fraction);
+			long seen = 0;
+			for (int i = 0; i < BUCKETS; i++) {
+				seen += buckets.get(i);
+				if (seen >= rank && seen > 0) {
+					return Math.min(i == BUCKETS - 1 ? Long.MAX_VALUE : (1L << i) - 1, max.get());
+				}
+			}
+			return 0;
+		}
+
+		private void putValues(String name, Map<String, Double> values) {
+			final long n = count.get();
+			values.put(name + ".count", (double) n);
+			values.put(name + ".mean_us", n == 0 ? 0 : total.get() / (double) n / 1000);
+			values.put(name + ".p50_us", percentile(0.5) / 1000.0);
+			values.put(name + ".p99_us", percentile(0.99) / 1000.0);
+			values.put(name + ".max_us", max.get() / 1000.0);
+		}
+
+		private void reset() {
+			for (int i = 0; i < BUCKETS; i++) {
+				buckets.set(i, 0);
+			}
+			count.set(0);
+			total.set(0);
+			max.set(0);
+		}
+	}
+
+	private static final class AtomicCounter extends AtomicLong implements Counter {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public void add(long n) {
+			addAndGet(n);
+		}
+	}
+
+	@Override
+	public Timer timer(String name) {
+		HistogramTimer timer = timers.get(name);
+		if (timer == null) {
+			timers.putIfAbsent(name, new HistogramTimer());
+			timer = timers.get(name);
+		}
+		return timer;
+	}
+
+	@Override
+	public Counter counter(String name) {
+		AtomicCounter counter = counters.get(name);
+		if (counter == null) {
+			counters.putIfAbsent(name, new AtomicCounter());
+			counter = counters.get(name);
+		}
+		return counter;
+	}
+
+	@Override
+	public void gauge(String name, Gauge gauge) {
+		gauges.put(name, gauge);
+	}
+
+	@Override
+	public Map<String, Double> snapshot() {
+		Map<String, Double> values = new TreeMap<String, Double>();
+		for (Map.Entry<String, HistogramTimer> timer : timers.entrySet()) {
+			timer.getValue().putValues(timer.getKey(), values);
+		}
+		for (Map.Entry<String, AtomicCounter> counter : counters.entrySet()) {
+			values.put(counter.getKey(), (double) counter.getValue().get());
+		}
+		for (Map.Entry<String, Gauge> gauge : gauges.entrySet()) {
+			try {
+				values.put(gauge.getKey(), gauge.getValue().value());
+			} catch (RuntimeException ex) {
+				logger.log(Level.WARNING, "Error reading gauge " + gauge.getKey(), ex);
+			}
+		}
+		return values;
+	}
+
+	@Override
+	public void reset() {
+		for (HistogramTimer timer : timers.values()) {
+			timer.reset();
+		}
+		for (AtomicCounter counter : counters.values()) {
+			counter.set(0);
+		}
+	}
+}
@@ -0,0 +1,400 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2012 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Extracts the content of files to a directory. The files are read in the
+ * order of their location in the image by a ReadScheduler, and written by a
+ * pool of writer threads through file channels, a whole read chunk at a time.
+ *
+ * Each file is written to destDir/[obj id]-[name], so that files with the same
+ * name do not collide. The modification, access and creation times of file
+ * system files are set on the extracted files (the change time cannot be
+ * set). Optionally the MD5 of each file is calculated while it is written and
+ * checked against the hash stored in the case, when there is one. A file that
+ * could not be read, written or verified is deleted.
+ *
+ * An instance can extract several sets of files, one at a time, and should be
+ * shut down when no longer needed. The progress can be followed from another
+ * thread while files are extracted.
+ */
+public class FileExtractor {
+
+	/**
+	 * Notified on the writer threads for every file
+	 */
+	public interface Listener {
+
+		/**
+		 * Called when a file was extracted
+		 *
+		 * @param file the file
+		 * @param dest the extracted file
+		 * @param md5 MD5 of the content as written, null if not verified
+		 */
+		void extracted(AbstractFile file, Path dest, String md5);
+
+		/**
+		 * Called when a file could not be extracted
+		 *
+		 * @param file the file
+		 * @param ex the error
+		 */
+		void failed(AbstractFile file, TskCoreException ex);
+	}
+	private static final Logger logger = Logger.getLogger(FileExtractor.class.getName());
+	private final ReadScheduler scheduler;
+	private volatile boolean verifyMd5 = false;
+	private final AtomicLong filesExtracted = new AtomicLong();
+	private final AtomicLong filesFailed = new AtomicLong();
+	private final AtomicLong bytesWritten = new AtomicLong();
+	private volatile long filesTotal = 0;
+	private volatile long bytesTotal = 0;
+	private volatile long startNanos = 0;
+	private volatile long elapsedNanos = 0;
+
+	/**
+	 * Create an extractor using one writer per processor
+	 *
+	 * @param skCase case of the files
+	 */
+	public FileExtractor(SleuthkitCase skCase) {
+		this(skCase, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Create an extractor
+	 *
+	 * @param skCase case of the files
+	 * @param writers number of writer threads
+	 */
+	public FileExtractor(SleuthkitCase skCase, int writers) {
+		this.scheduler = new ReadScheduler(skCase, writers, ReadScheduler.DEFAULT_CHUNK_SIZE, ReadScheduler.DEFAULT_MAX_IN_FLIGHT);
+	}
+
+	/**
+	 * Set whether the MD5 of the files is calculated while they are written,
+	 * and checked against the hash stored in the case
+	 *
+	 * @param verifyMd5 true to calculate and check the MD5
+	 */
+	public void setVerifyMd5(boolean verifyMd5) {
+		this.verifyMd5 = verifyMd5;
+	}
+
+	/**
+	 * Extract the files to a directory, created if needed. Directories among
+	 * the files are skipped. Returns when all files are extracted.
+	 *
+	 * @param files files to extract
+	 * @param destDir directory to extract to
+	 * @param listener notified of every file, may be null
+	 * @throws TskCoreException thrown if the directory could not be created,
+	 * the files could not be looked up or the thread was interrupted
+	 */
+	public void extract(Collection<? extends AbstractFile> files, Path destDir, Listener listener) throws TskCoreException {
+		try {
+			Files.createDirectories(destDir);
+		} catch (IOException ex) {
+			throw new TskCoreException("Error creating extraction directory " + destDir, ex);
+		}
+		List<AbstractFile> toExtract = new ArrayList<AbstractFile>(files.size());
+		long bytes = 0;
+		for (AbstractFile file : files) {
+			if (file.isDir() || file instanceof VirtualDirectory) {
+				continue;
+			}
+			toExtract.add(file);
+			bytes += file.getSize();
+		}
+		filesExtracted.set(0);
+		filesFailed.set(0);
+		bytesWritten.set(0);
+		filesTotal = toExtract.size();
+		bytesTotal = bytes;
+		startNanos = System.nanoTime();
+		elapsedNanos = 0;
+		try {
+			scheduler.read(toExtract, new Writer(destDir, verifyMd5, listener));
+		} finally {
+			elapsedNanos = System.nanoTime() - startNanos;
+		}
+	}
+
+	/**
+	 * Stop the reader and writer threads
+	 */
+	public void shutdown() {
+		scheduler.shutdown();
+	}
+
+	/**
+	 * @return number of files extracted so far by the current or last
+	 * extraction
+	 */
+	public long getFilesExtracted() {
+		return filesExtracted.get();
+	}
+
+	/**
+	 * @return number of files that could not be extracted so far
+	 */
+	public long getFilesFailed() {
+		return filesFailed.get();
+	}
+
+	/**
+	 * @return number of files to extract in the current or last extraction
+	 */
+	public long getFilesTotal() {
+		return filesTotal;
+	}
+
+	/**
+	 * @return number of bytes written so far
+	 */
+	public long getBytesWritten() {
+		return bytesWritten.get();
+	}
+
+	/**
+	 * @return number of bytes to write in the current or last extraction
+	 */
+	public long getBytesTotal() {
+		return bytesTotal;
+	}
+
+	/**
+	 * Get the write throughput of the current or last extraction
+	 *
+	 * @return throughput in MB/s (2^20 bytes per second)
+	 */
+	public double getThroughput() {
+		if (startNanos == 0) {
+			return 0;
+		}
+		final long nanos = elapsedNanos != 0 ? elapsedNanos : System.nanoTime() - startNanos;
+		if (nanos <= 0) {
+			return 0;
+		}
+		return (bytesWritten.get() / (1024.0 * 1024.0)) / (nanos / 1e9);
+	}
+
+	/**
+	 * Get the path a file is extracted to
+	 *
+	 * @param destDir extraction directory
+	 * @param file the file
+	 * @return destDir/[obj id]-[name], with the characters not allowed in file
+	 * names replaced
+	 */
+	static Path getDestination(Path destDir, AbstractFile file) {
+		return destDir.resolve(file.getId() + "-" + file.getName().replaceAll("[\\\\/:*?\"<>|\\p{Cntrl}]", "_"));
+	}
+
+	/**
+	 * A file being written
+	 */
+	private static final class Output {
+
+		private final Path path;
+		private final FileChannel channel;
+		private final MessageDigest md5;
+
+		Output(Path path, FileChannel channel, MessageDigest md5) {
+			this.path = path;
+			this.channel = channel;
+			this.md5 = md5;
+		}
+	}
+
+	/**
+	 * Writes the content passed by the scheduler. The parts of a file are all
+	 * passed on the same writer thread.
+	 */
+	private class Writer implements ReadScheduler.Callback {
+
+		private final Path destDir;
+		private final boolean verify;
+		private final Listener listener;
+		private final ConcurrentMap<Long, Output> outputs = new ConcurrentHashMap<Long, Output>();
+		//files that failed to be written, their remaining parts are dropped
+		private final Set<Long> writeFailures = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+
+		Writer(Path destDir, boolean verify, Listener listener) {
+			this.destDir = destDir;
+			this.verify = verify;
+			this.listener = listener;
+		}
+
+		@Override
+		public void read(AbstractFile file, long offset, ByteBuffer data) {
+			if (writeFailures.contains(file.getId())) {
+				return;
+			}
+			Output output = outputs.get(file.getId());
+			try {
+				if (output == null) {
+					output = open(file);
+				}
+				if (output.md5 != null) {
+					output.md5.update(data.duplicate());
+				}
+				long position = offset;
+				while (data.hasRemaining()) {
+					position += output.channel.write(data, position);
+				}
+				bytesWritten.addAndGet(position - offset);
+			} catch (IOException ex) {
+				fail(file, new TskCoreException("Error writing extracted file " + getDestination(destDir, file), ex));
+			} catch (TskCoreException ex) {
+				fail(file, ex);
+			}
+		}
+
+		@Override
+		public void completed(AbstractFile file) {
+			if (writeFailures.remove(file.getId())) {
+				return;
+			}
+			Output output = outputs.remove(file.getId());
+			try {
+				if (output == null) {
+					//empty file, nothing was passed to write
+					output = open(file);
+					outputs.remove(file.getId());
+				}
+				output.channel.close();
+				String md5 = null;
+				if (output.md5 != null) {
+					md5 = HashService.toHex(output.md5.digest());
+					if (file instanceof FsContent) {
+						final String stored = ((FsContent) file).getMd5Hash();
+						if (stored != null && !stored.isEmpty() && !stored.equalsIgnoreCase(md5)) {
+							throw new TskCoreException("MD5 of extracted file " + output.path + " is " + md5 + ", expected " + stored);
+						}
+					}
+				}
+				setTimes(file, output.path);
+				filesExtracted.incrementAndGet();
+				if (listener != null) {
+					listener.extracted(file, output.path, md5);
+				}
+			} catch (IOException ex) {
+				failed(file, new TskCoreException("Error closing extracted file " + getDestination(destDir, file), ex));
+			} catch (TskCoreException ex) {
+				failed(file, ex);
+			}
+		}
+
+		@Override
+		public void failed(AbstractFile file, TskCoreException ex) {
+			if (writeFailures.remove(file.getId())) {
+				//already reported
+				return;
+			}
+			Output output = outputs.remove(file.getId());
+			final Path path = output != null ? output.path : getDestination(destDir, file);
+			try {
+				if (output != null) {
+					output.channel.close();
+				}
+				Files.deleteIfExists(path);
+			} catch (IOException ioEx) {
+				logger.log(Level.WARNING, "Error deleting partly extracted file " + path, ioEx);
+			}
+			filesFailed.incrementAndGet();
+			if (listener != null) {
+				listener.failed(file, ex);
+			}
+		}
+
+		/**
+		 * Fail a file on a write error. Its remaining parts are dropped.
+		 */
+		private void fail(AbstractFile file, TskCoreException ex) {
+			failed(file, ex);
+			writeFailures.add(file.getId());
+		}
+
+		private Output open(AbstractFile file) throws TskCoreException {
+			final Path path = getDestination(destDir, file);
+			MessageDigest md5 = null;
+			if (verify) {
+				try {
+					md5 = MessageDigest.getInstance("MD5");
+				} catch (NoSuchAlgorithmException ex) {
+					throw new TskCoreException("MD5 is not available", ex);
+				}
+			}
+			try {
+				FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+						StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+				Output output = new Output(path, channel, md5);
+				outputs.put(file.getId(), output);
+				return output;
+			} catch (IOException ex) {
+				throw new TskCoreException("Error creating extracted file " + path, ex);
+			}
+		}
+	}
+
+	/**
+	 * Set the times of a file system file on its extracted file. Unknown
+	 * times (0) are left as they are.
+	 */
+	private static void setTimes(AbstractFile file, Path path) throws TskCoreException {
+		if (!(file instanceof FsContent)) {
+			return;
+		}
+		final FsContent fsFile = (FsContent) file;
+		try {
+			Files.getFileAttributeView(path, BasicFileAttributeView.class).setTimes(
+					toFileTime(fsFile.getMtime()), toFileTime(fsFile.getAtime()), toFileTime(fsFile.getCrtime()));
+		} catch (IOException ex) {
+			throw new TskCoreException("Error setting the times of extracted file " + path, ex);
+		}
+	}
+
+	private static FileTime toFileTime(long seconds) {
+		return seconds == 0 ? null : FileTime.from(seconds, TimeUnit.SECONDS);
+	}
+}
@@ -0,0 +1,418 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2012 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.sleuthkit.datamodel.TskData.TSK_FS_ATTR_TYPE_ENUM;
+
+/**
+ * Bounded pool of the native file handles used to read FsContent, keyed by
+ * file system handle, meta address, attribute type and attribute id.
+ *
+ * A reader leases the handle of a file for the duration of a read. Handles
+ * not leased stay open for the next read of the same file, until the pool
+ * holds more handles or more native memory than its limits; then the least
+ * recently used ones are closed. A file whose handle was closed is opened
+ * again on its next read. Leased handles are never closed, so the limits can
+ * be exceeded by the number of reads in progress.
+ *
+ * An open file handle counts as a user of its file system, which keeps the
+ * file system and its image from being closed as idle. NativeHandleRegistry
+ * therefore closes the handles not read within its idle timeout through
+ * closeIdle(), before it looks for idle file systems.
+ */
+final class FileHandlePool {
+
+	/**
+	 * Default maximum number of open file handles
+	 */
+	static final int DEFAULT_MAX_HANDLES = 1024;
+	/**
+	 * Default maximum native memory of the open file handles, in bytes
+	 */
+	static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+	//access ordered, the eldest entry is the least recently used
+	private final Map<Key, PooledHandle> handles = new LinkedHashMap<Key, PooledHandle>(16, 0.75f, true);
+	private int maxHandles = DEFAULT_MAX_HANDLES;
+	private long maxBytes = DEFAULT_MAX_BYTES;
+	private long bytes = 0;
+	private long hits = 0;
+	private long misses = 0;
+	private long evictions = 0;
+	private final FileOpener opener;
+
+	/**
+	 * Opens and closes the native file handles
+	 */
+	interface FileOpener {
+
+		/**
+		 * Open the attribute of a file
+		 *
+		 * @param fsHandle handle of the file system of the file
+		 * @param metaAddr meta address of the file
+		 * @param attrType type of the attribute to read
+		 * @param attrId id of the attribute to read
+		 * @return the file handle
+		 * @throws TskCoreException thrown if the file could not be opened
+		 */
+		long open(long fsHandle, long metaAddr, TSK_FS_ATTR_TYPE_ENUM attrType, int attrId) throws TskCoreException;
+
+		/**
+		 * @param fileHandle an open file handle
+		 * @return estimated native memory of the handle, in bytes
+		 * @throws TskCoreException thrown if the handle is invalid
+		 */
+		long getSize(long fileHandle) throws TskCoreException;
+
+		/**
+		 * Close a file handle
+		 *
+		 * @param fileHandle the file handle
+		 * @param lastUsed time the handle was last read through, in
+		 * milliseconds
+		 */
+		void close(long fileHandle, long lastUsed);
+	}
+	private static final FileOpener TSK_OPENER = new FileOpener() {
+		@Override
+		public long open(long fsHandle, long metaAddr, TSK_FS_ATTR_TYPE_ENUM attrType, int attrId) throws TskCoreException {
+			return SleuthkitJNI.openFile(fsHandle, metaAddr, attrType, attrId);
+		}
+
+		@Override
+		public long getSize(long fileHandle) throws TskCoreException {
+			return SleuthkitJNI.getFileHandleSize(fileHandle);
+		}
+
+		@Override
+		public void close(long fileHandle, long lastUsed) {
+			SleuthkitJNI.closeFile(fileHandle, lastUsed);
+		}
+	};
+
+	FileHandlePool() {
+		this(TSK_OPENER);
+	}
+
+	FileHandlePool(FileOpener opener) {
+		this.opener = opener;
+	}
+
+	/**
+	 * Identifies the attribute of a file opened in a file system
+	 */
+	private static final class Key {
+
+		private final long fsHandle;
+		private final long metaAddr;
+		private final TSK_FS_ATTR_TYPE_ENUM attrType;
+		private final int attrId;
+
+		Key(long fsHandle, long metaAddr, TSK_FS_ATTR_TYPE_ENUM attrType, int attrId) {
+			this.fsHandle = fsHandle;
+			this.metaAddr = metaAddr;
+			this.attrType = attrType;
+			this.attrId = attrId;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return fsHandle == other.fsHandle && metaAddr == other.metaAddr
+					&& attrType == other.attrType && attrId == other.attrId;
+		}
+
+		@Override
+		public int hashCode() {
+			int hash = 7;
+			hash = 31 * hash + (int) (fsHandle ^ (fsHandle >>> 32));
+			hash = 31 * hash + (int) (metaAddr ^ (metaAddr >>> 32));
+			hash = 31 * hash + attrType.hashCode();
+			hash = 31 * hash + attrId;
+			return hash;
+		}
+	}
+
+	/**
+	 * An open file handle of the pool
+	 */
+	static final class PooledHandle {
+
+		private final long handle;
+		private final long bytes;
+		//reads in progress, guarded by the pool
+		private int leases = 0;
+		//removed from the pool, close when the last lease is returned
+		private boolean removed = false;
+		//time of the last lease or return, guarded by the pool
+		private long lastUsed;
+
+		private PooledHandle(long handle, long bytes, long lastUsed) {
+			this.handle = handle;
+			this.bytes = bytes;
+			this.lastUsed = lastUsed;
+		}
+
+		/**
+		 * @return the native file handle, valid until the lease is returned
+		 */
+		long getHandle() {
+			return handle;
+		}
+	}
+
+	/**
+	 * Lease the handle of a file, opening the file if its handle is not in the
+	 * pool. The handle must be returned with release() after the read.
+	 *
+	 * @param fsHandle handle of the file system of the file
+	 * @param metaAddr meta address of the file
+	 * @param attrType type of the attribute to read
+	 * @param attrId id of the attribute to read
+	 * @return the leased handle
+	 * @throws TskCoreException thrown if the file could not be opened
+	 */
+	PooledHandle acquire(long fsHandle, long metaAddr, TSK_FS_ATTR_TYPE_ENUM attrType, int attrId) throws TskCoreException {
+		final Key key = new Key(fsHandle, metaAddr, attrType, attrId);
+		synchronized (this) {
+			PooledHandle pooled = handles.get(key);
+			if (pooled != null) {
+				hits++;
+				pooled.leases++;
+				pooled.lastUsed = System.currentTimeMillis();
+				return pooled;
+			}
+			misses++;
+		}
+
+		//open outside the lock, other files can be read meanwhile
+		long fileHandle = opener.open(fsHandle, metaAddr, attrType, attrId);
+		long size;
+		try {
+			size = opener.getSize(fileHandle);
+		} catch (TskCoreException ex) {
+			opener.close(fileHandle, System.currentTimeMillis());
+			throw ex;
+		}
+		PooledHandle opened = new PooledHandle(fileHandle, size, System.currentTimeMillis());
+		PooledHandle raced;
+		List<PooledHandle> toClose;
+		synchronized (this) {
+			raced = handles.get(key);
+			if (raced == null) {
+				opened.leases++;
+				handles.put(key, opened);
+				bytes += opened.bytes;
+				toClose = evict();
+			} else {
+				//opened by another reader in the meantime
+				raced.leases++;
+				raced.lastUsed = opened.lastUsed;
+				toClose = new ArrayList<PooledHandle>(1);
+				toClose.add(opened);
+			}
+		}
+		close(toClose);
+		return raced == null ? opened : raced;
+	}
+
+	/**
+	 * Return a leased handle
+	 *
+	 * @param pooled the handle returned by acquire()
+	 */
+	void release(PooledHandle pooled) {
+		List<PooledHandle> toClose;
+		synchronized (this) {
+			pooled.leases--;
+			pooled.lastUsed = System.currentTimeMillis();
+			if (pooled.removed) {
+				if (pooled.leases > 0) {
+					return;
+				}
+				toClose = new ArrayList<PooledHandle>(1);
+				toClose.add(pooled);
+			} else {
+				toClose = evict();
+			}
+		}
+		close(toClose);
+	}
+
+	/**
+	 * Close the handle of a file, when no longer needed. Leased handles are
+	 * closed when returned.
+	 *
+	 * @param fsHandle handle of the file system of the file
+	 * @param metaAddr meta address of the file
+	 * @param attrType type of the attribute
+	 * @param attrId id of the attribute
+	 */
+	void close(long fsHandle, long metaAddr, TSK_FS_ATTR_TYPE_ENUM attrType, int attrId) {
+		PooledHandle pooled;
+		synchronized (this) {
+			pooled = handles.remove(new Key(fsHandle, metaAddr, attrType, attrId));
+			if (pooled == null) {
+				return;
+			}
+			bytes -= pooled.bytes;
+			pooled.removed = true;
+			if (pooled.leases > 0) {
+				return;
+			}
+		}
+		opener.close(pooled.handle, pooled.lastUsed);
+	}
+
+	/**
+	 * Close all handles not leased
+	 */
+	void clear() {
+		List<PooledHandle> toClose;
+		synchronized (this) {
+			toClose = removeIdle(0, 0);
+		}
+		close(toClose);
+	}
+
+	/**
+	 * Close the handles not leased that were last used at or before the given
+	 * time
+	 *
+	 * @param expired time in milliseconds, Long.MAX_VALUE to close all handles
+	 * not leased
+	 */
+	void closeIdle(long expired) {
+		List<PooledHandle> toClose = new ArrayList<PooledHandle>();
+		synchronized (this) {
+			Iterator<PooledHandle> it = handles.values().iterator();
+			while (it.hasNext()) {
+				PooledHandle pooled = it.next();
+				if (pooled.leases == 0 && pooled.lastUsed <= expired) {
+					it.remove();
+					pooled.removed = true;
+					bytes -= pooled.bytes;
+					toClose.add(pooled);
+				}
+			}
+		}
+		close(toClose);
+	}
+
+	/**
+	 * Set the limits of the pool, closing handles beyond them
+	 *
+	 * @param maxHandles maximum number of open handles
+	 * @param maxBytes maximum native memory of the open handles, in bytes
+	 */
+	void setLimits(int maxHandles, long maxBytes) {
+		if (maxHandles < 0 || maxBytes < 0) {
+			throw new IllegalArgumentException("File handle pool limits must not be negative");
+		}
+		List<PooledHandle> toClose;
+		synchronized (this) {
+			this.maxHandles = maxHandles;
+			this.maxBytes = maxBytes;
+			toClose = evict();
+		}
+		close(toClose);
+	}
+
+	/**
+	 * @return number of open handles in the pool
+	 */
+	synchronized int size() {
+		return handles.size();
+	}
+
+	/**
+	 * @return estimated native memory of the open handles, in bytes
+	 */
+	synchronized long getBytes() {
+		return bytes;
+	}
+
+	/**
+	 * @return number of reads that found the handle in the pool
+	 */
+	synchronized long getHitCount() {
+		return hits;
+	}
+
+	/**
+	 * @return number of reads that opened the file
+	 */
+	synchronized long getMissCount() {
+		return misses;
+	}
+
+	/**
+	 * @return number of handles closed by the limits
+	 */
+	synchronized long getEvictionCount() {
+		return evictions;
+	}
+
+	/**
+	 * Remove the least recently used handles beyond the limits. Call with the
+	 * lock held, and close the returned handles after releasing it.
+	 */
+	private List<PooledHandle> evict() {
+		if (handles.size() <= maxHandles && bytes <= maxBytes) {
+			return new ArrayList<PooledHandle>(0);
+		}
+		List<PooledHandle> evicted = removeIdle(maxHandles, maxBytes);
+		evictions += evicted.size();
+		return evicted;
+	}
+
+	/**
+	 * Remove handles not leased, least recently used first, until the pool is
+	 * within the given limits. Call with the lock held.
+	 */
+	private List<PooledHandle> removeIdle(int handleLimit, long byteLimit) {
+		List<PooledHandle> removed = new ArrayList<PooledHandle>();
+		Iterator<PooledHandle> it = handles.values().iterator();
+		while (it.hasNext() && (handles.size() > handleLimit || bytes > byteLimit)) {
+			PooledHandle pooled = it.next();
+			if (pooled.leases > 0) {
+				continue;
+			}
+			it.remove();
+			pooled.removed = true;
+			bytes -= pooled.bytes;
+			removed.add(pooled);
+		}
+		return removed;
+	}
+
+	private void close(List<PooledHandle> toClose) {
+		for (PooledHandle pooled : toClose) {
+			opener.close(pooled.handle, pooled.lastUsed);
+		}
+	}
+}
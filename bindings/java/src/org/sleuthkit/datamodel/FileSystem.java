@@ -18,6 +18,7 @@
  */
 package org.sleuthkit.datamodel;
 
+import java.nio.ByteBuffer;
 import java.util.List;
 
 /**
@@ -25,15 +26,17 @@ import java.util.List;
  * FileSystem has a parent content object (volume or image) and children content objects (files and directories)
  * and fs-specific attributes.
  * The object also maintains a handle to internal file-system structures 
- * and the handle is reused across reads.
+ * and the handle is reused across reads. close() releases the handle; a file
+ * system that is not closed releases it once garbage collected.
  */
-public class FileSystem extends AbstractContent {
+public class FileSystem extends AbstractContent implements AutoCloseable {
 
 	private long imgOffset, blockSize, blockCount, rootInum,
 			firstInum, lastInum;
 	private TskData.TSK_FS_TYPE_ENUM fsType;
 	private Content parent;
 	private volatile long filesystemHandle = 0;
+	private ResourceCleaner.Cleanable handleCleanup;
 
 	/**
 	 * Constructor most inputs are from the database
@@ -62,10 +65,15 @@ public class FileSystem extends AbstractContent {
 	}
 
 	@Override
-	public synchronized int read(byte[] buf, long offset, long len) throws TskCoreException {
+	public int read(byte[] buf, long offset, long len) throws TskCoreException {
 		return SleuthkitJNI.readFs(getFileSystemHandle(), buf, offset, len);
 	}
 
+	@Override
+	public int read(ByteBuffer dst, long offset) throws TskCoreException {
+		return SleuthkitJNI.readFs(getFileSystemHandle(), dst, offset);
+	}
+
 	@Override
 	public long getSize() {
 		// size of the file system
@@ -81,9 +89,40 @@ public class FileSystem extends AbstractContent {
 	synchronized long getFileSystemHandle() throws TskCoreException {
 		if (filesystemHandle == 0) {
 			filesystemHandle = SleuthkitJNI.openFs(getImage().getImageHandle(), imgOffset);
+			handleCleanup = ResourceCleaner.register(this, new FsHandleRelease(filesystemHandle));
 		}
 		return this.filesystemHandle;
 	}
+
+	/**
+	 * Releases the handle to the internal file system structure. The file
+	 * system can still be read afterwards, the handle is opened again.
+	 */
+	@Override
+	public synchronized void close() {
+		if (handleCleanup != null) {
+			handleCleanup.clean();
+			handleCleanup = null;
+			filesystemHandle = 0;
+		}
+	}
+
+	/**
+	 * Releases a file system handle, without referring to the FileSystem
+	 */
+	private static class FsHandleRelease implements Runnable {
+
+		private final long fsHandle;
+
+		FsHandleRelease(long fsHandle) {
+			this.fsHandle = fsHandle;
+		}
+
+		@Override
+		public void run() {
+			SleuthkitJNI.closeFs(fsHandle);
+		}
+	}
 	
 	public Directory getRootDirectory() throws TskCoreException {
 		
@@ -161,19 +200,6 @@ public class FileSystem extends AbstractContent {
 		return lastInum;
 	}
 
-	@Override
-	public void finalize() throws Throwable {
-		try {
-			if (filesystemHandle != 0) {
-				SleuthkitJNI.closeFs(filesystemHandle);
-				filesystemHandle = 0;
-			}
-		}
-		finally {
-			super.finalize();
-		}
-	}
-
 	@Override
 	public <T> T accept(SleuthkitItemVisitor<T> v) {
 		return v.visit(this);
@@ -18,6 +18,7 @@
  */
 package org.sleuthkit.datamodel;
 
+import java.nio.ByteBuffer;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
@@ -33,12 +34,13 @@ import org.sleuthkit.datamodel.TskData.TSK_FS_META_MODE_ENUM;
 
 /**
  * Generalized class that stores metadata that are common to both File and
- * Directory objects stored in tsk_files table Caches internal tsk file handle
- * and reuses it for reads
+ * Directory objects stored in tsk_files table. Reads use the internal tsk file
+ * handle from a bounded pool, shared by all FsContent objects of the same
+ * file; close() releases it when the file is no longer read.
  *
  * TODO move common getters to AbstractFile class
  */
-public abstract class FsContent extends AbstractFile {
+public abstract class FsContent extends AbstractFile implements AutoCloseable {
 	
 	private static final Logger logger = Logger.getLogger(AbstractFile.class.getName());
 
@@ -74,9 +76,9 @@ public abstract class FsContent extends AbstractFile {
 	 */
 	private FileSystem parentFileSystem;
 	/**
-	 * file Handle
+	 * handle of the file system the file was read through
 	 */
-	protected volatile long fileHandle = 0;
+	private volatile long fsHandle = 0;
 
 	/**
 	 * Constructor to create FsContent object instance from database
@@ -168,12 +170,72 @@ public abstract class FsContent extends AbstractFile {
 			//special case for 0-size file
 			return 0;
 		}
-		synchronized (this) {
-			if (fileHandle == 0) {
-				fileHandle = SleuthkitJNI.openFile(getFileSystem().getFileSystemHandle(), metaAddr, attrType, attrId);
+		final FileHandlePool pool = SleuthkitJNI.getFileHandlePool();
+		final FileHandlePool.PooledHandle handle = acquireFileHandle(pool);
+		try {
+			return SleuthkitJNI.readFile(handle.getHandle(), buf, offset, len);
+		} finally {
+			pool.release(handle);
+		}
+	}
+
+	@Override
+	public int read(ByteBuffer dst, long offset) throws TskCoreException {
+		if (offset == 0 && size == 0) {
+			//special case for 0-size file
+			return 0;
+		}
+		final FileHandlePool pool = SleuthkitJNI.getFileHandlePool();
+		final FileHandlePool.PooledHandle handle = acquireFileHandle(pool);
+		try {
+			return SleuthkitJNI.readFile(handle.getHandle(), dst, offset);
+		} finally {
+			pool.release(handle);
+		}
+	}
+
+	@Override
+	public int readRanges(long[] offsets, int[] lengths, ByteBuffer dst) throws TskCoreException {
+		if (size == 0) {
+			//special case for 0-size file
+			SleuthkitJNI.checkRuns(offsets, lengths, dst);
+			return 0;
+		}
+		final FileHandlePool pool = SleuthkitJNI.getFileHandlePool();
+		final FileHandlePool.PooledHandle handle = acquireFileHandle(pool);
+		try {
+			return SleuthkitJNI.readFileV(handle.getHandle(), offsets, lengths, dst);
+		} finally {
+			pool.release(handle);
+		}
+	}
+
+	/**
+	 * Leases the handle of the file from the pool, opening the file in the
+	 * sleuthkit if it has no pooled handle
+	 *
+	 * @param pool the file handle pool
+	 * @return the leased handle, to be released after the read
+	 * @throws TskCoreException exception thrown if the file could not be opened
+	 */
+	private FileHandlePool.PooledHandle acquireFileHandle(FileHandlePool pool) throws TskCoreException {
+		fsHandle = getFileSystem().getFileSystemHandle();
+		//the file is opened in the file system stripe of the thread
+		return pool.acquire(SleuthkitJNI.getReadFsHandle(fsHandle), metaAddr, attrType, attrId);
+	}
+
+	/**
+	 * Closes the internal tsk file handles of the file, if they are pooled.
+	 * The file can still be read afterwards, it is opened again.
+	 */
+	@Override
+	public void close() {
+		if (fsHandle != 0) {
+			final FileHandlePool pool = SleuthkitJNI.getFileHandlePool();
+			for (long stripe : SleuthkitJNI.getFsStripes(fsHandle)) {
+				pool.close(stripe, metaAddr, attrType, attrId);
 			}
 		}
-		return SleuthkitJNI.readFile(fileHandle, buf, offset, len);
 	}
 
 	@Override
@@ -572,18 +634,6 @@ public abstract class FsContent extends AbstractFile {
 		return this.md5Hash;
 	}
 
-	@Override
-	public void finalize() throws Throwable {
-		try {
-			if (fileHandle != 0) {
-				SleuthkitJNI.closeFile(fileHandle);
-				fileHandle = 0;
-			}
-		} finally {
-			super.finalize();
-		}
-	}
-
 	/*
 	 * -------------------------------------------------------------------------
 	 * Util methods to convert / map the data
@@ -19,7 +19,6 @@
 package org.sleuthkit.datamodel;
 
 import java.io.IOException;
-import java.math.BigInteger;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.logging.Level;
@@ -32,11 +31,10 @@ import java.io.InputStream;
 public class Hash {
 
 	private final static int BUFFER_SIZE = 16 * 1024;
-	private final byte[] buffer = new byte[BUFFER_SIZE];
 
 	/**
 	 * Generate the md5 hash for the given FsContent and store it in the
-	 * database
+	 * database. Use HashService to hash many files.
 	 *
 	 * @param fsContent FsContent object whose md5 hash we want to calculate
 	 * @return md5 of the given FsContent object
@@ -47,18 +45,13 @@ public class Hash {
 		Logger logger = Logger.getLogger(Hash.class.getName());
 		try {
 			MessageDigest md = MessageDigest.getInstance("md5");
+			byte[] buffer = new byte[BUFFER_SIZE];
 			int len = in.read(buffer);
 			while (len != -1) {
 				md.update(buffer, 0, len);
 				len = in.read(buffer);
 			}
-			byte[] hash = md.digest();
-			BigInteger bigInt = new BigInteger(1, hash);
-			hashText = bigInt.toString(16);
-			// zero padding
-			while (hashText.length() < 32) {
-				hashText = "0" + hashText;
-			}
+			hashText = HashService.toHex(md.digest());
 			fsContent.getSleuthkitCase().setMd5Hash(fsContent, hashText);
 		} catch (NoSuchAlgorithmException ex) {
 			logger.log(Level.WARNING, "No algorithm known as 'md5'", ex);
@@ -0,0 +1,195 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2012 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * In-memory Bloom filter of the MD5 hashes in a TSK hash database index. It
+ * sits in front of the native lookup: a hash the filter does not contain is
+ * certainly not in the database and needs no lookup in the index file, a hash
+ * it does contain is looked up to rule out a false positive.
+ *
+ * The index is the sorted text file TSK creates next to the database
+ * (db-md5.idx), with one "HASH|OFFSET" line per entry after the header lines.
+ */
+final class HashIndexFilter {
+
+	/**
+	 * Default filter size, about 1% false positives
+	 */
+	static final int DEFAULT_BITS_PER_ENTRY = 10;
+	//length of an md5 index line: hash, '|', 16 digit offset and newline
+	private static final int MD5_INDEX_LINE_LEN = 32 + 1 + 16 + 1;
+	private static final int MD5_HEX_LEN = 32;
+	private final long[] bits;
+	private final long numBits;
+	private final int numProbes;
+	private long entries = 0;
+
+	private HashIndexFilter(long expectedEntries, int bitsPerEntry) {
+		long size = Math.max(64, expectedEntries * bitsPerEntry);
+		int words = (int) Math.min(Integer.MAX_VALUE - 8, (size + 63) / 64);
+		this.bits = new long[words];
+		this.numBits = (long) words * 64;
+		this.numProbes = Math.max(1, Math.min(16, (int) Math.round(bitsPerEntry * Math.log(2))));
+	}
+
+	/**
+	 * Get the path of the md5 index of a hash database
+	 *
+	 * @param dbPath path of the database, or of the index itself for index
+	 * only databases
+	 * @return path of the index file
+	 */
+	static String getIndexPath(String dbPath) {
+		if (dbPath.toLowerCase().endsWith(".idx")) {
+			return dbPath;
+		}
+		return dbPath + "-md5.idx";
+	}
+
+	/**
+	 * Build the filter of a hash database by reading its md5 index
+	 *
+	 * @param dbPath path of the database, or of its index
+	 * @param bitsPerEntry filter bits per hash in the index, more bits give
+	 * less false positives
+	 * @return the filter
+	 * @throws TskCoreException thrown if the index could not be read
+	 */
+	static HashIndexFilter load(String dbPath, int bitsPerEntry) throws TskCoreException {
+		File indexFile = new File(getIndexPath(dbPath));
+		if (!indexFile.isFile()) {
+			throw new TskCoreException("Hash database index not found: " + indexFile.getPath());
+		}
+		HashIndexFilter filter = new HashIndexFilter(indexFile.length() / MD5_INDEX_LINE_LEN + 1, bitsPerEntry);
+		InputStream in = null;
+		try {
+			in = new BufferedInputStream(new FileInputStream(indexFile), 1024 * 1024);
+			byte[] line = new byte[256];
+			int len = 0;
+			int b;
+			while ((b = in.read()) != -1) {
+				if (b != '\n') {
+					if (len < line.length) {
+						line[len] = (byte) b;
+					}
+					len++;
+					continue;
+				}
+				//header lines have a longer key, no separator after the hash
+				if (len > MD5_HEX_LEN && line[MD5_HEX_LEN] == '|') {
+					filter.add(line);
+				}
+				len = 0;
+			}
+		} catch (IOException ex) {
+			throw new TskCoreException("Error reading hash database index " + indexFile.getPath(), ex);
+		} finally {
+			if (in != null) {
+				try {
+					in.close();
+				} catch (IOException ex) {
+					//the index was only read
+				}
+			}
+		}
+		return filter;
+	}
+
+	/**
+	 * @return number of hashes added to the filter
+	 */
+	long getEntries() {
+		return entries;
+	}
+
+	/**
+	 * Check if a hash might be in the database
+	 *
+	 * @param md5 md5 hash as hex string
+	 * @return false if the hash is certainly not in the database, true if it
+	 * might be (or is not a valid md5 hash, so the filter cannot tell)
+	 */
+	boolean mightContain(String md5) {
+		if (md5 == null || md5.length() != MD5_HEX_LEN) {
+			return true;
+		}
+		long high = 0;
+		long low = 0;
+		for (int i = 0; i < MD5_HEX_LEN; i++) {
+			int digit = Character.digit(md5.charAt(i), 16);
+			if (digit < 0) {
+				return true;
+			}
+			if (i < 16) {
+				high = (high << 4) | digit;
+			} else {
+				low = (low << 4) | digit;
+			}
+		}
+		return test(high, low, false);
+	}
+
+	private void add(byte[] line) {
+		long high = 0;
+		long low = 0;
+		for (int i = 0; i < MD5_HEX_LEN; i++) {
+			int digit = Character.digit((char) line[i], 16);
+			if (digit < 0) {
+				return;
+			}
+			if (i < 16) {
+				high = (high << 4) | digit;
+			} else {
+				low = (low << 4) | digit;
+			}
+		}
+		test(high, low, true);
+		entries++;
+	}
+
+	/**
+	 * Test or set the bits of a hash. The md5 is uniformly distributed, so
+	 * its two halves serve as the hash functions (double hashing).
+	 */
+	private boolean test(long high, long low, boolean set) {
+		final long step = low | 1;
+		long probe = high;
+		boolean found = true;
+		for (int i = 0; i < numProbes; i++) {
+			long bit = (probe & Long.MAX_VALUE) % numBits;
+			int word = (int) (bit >>> 6);
+			long mask = 1L << (bit & 63);
+			if (set) {
+				bits[word] |= mask;
+			} else if ((bits[word] & mask) == 0) {
+				found = false;
+				break;
+			}
+			probe += step;
+		}
+		return found;
+	}
+}
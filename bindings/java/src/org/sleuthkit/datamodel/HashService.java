@@ -0,0 +1,400 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2012 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Calculates the MD5, SHA-1 and SHA-256 hashes of files on a pool of worker
+ * threads, reading each file once. The MD5 hashes are stored in the database
+ * in batched transactions (the database has no columns for the other hashes,
+ * they are passed to the callback only).
+ *
+ * Virtual directories have no content of their own, their children (such as
+ * the unallocated space layout files) are hashed instead.
+ *
+ * An instance can hash several sets of files, one at a time, and should be
+ * shut down when no longer needed.
+ */
+public class HashService {
+
+	/**
+	 * The hashes of one file
+	 */
+	public static class Result {
+
+		private final AbstractFile file;
+		private final String md5;
+		private final String sha1;
+		private final String sha256;
+		private final long bytes;
+
+		private Result(AbstractFile file, String md5, String sha1, String sha256, long bytes) {
+			this.file = file;
+			this.md5 = md5;
+			this.sha1 = sha1;
+			this.sha256 = sha256;
+			this.bytes = bytes;
+		}
+
+		/**
+		 * @return the hashed file
+		 */
+		public AbstractFile getFile() {
+			return file;
+		}
+
+		/**
+		 * @return md5 hash as lower case hex string
+		 */
+		public String getMd5() {
+			return md5;
+		}
+
+		/**
+		 * @return sha-1 hash as lower case hex string
+		 */
+		public String getSha1() {
+			return sha1;
+		}
+
+		/**
+		 * @return sha-256 hash as lower case hex string
+		 */
+		public String getSha256() {
+			return sha256;
+		}
+
+		/**
+		 * @return number of bytes hashed
+		 */
+		public long getBytes() {
+			return bytes;
+		}
+	}
+
+	/**
+	 * Notified on the calling thread of hashFiles() for every file
+	 */
+	public interface Callback {
+
+		/**
+		 * Called when a file is hashed, before its MD5 is stored
+		 *
+		 * @param result hashes of the file
+		 */
+		void hashed(Result result);
+
+		/**
+		 * Called when a file could not be read
+		 *
+		 * @param file the file
+		 * @param ex the error
+		 */
+		void failed(AbstractFile file, TskCoreException ex);
+	}
+	/**
+	 * Default size of the read buffer of each worker thread
+	 */
+	public static final int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+	/**
+	 * Number of MD5 hashes stored per transaction
+	 */
+	private static final int DB_BATCH_SIZE = 1000;
+	private static final Logger logger = Logger.getLogger(HashService.class.getName());
+	private final SleuthkitCase skCase;
+	private final ExecutorService executor;
+	private final int threads;
+	private final ThreadLocal<Hasher> hasher;
+	private final AtomicLong bytesHashed = new AtomicLong();
+	private final AtomicLong filesHashed = new AtomicLong();
+	private long elapsedNanos = 0;
+
+	/**
+	 * Create a hash service using one worker per processor
+	 *
+	 * @param skCase case to store the hashes in
+	 */
+	public HashService(SleuthkitCase skCase) {
+		this(skCase, Runtime.getRuntime().availableProcessors(), DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * Create a hash service
+	 *
+	 * @param skCase case to store the hashes in
+	 * @param threads number of worker threads
+	 * @param bufferSize size of the read buffer of each worker thread
+	 */
+	public HashService(SleuthkitCase skCase, int threads, final int bufferSize) {
+		this.skCase = skCase;
+		this.threads = threads;
+		this.executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			private int count = 0;
+
+			@Override
+			public synchronized Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "HashService-" + (++count));
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		this.hasher = new ThreadLocal<Hasher>() {
+			@Override
+			protected Hasher initialValue() {
+				return new Hasher(bufferSize);
+			}
+		};
+	}
+
+	/**
+	 * Hash the files and store their MD5 hashes. Returns when all files are
+	 * hashed and stored.
+	 *
+	 * @param files files to hash, iterated on the calling thread
+	 * @param callback notified of every file, may be null
+	 * @throws TskCoreException thrown if storing hashes failed or the thread
+	 * was interrupted
+	 */
+	public void hashFiles(Iterable<? extends AbstractFile> files, Callback callback) throws TskCoreException {
+		final CompletionService<Result> completion = new ExecutorCompletionService<Result>(executor);
+		final Map<AbstractFile, String> md5Hashes = new LinkedHashMap<AbstractFile, String>();
+		//keep a few files per worker queued, without holding the whole list
+		final int maxPending = threads * 4;
+		final Deque<AbstractFile> toHash = new ArrayDeque<AbstractFile>();
+		int pending = 0;
+		final long start = System.nanoTime();
+		try {
+			for (AbstractFile file : files) {
+				toHash.add(file);
+				while (!toHash.isEmpty()) {
+					AbstractFile next = toHash.poll();
+					if (next instanceof VirtualDirectory) {
+						//no content of its own, hash the children instead
+						for (Content child : next.getChildren()) {
+							if (child instanceof AbstractFile) {
+								toHash.add((AbstractFile) child);
+							}
+						}
+						continue;
+					}
+					if (pending == maxPending) {
+						collect(completion.take(), md5Hashes, callback);
+						pending--;
+					}
+					completion.submit(new HashTask(next));
+					pending++;
+					if (md5Hashes.size() >= DB_BATCH_SIZE) {
+						skCase.setMd5Hashes(md5Hashes);
+						md5Hashes.clear();
+					}
+				}
+			}
+			while (pending > 0) {
+				collect(completion.take(), md5Hashes, callback);
+				pending--;
+			}
+			skCase.setMd5Hashes(md5Hashes);
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new TskCoreException("Interrupted while hashing files", ex);
+		} finally {
+			synchronized (this) {
+				elapsedNanos += System.nanoTime() - start;
+			}
+		}
+	}
+
+	private void collect(Future<Result> future, Map<AbstractFile, String> md5Hashes, Callback callback) throws InterruptedException {
+		try {
+			Result result = future.get();
+			md5Hashes.put(result.getFile(), result.getMd5());
+			if (callback != null) {
+				callback.hashed(result);
+			}
+		} catch (ExecutionException ex) {
+			if (!(ex.getCause() instanceof HashFailure)) {
+				logger.log(Level.SEVERE, "Unexpected error hashing a file", ex.getCause());
+				return;
+			}
+			HashFailure failure = (HashFailure) ex.getCause();
+			logger.log(Level.WARNING, "Error hashing file " + failure.file.getId(), failure.getCause());
+			if (callback != null) {
+				callback.failed(failure.file, (TskCoreException) failure.getCause());
+			}
+		}
+	}
+
+	/**
+	 * Stop the worker threads
+	 */
+	public void shutdown() {
+		executor.shutdown();
+	}
+
+	/**
+	 * @return number of files hashed so far
+	 */
+	public long getFilesHashed() {
+		return filesHashed.get();
+	}
+
+	/**
+	 * @return number of bytes hashed so far
+	 */
+	public long getBytesHashed() {
+		return bytesHashed.get();
+	}
+
+	/**
+	 * Get the hashing throughput, over the time spent in hashFiles()
+	 *
+	 * @return throughput in MB/s (2^20 bytes per second)
+	 */
+	public synchronized double getThroughput() {
+		if (elapsedNanos == 0) {
+			return 0;
+		}
+		return (bytesHashed.get() / (1024.0 * 1024.0)) / (elapsedNanos / 1e9);
+	}
+
+	/**
+	 * Convert a digest to a lower case hex string
+	 *
+	 * @param digest the digest
+	 * @return hex string, two characters per byte
+	 */
+	static String toHex(byte[] digest) {
+		final char[] hexDigits = "0123456789abcdef".toCharArray();
+		char[] hex = new char[digest.length * 2];
+		for (int i = 0; i < digest.length; i++) {
+			hex[2 * i] = hexDigits[(digest[i] >> 4) & 0xF];
+			hex[2 * i + 1] = hexDigits[digest[i] & 0xF];
+		}
+		return new String(hex);
+	}
+
+	/**
+	 * Hashes one file on a worker thread
+	 */
+	private class HashTask implements Callable<Result> {
+
+		private final AbstractFile file;
+
+		HashTask(AbstractFile file) {
+			this.file = file;
+		}
+
+		@Override
+		public Result call() throws HashFailure {
+			try {
+				Result result = hasher.get().hash(file);
+				bytesHashed.addAndGet(result.getBytes());
+				filesHashed.incrementAndGet();
+				return result;
+			} catch (TskCoreException ex) {
+				throw new HashFailure(file, ex);
+			}
+		}
+	}
+
+	/**
+	 * Carries the failed file back to the calling thread
+	 */
+	private static class HashFailure extends Exception {
+
+		private static final long serialVersionUID = 1L;
+		private final transient AbstractFile file;
+
+		HashFailure(AbstractFile file, TskCoreException cause) {
+			super(cause);
+			this.file = file;
+		}
+	}
+
+	/**
+	 * Read buffer and digests of a worker thread
+	 */
+	private static class Hasher {
+
+		private final ByteBuffer buffer;
+		private final MessageDigest md5;
+		private final MessageDigest sha1;
+		private final MessageDigest sha256;
+
+		Hasher(int bufferSize) {
+			buffer = ByteBuffer.allocateDirect(bufferSize);
+			try {
+				md5 = MessageDigest.getInstance("MD5");
+				sha1 = MessageDigest.getInstance("SHA-1");
+				sha256 = MessageDigest.getInstance("SHA-256");
+			} catch (NoSuchAlgorithmException ex) {
+				//all three are required in every Java platform
+				throw new IllegalStateException(ex);
+			}
+		}
+
+		Result hash(AbstractFile file) throws TskCoreException {
+			final long size = file.getSize();
+			long offset = 0;
+			try {
+				while (offset < size) {
+					buffer.clear();
+					buffer.limit((int) Math.min(buffer.capacity(), size - offset));
+					int bytesRead = file.read(buffer, offset);
+					if (bytesRead <= 0) {
+						//a hash of part of the content would be stored as the file hash
+						throw new TskCoreException("Short read hashing file " + file.getId()
+								+ ": " + offset + " of " + size + " bytes");
+					}
+					buffer.flip();
+					md5.update(buffer);
+					buffer.rewind();
+					sha1.update(buffer);
+					buffer.rewind();
+					sha256.update(buffer);
+					offset += bytesRead;
+				}
+				return new Result(file, toHex(md5.digest()), toHex(sha1.digest()), toHex(sha256.digest()), offset);
+			} finally {
+				//the digests are reused for the next file
+				md5.reset();
+				sha1.reset();
+				sha256.reset();
+			}
+		}
+	}
+}
@@ -18,6 +18,7 @@
  */
 package org.sleuthkit.datamodel;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.logging.Level;
@@ -27,14 +28,16 @@ import java.util.logging.Logger;
  * Represents a disk image file, stored in tsk_image_info. Populated based on
  * data in database.
  *
- * Caches internal tsk image handle and reuses it for reads
+ * Caches internal tsk image handle and reuses it for reads. close() releases
+ * the handle; an image that is not closed releases it once garbage collected.
  */
-public class Image extends AbstractContent {
+public class Image extends AbstractContent implements AutoCloseable {
 	//data about image
 
 	private long type, ssize, size;
 	private String[] paths;
 	private volatile long imageHandle = 0;
+	private ResourceCleaner.Cleanable handleCleanup;
 	private String timezone;
 
 	/**
@@ -65,34 +68,66 @@ public class Image extends AbstractContent {
 	public synchronized long getImageHandle() throws TskCoreException {
 		if (imageHandle == 0) {
 			imageHandle = SleuthkitJNI.openImage(paths);
+			handleCleanup = ResourceCleaner.register(this, new ImageHandleRelease(imageHandle));
 		}
 
 		return imageHandle;
 	}
 
+	/**
+	 * Releases the handle to the sleuthkit image info object, and drops the
+	 * file systems of the image from the case caches. The image can still be
+	 * read afterwards, the handle is opened again. Must not be called while
+	 * the image is being read.
+	 */
 	@Override
-	public Image getImage() {
-		return this;
+	public synchronized void close() {
+		getSleuthkitCase().invalidateFileSystems(getId());
+		if (handleCleanup != null) {
+			handleCleanup.clean();
+			handleCleanup = null;
+			imageHandle = 0;
+		}
 	}
 
-	@Override
-	public void finalize() throws Throwable {
-		try {
-			if (imageHandle != 0) {
-				SleuthkitJNI.closeImg(imageHandle);
-				imageHandle = 0;
-			}
-		} finally {
-			super.finalize();
+	/**
+	 * Releases an image handle, without referring to the Image
+	 */
+	private static class ImageHandleRelease implements Runnable {
+
+		private final long imageHandle;
+
+		ImageHandleRelease(long imageHandle) {
+			this.imageHandle = imageHandle;
+		}
+
+		@Override
+		public void run() {
+			SleuthkitJNI.closeImg(imageHandle);
 		}
 	}
 
+	@Override
+	public Image getImage() {
+		return this;
+	}
+
 	@Override
 	public int read(byte[] buf, long offset, long len) throws TskCoreException {
 		// read from the image
 		return SleuthkitJNI.readImg(getImageHandle(), buf, offset, len);
 	}
 
+	@Override
+	public int read(ByteBuffer dst, long offset) throws TskCoreException {
+		return SleuthkitJNI.readImg(getImageHandle(), dst, offset);
+	}
+
+	@Override
+	public int readRanges(long[] offsets, int[] lengths, ByteBuffer dst) throws TskCoreException {
+		return SleuthkitJNI.readImgV(getImageHandle(), offsets, lengths, dst);
+	}
+
 	@Override
 	public long getSize() {
 		if (size == 0) {
@@ -0,0 +1,505 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2012 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Fixed size cache of image blocks, shared by all images and threads.
+ *
+ * The image is divided in aligned blocks of BLOCK_SIZE bytes, and a block is
+ * identified by the image handle and its index. The blocks are stored off the
+ * Java heap, in one direct buffer per segment, so a large cache does not add
+ * to the work of the garbage collector. A block belongs to a segment by the
+ * hash of its key, and each segment has its own lock, so that threads reading
+ * different blocks rarely wait for each other.
+ *
+ * Blocks are evicted with the CLOCK algorithm: a block is marked when it is
+ * read from the cache, and the clock hand evicts the first block that is not
+ * marked, clearing the marks it passes. Blocks read only once are evicted
+ * before the blocks that are read again.
+ *
+ * Reads larger than MAX_CACHED_READ bypass the cache, so that streaming
+ * through a large file does not evict the blocks read repeatedly, such as
+ * file system metadata.
+ */
+final class ImageBlockCache {
+
+	/**
+	 * Size of a cached block, in bytes
+	 */
+	static final int BLOCK_SIZE = 32 * 1024;
+	/**
+	 * Largest read served by the cache, larger reads go to the image
+	 */
+	static final int MAX_CACHED_READ = 4 * BLOCK_SIZE;
+	/**
+	 * Default size of the cache, in bytes
+	 */
+	static final long DEFAULT_CAPACITY = 32L * 1024 * 1024;
+	private static final int BLOCK_SHIFT = 15;
+	private static final int SEGMENTS = 16;
+	//null when the cache is disabled
+	private volatile Segment[] segments;
+	private volatile long capacity;
+	//a block read from the image before it is copied to the cache
+	private final ThreadLocal<ByteBuffer> blockBuffers = new ThreadLocal<ByteBuffer>() {
+		@Override
+		protected ByteBuffer initialValue() {
+			return ByteBuffer.allocateDirect(BLOCK_SIZE);
+		}
+	};
+
+	//reads the blocks not cached
+	private final ImageReader reader;
+
+	/**
+	 * Reads from an image past the cache
+	 */
+	interface ImageReader {
+
+		/**
+		 * Read from an image into the remaining space of the buffer, starting
+		 * at its position, and advance the position by the bytes read
+		 *
+		 * @param readHandle handle to read the image through
+		 * @param dst buffer to read to
+		 * @param offset byte offset in the image to start at
+		 * @return the number of bytes read, or -1 if the end of the stream
+		 * has been reached
+		 * @throws TskCoreException exception thrown if the read failed
+		 */
+		int read(long readHandle, ByteBuffer dst, long offset) throws TskCoreException;
+	}
+
+	/**
+	 * Reads the image through TSK
+	 */
+	private static final ImageReader TSK_READER = new ImageReader() {
+		@Override
+		public int read(long readHandle, ByteBuffer dst, long offset) throws TskCoreException {
+			return SleuthkitJNI.readImgUncached(readHandle, dst, offset);
+		}
+	};
+
+	ImageBlockCache(long capacity) {
+		this(capacity, TSK_READER);
+	}
+
+	/**
+	 * @param capacity size in bytes, 0 to disable the cache
+	 * @param reader reads the blocks that are not cached
+	 */
+	ImageBlockCache(long capacity, ImageReader reader) {
+		this.reader = reader;
+		setCapacity(capacity);
+	}
+
+	/**
+	 * Identifies a block of an image
+	 */
+	private static final class BlockKey {
+
+		private final long imgHandle;
+		private final long block;
+
+		BlockKey(long imgHandle, long block) {
+			this.imgHandle = imgHandle;
+			this.block = block;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof BlockKey)) {
+				return false;
+			}
+			BlockKey other = (BlockKey) obj;
+			return imgHandle == other.imgHandle && block == other.block;
+		}
+
+		@Override
+		public int hashCode() {
+			int hash = 7;
+			hash = 31 * hash + (int) (imgHandle ^ (imgHandle >>> 32));
+			hash = 31 * hash + (int) (block ^ (block >>> 32));
+			return hash;
+		}
+	}
+
+	/**
+	 * A part of the cache with its own lock, blocks and clock
+	 */
+	private static final class Segment {
+
+		private final int slots;
+		//allocated on the first block stored
+		private ByteBuffer data;
+		//view of data to copy blocks in and out, guarded by the segment
+		private ByteBuffer view;
+		private final BlockKey[] keys;
+		private final int[] lengths;
+		private final boolean[] referenced;
+		private final Map<BlockKey, Integer> index;
+		private int hand = 0;
+		private int count = 0;
+		private long hits = 0;
+		private long misses = 0;
+		private long evictions = 0;
+
+		Segment(int slots) {
+			this.slots = slots;
+			this.keys = new BlockKey[slots];
+			this.lengths = new int[slots];
+			this.referenced = new boolean[slots];
+			this.index = new HashMap<BlockKey, Integer>(slots * 2);
+		}
+
+		/**
+		 * Copy a cached block, or a part of it, to the buffer
+		 *
+		 * @param key the block
+		 * @param from offset in the block to start at
+		 * @param dst buffer to copy to, up to its remaining space
+		 * @return bytes copied, or -1 if the block is not cached
+		 */
+		synchronized int get(BlockKey key, int from, ByteBuffer dst) {
+			Integer slot = index.get(key);
+			if (slot == null) {
+				misses++;
+				return -1;
+			}
+			hits++;
+			referenced[slot] = true;
+			return copy(slot, from, dst);
+		}
+
+		/**
+		 * Store a block, evicting another one if the segment is full
+		 *
+		 * @param key the block
+		 * @param block its data, from position 0 up to its limit
+		 */
+		synchronized void put(BlockKey key, ByteBuffer block) {
+			if (index.containsKey(key)) {
+				//stored by another reader in the meantime
+				return;
+			}
+			if (data == null) {
+				data = ByteBuffer.allocateDirect(slots * BLOCK_SIZE);
+				view = data.duplicate();
+			}
+			final int slot = nextSlot();
+			keys[slot] = key;
+			lengths[slot] = block.limit();
+			referenced[slot] = false;
+			index.put(key, slot);
+			count++;
+			view.clear();
+			view.position(slot * BLOCK_SIZE);
+			block.position(0);
+			view.put(block);
+		}
+
+		/**
+		 * Remove the blocks of an image
+		 */
+		synchronized void remove(long imgHandle) {
+			for (int slot = 0; slot < slots; slot++) {
+				if (keys[slot] != null && keys[slot].imgHandle == imgHandle) {
+					free(slot);
+				}
+			}
+		}
+
+		/**
+		 * Remove all blocks
+		 */
+		synchronized void clear() {
+			for (int slot = 0; slot < slots; slot++) {
+				if (keys[slot] != null) {
+					free(slot);
+				}
+			}
+		}
+
+		synchronized int size() {
+			return count;
+		}
+
+		synchronized long getHitCount() {
+			return hits;
+		}
+
+		synchronized long getMissCount() {
+			return misses;
+		}
+
+		synchronized long getEvictionCount() {
+			return evictions;
+		}
+
+		/**
+		 * Move the clock hand to a free slot, evicting the first unmarked
+		 * block. Call with the lock held.
+		 */
+		private int nextSlot() {
+			while (true) {
+				final int slot = hand;
+				hand = (hand + 1) % slots;
+				if (keys[slot] == null) {
+					return slot;
+				}
+				if (referenced[slot]) {
+					referenced[slot] = false;
+				} else {
+					free(slot);
+					evictions++;
+					return slot;
+				}
+			}
+		}
+
+		private void free(int slot) {
+			index.remove(keys[slot]);
+			keys[slot] = null;
+			count--;
+		}
+
+		private int copy(int slot, int from, ByteBuffer dst) {
+			final int n = Math.min(lengths[slot] - from, dst.remaining());
+			if (n <= 0) {
+				return 0;
+			}
+			view.clear();
+			view.position(slot * BLOCK_SIZE + from);
+			view.limit(slot * BLOCK_SIZE + from + n);
+			dst.put(view);
+			return n;
+		}
+	}
+
+	/**
+	 * Set the size of the cache. The cached blocks and the statistics are
+	 * dropped.
+	 *
+	 * @param capacity size in bytes, 0 to disable the cache
+	 */
+	void setCapacity(long capacity) {
+		if (capacity < 0) {
+			throw new IllegalArgumentException("Block cache size must not be negative");
+		}
+		final long blocks = capacity / BLOCK_SIZE;
+		if (blocks == 0) {
+			this.segments = null;
+			this.capacity = 0;
+			return;
+		}
+		final int segmentCount = (int) Math.min(SEGMENTS, blocks);
+		final long slotsPerSegment = blocks / segmentCount;
+		if (slotsPerSegment * BLOCK_SIZE > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Block cache size too large: " + capacity);
+		}
+		Segment[] newSegments = new Segment[segmentCount];
+		for (int i = 0; i < segmentCount; i++) {
+			newSegments[i] = new Segment((int) slotsPerSegment);
+		}
+		this.segments = newSegments;
+		this.capacity = slotsPerSegment * segmentCount * BLOCK_SIZE;
+	}
+
+	/**
+	 * @return size of the cache in bytes, 0 if disabled
+	 */
+	long getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Check if a read goes through the cache
+	 *
+	 * @param len length of the read
+	 * @return true if the cache is enabled and the read is small enough
+	 */
+	boolean isCached(long len) {
+		return segments != null && len <= MAX_CACHED_READ;
+	}
+
+	/**
+	 * Read from an image through the cache into the remaining space of the
+	 * buffer, starting at its position. The position is advanced by the
+	 * number of bytes read. Blocks not cached are read from the image and
+	 * stored.
+	 *
+	 * @param imgHandle handle of the image, identifies its blocks
+	 * @param readHandle handle to read the image through in this thread
+	 * @param dst buffer to read to
+	 * @param offset byte offset in the image to start at
+	 * @return the number of bytes read, fewer than requested at the end of the
+	 * image, or -1 if the end of the stream has been reached
+	 * @throws TskCoreException exception thrown if the first block could not
+	 * be read, or the offset is past the end of the image
+	 */
+	int read(long imgHandle, long readHandle, ByteBuffer dst, long offset) throws TskCoreException {
+		final Segment[] current = segments;
+		if (current == null) {
+			return reader.read(readHandle, dst, offset);
+		}
+		int total = 0;
+		while (dst.hasRemaining()) {
+			final long pos = offset + total;
+			final long block = pos >>> BLOCK_SHIFT;
+			final int from = (int) (pos & (BLOCK_SIZE - 1));
+			final BlockKey key = new BlockKey(imgHandle, block);
+			final Segment segment = current[segmentIndex(key, current.length)];
+			int copied = segment.get(key, from, dst);
+			int blockLength = BLOCK_SIZE;
+			if (copied < 0) {
+				ByteBuffer blockBuffer = blockBuffers.get();
+				blockBuffer.clear();
+				try {
+					blockLength = reader.read(readHandle, blockBuffer, block << BLOCK_SHIFT);
+				} catch (TskCoreException ex) {
+					if (total > 0) {
+						//the end of the image, return what was read
+						break;
+					}
+					throw ex;
+				}
+				if (blockLength <= 0) {
+					return total > 0 ? total : blockLength;
+				}
+				blockBuffer.flip();
+				segment.put(key, blockBuffer);
+				copied = 0;
+				if (blockLength > from) {
+					blockBuffer.position(from);
+					blockBuffer.limit(Math.min(blockLength, from + dst.remaining()));
+					copied = blockBuffer.remaining();
+					dst.put(blockBuffer);
+				}
+			}
+			if (copied == 0 && total == 0) {
+				//in the last block, but past the end of the image
+				throw new TskCoreException("Offset is past the end of the image: " + offset);
+			}
+			total += copied;
+			if (copied == 0 || (copied < BLOCK_SIZE - from && dst.hasRemaining()) || blockLength < BLOCK_SIZE) {
+				//cut short by the end of the image
+				break;
+			}
+		}
+		return total;
+	}
+
+	/**
+	 * Drop the cached blocks of an image, when it is closed and its handle can
+	 * be reused
+	 *
+	 * @param imgHandle handle of the image
+	 */
+	void invalidate(long imgHandle) {
+		final Segment[] current = segments;
+		if (current == null) {
+			return;
+		}
+		for (Segment segment : current) {
+			segment.remove(imgHandle);
+		}
+	}
+
+	/**
+	 * Drop all cached blocks
+	 */
+	void clear() {
+		final Segment[] current = segments;
+		if (current == null) {
+			return;
+		}
+		for (Segment segment : current) {
+			segment.clear();
+		}
+	}
+
+	/**
+	 * @return bytes of the cache holding blocks
+	 */
+	long getUsedBytes() {
+		long blocks = 0;
+		final Segment[] current = segments;
+		if (current != null) {
+			for (Segment segment : current) {
+				blocks += segment.size();
+			}
+		}
+		return blocks * BLOCK_SIZE;
+	}
+
+	/**
+	 * @return number of blocks read from the cache
+	 */
+	long getHitCount() {
+		long hits = 0;
+		final Segment[] current = segments;
+		if (current != null) {
+			for (Segment segment : current) {
+				hits += segment.getHitCount();
+			}
+		}
+		return hits;
+	}
+
+	/**
+	 * @return number of blocks read from the image
+	 */
+	long getMissCount() {
+		long misses = 0;
+		final Segment[] current = segments;
+		if (current != null) {
+			for (Segment segment : current) {
+				misses += segment.getMissCount();
+			}
+		}
+		return misses;
+	}
+
+	/**
+	 * @return number of blocks evicted to make room
+	 */
+	long getEvictionCount() {
+		long evictions = 0;
+		final Segment[] current = segments;
+		if (current != null) {
+			for (Segment segment : current) {
+				evictions += segment.getEvictionCount();
+			}
+		}
+		return evictions;
+	}
+
+	private static int segmentIndex(BlockKey key, int segmentCount) {
+		//spread the hash, so that consecutive blocks go to different segments
+		int h = key.hashCode();
+		h ^= (h >>> 16);
+		h *= 0x85ebca6b;
+		h ^= (h >>> 13);
+		return (h & Integer.MAX_VALUE) % segmentCount;
+	}
+}
@@ -18,8 +18,9 @@
  */
 package org.sleuthkit.datamodel;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.Iterator;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -33,12 +34,18 @@ import java.util.logging.Logger;
  * A layout file normally contains 1 or more entry in tsk_file_layout table 
  * that define ordered byte block ranges, with respect to the image.
  * 
- * The class also supports reads of layout files, reading blocks across ranges in a sequence
+ * The class also supports reads of layout files, reading blocks across ranges in a sequence.
+ * The ranges are loaded once, into arrays of their image offsets and of their
+ * offsets in the file, so the range of a file offset is found by binary search.
  */
 public class LayoutFile extends AbstractFile{
 	
 	//layout ranges associated with this file
 	private List<TskFileRange> ranges;
+	//byte start of each range in the image
+	private long[] rangeImgStarts;
+	//byte start of each range in the file, plus the file size at the end
+	private long[] rangeFileStarts;
 	
 	protected LayoutFile(SleuthkitCase db, long obj_id, String name, TskData.TSK_DB_FILES_TYPE_ENUM type) {
 		super(db, obj_id, name, type);
@@ -59,11 +66,83 @@ public class LayoutFile extends AbstractFile{
 	}
 
 	@Override
-	public List<TskFileRange> getRanges() throws TskCoreException {
-		if(ranges == null) {
-            ranges = getSleuthkitCase().getFileRanges(this.getId());
-        }
-        return ranges;
+	public synchronized List<TskFileRange> getRanges() throws TskCoreException {
+		if (ranges == null) {
+			loadRanges();
+		}
+		return ranges;
+	}
+
+	/**
+	 * Load the ranges and index them by their offsets in the file
+	 *
+	 * @throws TskCoreException thrown if the ranges could not be read
+	 */
+	private void loadRanges() throws TskCoreException {
+		List<TskFileRange> loaded = Collections.unmodifiableList(getSleuthkitCase().getFileRanges(this.getId()));
+		long[] imgStarts = new long[loaded.size()];
+		long[] fileStarts = new long[loaded.size() + 1];
+		for (int i = 0; i < imgStarts.length; i++) {
+			TskFileRange range = loaded.get(i);
+			imgStarts[i] = range.getByteStart();
+			fileStarts[i + 1] = fileStarts[i] + range.getByteLen();
+		}
+		rangeImgStarts = imgStarts;
+		rangeFileStarts = fileStarts;
+		ranges = loaded;
+	}
+
+	/**
+	 * Get the offsets of the ranges in the file, loading the ranges if needed
+	 *
+	 * @return byte start of each range in the file, followed by the file size
+	 * @throws TskCoreException thrown if the ranges could not be read
+	 */
+	private synchronized long[] getRangeFileStarts() throws TskCoreException {
+		if (ranges == null) {
+			loadRanges();
+		}
+		return rangeFileStarts;
+	}
+
+	/**
+	 * Get the image offsets of the ranges, loading the ranges if needed
+	 *
+	 * @return byte start of each range in the image
+	 * @throws TskCoreException thrown if the ranges could not be read
+	 */
+	private synchronized long[] getRangeImgStarts() throws TskCoreException {
+		if (ranges == null) {
+			loadRanges();
+		}
+		return rangeImgStarts;
+	}
+
+	/**
+	 * Find the range that contains an offset in the file
+	 *
+	 * @param fileStarts the range offsets from getRangeFileStarts()
+	 * @param offset offset in the file
+	 * @return index of the range, or -1 if the offset is not in the file
+	 */
+	static int findRange(long[] fileStarts, long offset) {
+		final int numRanges = fileStarts.length - 1;
+		if (offset < 0 || offset >= fileStarts[numRanges]) {
+			return -1;
+		}
+		//find the last range that starts at or before the offset, so empty
+		//ranges at the same offset are skipped
+		int low = 0;
+		int high = numRanges - 1;
+		while (low < high) {
+			int mid = (low + high + 1) >>> 1;
+			if (fileStarts[mid] <= offset) {
+				low = mid;
+			} else {
+				high = mid - 1;
+			}
+		}
+		return low;
 	}
 
 	@Override
@@ -95,73 +174,148 @@ public class LayoutFile extends AbstractFile{
 	 * Calculate the size from all ranges / blocks
 	 * @return total content size in bytes
 	 */
-    private long calcSize() {
-        long size = 0;
-        try {
-            for (TskFileRange range : getRanges()) {
-                size += range.getByteLen();
-            }
-        }catch (TskCoreException ex) {
-			Logger.getLogger(LayoutFile.class.getName()).log(Level.INFO, "boo", ex);
-        }
-        return size;
-    }
+	private long calcSize() {
+		try {
+			long[] fileStarts = getRangeFileStarts();
+			return fileStarts[fileStarts.length - 1];
+		} catch (TskCoreException ex) {
+			Logger.getLogger(LayoutFile.class.getName()).log(Level.INFO, "Error getting layout content ranges for size", ex);
+			return 0;
+		}
+	}
 	
 
 	@Override
-    public int read(byte[] buf, long offset, long len) throws TskCoreException {
-        long offsetInThisLayoutContent = 0; // current offset in this LayoutContent
-        int bytesRead = 0; // Bytes read so far
-        Iterator<TskFileRange> it = getRanges().iterator();
-        while(it.hasNext()) {
-            TskFileRange range = it.next();
-            if (bytesRead < len) { // we haven't read enough yet
-                if (offset < offsetInThisLayoutContent + range.getByteLen()) { // if we are in a range object we want to read from
-                    long offsetInRange = 0; // how far into the current range object to start reading
-                    if(bytesRead == 0){ // we haven't read anything yet so we want to read from the correct offset in this range object
-                        offsetInRange = offset - offsetInThisLayoutContent; // start reading from the correct offset
-                    }
-                    long offsetInImage = range.getByteStart() + offsetInRange; // how far into the image to start reading
-                    long lenToRead = Math.min(range.getByteLen() - offsetInRange, len-bytesRead); // how much we can read this time
-                    int lenRead = readImgToOffset(getImage().getImageHandle(), buf, bytesRead, offsetInImage, (int) lenToRead);
-                    bytesRead += lenRead;
-                    if(lenToRead != lenRead) { // If image read failed or was cut short
-                        break;
-                    }
-                }
-				offsetInThisLayoutContent += range.getByteLen();
-            } else { // we're done reading
-                break;
-            }
-        }
-        return bytesRead;
-    }
+	public int read(byte[] buf, long offset, long len) throws TskCoreException {
+		final long[] fileStarts = getRangeFileStarts();
+		final long[] imgStarts = getRangeImgStarts();
+		int range = findRange(fileStarts, offset);
+		if (range == -1) {
+			return 0;
+		}
+		final long imgHandle = getImage().getImageHandle();
+		final int toRead = (int) Math.min(Math.min(len, buf.length), fileStarts[imgStarts.length] - offset);
+		int bytesRead = 0; // Bytes read so far
+		for (; range < imgStarts.length && bytesRead < toRead; range++) {
+			long offsetInRange = offset + bytesRead - fileStarts[range];
+			int lenToRead = (int) Math.min(fileStarts[range + 1] - fileStarts[range] - offsetInRange, toRead - bytesRead);
+			if (lenToRead <= 0) {
+				//empty range
+				continue;
+			}
+			// read straight into the caller's buffer
+			int lenRead = SleuthkitJNI.readImg(imgHandle, buf, bytesRead, imgStarts[range] + offsetInRange, lenToRead);
+			if (lenRead > 0) {
+				bytesRead += lenRead;
+			}
+			if (lenRead != lenToRead) { // If image read failed or was cut short
+				break;
+			}
+		}
+		return bytesRead;
+	}
 	
+	@Override
+	public int read(ByteBuffer dst, long offset) throws TskCoreException {
+		final long[] fileStarts = getRangeFileStarts();
+		final long[] imgStarts = getRangeImgStarts();
+		int range = findRange(fileStarts, offset);
+		if (range == -1) {
+			return 0;
+		}
+		final long imgHandle = getImage().getImageHandle();
+		final int limit = dst.limit();
+		int bytesRead = 0; // Bytes read so far
+		try {
+			for (; range < imgStarts.length && dst.hasRemaining(); range++) {
+				long offsetInRange = offset + bytesRead - fileStarts[range];
+				int lenToRead = (int) Math.min(fileStarts[range + 1] - fileStarts[range] - offsetInRange, dst.remaining());
+				if (lenToRead <= 0) {
+					//empty range
+					continue;
+				}
+				// read straight into the buffer, limited to this range
+				dst.limit(dst.position() + lenToRead);
+				int lenRead = SleuthkitJNI.readImg(imgHandle, dst, imgStarts[range] + offsetInRange);
+				dst.limit(limit);
+				if (lenRead > 0) {
+					bytesRead += lenRead;
+				}
+				if (lenRead != lenToRead) { // If image read failed or was cut short
+					break;
+				}
+			}
+		} finally {
+			dst.limit(limit);
+		}
+		return bytesRead;
+	}
+
+	/**
+	 * Reads all ranges in one call into the tsk core: each range is split at
+	 * the layout ranges it spans into runs of the image.
+	 */
+	@Override
+	public int readRanges(long[] offsets, int[] lengths, ByteBuffer dst) throws TskCoreException {
+		SleuthkitJNI.checkRuns(offsets, lengths, dst);
+		final long[] fileStarts = getRangeFileStarts();
+		final long[] imgStarts = getRangeImgStarts();
+		final long fileSize = fileStarts[imgStarts.length];
+		long[] runOffsets = new long[offsets.length];
+		int[] runLengths = new int[offsets.length];
+		int runs = 0;
+		for (int i = 0; i < offsets.length; i++) {
+			int range = findRange(fileStarts, offsets[i]);
+			if (range == -1) {
+				break;
+			}
+			//cut short at the end of the file, and stop after it
+			final long end = Math.min(offsets[i] + lengths[i], fileSize);
+			for (long pos = offsets[i]; pos < end; range++) {
+				int runLength = (int) (Math.min(fileStarts[range + 1], end) - pos);
+				if (runLength <= 0) {
+					//empty range
+					continue;
+				}
+				if (runs == runOffsets.length) {
+					runOffsets = Arrays.copyOf(runOffsets, runs * 2);
+					runLengths = Arrays.copyOf(runLengths, runs * 2);
+				}
+				runOffsets[runs] = imgStarts[range] + (pos - fileStarts[range]);
+				runLengths[runs] = runLength;
+				runs++;
+				pos += runLength;
+			}
+			if (end - offsets[i] < lengths[i]) {
+				break;
+			}
+		}
+		if (runs == 0) {
+			return 0;
+		}
+		return SleuthkitJNI.readImgV(getImage().getImageHandle(), Arrays.copyOf(runOffsets, runs),
+				Arrays.copyOf(runLengths, runs), dst);
+	}
+
 	/**
 	 * Convert an internal offset to an image offset
 	 * @param layoutOffset the offset in this layout file
-	 * @return the corresponding offset in the image
+	 * @return the corresponding offset in the image, or -1 if the offset is
+	 * not in the file or the ranges of the file could not be read
 	 */
 	public long convertToImgOffset(long layoutOffset) {
-		throw new UnsupportedOperationException("Not supported yet!");
+		try {
+			final long[] fileStarts = getRangeFileStarts();
+			int range = findRange(fileStarts, layoutOffset);
+			if (range == -1) {
+				return -1;
+			}
+			return getRangeImgStarts()[range] + (layoutOffset - fileStarts[range]);
+		} catch (TskCoreException ex) {
+			Logger.getLogger(LayoutFile.class.getName()).log(Level.WARNING, "Error getting layout content ranges", ex);
+			return -1;
+		}
 	}
-    
-	/*
-	 * Read bytes from an image into a buffer, starting at given position in buffer
-	 * 
-	 * @param imgHandle		the image to read from
-	 * @param buf			the array to read into
-	 * @param offsetInBuf	where to start in the array
-	 * @param offsetInImage	where to start in the image
-	 * @param lenToRead		how far to read in the image
-	 */
-    private int readImgToOffset(long imgHandle, byte[] buf, int offsetInBuf, long offsetInImage, int lenToRead) throws TskCoreException {
-        byte[] currentBuffer = new byte[lenToRead]; // the buffer for the current range object
-        int lenRead = SleuthkitJNI.readImg(imgHandle, currentBuffer, offsetInImage, lenToRead);
-        System.arraycopy(currentBuffer, 0, buf, offsetInBuf, lenToRead); // copy what we just read into the main buffer
-        return lenRead;
-    }
-
 
 	@Override
 	public <T> T accept(ContentVisitor<T> v) {
@@ -0,0 +1,209 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2012 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Reads a raw image, single or split, from memory mapped files instead of
+ * through the sleuthkit. The data is copied from the operating system cache
+ * straight to the caller's buffer, without a native call.
+ *
+ * The segments of the image are the files the sleuthkit found when it opened
+ * the image, in the same order. Each segment is mapped in chunks of at most
+ * MAP_CHUNK bytes, since a mapping is limited to 2 GB. Reads that cross the
+ * end of a chunk or segment are split.
+ *
+ * Mappings cannot be released explicitly in Java, they are unmapped when the
+ * buffers are garbage collected after the image was closed.
+ */
+final class MappedRawImage {
+
+	/**
+	 * Largest part of a segment mapped at once
+	 */
+	static final long MAP_CHUNK = 1L << 30;
+	private static final Logger logger = Logger.getLogger(MappedRawImage.class.getName());
+	//offset in the image of each segment, followed by the image size
+	private final long[] segmentStarts;
+	//chunks of each segment
+	private final MappedByteBuffer[][] chunks;
+	//size of the chunks, but the last one of each segment
+	private final long chunkSize;
+
+	private MappedRawImage(long[] segmentStarts, MappedByteBuffer[][] chunks, long chunkSize) {
+		this.segmentStarts = segmentStarts;
+		this.chunks = chunks;
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * Map the segments of an image, if it is a raw image of regular files
+	 *
+	 * @param imgHandle handle of the open image
+	 * @return the mapped image, or null if it is not raw or could not be
+	 * mapped, and must be read through the sleuthkit
+	 */
+	static MappedRawImage open(long imgHandle) {
+		String[] segments;
+		try {
+			segments = SleuthkitJNI.getRawImgSegments(imgHandle);
+		} catch (TskCoreException ex) {
+			logger.log(Level.WARNING, "Error getting the segments of a raw image", ex);
+			return null;
+		}
+		if (segments == null || segments.length == 0) {
+			return null;
+		}
+		return map(segments, MAP_CHUNK);
+	}
+
+	/**
+	 * Map the segments of a raw image
+	 *
+	 * @param segments paths of the segment files, in image order
+	 * @param chunkSize largest part of a segment mapped at once, at most
+	 * MAP_CHUNK
+	 * @return the mapped image, or null if a segment could not be mapped
+	 */
+	static MappedRawImage map(String[] segments, long chunkSize) {
+		long[] starts = new long[segments.length + 1];
+		MappedByteBuffer[][] chunks = new MappedByteBuffer[segments.length][];
+		try {
+			for (int i = 0; i < segments.length; i++) {
+				RandomAccessFile file = new RandomAccessFile(segments[i], "r");
+				try {
+					FileChannel channel = file.getChannel();
+					final long size = channel.size();
+					if (size <= 0) {
+						//a device or an empty segment, the sleuthkit knows its size
+						return null;
+					}
+					chunks[i] = new MappedByteBuffer[(int) ((size + chunkSize - 1) / chunkSize)];
+					for (int c = 0; c < chunks[i].length; c++) {
+						final long chunkStart = c * chunkSize;
+						chunks[i][c] = channel.map(FileChannel.MapMode.READ_ONLY, chunkStart, Math.min(chunkSize, size - chunkStart));
+					}
+					starts[i + 1] = starts[i] + size;
+				} finally {
+					//the mappings stay valid after the channel is closed
+					file.close();
+				}
+			}
+		} catch (IOException ex) {
+			logger.log(Level.INFO, "Could not map raw image " + segments[0] + ", reading it through the sleuthkit", ex);
+			return null;
+		}
+		return new MappedRawImage(starts, chunks, chunkSize);
+	}
+
+	/**
+	 * @return size of the image in bytes
+	 */
+	long getSize() {
+		return segmentStarts[segmentStarts.length - 1];
+	}
+
+	/**
+	 * Read from the image into the remaining space of the buffer, starting at
+	 * its position. The position is advanced by the number of bytes read.
+	 *
+	 * @param dst buffer to read to
+	 * @param offset byte offset in the image to start at
+	 * @return the number of bytes read, fewer than requested at the end of the
+	 * image
+	 * @throws TskCoreException thrown if the offset is beyond the end of the
+	 * image
+	 */
+	int read(ByteBuffer dst, long offset) throws TskCoreException {
+		final int len = checkOffset(offset, dst.remaining());
+		int total = 0;
+		while (total < len) {
+			ByteBuffer chunk = slice(offset + total, len - total);
+			total += chunk.remaining();
+			dst.put(chunk);
+		}
+		return total;
+	}
+
+	/**
+	 * Read from the image into a part of an array
+	 *
+	 * @param buf array to read to
+	 * @param bufOffset where in the array to start
+	 * @param offset byte offset in the image to start at
+	 * @param len number of bytes to read
+	 * @return the number of bytes read, fewer than requested at the end of the
+	 * image
+	 * @throws TskCoreException thrown if the offset is beyond the end of the
+	 * image
+	 */
+	int read(byte[] buf, int bufOffset, long offset, int len) throws TskCoreException {
+		len = checkOffset(offset, len);
+		int total = 0;
+		while (total < len) {
+			ByteBuffer chunk = slice(offset + total, len - total);
+			final int n = chunk.remaining();
+			chunk.get(buf, bufOffset + total, n);
+			total += n;
+		}
+		return total;
+	}
+
+	/**
+	 * Check a read like tsk_img_read() does
+	 *
+	 * @return the length of the read, cut at the end of the image
+	 */
+	private int checkOffset(long offset, int len) throws TskCoreException {
+		if (offset < 0 || offset >= getSize()) {
+			throw new TskCoreException("Offset is past the end of the image: " + offset);
+		}
+		return (int) Math.min(len, getSize() - offset);
+	}
+
+	/**
+	 * Get a view of the mapped data from an offset to the end of its chunk
+	 *
+	 * @param offset byte offset in the image, before its end
+	 * @param max maximum length of the view
+	 * @return view of the data, own to the calling thread
+	 */
+	private ByteBuffer slice(long offset, int max) {
+		int segment = Arrays.binarySearch(segmentStarts, offset);
+		if (segment < 0) {
+			segment = -segment - 2;
+		}
+		final long inSegment = offset - segmentStarts[segment];
+		final MappedByteBuffer chunk = chunks[segment][(int) (inSegment / chunkSize)];
+		final int inChunk = (int) (inSegment % chunkSize);
+		//the position of a shared buffer must not be changed
+		ByteBuffer view = chunk.duplicate();
+		view.position(inChunk);
+		view.limit((int) Math.min(chunk.capacity(), (long) inChunk + max));
+		return view;
+	}
+}
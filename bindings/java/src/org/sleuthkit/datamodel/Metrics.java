@@ -0,0 +1,363 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2012 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Metrics of the data model: how long case queries and writes take, how long
+ * the case locks are waited for and held, how many native reads are made and
+ * how many bytes they read, and the open native handles and cache hit ratios.
+ *
+ * Metrics are off by default; when off, each instrumented call costs one
+ * volatile read. Turn them on with setEnabled(), the MBean, or the system
+ * property org.sleuthkit.datamodel.metrics=true, which also registers the
+ * MBean. The metrics go to the registry set with setRegistry(), by default a
+ * DefaultMetricsRegistry.
+ *
+ * The metrics are named:
+ * <ul>
+ * <li>lock.read.wait, lock.read.hold, lock.write.wait, lock.write.hold:
+ * timers of the shared and exclusive case locks</li>
+ * <li>query.Class.method, write.Class.method: timers of the time the method
+ * held the shared or exclusive case lock, which covers the database work of
+ * SleuthkitCase methods. Finding the method costs a stack walk per call, so
+ * metrics are for diagnosis rather than to be left on.</li>
+ * <li>jni.readXNat.calls, jni.readXNat.bytes: counters of the native reads of
+ * SleuthkitJNI. Reads from mapped images and block cache hits make no native
+ * call.</li>
+ * <li>handles.*, cache.*: gauges of SleuthkitJNI and of the content caches of
+ * the open cases</li>
+ * </ul>
+ */
+public final class Metrics {
+
+	/**
+	 * Name the MBean is registered under
+	 */
+	public static final String MBEAN_NAME = "org.sleuthkit.datamodel:type=Metrics";
+	private static final String ENABLED_PROPERTY = "org.sleuthkit.datamodel.metrics";
+	private static final Logger logger = Logger.getLogger(Metrics.class.getName());
+	private static volatile boolean enabled;
+	private static volatile MetricsRegistry registry;
+	//incremented when enabled, so that locks taken before are not timed
+	private static volatile int generation;
+	private static final ThreadLocal<HeldLocks> heldLocks = new ThreadLocal<HeldLocks>() {
+		@Override
+		protected HeldLocks initialValue() {
+			return new HeldLocks();
+		}
+	};
+	private static final Set<SleuthkitCase> openCases = Collections.newSetFromMap(new WeakHashMap<SleuthkitCase, Boolean>());
+
+	static {
+		setRegistry(new DefaultMetricsRegistry());
+		if (Boolean.getBoolean(ENABLED_PROPERTY)) {
+			setEnabled(true);
+			registerMBean();
+		}
+	}
+
+	private Metrics() {
+	}
+
+	/**
+	 * @return true if the metrics are being collected
+	 */
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Start or stop collecting the metrics
+	 *
+	 * @param enabled true to collect the metrics
+	 */
+	public static synchronized void setEnabled(boolean enabled) {
+		if (enabled && !Metrics.enabled) {
+			generation++;
+		}
+		Metrics.enabled = enabled;
+	}
+
+	/**
+	 * @return the registry the metrics go to
+	 */
+	public static MetricsRegistry getRegistry() {
+		return registry;
+	}
+
+	/**
+	 * Send the metrics to another registry, adding the gauges to it
+	 *
+	 * @param registry the registry the metrics go to from now on
+	 */
+	public static synchronized void setRegistry(MetricsRegistry registry) {
+		if (registry == null) {
+			throw new IllegalArgumentException("registry is null");
+		}
+		for (BuiltInGauge gauge : BuiltInGauge.values()) {
+			registry.gauge(gauge.metricName, gauge);
+		}
+		Metrics.registry = registry;
+	}
+
+	/**
+	 * Register the MBean of the metrics with the platform MBean server, if not
+	 * registered yet. Errors are logged.
+	 */
+	public static synchronized void registerMBean() {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			server.registerMBean(new MBean(), new ObjectName(MBEAN_NAME));
+		} catch (InstanceAlreadyExistsException ex) {
+			//registered before
+		} catch (JMException ex) {
+			logger.log(Level.WARNING, "Could not register the metrics MBean", ex);
+		}
+	}
+
+	/**
+	 * @return the values of the registry as text, one "name value" per line
+	 */
+	public static String dump() {
+		StringBuilder dump = new StringBuilder();
+		for (Map.Entry<String, Double> value : registry.snapshot().entrySet()) {
+			dump.append(value.getKey()).append(' ').append(value.getValue()).append('\n');
+		}
+		return dump.toString();
+	}
+
+	/**
+	 * Record a lock taken by the thread, called only when enabled
+	 *
+	 * @param write true for the exclusive lock
+	 * @param requested System.nanoTime() before waiting for the lock
+	 */
+	static void lockAcquired(boolean write, long requested) {
+		final long now = System.nanoTime();
+		registry.timer(write ? "lock.write.wait" : "lock.read.wait").record(now - requested);
+		heldLocks.get().push(now, generation);
+	}
+
+	/**
+	 * Record a lock released by the thread, called only when enabled. Times
+	 * the hold against the lock and against the method that released it.
+	 *
+	 * @param write true for the exclusive lock
+	 */
+	static void lockReleased(boolean write) {
+		final HeldLocks held = heldLocks.get();
+		if (held.depth == 0) {
+			//taken while disabled
+			return;
+		}
+		held.depth--;
+		if (held.generations[held.depth] != generation) {
+			return;
+		}
+		final long holdNanos = System.nanoTime() - held.starts[held.depth];
+		final MetricsRegistry current = registry;
+		current.timer(write ? "lock.write.hold" : "lock.read.hold").record(holdNanos);
+		current.timer((write ? "write." : "query.") + lockingMethod()).record(holdNanos);
+	}
+
+	/**
+	 * Count a native read, called only when enabled
+	 *
+	 * @param nativeName name of the native method
+	 * @param bytesRead bytes read, or -1
+	 */
+	static void nativeRead(String nativeName, int bytesRead) {
+		final MetricsRegistry current = registry;
+		current.counter("jni." + nativeName + ".calls").add(1);
+		if (bytesRead > 0) {
+			current.counter("jni." + nativeName + ".bytes").add(bytesRead);
+		}
+	}
+
+	/**
+	 * Include the content cache of a case in the cache.content gauges
+	 */
+	static void caseOpened(SleuthkitCase sk) {
+		synchronized (openCases) {
+			openCases.add(sk);
+		}
+	}
+
+	static void caseClosed(SleuthkitCase sk) {
+		synchronized (openCases) {
+			openCases.remove(sk);
+		}
+	}
+
+	/**
+	 * @return Class.method of the caller of the lock release method
+	 */
+	private static String lockingMethod() {
+		for (StackTraceElement frame : new Throwable().getStackTrace()) {
+			final String className = frame.getClassName();
+			if (className.equals(Metrics.class.getName())
+					|| (className.equals(SleuthkitCase.class.getName()) && frame.getMethodName().startsWith("release"))) {
+				continue;
+			}
+			return className.substring(className.lastIndexOf('.') + 1) + "." + frame.getMethodName();
+		}
+		return "unknown";
+	}
+
+	/**
+	 * Start times of the case locks held by a thread, innermost last
+	 */
+	private static final class HeldLocks {
+
+		//locks are reentrant, guards against locks never released
+		private static final int MAX_DEPTH = 64;
+		private long[] starts = new long[8];
+		private int[] generations = new int[8];
+		private int depth;
+
+		void push(long start, int generation) {
+			if (depth == MAX_DEPTH) {
+				depth = 0;
+			}
+			if (depth == starts.length) {
+				starts = Arrays.copyOf(starts, depth * 2);
+				generations = Arrays.copyOf(generations, depth * 2);
+			}
+			starts[depth] = start;
+			generations[depth] = generation;
+			depth++;
+		}
+	}
+
+	/**
+	 * Gauges of the native handles and the caches
+	 */
+	private enum BuiltInGauge implements MetricsRegistry.Gauge {
+
+		IMAGE_HANDLES("handles.image"),
+		VS_HANDLES("handles.vs"),
+		FS_HANDLES("handles.fs"),
+		FILE_HANDLES("handles.file"),
+		HANDLE_NATIVE_BYTES("handles.nativeBytes"),
+		POOLED_FILE_HANDLES("handles.pooledFile"),
+		FILE_HANDLE_POOL_HIT_RATIO("cache.fileHandlePool.hitRatio"),
+		BLOCK_CACHE_USED_BYTES("cache.block.usedBytes"),
+		BLOCK_CACHE_HIT_RATIO("cache.block.hitRatio"),
+		CONTENT_CACHE_SIZE("cache.content.size"),
+		CONTENT_CACHE_HIT_RATIO("cache.content.hitRatio");
+		private final String metricName;
+
+		private BuiltInGauge(String metricName) {
+			this.metricName = metricName;
+		}
+
+		@Override
+		public double value() {
+			switch (this) {
+				case IMAGE_HANDLES:
+					return SleuthkitJNI.getOpenImageHandleCount();
+				case VS_HANDLES:
+					return SleuthkitJNI.getOpenVsHandleCount();
+				case FS_HANDLES:
+					return SleuthkitJNI.getOpenFsHandleCount();
+				case FILE_HANDLES:
+					return SleuthkitJNI.getOpenFileHandleCount();
+				case HANDLE_NATIVE_BYTES:
+					return SleuthkitJNI.getOpenHandleNativeBytes();
+				case POOLED_FILE_HANDLES:
+					return SleuthkitJNI.getPooledFileHandleCount();
+				case FILE_HANDLE_POOL_HIT_RATIO:
+					return SleuthkitJNI.getFileHandlePoolHitRatio();
+				case BLOCK_CACHE_USED_BYTES:
+					return SleuthkitJNI.getBlockCacheUsedBytes();
+				case BLOCK_CACHE_HIT_RATIO:
+					return SleuthkitJNI.getBlockCacheHitRatio();
+				default:
+					return contentCacheValue(this == CONTENT_CACHE_SIZE);
+			}
+		}
+
+		/**
+		 * @param size true for the total size, false for the hit ratio
+		 * @return the value over the content caches of the open cases
+		 */
+		private static double contentCacheValue(boolean size) {
+			List<SleuthkitCase> cases;
+			synchronized (openCases) {
+				cases = new ArrayList<SleuthkitCase>(openCases);
+			}
+			long entries = 0;
+			long hits = 0;
+			long misses = 0;
+			for (SleuthkitCase sk : cases) {
+				final ContentCache cache = sk.getContentCache();
+				entries += cache.size();
+				hits += cache.getHitCount();
+				misses += cache.getMissCount();
+			}
+			if (size) {
+				return entries;
+			}
+			return hits + misses == 0 ? 0 : hits / (double) (hits + misses);
+		}
+	}
+
+	private static final class MBean implements MetricsMXBean {
+
+		@Override
+		public boolean isEnabled() {
+			return Metrics.isEnabled();
+		}
+
+		@Override
+		public void setEnabled(boolean enabled) {
+			Metrics.setEnabled(enabled);
+		}
+
+		@Override
+		public Map<String, Double> getValues() {
+			return registry.snapshot();
+		}
+
+		@Override
+		public void reset() {
+			registry.reset();
+		}
+
+		@Override
+		public String dump() {
+			return Metrics.dump();
+		}
+	}
+}
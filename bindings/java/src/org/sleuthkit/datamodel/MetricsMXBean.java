@@ -0,0 +1,53 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2012 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.util.Map;
+
+/**
+ * Management interface of the data model metrics, registered by
+ * Metrics.registerMBean() under the name Metrics.MBEAN_NAME
+ */
+public interface MetricsMXBean {
+
+	/**
+	 * @return true if the metrics are being collected
+	 */
+	boolean isEnabled();
+
+	/**
+	 * @param enabled true to collect the metrics
+	 */
+	void setEnabled(boolean enabled);
+
+	/**
+	 * @return the values of the metrics registry by name
+	 */
+	Map<String, Double> getValues();
+
+	/**
+	 * Reset the timers and counters
+	 */
+	void reset();
+
+	/**
+	 * @return the values of the metrics registry as text, one per line
+	 */
+	String dump();
+}
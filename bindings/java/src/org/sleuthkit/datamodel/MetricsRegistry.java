@@ -0,0 +1,99 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2012 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.util.Map;
+
+/**
+ * Receives the metrics of the data model, see Metrics. Implement it to send
+ * the metrics to another metrics library; DefaultMetricsRegistry keeps them
+ * in memory.
+ *
+ * Metrics are looked up by name on every update, so implementations should
+ * return the same object for a name and look it up without locking.
+ */
+public interface MetricsRegistry {
+
+	/**
+	 * Distribution of durations
+	 */
+	interface Timer {
+
+		/**
+		 * @param nanos a duration in nanoseconds
+		 */
+		void record(long nanos);
+	}
+
+	/**
+	 * Count of events or bytes
+	 */
+	interface Counter {
+
+		/**
+		 * @param n amount to add
+		 */
+		void add(long n);
+	}
+
+	/**
+	 * Value read when the metrics are collected
+	 */
+	interface Gauge {
+
+		/**
+		 * @return the current value
+		 */
+		double value();
+	}
+
+	/**
+	 * @param name name of the timer
+	 * @return the timer of the name, created if needed
+	 */
+	Timer timer(String name);
+
+	/**
+	 * @param name name of the counter
+	 * @return the counter of the name, created if needed
+	 */
+	Counter counter(String name);
+
+	/**
+	 * Add a gauge, replacing one of the same name
+	 *
+	 * @param name name of the gauge
+	 * @param gauge the gauge
+	 */
+	void gauge(String name, Gauge gauge);
+
+	/**
+	 * Get the current values of all metrics, for the MBean and dumps. A timer
+	 * gives several values, named after it.
+	 *
+	 * @return value of each metric by name, empty if the registry does not
+	 * keep values
+	 */
+	Map<String, Double> snapshot();
+
+	/**
+	 * Reset the timers and counters
+	 */
+	void reset();
+}
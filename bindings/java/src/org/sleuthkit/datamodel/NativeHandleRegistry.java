@@ -0,0 +1,743 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2012 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Reference counted registry of the native image and file system handles
+ * opened through SleuthkitJNI.
+ *
+ * Opening an image (or a file system in it) that is already open returns the
+ * same handle and counts one more user. Volume system and file handles count
+ * as users of the image and file system they were opened from. A handle with
+ * no users is idle: it stays open for reuse until it has been idle longer than
+ * the idle timeout, or until more images than the idle limit are idle, in which
+ * case the least recently used ones are closed. File handles kept open by the
+ * FileHandlePool are closed once not read for the idle timeout too, so they do
+ * not keep their file system open; the file system then counts as last used
+ * when the handle was last read.
+ *
+ * Each image has its own monitor, so opening different images does not
+ * contend. The monitor of an image is always taken before the monitor of one
+ * of its file systems.
+ *
+ * Reads on one native image handle are serialized by its lock and share its
+ * read cache. With more than one stripe, reads are spread over several
+ * independently opened handles of the same image (and of its file systems):
+ * each thread is assigned a stripe, and reads through a handle are redirected
+ * to the handle of the stripe of the calling thread. The stripes are opened on
+ * first use and closed together with the handle.
+ */
+final class NativeHandleRegistry {
+
+	/**
+	 * Default number of idle images kept open
+	 */
+	static final int DEFAULT_MAX_IDLE_IMAGES = 16;
+	/**
+	 * Default time an idle handle is kept open, in milliseconds
+	 */
+	static final long DEFAULT_IDLE_TIMEOUT = 5 * 60 * 1000;
+	private static final Logger logger = Logger.getLogger(NativeHandleRegistry.class.getName());
+	private final ConcurrentMap<String, ImageEntry> imagesByKey = new ConcurrentHashMap<String, ImageEntry>();
+	private final ConcurrentMap<Long, ImageEntry> imagesByHandle = new ConcurrentHashMap<Long, ImageEntry>();
+	private final ConcurrentMap<Long, FsEntry> fileSystemsByHandle = new ConcurrentHashMap<Long, FsEntry>();
+	//volume system handles, with the image they were opened from
+	private final ConcurrentMap<Long, ImageEntry> volumeSystems = new ConcurrentHashMap<Long, ImageEntry>();
+	//file handles, with the file system they were opened from
+	private final ConcurrentMap<Long, FsEntry> files = new ConcurrentHashMap<Long, FsEntry>();
+	private volatile int maxIdleImages = DEFAULT_MAX_IDLE_IMAGES;
+	private volatile long idleTimeout = DEFAULT_IDLE_TIMEOUT;
+	//number of handles reads of an image are spread over
+	private volatile int stripes = 1;
+	//map raw images when they are opened
+	private volatile boolean mappedRawReads = true;
+	private final AtomicInteger nextThreadStripe = new AtomicInteger();
+	private final ThreadLocal<Integer> threadStripe = new ThreadLocal<Integer>() {
+		@Override
+		protected Integer initialValue() {
+			return nextThreadStripe.getAndIncrement() & Integer.MAX_VALUE;
+		}
+	};
+	private ScheduledExecutorService sweeper;
+	//size of the fixed part of the native structures, looked up on first use
+	private long imageInfoSize = -1;
+	private long fsInfoSize = -1;
+	//pooled file handles, users of their file systems while open
+	private final FileHandlePool filePool;
+
+	/**
+	 * @param filePool pool of the file handles opened from the file systems
+	 */
+	NativeHandleRegistry(FileHandlePool filePool) {
+		this.filePool = filePool;
+	}
+
+	/**
+	 * An open image handle and the file systems opened in it
+	 */
+	private static class ImageEntry {
+
+		final String key;
+		final String[] paths;
+		long handle = 0;
+		//handles by stripe, the first is the handle itself, 0 if not opened
+		volatile long[] stripes = new long[0];
+		//the image read from mapped files, null if read through the handles
+		volatile MappedRawImage mapped;
+		//openImage() references and open volume systems
+		int users = 0;
+		long lastUsed;
+		boolean closed = false;
+		final Map<Long, FsEntry> fileSystems = new HashMap<Long, FsEntry>();
+
+		ImageEntry(String key, String[] paths) {
+			this.key = key;
+			this.paths = paths.clone();
+		}
+
+		/**
+		 * Call with the monitor of the entry held
+		 */
+		boolean isIdle() {
+			if (users > 0) {
+				return false;
+			}
+			for (FsEntry fs : fileSystems.values()) {
+				synchronized (fs) {
+					if (fs.users > 0) {
+						return false;
+					}
+				}
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * An open file system handle
+	 */
+	private static class FsEntry {
+
+		final ImageEntry image;
+		final long offset;
+		final long handle;
+		//openFs() references and open files
+		int users = 0;
+		long lastUsed;
+		//handles by stripe, guarded by the image monitor for writes
+		volatile long[] stripes;
+
+		FsEntry(ImageEntry image, long offset, long handle) {
+			this.image = image;
+			this.offset = offset;
+			this.handle = handle;
+			this.stripes = new long[]{handle};
+		}
+	}
+
+	/**
+	 * Open an image, or get the handle of the already open image
+	 *
+	 * @param imageFiles paths of the image files
+	 * @return the image handle, counted as one user until released
+	 * @throws TskCoreException thrown if the image could not be opened
+	 */
+	long openImage(String[] imageFiles) throws TskCoreException {
+		StringBuilder keyBuilder = new StringBuilder();
+		for (String imageFile : imageFiles) {
+			keyBuilder.append(imageFile).append('\n');
+		}
+		final String key = keyBuilder.toString();
+
+		while (true) {
+			ImageEntry entry = imagesByKey.get(key);
+			if (entry == null) {
+				ImageEntry created = new ImageEntry(key, imageFiles);
+				entry = imagesByKey.putIfAbsent(key, created);
+				if (entry == null) {
+					entry = created;
+				}
+			}
+			synchronized (entry) {
+				if (entry.closed) {
+					//evicted in the meantime, open it again
+					continue;
+				}
+				if (entry.handle == 0) {
+					try {
+						entry.handle = SleuthkitJNI.openImgNat(imageFiles, imageFiles.length);
+					} catch (TskCoreException ex) {
+						entry.closed = true;
+						imagesByKey.remove(key, entry);
+						throw ex;
+					}
+					entry.stripes = new long[]{entry.handle};
+					if (mappedRawReads) {
+						entry.mapped = MappedRawImage.open(entry.handle);
+					}
+					imagesByHandle.put(entry.handle, entry);
+					startSweeper();
+				}
+				entry.users++;
+				entry.lastUsed = System.currentTimeMillis();
+				return entry.handle;
+			}
+		}
+	}
+
+	/**
+	 * Release one user of an image handle
+	 *
+	 * @param imgHandle the image handle
+	 */
+	void releaseImage(long imgHandle) {
+		ImageEntry entry = imagesByHandle.get(imgHandle);
+		if (entry == null) {
+			logger.log(Level.WARNING, "Release of unknown image handle {0}", imgHandle);
+			return;
+		}
+		synchronized (entry) {
+			if (entry.users > 0) {
+				entry.users--;
+			}
+			entry.lastUsed = System.currentTimeMillis();
+		}
+		evictIdle(false);
+	}
+
+	/**
+	 * Open a file system in an open image, or get the handle of the already
+	 * open file system
+	 *
+	 * @param imgHandle handle of the image
+	 * @param fsOffset byte offset of the file system in the image
+	 * @return the file system handle, counted as one user until released
+	 * @throws TskCoreException thrown if the image handle is unknown or the
+	 * file system could not be opened
+	 */
+	long openFs(long imgHandle, long fsOffset) throws TskCoreException {
+		ImageEntry image = imagesByHandle.get(imgHandle);
+		if (image == null) {
+			throw new TskCoreException("Unknown image handle: " + imgHandle);
+		}
+		synchronized (image) {
+			if (image.closed) {
+				throw new TskCoreException("Image handle is closed: " + imgHandle);
+			}
+			FsEntry fs = image.fileSystems.get(fsOffset);
+			if (fs == null) {
+				fs = new FsEntry(image, fsOffset, SleuthkitJNI.openFsNat(imgHandle, fsOffset));
+				image.fileSystems.put(fsOffset, fs);
+				fileSystemsByHandle.put(fs.handle, fs);
+			}
+			final long now = System.currentTimeMillis();
+			image.lastUsed = now;
+			synchronized (fs) {
+				fs.users++;
+				fs.lastUsed = now;
+			}
+			return fs.handle;
+		}
+	}
+
+	/**
+	 * Release one user of a file system handle
+	 *
+	 * @param fsHandle the file system handle
+	 */
+	void releaseFs(long fsHandle) {
+		FsEntry fs = fileSystemsByHandle.get(fsHandle);
+		if (fs == null) {
+			logger.log(Level.WARNING, "Release of unknown file system handle {0}", fsHandle);
+			return;
+		}
+		releaseFsUser(fs, System.currentTimeMillis());
+		evictIdle(false);
+	}
+
+	/**
+	 * Set the number of handles the reads of each image are spread over
+	 *
+	 * @param stripes number of handles per image and file system, 1 to read
+	 * through the handle itself
+	 */
+	void setStripes(int stripes) {
+		if (stripes < 1) {
+			throw new IllegalArgumentException("Number of handle stripes must be at least 1");
+		}
+		this.stripes = stripes;
+	}
+
+	/**
+	 * @return number of handles the reads of each image are spread over
+	 */
+	int getStripes() {
+		return stripes;
+	}
+
+	/**
+	 * Set whether raw images are mapped when they are opened
+	 *
+	 * @param enabled true to map the raw images opened from now on
+	 */
+	void setMappedRawReads(boolean enabled) {
+		this.mappedRawReads = enabled;
+	}
+
+	/**
+	 * @return true if raw images are mapped when they are opened
+	 */
+	boolean isMappedRawReads() {
+		return mappedRawReads;
+	}
+
+	/**
+	 * Get the mapped files of an image
+	 *
+	 * @param imgHandle handle returned by openImage()
+	 * @return the mapped image, null if the image is read through its handles
+	 */
+	MappedRawImage getMappedImage(long imgHandle) {
+		ImageEntry image = imagesByHandle.get(imgHandle);
+		return image == null ? null : image.mapped;
+	}
+
+	/**
+	 * Get the image handle to read through in the calling thread
+	 *
+	 * @param imgHandle handle returned by openImage()
+	 * @return the handle of the stripe of the thread, the handle itself if
+	 * striping is off or the handle is unknown
+	 * @throws TskCoreException thrown if the stripe could not be opened
+	 */
+	long getReadImageHandle(long imgHandle) throws TskCoreException {
+		final int stripe = currentStripe();
+		if (stripe == 0) {
+			return imgHandle;
+		}
+		ImageEntry image = imagesByHandle.get(imgHandle);
+		if (image == null) {
+			return imgHandle;
+		}
+		long[] handles = image.stripes;
+		if (stripe < handles.length && handles[stripe] != 0) {
+			return handles[stripe];
+		}
+		synchronized (image) {
+			if (image.closed) {
+				return imgHandle;
+			}
+			return openImageStripe(image, stripe);
+		}
+	}
+
+	/**
+	 * Get the file system handle to read through in the calling thread
+	 *
+	 * @param fsHandle handle returned by openFs()
+	 * @return the handle of the stripe of the thread, the handle itself if
+	 * striping is off or the handle is unknown
+	 * @throws TskCoreException thrown if the stripe could not be opened
+	 */
+	long getReadFsHandle(long fsHandle) throws TskCoreException {
+		final int stripe = currentStripe();
+		if (stripe == 0) {
+			return fsHandle;
+		}
+		FsEntry fs = fileSystemsByHandle.get(fsHandle);
+		if (fs == null) {
+			return fsHandle;
+		}
+		long[] handles = fs.stripes;
+		if (stripe < handles.length && handles[stripe] != 0) {
+			return handles[stripe];
+		}
+		synchronized (fs.image) {
+			if (fs.image.closed || fs.image.fileSystems.get(fs.offset) != fs) {
+				return fsHandle;
+			}
+			handles = fs.stripes;
+			if (stripe < handles.length && handles[stripe] != 0) {
+				return handles[stripe];
+			}
+			long stripeHandle = SleuthkitJNI.openFsNat(openImageStripe(fs.image, stripe), fs.offset);
+			fs.stripes = withStripe(handles, stripe, stripeHandle);
+			//files opened through the stripe count as users of the file system
+			fileSystemsByHandle.put(stripeHandle, fs);
+			return stripeHandle;
+		}
+	}
+
+	/**
+	 * Get the open stripes of a file system handle
+	 *
+	 * @param fsHandle handle returned by openFs()
+	 * @return the handle itself and its open stripes
+	 */
+	long[] getFsStripes(long fsHandle) {
+		FsEntry fs = fileSystemsByHandle.get(fsHandle);
+		if (fs == null) {
+			return new long[]{fsHandle};
+		}
+		long[] handles = fs.stripes;
+		long[] open = new long[handles.length];
+		int count = 0;
+		for (long handle : handles) {
+			if (handle != 0) {
+				open[count++] = handle;
+			}
+		}
+		return Arrays.copyOf(open, count);
+	}
+
+	private int currentStripe() {
+		final int count = stripes;
+		return count == 1 ? 0 : threadStripe.get() % count;
+	}
+
+	/**
+	 * Get or open the handle of a stripe of an image. Call with the monitor
+	 * of the image held.
+	 */
+	private long openImageStripe(ImageEntry image, int stripe) throws TskCoreException {
+		long[] handles = image.stripes;
+		if (stripe < handles.length && handles[stripe] != 0) {
+			return handles[stripe];
+		}
+		long stripeHandle = SleuthkitJNI.openImgNat(image.paths, image.paths.length);
+		image.stripes = withStripe(handles, stripe, stripeHandle);
+		return stripeHandle;
+	}
+
+	/**
+	 * Copy the handles of the stripes, adding one. The arrays are replaced
+	 * rather than changed, so they can be read without locking.
+	 */
+	private static long[] withStripe(long[] handles, int stripe, long handle) {
+		long[] copy = Arrays.copyOf(handles, Math.max(handles.length, stripe + 1));
+		copy[stripe] = handle;
+		return copy;
+	}
+
+	/**
+	 * Count a volume system handle as a user of its image
+	 *
+	 * @param imgHandle image the volume system was opened from
+	 * @param vsHandle the volume system handle
+	 */
+	void addVolumeSystem(long imgHandle, long vsHandle) {
+		ImageEntry image = imagesByHandle.get(imgHandle);
+		if (image == null) {
+			return;
+		}
+		synchronized (image) {
+			image.users++;
+			image.lastUsed = System.currentTimeMillis();
+		}
+		volumeSystems.put(vsHandle, image);
+	}
+
+	/**
+	 * Remove a closed volume system handle
+	 *
+	 * @param vsHandle the volume system handle
+	 */
+	void removeVolumeSystem(long vsHandle) {
+		ImageEntry image = volumeSystems.remove(vsHandle);
+		if (image == null) {
+			return;
+		}
+		synchronized (image) {
+			if (image.users > 0) {
+				image.users--;
+			}
+			image.lastUsed = System.currentTimeMillis();
+		}
+	}
+
+	/**
+	 * Count a file handle as a user of its file system
+	 *
+	 * @param fsHandle file system the file was opened from
+	 * @param fileHandle the file handle
+	 */
+	void addFile(long fsHandle, long fileHandle) {
+		FsEntry fs = fileSystemsByHandle.get(fsHandle);
+		if (fs == null) {
+			return;
+		}
+		synchronized (fs) {
+			fs.users++;
+			fs.lastUsed = System.currentTimeMillis();
+		}
+		files.put(fileHandle, fs);
+	}
+
+	/**
+	 * Remove a closed file handle
+	 *
+	 * @param fileHandle the file handle
+	 * @param lastUsed time in milliseconds the handle was last used
+	 */
+	void removeFile(long fileHandle, long lastUsed) {
+		FsEntry fs = files.remove(fileHandle);
+		if (fs != null) {
+			releaseFsUser(fs, lastUsed);
+		}
+	}
+
+	private static void releaseFsUser(FsEntry fs, long lastUsed) {
+		synchronized (fs) {
+			if (fs.users > 0) {
+				fs.users--;
+			}
+			fs.lastUsed = Math.max(fs.lastUsed, lastUsed);
+		}
+	}
+
+	/**
+	 * Set the eviction limits
+	 *
+	 * @param maxIdleImages number of idle images kept open
+	 * @param idleTimeout time in milliseconds after which idle handles are
+	 * closed
+	 */
+	void setLimits(int maxIdleImages, long idleTimeout) {
+		if (maxIdleImages < 0 || idleTimeout <= 0) {
+			throw new IllegalArgumentException("Invalid handle cache limits");
+		}
+		this.maxIdleImages = maxIdleImages;
+		this.idleTimeout = idleTimeout;
+		evictIdle(false);
+	}
+
+	/**
+	 * Close all idle handles now
+	 */
+	void closeIdle() {
+		evictIdle(true);
+	}
+
+	/**
+	 * @return number of open image handles
+	 */
+	int getImageHandleCount() {
+		return imagesByHandle.size();
+	}
+
+	/**
+	 * @return number of open file system handles
+	 */
+	int getFsHandleCount() {
+		return fileSystemsByHandle.size();
+	}
+
+	/**
+	 * @return number of open volume system handles
+	 */
+	int getVsHandleCount() {
+		return volumeSystems.size();
+	}
+
+	/**
+	 * @return number of open file handles
+	 */
+	int getFileHandleCount() {
+		return files.size();
+	}
+
+	/**
+	 * Estimate the native memory held by the open image and file system
+	 * handles, from the size of their fixed structures (dominated by the read
+	 * cache of each image). Memory allocated by the file system type specific
+	 * code is not included.
+	 *
+	 * @return bytes held
+	 */
+	long getNativeBytes() {
+		synchronized (this) {
+			if (imageInfoSize < 0) {
+				imageInfoSize = SleuthkitJNI.getImgInfoSizeNat();
+				fsInfoSize = SleuthkitJNI.getFsInfoSizeNat();
+			}
+		}
+		long imageHandles = 0;
+		for (ImageEntry image : imagesByHandle.values()) {
+			for (long handle : image.stripes) {
+				if (handle != 0) {
+					imageHandles++;
+				}
+			}
+		}
+		//includes the file system stripes
+		return imageHandles * imageInfoSize + fileSystemsByHandle.size() * fsInfoSize;
+	}
+
+	/**
+	 * Close the handles that were idle too long, and the least recently used
+	 * idle images beyond the idle limit
+	 *
+	 * @param all true to close all idle handles
+	 */
+	private void evictIdle(boolean all) {
+		final long now = System.currentTimeMillis();
+		final long expired = all ? Long.MAX_VALUE : now - idleTimeout;
+		//before the image monitors are taken, closing a file takes the
+		//monitor of its file system
+		filePool.closeIdle(expired);
+		final List<ImageEntry> idle = new ArrayList<ImageEntry>();
+		final Map<ImageEntry, Long> idleSince = new HashMap<ImageEntry, Long>();
+		for (ImageEntry image : imagesByHandle.values()) {
+			synchronized (image) {
+				if (image.closed) {
+					continue;
+				}
+				if (image.isIdle()) {
+					if (image.lastUsed <= expired) {
+						closeImage(image);
+					} else {
+						idle.add(image);
+						idleSince.put(image, image.lastUsed);
+					}
+				} else {
+					closeIdleFileSystems(image, expired);
+				}
+			}
+		}
+
+		if (idle.size() <= maxIdleImages) {
+			return;
+		}
+		Collections.sort(idle, new Comparator<ImageEntry>() {
+			@Override
+			public int compare(ImageEntry a, ImageEntry b) {
+				return idleSince.get(a).compareTo(idleSince.get(b));
+			}
+		});
+		for (ImageEntry image : idle.subList(0, idle.size() - maxIdleImages)) {
+			synchronized (image) {
+				//may have been used again since
+				if (!image.closed && image.isIdle()) {
+					closeImage(image);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Close an idle image and its file systems. Call with the monitor of the
+	 * image held.
+	 */
+	private void closeImage(ImageEntry image) {
+		for (FsEntry fs : image.fileSystems.values()) {
+			closeFs(fs);
+		}
+		image.fileSystems.clear();
+		//unregister first, the native pointer can be reused once closed
+		image.closed = true;
+		imagesByHandle.remove(image.handle);
+		imagesByKey.remove(image.key, image);
+		image.mapped = null;
+		SleuthkitJNI.invalidateBlockCache(image.handle);
+		for (long handle : image.stripes) {
+			if (handle != 0) {
+				SleuthkitJNI.closeImgNat(handle);
+			}
+		}
+		image.stripes = new long[0];
+	}
+
+	/**
+	 * Close a file system and its stripes. Call with the monitor of its image
+	 * held.
+	 */
+	private void closeFs(FsEntry fs) {
+		long[] handles = fs.stripes;
+		fs.stripes = new long[0];
+		for (long handle : handles) {
+			if (handle != 0) {
+				fileSystemsByHandle.remove(handle);
+				SleuthkitJNI.closeFsNat(handle);
+			}
+		}
+	}
+
+	/**
+	 * Close the file systems of an image in use that were idle too long. Call
+	 * with the monitor of the image held.
+	 */
+	private void closeIdleFileSystems(ImageEntry image, long expired) {
+		Iterator<FsEntry> it = image.fileSystems.values().iterator();
+		while (it.hasNext()) {
+			FsEntry fs = it.next();
+			synchronized (fs) {
+				if (fs.users == 0 && fs.lastUsed <= expired) {
+					it.remove();
+					closeFs(fs);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Start the daemon thread that closes handles after the idle timeout
+	 */
+	private synchronized void startSweeper() {
+		if (sweeper != null) {
+			return;
+		}
+		sweeper = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "NativeHandleSweeper");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		final long period = Math.max(1000, Math.min(30 * 1000, idleTimeout / 2));
+		sweeper.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					evictIdle(false);
+				} catch (RuntimeException ex) {
+					logger.log(Level.WARNING, "Error closing idle native handles", ex);
+				}
+			}
+		}, period, period, TimeUnit.MILLISECONDS);
+	}
+}
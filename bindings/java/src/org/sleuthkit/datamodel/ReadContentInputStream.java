@@ -25,24 +25,100 @@ import java.util.logging.Logger;
 
 /**
  * InputStream to read bytes from a Content object's data
+ *
+ * Data is read ahead from the content in windows aligned to the block size of
+ * the content (the file system block size for file system content), so that
+ * small reads, skip() and reset() within the window are served from memory.
+ * Reads larger than the window go directly to the caller's buffer.
  */
 public class ReadContentInputStream extends InputStream {
 
+	/**
+	 * Default size of the read-ahead window, in bytes
+	 */
+	public static final int DEFAULT_WINDOW_SIZE = 64 * 1024;
+	private static final int DEFAULT_BLOCK_SIZE = 512;
 	private long position;
 	private long length;
 	private Content content;
+	private final long blockSize;
+	//read-ahead window, holds bufferLen bytes of the content from bufferStart
+	private final byte[] buffer;
+	private long bufferStart = 0;
+	private int bufferLen = 0;
+	private long markPosition = 0;
 	private static final Logger logger = Logger.getLogger(ReadContentInputStream.class.getName());
 
 	public ReadContentInputStream(Content content) {
+		this(content, DEFAULT_WINDOW_SIZE);
+	}
+
+	/**
+	 * Create a stream with the given read-ahead window, aligned to the block
+	 * size of the content
+	 *
+	 * @param content content to read
+	 * @param windowSize read-ahead window in bytes, rounded up to a multiple
+	 * of the block size
+	 */
+	public ReadContentInputStream(Content content, int windowSize) {
+		this(content, windowSize, getBlockSize(content));
+	}
+
+	/**
+	 * Create a stream with the given read-ahead window and alignment
+	 *
+	 * @param content content to read
+	 * @param windowSize read-ahead window in bytes, rounded up to a multiple
+	 * of the block size
+	 * @param blockSize alignment of the reads in the content, in bytes
+	 */
+	public ReadContentInputStream(Content content, int windowSize, long blockSize) {
+		if (windowSize <= 0 || blockSize <= 0) {
+			throw new IllegalArgumentException("Window and block size must be positive");
+		}
 		this.content = content;
 		this.position = 0;
 		this.length = content.getSize();
+		this.blockSize = blockSize;
+		long window = (windowSize + blockSize - 1) / blockSize * blockSize;
+		if (window > Integer.MAX_VALUE) {
+			window = windowSize;
+		}
+		//no need for a window larger than the content
+		if (length > 0 && window > length) {
+			window = length;
+		}
+		this.buffer = new byte[(int) Math.max(window, 1)];
+	}
+
+	/**
+	 * Get the block size to align reads of the content to
+	 *
+	 * @param content content to read
+	 * @return the file system block size for file system content, otherwise
+	 * the sector size
+	 */
+	private static long getBlockSize(Content content) {
+		if (content instanceof FsContent) {
+			try {
+				long fsBlockSize = ((FsContent) content).getFileSystem().getBlock_size();
+				if (fsBlockSize > 0) {
+					return fsBlockSize;
+				}
+			} catch (TskCoreException ex) {
+				logger.log(Level.INFO, "Could not get the file system block size of " + content.getId(), ex);
+			}
+		}
+		return DEFAULT_BLOCK_SIZE;
 	}
 
 	@Override
 	public int read() throws IOException {
-		byte[] buff = new byte[1];
-		return (read(buff) != -1) ? buff[0] : -1;
+		if (!isBuffered(position) && !fill()) {
+			return -1;
+		}
+		return buffer[(int) (position++ - bufferStart)] & 0xFF;
 	}
 
 	@Override
@@ -78,44 +154,111 @@ public class ReadContentInputStream extends InputStream {
 		int lenToRead = (int) Math.min(length - position, buffLen - off);
 		lenToRead = Math.min(lenToRead, len);
 
-		byte[] retBuf = null;
-		if (off == 0) {
-			//write directly to user buffer
-			retBuf = b;
-		} else {
-			//write to a temp buffer, then copy to user buffer
-			retBuf = new byte[lenToRead];
+		int copied = 0;
+		while (copied < lenToRead) {
+			if (!isBuffered(position)) {
+				if (off + copied == 0 && lenToRead >= buffer.length) {
+					//large read to the start of the user buffer, skip the window
+					final int lenRead = readContent(b, position, lenToRead);
+					if (lenRead <= 0) {
+						break;
+					}
+					position += lenRead;
+					copied += lenRead;
+					continue;
+				}
+				if (!fill()) {
+					break;
+				}
+			}
+			final int inBuffer = (int) (position - bufferStart);
+			final int toCopy = Math.min(bufferLen - inBuffer, lenToRead - copied);
+			System.arraycopy(buffer, inBuffer, b, off + copied, toCopy);
+			position += toCopy;
+			copied += toCopy;
 		}
-		try {
-			final int lenRead = content.read(retBuf, position, lenToRead);
-
-			if (lenRead == 0 || lenRead == -1) {
-				//error or no more bytes to read, report EOF
-				return -1;
-			} else {
-				position += lenRead;
 
-				//if read into user-specified offset, copy back from temp buffer to user
-				if (off != 0) {
-					System.arraycopy(retBuf, 0, b, off, lenRead);
-				}
+		//error or no more bytes to read, report EOF
+		return copied == 0 ? -1 : copied;
+	}
 
-				return lenRead;
-			}
-		} catch (TskCoreException ex) {
-			logger.log(Level.WARNING, ("Error reading content into stream: "
-					+ content.getId()) + ": " + content.getName()
-					+ ", at offset " + position + ", length to read: " + lenToRead, ex);
-			throw new IOException(ex);
+	@Override
+	public long skip(long n) throws IOException {
+		if (n <= 0 || position >= length) {
+			return 0;
 		}
+		final long skipped = Math.min(n, length - position);
+		position += skipped;
+		return skipped;
+	}
+
+	@Override
+	public boolean markSupported() {
+		return true;
+	}
+
+	/**
+	 * Remember the current position. The content can be re-read from any
+	 * position, so the read limit is not used.
+	 *
+	 * @param readlimit ignored
+	 */
+	@Override
+	public synchronized void mark(int readlimit) {
+		markPosition = position;
+	}
 
+	@Override
+	public synchronized void reset() throws IOException {
+		position = markPosition;
 	}
-	
+
 	@Override
 	public int available() throws IOException {
 		if (position > length) {
 			return 0;
 		}
-        return (int)(length - position);
-    }
+		return (int) Math.min(length - position, Integer.MAX_VALUE);
+	}
+
+	private boolean isBuffered(long offset) {
+		return offset >= bufferStart && offset < bufferStart + bufferLen;
+	}
+
+	/**
+	 * Read the window that contains the current position, starting at the
+	 * block the position is in
+	 *
+	 * @return true if data at the position is now buffered, false at eof
+	 */
+	private boolean fill() throws IOException {
+		if (position >= length) {
+			return false;
+		}
+		long start = position - (position % blockSize);
+		if (position - start >= buffer.length) {
+			//block larger than the window, can't align
+			start = position;
+		}
+		final int lenToRead = (int) Math.min(buffer.length, length - start);
+		bufferStart = start;
+		bufferLen = 0;
+		final int lenRead = readContent(buffer, start, lenToRead);
+		if (lenRead <= 0) {
+			return false;
+		}
+		bufferLen = lenRead;
+		return isBuffered(position);
+	}
+
+	private int readContent(byte[] buf, long offset, int len) throws IOException {
+		try {
+			return content.read(buf, offset, len);
+		} catch (TskCoreException ex) {
+			logger.log(Level.WARNING, ("Error reading content into stream: "
+					+ content.getId()) + ": " + content.getName()
+					+ ", at offset " + offset + ", length to read: " + len, ex);
+			throw new IOException(ex);
+		}
+	}
 }
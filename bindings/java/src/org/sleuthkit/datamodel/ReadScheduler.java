@@ -0,0 +1,552 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2012 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Reads the content of a set of files in the order of their location in the
+ * image, rather than in the order of their ids, so that the storage is read
+ * mostly sequentially, and passes it to a callback.
+ *
+ * The files are ordered by the image offset of their first run: the layout
+ * ranges of layout files, and the block runs of file system files when they
+ * were stored in tsk_file_layout when the image was added. Files without
+ * known location are read last. Layout files are read straight from the image,
+ * and neighbouring runs of consecutive files, including small gaps between
+ * them, are read with a single read. File system files are read through the
+ * sleuthkit in chunks.
+ *
+ * The reads are made on the calling thread, the content is passed to the
+ * callback on consumer threads. All parts of a file are passed in order on
+ * the same consumer thread. The reads go ahead of the consumers until the
+ * parts read and not consumed yet reach the in-flight limit.
+ *
+ * An instance can read several sets of files, one at a time, and should be
+ * shut down when no longer needed.
+ */
+public class ReadScheduler {
+
+	/**
+	 * Receives the content of the files, on the consumer threads
+	 */
+	public interface Callback {
+
+		/**
+		 * Called with the next part of the content of a file
+		 *
+		 * @param file the file
+		 * @param offset offset of the part in the file
+		 * @param data the part, from its position to its limit, valid until
+		 * the method returns
+		 */
+		void read(AbstractFile file, long offset, ByteBuffer data);
+
+		/**
+		 * Called after the last part of a file
+		 *
+		 * @param file the file
+		 */
+		void completed(AbstractFile file);
+
+		/**
+		 * Called when a file could not be read, no more parts of it follow
+		 *
+		 * @param file the file
+		 * @param ex the error
+		 */
+		void failed(AbstractFile file, TskCoreException ex);
+	}
+	/**
+	 * Default size of the reads
+	 */
+	public static final int DEFAULT_CHUNK_SIZE = 1024 * 1024;
+	/**
+	 * Default maximum of bytes read and not consumed yet
+	 */
+	public static final int DEFAULT_MAX_IN_FLIGHT = 64 * 1024 * 1024;
+	/**
+	 * Largest gap between two runs that is read through rather than skipped
+	 */
+	private static final int MAX_GAP = 64 * 1024;
+	private static final Logger logger = Logger.getLogger(ReadScheduler.class.getName());
+	private final SleuthkitCase skCase;
+	//single thread executors, the parts of a file all go to the same one
+	private final ExecutorService[] lanes;
+	private final int chunkSize;
+	private final Semaphore inFlight;
+	private final AtomicLong bytesRead = new AtomicLong();
+	private final AtomicLong reads = new AtomicLong();
+	private final AtomicLong filesRead = new AtomicLong();
+
+	/**
+	 * Create a scheduler with one consumer thread per processor and the
+	 * default limits
+	 *
+	 * @param skCase case of the files
+	 */
+	public ReadScheduler(SleuthkitCase skCase) {
+		this(skCase, Runtime.getRuntime().availableProcessors(), DEFAULT_CHUNK_SIZE, DEFAULT_MAX_IN_FLIGHT);
+	}
+
+	/**
+	 * Create a scheduler
+	 *
+	 * @param skCase case of the files
+	 * @param consumers number of consumer threads
+	 * @param chunkSize size of the reads
+	 * @param maxInFlight maximum of bytes read and not consumed yet, at least
+	 * chunkSize
+	 */
+	public ReadScheduler(SleuthkitCase skCase, int consumers, int chunkSize, int maxInFlight) {
+		if (consumers < 1 || chunkSize < 1 || maxInFlight < chunkSize) {
+			throw new IllegalArgumentException("Invalid read scheduler limits");
+		}
+		this.skCase = skCase;
+		this.chunkSize = chunkSize;
+		this.inFlight = new Semaphore(maxInFlight);
+		this.lanes = new ExecutorService[consumers];
+		for (int i = 0; i < consumers; i++) {
+			final String name = "ReadScheduler-" + (i + 1);
+			lanes[i] = Executors.newSingleThreadExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, name);
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+	}
+
+	/**
+	 * A file to read and where it is
+	 */
+	private static final class Job implements Comparable<Job> {
+
+		private final AbstractFile file;
+		//image offset of the first run, Long.MAX_VALUE if not known
+		private long physicalStart = Long.MAX_VALUE;
+		//image runs to read, null if read through the file
+		private List<TskFileRange> ranges;
+		private int lane;
+		//set by the reading thread only
+		private boolean failed = false;
+
+		Job(AbstractFile file) {
+			this.file = file;
+		}
+
+		@Override
+		public int compareTo(Job other) {
+			if (physicalStart != other.physicalStart) {
+				return physicalStart < other.physicalStart ? -1 : 1;
+			}
+			final long id = file.getId();
+			final long otherId = other.file.getId();
+			return id < otherId ? -1 : (id == otherId ? 0 : 1);
+		}
+	}
+
+	/**
+	 * A part of a file read from the image
+	 */
+	private static final class Part {
+
+		private final Job job;
+		private final long fileOffset;
+		private final long imgOffset;
+		private final int length;
+		private final boolean last;
+
+		Part(Job job, long fileOffset, long imgOffset, int length, boolean last) {
+			this.job = job;
+			this.fileOffset = fileOffset;
+			this.imgOffset = imgOffset;
+			this.length = length;
+			this.last = last;
+		}
+	}
+
+	/**
+	 * Parts of neighbouring runs of an image, to read together
+	 */
+	private static final class Batch {
+
+		private Image image;
+		private long start;
+		private long end;
+		private final List<Part> parts = new ArrayList<Part>();
+	}
+
+	/**
+	 * Read the files and pass their content to the callback. Returns when all
+	 * content has been consumed.
+	 *
+	 * @param files files to read
+	 * @param callback receives the content of the files
+	 * @throws TskCoreException thrown if the location of the files could not
+	 * be looked up or the thread was interrupted
+	 */
+	public void read(Iterable<? extends AbstractFile> files, Callback callback) throws TskCoreException {
+		final List<Job> jobs = plan(files);
+		final Batch batch = new Batch();
+		try {
+			for (Job job : jobs) {
+				if (job.ranges != null) {
+					readRanges(job, batch, callback);
+				} else {
+					flush(batch, callback);
+					readFile(job, callback);
+				}
+			}
+			flush(batch, callback);
+			awaitConsumers();
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new TskCoreException("Interrupted while reading files", ex);
+		}
+	}
+
+	/**
+	 * Stop the consumer threads
+	 */
+	public void shutdown() {
+		for (ExecutorService lane : lanes) {
+			lane.shutdown();
+		}
+	}
+
+	/**
+	 * @return number of bytes read so far, including the gaps read through
+	 */
+	public long getBytesRead() {
+		return bytesRead.get();
+	}
+
+	/**
+	 * @return number of reads made so far
+	 */
+	public long getReadCount() {
+		return reads.get();
+	}
+
+	/**
+	 * @return number of files read completely so far
+	 */
+	public long getFilesRead() {
+		return filesRead.get();
+	}
+
+	/**
+	 * Look up where the files are and sort them by location
+	 */
+	private List<Job> plan(Iterable<? extends AbstractFile> files) throws TskCoreException {
+		List<Job> jobs = new ArrayList<Job>();
+		List<Long> fsFileIds = new ArrayList<Long>();
+		for (AbstractFile file : files) {
+			Job job = new Job(file);
+			if (file instanceof LayoutFile) {
+				job.ranges = file.getRanges();
+				if (!job.ranges.isEmpty()) {
+					job.physicalStart = job.ranges.get(0).getByteStart();
+				}
+			} else if (file instanceof FsContent) {
+				fsFileIds.add(file.getId());
+			}
+			jobs.add(job);
+		}
+
+		//the runs of file system files are stored relative to the file system
+		Map<Long, Long> firstRuns = skCase.getFirstFileRangeStarts(fsFileIds);
+		Map<Long, Long> fsOffsets = new HashMap<Long, Long>();
+		for (Job job : jobs) {
+			final Long firstRun = firstRuns.get(job.file.getId());
+			if (firstRun == null) {
+				continue;
+			}
+			final FsContent fsFile = (FsContent) job.file;
+			Long fsOffset = fsOffsets.get(fsFile.fsObjId);
+			if (fsOffset == null) {
+				fsOffset = fsFile.getFileSystem().getImageOffset();
+				fsOffsets.put(fsFile.fsObjId, fsOffset);
+			}
+			job.physicalStart = fsOffset + firstRun;
+		}
+
+		Collections.sort(jobs);
+		for (int i = 0; i < jobs.size(); i++) {
+			jobs.get(i).lane = i % lanes.length;
+		}
+		return jobs;
+	}
+
+	/**
+	 * Add the runs of a layout file to the batch, in chunks
+	 */
+	private void readRanges(Job job, Batch batch, Callback callback) throws TskCoreException, InterruptedException {
+		final Image image = job.file.getImage();
+		long fileOffset = 0;
+		long remaining = 0;
+		for (TskFileRange range : job.ranges) {
+			remaining += range.getByteLen();
+		}
+		if (remaining == 0) {
+			complete(job, callback);
+			return;
+		}
+		for (TskFileRange range : job.ranges) {
+			long done = 0;
+			while (done < range.getByteLen()) {
+				if (job.failed) {
+					return;
+				}
+				final int length = (int) Math.min(chunkSize, range.getByteLen() - done);
+				remaining -= length;
+				Part part = new Part(job, fileOffset, range.getByteStart() + done, length, remaining == 0);
+				if (!fits(batch, image, part)) {
+					flush(batch, callback);
+				}
+				if (batch.parts.isEmpty()) {
+					batch.image = image;
+					batch.start = part.imgOffset;
+				}
+				batch.end = part.imgOffset + length;
+				batch.parts.add(part);
+				done += length;
+				fileOffset += length;
+			}
+		}
+	}
+
+	/**
+	 * @return true if the part can be read together with the batch
+	 */
+	private boolean fits(Batch batch, Image image, Part part) {
+		if (batch.parts.isEmpty()) {
+			return true;
+		}
+		return batch.image.getId() == image.getId()
+				&& part.imgOffset >= batch.end
+				&& part.imgOffset - batch.end <= MAX_GAP
+				&& part.imgOffset + part.length - batch.start <= chunkSize;
+	}
+
+	/**
+	 * Read the parts of the batch with a single read and pass them on. If
+	 * the read fails, the parts are read one by one, so that only the files
+	 * with unreadable parts fail.
+	 */
+	private void flush(Batch batch, Callback callback) throws InterruptedException {
+		if (batch.parts.isEmpty()) {
+			return;
+		}
+		final List<Part> parts = new ArrayList<Part>(batch.parts);
+		final Image image = batch.image;
+		final long start = batch.start;
+		final int length = (int) (batch.end - batch.start);
+		batch.parts.clear();
+		batch.image = null;
+
+		inFlight.acquire(length);
+		final ByteBuffer buffer = ByteBuffer.allocate(length);
+		try {
+			readFully(image, buffer, start);
+		} catch (TskCoreException ex) {
+			inFlight.release(length);
+			if (parts.size() == 1) {
+				fail(parts.get(0).job, callback, ex);
+				return;
+			}
+			for (Part part : parts) {
+				if (!part.job.failed) {
+					batch.image = image;
+					batch.start = part.imgOffset;
+					batch.end = part.imgOffset + part.length;
+					batch.parts.add(part);
+					flush(batch, callback);
+				}
+			}
+			return;
+		}
+
+		final AtomicInteger undelivered = new AtomicInteger(parts.size());
+		for (final Part part : parts) {
+			final int from = (int) (part.imgOffset - start);
+			final int to = Math.min(buffer.position(), from + part.length);
+			if (to - from < part.length) {
+				//cut short by the end of the image
+				release(undelivered, length);
+				fail(part.job, callback, new TskCoreException("Could not read " + part.length + " bytes at image offset " + part.imgOffset));
+				continue;
+			}
+			if (part.job.failed) {
+				release(undelivered, length);
+				continue;
+			}
+			final ByteBuffer data = buffer.duplicate();
+			data.limit(to);
+			data.position(from);
+			deliver(part.job, part.fileOffset, data.asReadOnlyBuffer(), part.last, callback, undelivered, length);
+		}
+	}
+
+	/**
+	 * Read a file through the sleuthkit in chunks
+	 */
+	private void readFile(Job job, Callback callback) throws InterruptedException {
+		final long size = job.file.getSize();
+		if (size <= 0) {
+			complete(job, callback);
+			return;
+		}
+		long offset = 0;
+		while (offset < size) {
+			final int length = (int) Math.min(chunkSize, size - offset);
+			inFlight.acquire(length);
+			final ByteBuffer buffer = ByteBuffer.allocate(length);
+			try {
+				while (buffer.hasRemaining()) {
+					final int read = job.file.read(buffer, offset + buffer.position());
+					if (read <= 0) {
+						throw new TskCoreException("Unexpected end of file at offset " + (offset + buffer.position()));
+					}
+				}
+				reads.incrementAndGet();
+				bytesRead.addAndGet(length);
+			} catch (TskCoreException ex) {
+				inFlight.release(length);
+				fail(job, callback, ex);
+				return;
+			}
+			buffer.flip();
+			deliver(job, offset, buffer, offset + length == size, callback, new AtomicInteger(1), length);
+			offset += length;
+		}
+	}
+
+	private void readFully(Image image, ByteBuffer buffer, long offset) throws TskCoreException {
+		while (buffer.hasRemaining()) {
+			final int read = image.read(buffer, offset + buffer.position());
+			if (read <= 0) {
+				break;
+			}
+		}
+		reads.incrementAndGet();
+		bytesRead.addAndGet(buffer.position());
+	}
+
+	/**
+	 * Pass a part to the consumer of its file. The permits of the buffer are
+	 * released once all its parts are consumed.
+	 */
+	private void deliver(final Job job, final long offset, final ByteBuffer data, final boolean last,
+			final Callback callback, final AtomicInteger undelivered, final int permits) {
+		lanes[job.lane].execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					callback.read(job.file, offset, data);
+					if (last) {
+						filesRead.incrementAndGet();
+						callback.completed(job.file);
+					}
+				} catch (RuntimeException ex) {
+					logger.log(Level.SEVERE, "Error consuming the content of file " + job.file.getId(), ex);
+				} finally {
+					release(undelivered, permits);
+				}
+			}
+		});
+	}
+
+	private void complete(final Job job, final Callback callback) {
+		lanes[job.lane].execute(new Runnable() {
+			@Override
+			public void run() {
+				filesRead.incrementAndGet();
+				try {
+					callback.completed(job.file);
+				} catch (RuntimeException ex) {
+					logger.log(Level.SEVERE, "Error consuming the content of file " + job.file.getId(), ex);
+				}
+			}
+		});
+	}
+
+	private void fail(final Job job, final Callback callback, final TskCoreException ex) {
+		if (job.failed) {
+			return;
+		}
+		job.failed = true;
+		logger.log(Level.WARNING, "Error reading file " + job.file.getId(), ex);
+		lanes[job.lane].execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					callback.failed(job.file, ex);
+				} catch (RuntimeException cbEx) {
+					logger.log(Level.SEVERE, "Error consuming the failure of file " + job.file.getId(), cbEx);
+				}
+			}
+		});
+	}
+
+	private void release(AtomicInteger undelivered, int permits) {
+		if (undelivered.decrementAndGet() == 0) {
+			inFlight.release(permits);
+		}
+	}
+
+	/**
+	 * Wait until the consumers have taken all parts submitted so far
+	 */
+	private void awaitConsumers() throws InterruptedException {
+		List<Future<?>> markers = new ArrayList<Future<?>>(lanes.length);
+		for (ExecutorService lane : lanes) {
+			markers.add(lane.submit(new Runnable() {
+				@Override
+				public void run() {
+				}
+			}));
+		}
+		for (Future<?> marker : markers) {
+			try {
+				marker.get();
+			} catch (ExecutionException ex) {
+				//the marker does nothing
+			}
+		}
+	}
+}
@@ -0,0 +1,173 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2012 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.ReferenceQueue;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Releases the native resources of objects that were not closed, once the
+ * objects are garbage collected, in place of finalize().
+ *
+ * An object registers a cleanup action when it acquires a resource. The
+ * action is run exactly once: by Cleanable.clean() when the object is closed,
+ * or by a daemon thread after the object became phantom reachable. Unlike a
+ * finalizable object, a registered object is reclaimed in a single garbage
+ * collection and does not wait for the finalizer thread; only the small
+ * phantom reference is queued.
+ *
+ * The action must not refer to the object it cleans up after, or the object
+ * never becomes unreachable. It runs on the cleaner thread when not closed
+ * explicitly, so it must not block for long.
+ */
+final class ResourceCleaner {
+
+	/**
+	 * A registered cleanup action
+	 */
+	interface Cleanable {
+
+		/**
+		 * Run the cleanup action now, if it did not run yet, and unregister it
+		 */
+		void clean();
+	}
+	private static final Logger logger = Logger.getLogger(ResourceCleaner.class.getName());
+	private static final ReferenceQueue<Object> queue = new ReferenceQueue<Object>();
+	//the phantom references must stay reachable until they are enqueued
+	private static final Set<PhantomCleanable> registered = Collections.newSetFromMap(new IdentityHashMap<PhantomCleanable, Boolean>());
+	private static final AtomicLong registrations = new AtomicLong();
+	private static final AtomicLong explicitCleanups = new AtomicLong();
+	private static final AtomicLong collectedCleanups = new AtomicLong();
+
+	static {
+		Thread cleaner = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				while (true) {
+					try {
+						PhantomCleanable ref = (PhantomCleanable) queue.remove();
+						if (ref.unregister()) {
+							collectedCleanups.incrementAndGet();
+							ref.runAction();
+						}
+					} catch (InterruptedException ex) {
+						//daemon thread, keeps running until the VM exits
+					} catch (RuntimeException ex) {
+						logger.log(Level.WARNING, "Error releasing resources of a collected object", ex);
+					}
+				}
+			}
+		}, "TskResourceCleaner");
+		cleaner.setDaemon(true);
+		cleaner.start();
+	}
+
+	private ResourceCleaner() {
+	}
+
+	/**
+	 * Register the cleanup action of an object
+	 *
+	 * @param obj the object that holds the resource
+	 * @param action releases the resource, must not refer to obj
+	 * @return handle to run the action when the object is closed
+	 */
+	static Cleanable register(Object obj, Runnable action) {
+		PhantomCleanable ref = new PhantomCleanable(obj, action);
+		synchronized (registered) {
+			registered.add(ref);
+		}
+		registrations.incrementAndGet();
+		return ref;
+	}
+
+	/**
+	 * @return number of actions registered and not run yet
+	 */
+	static int getPendingCount() {
+		synchronized (registered) {
+			return registered.size();
+		}
+	}
+
+	/**
+	 * @return number of actions registered so far
+	 */
+	static long getRegistrationCount() {
+		return registrations.get();
+	}
+
+	/**
+	 * @return number of actions run because the object was closed
+	 */
+	static long getExplicitCleanupCount() {
+		return explicitCleanups.get();
+	}
+
+	/**
+	 * @return number of actions run because the object was garbage collected
+	 * without being closed
+	 */
+	static long getCollectedCleanupCount() {
+		return collectedCleanups.get();
+	}
+
+	private static final class PhantomCleanable extends PhantomReference<Object> implements Cleanable {
+
+		private final Runnable action;
+
+		PhantomCleanable(Object obj, Runnable action) {
+			super(obj, queue);
+			this.action = action;
+		}
+
+		@Override
+		public void clean() {
+			if (unregister()) {
+				explicitCleanups.incrementAndGet();
+				runAction();
+			}
+		}
+
+		/**
+		 * @return true if the action was still registered, so it is run by the
+		 * caller
+		 */
+		boolean unregister() {
+			synchronized (registered) {
+				if (!registered.remove(this)) {
+					return false;
+				}
+			}
+			clear();
+			return true;
+		}
+
+		void runAction() {
+			action.run();
+		}
+	}
+}
@@ -18,27 +18,25 @@
  */
 package org.sleuthkit.datamodel;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
+import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.*;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.logging.Level;
 import org.sleuthkit.datamodel.TskData.ObjectType;
 import java.util.logging.Logger;
+import org.sleuthkit.datamodel.CaseDbConnection.PREPARED_STATEMENT;
 import org.sleuthkit.datamodel.BlackboardArtifact.ARTIFACT_TYPE;
 import org.sleuthkit.datamodel.BlackboardAttribute.ATTRIBUTE_TYPE;
+import org.sleuthkit.datamodel.BlackboardAttribute.TSK_BLACKBOARD_ATTRIBUTE_VALUE_TYPE;
 import org.sleuthkit.datamodel.SleuthkitJNI.CaseDbHandle.AddImageProcess;
 import org.sleuthkit.datamodel.TskData.FileKnown;
 import org.sleuthkit.datamodel.TskData.TSK_DB_FILES_TYPE_ENUM;
@@ -52,47 +50,94 @@ import org.sqlite.SQLiteJDBCLoader;
  * database operations.
  *
  * Also provides case database-level lock that protect access to the database
- * resource. The lock is available outside of the class to synchronize certain
- * actions (such as addition of an image) with concurrent database writes, for
- * database implementations (such as SQLite) that might need it.
+ * resource. Each case has its own lock, so separate cases can be used
+ * concurrently. The lock is available outside of the class to synchronize
+ * certain actions (such as addition of an image) with concurrent database
+ * writes, for database implementations (such as SQLite) that might need it.
+ *
+ * A case should be closed when no longer used. A case that is not closed
+ * releases its database connections and native handle once garbage collected.
  */
-public class SleuthkitCase {
+public class SleuthkitCase implements AutoCloseable {
 
 	private String dbPath;
 	private volatile SleuthkitJNI.CaseDbHandle caseHandle;
-	private volatile Connection con;
+	//single connection used for all writes
+	private volatile CaseDbConnection writeConnection;
+	//bounded pool of reader connections (with their prepared statements). A
+	//thread borrows one on its first read under a case lock and returns it
+	//once it releases its last case lock. Guarded by readConnections.
+	static final int MAX_READ_CONNECTIONS = Math.max(8, 2 * Runtime.getRuntime().availableProcessors());
+	private final Semaphore readConnectionPermits = new Semaphore(MAX_READ_CONNECTIONS, true);
+	private final List<CaseDbConnection> readConnections = new ArrayList<CaseDbConnection>();
+	private final Deque<CaseDbConnection> idleReadConnections = new ArrayDeque<CaseDbConnection>();
+	private final ThreadLocal<ReadLease> readLease = new ThreadLocal<ReadLease>() {
+		@Override
+		protected ReadLease initialValue() {
+			return new ReadLease();
+		}
+	};
+	//connections of the results of runQuery() not closed yet. An open result
+	//holds a read snapshot, so it gets a connection of its own instead of one
+	//from the pool. Guarded by itself.
+	private final Map<ResultSet, CaseDbConnection> queryConnections = new IdentityHashMap<ResultSet, CaseDbConnection>();
+	//cursors that are not closed yet, each has its own connection
+	private final Set<CaseDbCursor<?>> openCursors = new HashSet<CaseDbCursor<?>>();
+	//number of attribute writes so far. Artifacts read with their attributes
+	//query them again once attributes were added after the read. Written
+	//under the exclusive lock.
+	private volatile long attributeWrites;
+	//bounds the cursor connections, opening a cursor waits for a permit
+	static final int MAX_OPEN_CURSORS = MAX_READ_CONNECTIONS;
+	private static final long CURSOR_WAIT_SECONDS = 60;
+	private final Semaphore cursorPermits = new Semaphore(MAX_OPEN_CURSORS, true);
 	private ResultSetHelper rsHelper = new ResultSetHelper(this);
 	private int artifactIDcounter = 1001;
 	private int attributeIDcounter = 1001;
-	//database lock
-	private static final ReentrantReadWriteLock rwLock = new ReentrantReadWriteLock(true); //use fairness policy
-	private static final Lock caseDbLock = rwLock.writeLock(); //using exclusing lock for all db ops for now
-	//private static final Lock caseDbWriteLock = rwLock.writeLock();
-	//private static final Lock caseDbReadLock = rwLock.readLock();
-	//prepared statements
-	private PreparedStatement getBlackboardAttributesSt;
-	private PreparedStatement getBlackboardArtifactSt;
-	private PreparedStatement getBlackboardArtifactsSt;
-	private PreparedStatement getBlackboardArtifactsTypeCountSt;
-	private PreparedStatement getBlackboardArtifactsContentCountSt;
-	private PreparedStatement getArtifactsHelper1St;
-	private PreparedStatement getArtifactsHelper2St;
-	private PreparedStatement getArtifactsCountHelperSt;
-	private PreparedStatement getAbstractFileChildren;
-	private PreparedStatement getAbstractFileChildrenIds;
-	private PreparedStatement getAbstractFileById;
-	private PreparedStatement addArtifactSt1;
-	private PreparedStatement addArtifactSt2;
-	private PreparedStatement getLastArtifactId;
-	private PreparedStatement addBlackboardAttributeStringSt;
-	private PreparedStatement addBlackboardAttributeByteSt;
-	private PreparedStatement addBlackboardAttributeIntegerSt;
-	private PreparedStatement addBlackboardAttributeLongSt;
-	private PreparedStatement addBlackboardAttributeDoubleSt;
-	private PreparedStatement getFileSt;
-	private PreparedStatement getFileWithParentSt;
-	private PreparedStatement updateMd5St;
+	//the artifact and attribute types of the case, by type id
+	private final BlackboardTypeRegistry artifactTypes = new BlackboardTypeRegistry();
+	private final BlackboardTypeRegistry attributeTypes = new BlackboardTypeRegistry();
+	//artifact ids are handed out here instead of by the db, from blocks
+	//reserved in the db so that other case objects and processes writing to
+	//the case skip them. Guarded by artifactIdLock.
+	private static final int ARTIFACT_ID_BLOCK_SIZE = 1000;
+	private final Object artifactIdLock = new Object();
+	private long nextArtifactId;
+	private long artifactIdBlockEnd;
+	private BlackboardWriter blackboardWriter;
+	//optional in-memory filters in front of the hash database lookups
+	private volatile HashIndexFilter nsrlFilter;
+	private final Map<Integer, HashIndexFilter> knownBadFilters = Collections.synchronizedMap(new HashMap<Integer, HashIndexFilter>());
+	//ids of the file systems of each image, by image id. The FileSystem
+	//objects are kept by the content cache, so that they can be collected
+	//and release their native handles.
+	private final Map<Long, long[]> imageFileSystemIds = new HashMap<Long, long[]>();
+	private volatile ContentCache contentCache = new ContentCache(ContentCache.DEFAULT_MAX_SIZE, ContentCache.ReferenceType.SOFT);
+	//database lock, one per case so that cases do not block each other
+	private final ReentrantReadWriteLock rwLock = new ReentrantReadWriteLock(true); //use fairness policy
+	private final Lock caseDbWriteLock = rwLock.writeLock();
+	private final Lock caseDbReadLock = rwLock.readLock();
+	//locks of all open cases, in opening order, used by the legacy global lock
+	private static final Map<Long, Lock> openCaseLocks = new TreeMap<Long, Lock>();
+	private static long nextCaseId = 0;
+	private final long caseId;
+	//releases the handle and connections, on close() or once collected
+	private final ResourceCleaner.Cleanable resourceCleanup;
+	//case locks acquired by dbWriteLock() in the current thread
+	private static final ThreadLocal<Deque<List<Lock>>> heldGlobalLocks = new ThreadLocal<Deque<List<Lock>>>() {
+		@Override
+		protected Deque<List<Lock>> initialValue() {
+			return new ArrayDeque<List<Lock>>();
+		}
+	};
 	private static final Logger logger = Logger.getLogger(SleuthkitCase.class.getName());
+	private static final String ARTIFACT_TYPES_QUERY = "SELECT artifact_type_id, type_name, display_name FROM blackboard_artifact_types";
+	private static final String ATTRIBUTE_TYPES_QUERY = "SELECT attribute_type_id, type_name, display_name FROM blackboard_attribute_types";
+	//artifacts joined with their attributes, one row per attribute or a row of nulls, followed by a where clause
+	private static final String ARTIFACTS_WITH_ATTRIBUTES_QUERY = "SELECT a.artifact_id, a.obj_id, a.artifact_type_id, "
+			+ "attr.source, attr.context, attr.attribute_type_id, attr.value_type, attr.value_byte, attr.value_text, "
+			+ "attr.value_int32, attr.value_int64, attr.value_double "
+			+ "FROM blackboard_artifacts AS a LEFT JOIN blackboard_attributes AS attr ON a.artifact_id = attr.artifact_id ";
 
 	/**
 	 * constructor (private) - client uses openCase() and newCase() instead
@@ -109,207 +154,182 @@ public class SleuthkitCase {
 		Class.forName("org.sqlite.JDBC");
 		this.dbPath = dbPath;
 		this.caseHandle = caseHandle;
-		con = DriverManager.getConnection("jdbc:sqlite:" + dbPath);
+		writeConnection = new CaseDbConnection(dbPath);
 		configureDB();
 		initBlackboardTypes();
-		initStatements();
-	}
-
-	private void initStatements() throws SQLException {
-		getBlackboardAttributesSt = con.prepareStatement(
-				"SELECT artifact_id, source, context, attribute_type_id, value_type, "
-				+ "value_byte, value_text, value_int32, value_int64, value_double "
-				+ "FROM blackboard_attributes WHERE artifact_id = ?");
-
-		getBlackboardArtifactSt = con.prepareStatement(
-				"SELECT obj_id, artifact_type_id FROM blackboard_artifacts WHERE artifact_id = ?");
-
-		getBlackboardArtifactsSt = con.prepareStatement(
-				"SELECT artifact_id, obj_id FROM blackboard_artifacts "
-				+ "WHERE artifact_type_id = ?");
-
-		getBlackboardArtifactsTypeCountSt = con.prepareStatement(
-				"SELECT COUNT(*) FROM blackboard_artifacts WHERE artifact_type_id = ?");
-
-		getBlackboardArtifactsContentCountSt = con.prepareStatement(
-				"SELECT COUNT(*) FROM blackboard_artifacts WHERE obj_id = ?");
-
-		getArtifactsHelper1St = con.prepareStatement(
-				"SELECT artifact_id FROM blackboard_artifacts WHERE obj_id = ? AND artifact_type_id = ?");
-
-		getArtifactsHelper2St = con.prepareStatement(
-				"SELECT artifact_id, obj_id FROM blackboard_artifacts WHERE artifact_type_id = ?");
-
-		getArtifactsCountHelperSt = con.prepareStatement(
-				"SELECT COUNT(*) FROM blackboard_artifacts WHERE obj_id = ? AND artifact_type_id = ?");
-
-		getAbstractFileChildren = con.prepareStatement(
-				"SELECT tsk_files.* "
-				+ "FROM tsk_objects JOIN tsk_files "
-				+ "ON tsk_objects.obj_id=tsk_files.obj_id "
-				+ "WHERE (tsk_objects.par_obj_id = ? "
-				+ "AND tsk_files.type = ? )");
-
-		getAbstractFileChildrenIds = con.prepareStatement(
-				"SELECT tsk_files.obj_id "
-				+ "FROM tsk_objects JOIN tsk_files "
-				+ "ON tsk_objects.obj_id=tsk_files.obj_id "
-				+ "WHERE (tsk_objects.par_obj_id = ? "
-				+ "AND tsk_files.type = ? )");
-		
-		getAbstractFileById = con.prepareStatement("SELECT * FROM tsk_files WHERE obj_id = ? LIMIT 1");
-
-		addArtifactSt1 = con.prepareStatement(
-				"INSERT INTO blackboard_artifacts (artifact_id, obj_id, artifact_type_id) "
-				+ "VALUES (NULL, ?, ?)");
-
-
-		getLastArtifactId = con.prepareStatement(
-				"SELECT MAX(artifact_id) from blackboard_artifacts "
-				+ "WHERE obj_id = ? AND + artifact_type_id = ?");
-
-
-		addBlackboardAttributeStringSt = con.prepareStatement(
-				"INSERT INTO blackboard_attributes (artifact_id, source, context, attribute_type_id, value_type, value_text) "
-				+ "VALUES (?,?,?,?,?,?)");
-
-		addBlackboardAttributeByteSt = con.prepareStatement(
-				"INSERT INTO blackboard_attributes (artifact_id, source, context, attribute_type_id, value_type, value_byte) "
-				+ "VALUES (?,?,?,?,?,?)");
-
-		addBlackboardAttributeIntegerSt = con.prepareStatement(
-				"INSERT INTO blackboard_attributes (artifact_id, source, context, attribute_type_id, value_type, value_int32) "
-				+ "VALUES (?,?,?,?,?,?)");
-
-		addBlackboardAttributeLongSt = con.prepareStatement(
-				"INSERT INTO blackboard_attributes (artifact_id, source, context, attribute_type_id, value_type, value_int64) "
-				+ "VALUES (?,?,?,?,?,?)");
-
-		addBlackboardAttributeDoubleSt = con.prepareStatement(
-				"INSERT INTO blackboard_attributes (artifact_id, source, context, attribute_type_id, value_type, value_double) "
-				+ "VALUES (?,?,?,?,?,?)");
-
-		getFileSt = con.prepareStatement("SELECT * FROM tsk_files WHERE LOWER(name) LIKE ? and LOWER(name) NOT LIKE '%journal%' AND fs_obj_id = ?");
-
-		getFileWithParentSt = con.prepareStatement("SELECT * FROM tsk_files WHERE LOWER(name) LIKE ? AND LOWER(name) NOT LIKE '%journal%' AND LOWER(parent_path) LIKE ? AND fs_obj_id = ?");
-		
-		updateMd5St = con.prepareStatement("UPDATE tsk_files SET md5 = ? WHERE obj_id = ?");
+		initArtifactIds();
+		synchronized (openCaseLocks) {
+			caseId = nextCaseId++;
+			openCaseLocks.put(caseId, caseDbWriteLock);
+		}
+		resourceCleanup = ResourceCleaner.register(this,
+				new CaseResources(caseId, caseDbWriteLock, caseHandle, writeConnection, readConnections, queryConnections));
+		Metrics.caseOpened(this);
 	}
 
-	private void closeStatements() {
-		try {
-			if (getBlackboardAttributesSt != null) {
-				getBlackboardAttributesSt.close();
-				getBlackboardAttributesSt = null;
-			}
-			if (getBlackboardArtifactSt != null) {
-				getBlackboardArtifactSt.close();
-				getBlackboardArtifactSt = null;
-			}
-			if (getBlackboardArtifactsSt != null) {
-				getBlackboardArtifactsSt.close();
-				getBlackboardArtifactsSt = null;
-			}
-			if (getBlackboardArtifactsTypeCountSt != null) {
-				getBlackboardArtifactsTypeCountSt.close();
-				getBlackboardArtifactsTypeCountSt = null;
-			}
-			if (getBlackboardArtifactsContentCountSt != null) {
-				getBlackboardArtifactsContentCountSt.close();
-				getBlackboardArtifactsContentCountSt = null;
-			}
-			if (getArtifactsHelper1St != null) {
-				getArtifactsHelper1St.close();
-				getArtifactsHelper1St = null;
-			}
-			if (getArtifactsHelper2St != null) {
-				getArtifactsHelper2St.close();
-				getArtifactsHelper2St = null;
-			}
-			if (getArtifactsCountHelperSt != null) {
-				getArtifactsCountHelperSt.close();
-				getArtifactsCountHelperSt = null;
-			}
+	/**
+	 * The native handle, database connections and lock registration of a
+	 * case. Does not refer to the case, so that it can be released after the
+	 * case was collected.
+	 */
+	private static class CaseResources implements Runnable {
+
+		private final long caseId;
+		private final Lock caseLock;
+		private final SleuthkitJNI.CaseDbHandle caseHandle;
+		private final CaseDbConnection writeConnection;
+		private final List<CaseDbConnection> readConnections;
+		private final Map<ResultSet, CaseDbConnection> queryConnections;
+
+		CaseResources(long caseId, Lock caseLock, SleuthkitJNI.CaseDbHandle caseHandle,
+				CaseDbConnection writeConnection, List<CaseDbConnection> readConnections,
+				Map<ResultSet, CaseDbConnection> queryConnections) {
+			this.caseId = caseId;
+			this.caseLock = caseLock;
+			this.caseHandle = caseHandle;
+			this.writeConnection = writeConnection;
+			this.readConnections = readConnections;
+			this.queryConnections = queryConnections;
+		}
 
-			if (getAbstractFileChildren != null) {
-				getAbstractFileChildren.close();
-				getAbstractFileChildren = null;
-			}
-			if (getAbstractFileChildrenIds != null) {
-				getAbstractFileChildrenIds.close();
-				getAbstractFileChildrenIds = null;
-			}
-			if (getAbstractFileById != null) {
-				getAbstractFileById.close();
-				getAbstractFileById = null;
-			}
-			if (addArtifactSt1 != null) {
-				addArtifactSt1.close();
-				addArtifactSt1 = null;
-			}
-			if (addArtifactSt2 != null) {
-				addArtifactSt2.close();
-				addArtifactSt2 = null;
+		@Override
+		public void run() {
+			synchronized (openCaseLocks) {
+				if (openCaseLocks.get(caseId) == caseLock) {
+					openCaseLocks.remove(caseId);
+				}
 			}
-			if (getLastArtifactId != null) {
-				getLastArtifactId.close();
-				getLastArtifactId = null;
+			writeConnection.close();
+			synchronized (readConnections) {
+				for (CaseDbConnection connection : readConnections) {
+					connection.close();
+				}
+				readConnections.clear();
 			}
-
-			if (addBlackboardAttributeStringSt != null) {
-				addBlackboardAttributeStringSt.close();
-				addBlackboardAttributeStringSt = null;
+			//results of runQuery() that were never closed
+			synchronized (queryConnections) {
+				for (CaseDbConnection connection : queryConnections.values()) {
+					connection.close();
+				}
+				queryConnections.clear();
 			}
-
-			if (addBlackboardAttributeByteSt != null) {
-				addBlackboardAttributeByteSt.close();
-				addBlackboardAttributeByteSt = null;
+			if (caseHandle == null) {
+				return;
 			}
-
-			if (addBlackboardAttributeIntegerSt != null) {
-				addBlackboardAttributeIntegerSt.close();
-				addBlackboardAttributeIntegerSt = null;
+			try {
+				caseHandle.free();
+			} catch (TskCoreException ex) {
+				logger.log(Level.WARNING, "Error freeing case handle.", ex);
 			}
+		}
+	}
 
-			if (addBlackboardAttributeLongSt != null) {
-				addBlackboardAttributeLongSt.close();
-				addBlackboardAttributeLongSt = null;
-			}
+	/**
+	 * Create the table of the next unreserved artifact id, if the case does
+	 * not have it yet
+	 */
+	private void initArtifactIds() throws SQLException {
+		final Statement statement = writeConnection.createStatement();
+		try {
+			statement.execute("CREATE TABLE IF NOT EXISTS blackboard_artifact_ids (next_artifact_id INTEGER NOT NULL)");
+			statement.execute("INSERT INTO blackboard_artifact_ids (next_artifact_id) "
+					+ "SELECT IFNULL(MAX(artifact_id), 0) + 1 FROM blackboard_artifacts "
+					+ "WHERE NOT EXISTS (SELECT * FROM blackboard_artifact_ids)");
+		} finally {
+			statement.close();
+		}
+	}
 
-			if (addBlackboardAttributeDoubleSt != null) {
-				addBlackboardAttributeDoubleSt.close();
-				addBlackboardAttributeDoubleSt = null;
+	/**
+	 * Reserve the id for a new artifact. Ids are unique within the case, also
+	 * between case objects and processes writing to it, but an artifact that
+	 * fails to be added leaves a gap. Must not be called in a transaction of
+	 * the write connection.
+	 *
+	 * @return the artifact id
+	 * @throws TskCoreException thrown if a block of ids could not be reserved
+	 */
+	long allocateArtifactId() throws TskCoreException {
+		synchronized (artifactIdLock) {
+			if (nextArtifactId < artifactIdBlockEnd) {
+				return nextArtifactId++;
 			}
-
-			if (getFileSt != null) {
-				getFileSt.close();
-				getFileSt = null;
+		}
+		//the case lock is taken before artifactIdLock, never the other way
+		acquireExclusiveLock();
+		try {
+			synchronized (artifactIdLock) {
+				if (nextArtifactId >= artifactIdBlockEnd) {
+					reserveArtifactIds();
+				}
+				return nextArtifactId++;
 			}
+		} catch (SQLException ex) {
+			throw new TskCoreException("Error reserving artifact ids", ex);
+		} finally {
+			releaseExclusiveLock();
+		}
+	}
 
-			if (getFileWithParentSt != null) {
-				getFileWithParentSt.close();
-				getFileWithParentSt = null;
-			}
-			
-			if (updateMd5St != null) {
-				updateMd5St.close();
-				updateMd5St = null;
+	/**
+	 * Reserve the next block of artifact ids in the database. The block starts
+	 * after the highest reserved id and after the highest id in use, in case
+	 * artifacts were added without reserving ids.
+	 */
+	private void reserveArtifactIds() throws SQLException {
+		if (writeConnection == null) {
+			throw new SQLException("Case database is closed");
+		}
+		final Connection connection = writeConnection.getConnection();
+		connection.setAutoCommit(false);
+		try {
+			final Statement statement = connection.createStatement();
+			try {
+				//the update takes the database write lock, so the block is
+				//read back before any other process can reserve
+				statement.executeUpdate("UPDATE blackboard_artifact_ids SET next_artifact_id = "
+						+ "MAX(next_artifact_id, (SELECT IFNULL(MAX(artifact_id), 0) + 1 FROM blackboard_artifacts)) + "
+						+ ARTIFACT_ID_BLOCK_SIZE);
+				ResultSet rs = statement.executeQuery("SELECT next_artifact_id FROM blackboard_artifact_ids");
+				try {
+					if (!rs.next()) {
+						throw new SQLException("No artifact id row in blackboard_artifact_ids");
+					}
+					artifactIdBlockEnd = rs.getLong(1);
+				} finally {
+					rs.close();
+				}
+			} finally {
+				statement.close();
 			}
+			connection.commit();
+			nextArtifactId = artifactIdBlockEnd - ARTIFACT_ID_BLOCK_SIZE;
+		} catch (SQLException ex) {
+			connection.rollback();
+			artifactIdBlockEnd = nextArtifactId;
+			throw ex;
+		} finally {
+			connection.setAutoCommit(true);
+		}
+	}
 
-		} catch (SQLException e) {
-			logger.log(Level.WARNING,
-					"Error closing prepared statement", e);
+	/**
+	 * Drop the rest of the reserved block of artifact ids, after inserting an
+	 * artifact failed, e.g. because a writer that does not reserve ids took
+	 * one of them. The next id comes from a new block.
+	 */
+	private void discardArtifactIds() {
+		synchronized (artifactIdLock) {
+			artifactIdBlockEnd = nextArtifactId;
 		}
 	}
 
 	private void configureDB() throws TskCoreException {
 		try {
-			//this should match SleuthkitJNI db setup
-			final Statement statement = con.createStatement();
-			//reduce i/o operations, we have no OS crash recovery anyway
-			statement.execute("PRAGMA synchronous = OFF;");
-			//allow to query while in transaction - no need read locks
-			statement.execute("PRAGMA read_uncommitted = True;");
+			//write-ahead logging lets the reader connections query
+			//concurrently with the writer (the mode is persistent in the db file)
+			final Statement statement = writeConnection.createStatement();
+			statement.execute("PRAGMA journal_mode = WAL;");
 			statement.close();
 
 			logger.log(Level.INFO, String.format("sqlite-jdbc version %s loaded in %s mode",
@@ -322,44 +342,208 @@ public class SleuthkitCase {
 	}
 
 	/**
-	 * Lock to protect against concurrent write accesses to case database and to
-	 * block readers while database is in write transaction. Should be utilized
-	 * by all db code where underlying storage supports max. 1 concurrent writer
-	 * MUST always call dbWriteUnLock() as early as possible, in the same thread
-	 * where dbWriteLock() was called
+	 * The case locks held by a thread and the read connection it borrowed
+	 * while holding them
 	 */
-	public static void dbWriteLock() {
-		//Logger.getLogger("LOCK").log(Level.INFO, "Locking " + rwLock.toString());
-		caseDbLock.lock();
+	private static class ReadLease {
+
+		private int depth;
+		private CaseDbConnection connection;
+	}
+
+	/**
+	 * Get the connection to use for reads in the calling thread. The
+	 * connection is borrowed from the pool on first use and returned once the
+	 * thread releases its last case lock. Must be used within
+	 * acquireSharedLock() or acquireExclusiveLock().
+	 *
+	 * @return the read connection of the calling thread
+	 * @throws SQLException thrown if the case is closed, the thread holds no
+	 * case lock or a new connection could not be opened
+	 */
+	private CaseDbConnection getReadConnection() throws SQLException {
+		final ReadLease lease = readLease.get();
+		if (lease.connection == null) {
+			if (lease.depth == 0) {
+				throw new SQLException("Read connection used outside of the case lock");
+			}
+			lease.connection = borrowReadConnection();
+		}
+		return lease.connection;
+	}
+
+	/**
+	 * Take an idle read connection, or open a new one if there are fewer than
+	 * MAX_READ_CONNECTIONS. Blocks while all connections are borrowed.
+	 */
+	private CaseDbConnection borrowReadConnection() throws SQLException {
+		if (writeConnection == null) {
+			throw new SQLException("Case database is closed");
+		}
+		try {
+			readConnectionPermits.acquire();
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("Interrupted waiting for a read connection", ex);
+		}
+		boolean borrowed = false;
+		try {
+			CaseDbConnection connection;
+			synchronized (readConnections) {
+				connection = idleReadConnections.pollFirst();
+			}
+			if (connection == null) {
+				connection = new CaseDbConnection(dbPath);
+				synchronized (readConnections) {
+					readConnections.add(connection);
+				}
+			}
+			borrowed = true;
+			return connection;
+		} finally {
+			if (!borrowed) {
+				readConnectionPermits.release();
+			}
+		}
+	}
+
+	/**
+	 * Count a case lock acquired by the calling thread
+	 */
+	private void leaseAcquired() {
+		readLease.get().depth++;
+	}
+
+	/**
+	 * Count a case lock released by the calling thread, and return its read
+	 * connection to the pool if it was the last one
+	 */
+	private void leaseReleased() {
+		final ReadLease lease = readLease.get();
+		if (lease.depth > 0 && --lease.depth > 0) {
+			return;
+		}
+		final CaseDbConnection connection = lease.connection;
+		readLease.remove();
+		if (connection == null) {
+			return;
+		}
+		synchronized (readConnections) {
+			//connections of a closed case are already closed and dropped
+			if (readConnections.contains(connection)) {
+				idleReadConnections.addFirst(connection);
+			}
+		}
+		readConnectionPermits.release();
+	}
+
+	/**
+	 * @return the number of read connections opened by the case and not
+	 * closed yet
+	 */
+	int getReadConnectionCount() {
+		synchronized (readConnections) {
+			return readConnections.size();
+		}
+	}
+
+	/**
+	 * Lock to protect against concurrent write accesses to this case database
+	 * and to block readers while database is in write transaction. Should be
+	 * utilized by all db code where underlying storage supports max. 1
+	 * concurrent writer MUST always call releaseExclusiveLock() as early as
+	 * possible, in the same thread where acquireExclusiveLock() was called
+	 */
+	public void acquireExclusiveLock() {
+		if (!Metrics.isEnabled()) {
+			caseDbWriteLock.lock();
+			leaseAcquired();
+			return;
+		}
+		final long requested = System.nanoTime();
+		caseDbWriteLock.lock();
+		leaseAcquired();
+		Metrics.lockAcquired(true, requested);
 	}
 
 	/**
 	 * Release previously acquired write lock acquired in this thread using
-	 * dbWriteLock(). Call in "finally" block to ensure the lock is always
-	 * released.
+	 * acquireExclusiveLock(). Call in "finally" block to ensure the lock is
+	 * always released.
 	 */
-	public static void dbWriteUnlock() {
-		//Logger.getLogger("LOCK").log(Level.INFO, "UNLocking " + rwLock.toString());
-		caseDbLock.unlock();
+	public void releaseExclusiveLock() {
+		caseDbWriteLock.unlock();
+		leaseReleased();
+		if (Metrics.isEnabled()) {
+			Metrics.lockReleased(true);
+		}
 	}
 
 	/**
-	 * Lock to protect against read while it is in a write transaction state.
-	 * Supports multiple concurrent readers if there is no writer. MUST always
-	 * call dbReadUnLock() as early as possible, in the same thread where
-	 * dbReadLock() was called.
+	 * Lock to protect against read while this case is in a write transaction
+	 * state. Supports multiple concurrent readers if there is no writer. MUST
+	 * always call releaseSharedLock() as early as possible, in the same thread
+	 * where acquireSharedLock() was called. The read lock cannot be upgraded:
+	 * do not call acquireExclusiveLock() while holding it.
 	 */
-	static void dbReadLock() {
-		caseDbLock.lock();
+	void acquireSharedLock() {
+		if (!Metrics.isEnabled()) {
+			caseDbReadLock.lock();
+			leaseAcquired();
+			return;
+		}
+		final long requested = System.nanoTime();
+		caseDbReadLock.lock();
+		leaseAcquired();
+		Metrics.lockAcquired(false, requested);
 	}
 
 	/**
 	 * Release previously acquired read lock acquired in this thread using
-	 * dbReadLock(). Call in "finally" block to ensure the lock is always
+	 * acquireSharedLock(). Call in "finally" block to ensure the lock is always
 	 * released.
 	 */
-	static void dbReadUnlock() {
-		caseDbLock.unlock();
+	void releaseSharedLock() {
+		caseDbReadLock.unlock();
+		leaseReleased();
+		if (Metrics.isEnabled()) {
+			Metrics.lockReleased(false);
+		}
+	}
+
+	/**
+	 * Acquire the write locks of all currently open cases, in the order the
+	 * cases were opened. Blocks every case in the JVM, use
+	 * acquireExclusiveLock() on the case instead. MUST always call
+	 * dbWriteUnlock() as early as possible, in the same thread where
+	 * dbWriteLock() was called
+	 *
+	 * @deprecated use {@link #acquireExclusiveLock()} of the case
+	 */
+	@Deprecated
+	public static void dbWriteLock() {
+		List<Lock> locks;
+		synchronized (openCaseLocks) {
+			locks = new ArrayList<Lock>(openCaseLocks.values());
+		}
+		for (Lock lock : locks) {
+			lock.lock();
+		}
+		heldGlobalLocks.get().push(locks);
+	}
+
+	/**
+	 * Release the locks acquired in this thread using dbWriteLock(). Call in
+	 * "finally" block to ensure the locks are always released.
+	 *
+	 * @deprecated use {@link #releaseExclusiveLock()} of the case
+	 */
+	@Deprecated
+	public static void dbWriteUnlock() {
+		List<Lock> locks = heldGlobalLocks.get().pop();
+		for (int i = locks.size() - 1; i >= 0; --i) {
+			locks.get(i).unlock();
+		}
 	}
 
 	/**
@@ -369,7 +553,6 @@ public class SleuthkitCase {
 	 * @return Case object
 	 */
 	public static SleuthkitCase openCase(String dbPath) throws TskCoreException {
-		SleuthkitCase.dbWriteLock();
 		SleuthkitJNI.CaseDbHandle caseHandle = SleuthkitJNI.openCaseDb(dbPath);
 		try {
 			return new SleuthkitCase(dbPath, caseHandle);
@@ -377,8 +560,6 @@ public class SleuthkitCase {
 			throw new TskCoreException("Couldn't open case at " + dbPath, ex);
 		} catch (ClassNotFoundException ex) {
 			throw new TskCoreException("Couldn't open case at " + dbPath, ex);
-		} finally {
-			SleuthkitCase.dbWriteUnlock();
 		}
 	}
 
@@ -389,7 +570,6 @@ public class SleuthkitCase {
 	 * @return Case object
 	 */
 	public static SleuthkitCase newCase(String dbPath) throws TskCoreException {
-		SleuthkitCase.dbWriteLock();
 		SleuthkitJNI.CaseDbHandle caseHandle = SleuthkitJNI.newCaseDb(dbPath);
 		try {
 			return new SleuthkitCase(dbPath, caseHandle);
@@ -397,36 +577,96 @@ public class SleuthkitCase {
 			throw new TskCoreException("Couldn't open case at " + dbPath, ex);
 		} catch (ClassNotFoundException ex) {
 			throw new TskCoreException("Couldn't open case at " + dbPath, ex);
-		} finally {
-			SleuthkitCase.dbWriteUnlock();
 		}
 
 	}
 
+	/**
+	 * Open the database of an existing case without the native case handle,
+	 * so that it can be used without the native library. Adding images and
+	 * setting lookup databases are not possible on the returned case.
+	 *
+	 * @param dbPath Path to SQLite database.
+	 * @return Case object
+	 */
+	static SleuthkitCase openCaseDatabase(String dbPath) throws TskCoreException {
+		try {
+			return new SleuthkitCase(dbPath, null);
+		} catch (SQLException ex) {
+			throw new TskCoreException("Couldn't open case at " + dbPath, ex);
+		} catch (ClassNotFoundException ex) {
+			throw new TskCoreException("Couldn't open case at " + dbPath, ex);
+		}
+	}
+
 	private void initBlackboardTypes() throws SQLException, TskCoreException {
-		dbReadLock();
+		//adds missing types, so take the write lock (read lock can't be upgraded)
+		acquireExclusiveLock();
 		try {
-			Statement s = con.createStatement();
+			loadTypes(writeConnection, ARTIFACT_TYPES_QUERY, artifactTypes);
+			loadTypes(writeConnection, ATTRIBUTE_TYPES_QUERY, attributeTypes);
 			for (ARTIFACT_TYPE type : ARTIFACT_TYPE.values()) {
-				ResultSet rs = s.executeQuery("SELECT * from blackboard_artifact_types WHERE artifact_type_id = '" + type.getTypeID() + "'");
-				if (!rs.next()) {
+				if (artifactTypes.getName(type.getTypeID()) == null) {
 					this.addBuiltInArtifactType(type);
 				}
-				rs.close();
 			}
 			for (ATTRIBUTE_TYPE type : ATTRIBUTE_TYPE.values()) {
-				ResultSet rs = s.executeQuery("SELECT * from blackboard_attribute_types WHERE attribute_type_id = '" + type.getTypeID() + "'");
-				if (!rs.next()) {
+				if (attributeTypes.getName(type.getTypeID()) == null) {
 					this.addBuiltInAttrType(type);
 				}
-				rs.close();
 			}
-			s.close();
+			//new custom types get ids after the ones already in the case
+			artifactIDcounter = Math.max(artifactIDcounter, artifactTypes.getMaxId() + 1);
+			attributeIDcounter = Math.max(attributeIDcounter, attributeTypes.getMaxId() + 1);
+		} finally {
+			releaseExclusiveLock();
+		}
+	}
+
+	/**
+	 * Load all types of a table into a registry, with a single query
+	 *
+	 * @param connection connection to query
+	 * @param query selects the id, name and display name of the types
+	 * @param registry registry to add the types to
+	 */
+	private static void loadTypes(CaseDbConnection connection, String query, BlackboardTypeRegistry registry) throws SQLException {
+		List<Integer> typeIds = new ArrayList<Integer>();
+		List<String> names = new ArrayList<String>();
+		List<String> displayNames = new ArrayList<String>();
+		Statement s = connection.createStatement();
+		try {
+			ResultSet rs = s.executeQuery(query);
+			while (rs.next()) {
+				typeIds.add(rs.getInt(1));
+				names.add(rs.getString(2));
+				displayNames.add(rs.getString(3));
+			}
+			rs.close();
 		} finally {
-			dbReadUnlock();
+			s.close();
+		}
+		int[] ids = new int[typeIds.size()];
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = typeIds.get(i);
 		}
+		registry.putAll(ids, names.toArray(new String[names.size()]), displayNames.toArray(new String[displayNames.size()]));
 	}
 
+	/**
+	 * Load the types of a table again, to pick up types added to the database
+	 * by another case object
+	 */
+	private void reloadTypes(String query, BlackboardTypeRegistry registry) throws TskCoreException {
+		acquireSharedLock();
+		try {
+			loadTypes(getReadConnection(), query, registry);
+		} catch (SQLException ex) {
+			throw new TskCoreException("Error loading blackboard types.", ex);
+		} finally {
+			releaseSharedLock();
+		}
+	}
 	/**
 	 * Start process of adding an image to the case. Adding an image is a
 	 * multi-step process and this returns an object that allows it to happen.
@@ -449,7 +689,28 @@ public class SleuthkitCase {
 	 * @return a handle for that database
 	 */
 	public int setNSRLDatabase(String path) throws TskCoreException {
-		return this.caseHandle.setNSRLDatabase(path);
+		return setNSRLDatabase(path, false);
+	}
+
+	/**
+	 * Set the NSRL database, optionally loading an in-memory filter of its
+	 * index. With the filter, lookups of hashes that are not in the database
+	 * (most of them for a known bad database) do not go to the index file.
+	 * The filter takes about 10 bits of memory per hash in the database.
+	 *
+	 * @param path The path to the database
+	 * @param useFilter true to load the filter from the md5 index
+	 * @return a handle for that database
+	 * @throws TskCoreException thrown if the database could not be opened or
+	 * the filter could not be loaded
+	 */
+	public int setNSRLDatabase(String path, boolean useFilter) throws TskCoreException {
+		nsrlFilter = null;
+		int handle = this.caseHandle.setNSRLDatabase(path);
+		if (useFilter) {
+			nsrlFilter = HashIndexFilter.load(path, HashIndexFilter.DEFAULT_BITS_PER_ENTRY);
+		}
+		return handle;
 	}
 
 	/**
@@ -459,7 +720,25 @@ public class SleuthkitCase {
 	 * @return a handle for that database
 	 */
 	public int addKnownBadDatabase(String path) throws TskCoreException {
-		return this.caseHandle.addKnownBadDatabase(path);
+		return addKnownBadDatabase(path, false);
+	}
+
+	/**
+	 * Add the known bad database, optionally loading an in-memory filter of
+	 * its index (see setNSRLDatabase(String, boolean))
+	 *
+	 * @param path The path to the database
+	 * @param useFilter true to load the filter from the md5 index
+	 * @return a handle for that database
+	 * @throws TskCoreException thrown if the database could not be opened or
+	 * the filter could not be loaded
+	 */
+	public int addKnownBadDatabase(String path, boolean useFilter) throws TskCoreException {
+		int handle = this.caseHandle.addKnownBadDatabase(path);
+		if (useFilter) {
+			knownBadFilters.put(handle, HashIndexFilter.load(path, HashIndexFilter.DEFAULT_BITS_PER_ENTRY));
+		}
+		return handle;
 	}
 
 	/**
@@ -469,6 +748,8 @@ public class SleuthkitCase {
 	 * within tsk core
 	 */
 	public void clearLookupDatabases() throws TskCoreException {
+		nsrlFilter = null;
+		knownBadFilters.clear();
 		this.caseHandle.clearLookupDatabases();
 	}
 
@@ -481,10 +762,10 @@ public class SleuthkitCase {
 	 */
 	public List<Content> getRootObjects() throws TskCoreException {
 		Collection<ObjectInfo> infos = new ArrayList<ObjectInfo>();
-		dbReadLock();
+		acquireSharedLock();
 		try {
 
-			Statement s = con.createStatement();
+			Statement s = getReadConnection().createStatement();
 			ResultSet rs = s.executeQuery("select obj_id, type from tsk_objects "
 					+ "where par_obj_id is NULL");
 
@@ -509,7 +790,7 @@ public class SleuthkitCase {
 		} catch (SQLException ex) {
 			throw new TskCoreException("Error getting root objects.", ex);
 		} finally {
-			dbReadUnlock();
+			releaseSharedLock();
 		}
 	}
 
@@ -523,13 +804,14 @@ public class SleuthkitCase {
 	 */
 	public ArrayList<BlackboardArtifact> getBlackboardArtifacts(int artifactTypeID) throws TskCoreException {
 		String artifactTypeName = this.getArtifactTypeString(artifactTypeID);
-		dbReadLock();
+		acquireSharedLock();
 		try {
 			ArrayList<BlackboardArtifact> artifacts = new ArrayList<BlackboardArtifact>();
 
-			getBlackboardArtifactsSt.setInt(1, artifactTypeID);
+			PreparedStatement statement = getReadConnection().getPreparedStatement(PREPARED_STATEMENT.SELECT_ARTIFACTS_BY_TYPE);
+			statement.setInt(1, artifactTypeID);
 
-			final ResultSet rs = getBlackboardArtifactsSt.executeQuery();
+			final ResultSet rs = statement.executeQuery();
 
 			while (rs.next()) {
 				artifacts.add(new BlackboardArtifact(this, rs.getLong(1), rs.getLong(2),
@@ -540,11 +822,370 @@ public class SleuthkitCase {
 		} catch (SQLException ex) {
 			throw new TskCoreException("Error getting or creating a blackboard artifact. " + ex.getMessage(), ex);
 		} finally {
-			dbReadUnlock();
+			releaseSharedLock();
 		}
 
 	}
 
+	/**
+	 * Get a cursor over the blackboard artifacts of a given type. Unlike
+	 * getBlackboardArtifacts(), the rows are read as the cursor is iterated,
+	 * so memory use does not depend on the number of artifacts.
+	 *
+	 * @param artifactType artifact type
+	 * @return cursor over the artifacts, must be closed if not read to the end
+	 * @throws TskCoreException exception thrown if a critical error occurs
+	 * within tsk core
+	 */
+	public CaseDbCursor<BlackboardArtifact> streamArtifacts(ARTIFACT_TYPE artifactType) throws TskCoreException {
+		return streamArtifacts(artifactType.getTypeID(), CaseDbCursor.DEFAULT_FETCH_SIZE);
+	}
+
+	/**
+	 * Get a cursor over the blackboard artifacts of a given type
+	 *
+	 * @param artifactTypeID artifact type id (must exist in database)
+	 * @return cursor over the artifacts, must be closed if not read to the end
+	 * @throws TskCoreException exception thrown if a critical error occurs
+	 * within tsk core
+	 */
+	public CaseDbCursor<BlackboardArtifact> streamArtifacts(int artifactTypeID) throws TskCoreException {
+		return streamArtifacts(artifactTypeID, CaseDbCursor.DEFAULT_FETCH_SIZE);
+	}
+
+	/**
+	 * Get a cursor over the blackboard artifacts of a given type
+	 *
+	 * @param artifactTypeID artifact type id (must exist in database)
+	 * @param fetchSize number of rows read at a time
+	 * @return cursor over the artifacts, must be closed if not read to the end
+	 * @throws TskCoreException exception thrown if a critical error occurs
+	 * within tsk core
+	 */
+	public CaseDbCursor<BlackboardArtifact> streamArtifacts(final int artifactTypeID, int fetchSize) throws TskCoreException {
+		final String artifactTypeName = getArtifactTypeString(artifactTypeID);
+		final String artifactDisplayName = getArtifactTypeDisplayName(artifactTypeID);
+		return openCursor("SELECT artifact_id, obj_id FROM blackboard_artifacts WHERE artifact_type_id = " + artifactTypeID,
+				fetchSize, new CaseDbCursor.RowMapper<BlackboardArtifact>() {
+					@Override
+					public BlackboardArtifact map(ResultSet rs) throws SQLException {
+						return new BlackboardArtifact(SleuthkitCase.this, rs.getLong(1), rs.getLong(2),
+								artifactTypeID, artifactTypeName, artifactDisplayName);
+					}
+				});
+	}
+
+	/**
+	 * Get a cursor over the artifacts that match a where clause, see
+	 * getMatchingArtifacts()
+	 *
+	 * @param whereClause a sqlite where clause, beginning with "WHERE" or
+	 * "JOIN"
+	 * @param fetchSize number of rows read at a time
+	 * @return cursor over the artifacts, must be closed if not read to the end
+	 * @throws TskCoreException exception thrown if a critical error occurs
+	 * within tsk core
+	 */
+	public CaseDbCursor<BlackboardArtifact> streamMatchingArtifacts(String whereClause, int fetchSize) throws TskCoreException {
+		return openCursor("SELECT artifact_id, obj_id, artifact_type_id FROM blackboard_artifacts " + whereClause,
+				fetchSize, new CaseDbCursor.RowMapper<BlackboardArtifact>() {
+					@Override
+					public BlackboardArtifact map(ResultSet rs) throws SQLException {
+						final int artifactTypeID = rs.getInt(3);
+						try {
+							return new BlackboardArtifact(SleuthkitCase.this, rs.getLong(1), rs.getLong(2), artifactTypeID,
+									getArtifactTypeString(artifactTypeID), getArtifactTypeDisplayName(artifactTypeID));
+						} catch (TskCoreException ex) {
+							throw new SQLException("Unknown artifact type " + artifactTypeID, ex);
+						}
+					}
+				});
+	}
+
+	/**
+	 * Get all blackboard artifacts of a given type together with their
+	 * attributes. The attributes are read with the artifacts in one query, so
+	 * BlackboardArtifact.getAttributes() does not query the database for each
+	 * artifact, until attributes are added to the case after the read.
+	 *
+	 * @param artifactType artifact type
+	 * @return list of blackboard artifacts, ordered by artifact id
+	 * @throws TskCoreException exception thrown if a critical error occurs
+	 * within tsk core
+	 */
+	public ArrayList<BlackboardArtifact> getArtifactsWithAttributes(ARTIFACT_TYPE artifactType) throws TskCoreException {
+		return getArtifactsWithAttributes(artifactType.getTypeID());
+	}
+
+	/**
+	 * Get all blackboard artifacts of a given type together with their
+	 * attributes, see getArtifactsWithAttributes(ARTIFACT_TYPE)
+	 *
+	 * @param artifactTypeID artifact type id (must exist in database)
+	 * @return list of blackboard artifacts, ordered by artifact id
+	 * @throws TskCoreException exception thrown if a critical error occurs
+	 * within tsk core
+	 */
+	public ArrayList<BlackboardArtifact> getArtifactsWithAttributes(int artifactTypeID) throws TskCoreException {
+		//fail on an unknown type before the query
+		getArtifactTypeString(artifactTypeID);
+		ArrayList<BlackboardArtifact> artifacts = new ArrayList<BlackboardArtifact>();
+		acquireSharedLock();
+		try {
+			Statement s = getReadConnection().createStatement();
+			try {
+				readArtifactsWithAttributes(s, ARTIFACTS_WITH_ATTRIBUTES_QUERY
+						+ "WHERE a.artifact_type_id = " + artifactTypeID + " ORDER BY a.artifact_id", artifacts);
+			} finally {
+				s.close();
+			}
+			return artifacts;
+		} catch (SQLException ex) {
+			throw new TskCoreException("Error getting artifacts with attributes of type: " + artifactTypeID, ex);
+		} finally {
+			releaseSharedLock();
+		}
+	}
+
+	/**
+	 * Get blackboard artifacts by id together with their attributes, see
+	 * getArtifactsWithAttributes(ARTIFACT_TYPE). Ids that do not exist are
+	 * skipped.
+	 *
+	 * @param artifactIDs ids of the artifacts
+	 * @return list of blackboard artifacts, ordered by artifact id
+	 * @throws TskCoreException exception thrown if a critical error occurs
+	 * within tsk core
+	 */
+	public ArrayList<BlackboardArtifact> getArtifactsWithAttributes(Collection<Long> artifactIDs) throws TskCoreException {
+		//ids in an IN list, in batches below the limit of the query parameters
+		final int batchSize = 500;
+		List<Long> ids = new ArrayList<Long>(new TreeSet<Long>(artifactIDs));
+		ArrayList<BlackboardArtifact> artifacts = new ArrayList<BlackboardArtifact>(ids.size());
+		acquireSharedLock();
+		try {
+			Statement s = getReadConnection().createStatement();
+			try {
+				for (int from = 0; from < ids.size(); from += batchSize) {
+					StringBuilder query = new StringBuilder(ARTIFACTS_WITH_ATTRIBUTES_QUERY).append("WHERE a.artifact_id IN (");
+					final int to = Math.min(ids.size(), from + batchSize);
+					for (int i = from; i < to; i++) {
+						if (i > from) {
+							query.append(',');
+						}
+						query.append(ids.get(i).longValue());
+					}
+					query.append(") ORDER BY a.artifact_id");
+					readArtifactsWithAttributes(s, query.toString(), artifacts);
+				}
+			} finally {
+				s.close();
+			}
+			return artifacts;
+		} catch (SQLException ex) {
+			throw new TskCoreException("Error getting artifacts with attributes.", ex);
+		} finally {
+			releaseSharedLock();
+		}
+	}
+
+	/**
+	 * Get a cursor over the blackboard artifacts of a given type together with
+	 * their attributes, for more artifacts than fit in memory. See
+	 * getArtifactsWithAttributes(ARTIFACT_TYPE) and streamArtifacts().
+	 *
+	 * @param artifactType artifact type
+	 * @return cursor over the artifacts, ordered by artifact id, must be
+	 * closed if not read to the end
+	 * @throws TskCoreException exception thrown if a critical error occurs
+	 * within tsk core
+	 */
+	public CaseDbCursor<BlackboardArtifact> streamArtifactsWithAttributes(ARTIFACT_TYPE artifactType) throws TskCoreException {
+		return streamArtifactsWithAttributes(artifactType.getTypeID(), CaseDbCursor.DEFAULT_FETCH_SIZE);
+	}
+
+	/**
+	 * Get a cursor over the blackboard artifacts of a given type together with
+	 * their attributes
+	 *
+	 * @param artifactTypeID artifact type id (must exist in database)
+	 * @param fetchSize number of rows read at a time, one row per attribute
+	 * @return cursor over the artifacts, ordered by artifact id, must be
+	 * closed if not read to the end
+	 * @throws TskCoreException exception thrown if a critical error occurs
+	 * within tsk core
+	 */
+	public CaseDbCursor<BlackboardArtifact> streamArtifactsWithAttributes(int artifactTypeID, int fetchSize) throws TskCoreException {
+		getArtifactTypeString(artifactTypeID);
+		return openCursor(ARTIFACTS_WITH_ATTRIBUTES_QUERY + "WHERE a.artifact_type_id = " + artifactTypeID
+				+ " ORDER BY a.artifact_id", fetchSize, new ArtifactWithAttributesMapper());
+	}
+
+	/**
+	 * Run a query starting with ARTIFACTS_WITH_ATTRIBUTES_QUERY and add the
+	 * artifacts it returns to a list
+	 *
+	 * @param s statement to run the query with
+	 * @param query the query, ordered by artifact id
+	 * @param artifacts list to add the artifacts to
+	 * @throws SQLException thrown if the query failed
+	 */
+	private void readArtifactsWithAttributes(Statement s, String query, List<BlackboardArtifact> artifacts) throws SQLException {
+		ArtifactWithAttributesMapper mapper = new ArtifactWithAttributesMapper();
+		ResultSet rs = s.executeQuery(query);
+		try {
+			while (rs.next()) {
+				final BlackboardArtifact artifact = mapper.map(rs);
+				if (artifact != null) {
+					artifacts.add(artifact);
+				}
+			}
+		} finally {
+			rs.close();
+		}
+		final BlackboardArtifact last = mapper.finish();
+		if (last != null) {
+			artifacts.add(last);
+		}
+	}
+
+	/**
+	 * Creates artifacts with their attributes from the rows of
+	 * ARTIFACTS_WITH_ATTRIBUTES_QUERY, one row per attribute. An artifact is
+	 * complete at the first row of the next one.
+	 */
+	private class ArtifactWithAttributesMapper implements CaseDbCursor.GroupMapper<BlackboardArtifact> {
+
+		private BlackboardArtifact current;
+		private List<BlackboardAttribute> attributes;
+		//taken before the query, so that writes made while it runs drop the
+		//attributes read
+		private final long attributeWritesRead = attributeWrites;
+
+		@Override
+		public BlackboardArtifact map(ResultSet rs) throws SQLException {
+			final long artifactID = rs.getLong(1);
+			BlackboardArtifact completed = null;
+			if (current == null || current.getArtifactID() != artifactID) {
+				completed = finish();
+				final int artifactTypeID = rs.getInt(3);
+				try {
+					current = new BlackboardArtifact(SleuthkitCase.this, artifactID, rs.getLong(2), artifactTypeID,
+							getArtifactTypeString(artifactTypeID), getArtifactTypeDisplayName(artifactTypeID));
+				} catch (TskCoreException ex) {
+					throw new SQLException("Unknown artifact type " + artifactTypeID, ex);
+				}
+				attributes = new ArrayList<BlackboardAttribute>();
+			}
+			final int attributeTypeID = rs.getInt(6);
+			//no attribute row for an artifact without attributes
+			if (!rs.wasNull()) {
+				attributes.add(new BlackboardAttribute(
+						artifactID,
+						attributeTypeID,
+						rs.getString(4),
+						rs.getString(5),
+						BlackboardAttribute.TSK_BLACKBOARD_ATTRIBUTE_VALUE_TYPE.fromType(rs.getInt(7)),
+						rs.getInt(10),
+						rs.getLong(11),
+						rs.getDouble(12),
+						rs.getString(9),
+						rs.getBytes(8), SleuthkitCase.this));
+			}
+			return completed;
+		}
+
+		@Override
+		public BlackboardArtifact finish() {
+			final BlackboardArtifact completed = current;
+			if (completed != null) {
+				completed.setAttributes(attributes, attributeWritesRead);
+				current = null;
+				attributes = null;
+			}
+			return completed;
+		}
+	}
+
+	/**
+	 * Run a query on a new connection and return a cursor over its results.
+	 * At most MAX_OPEN_CURSORS cursors are open at a time, further cursors
+	 * wait for one to be closed.
+	 *
+	 * @param query the query
+	 * @param fetchSize number of rows read at a time
+	 * @param mapper creates the objects of the rows
+	 * @return the open cursor
+	 * @throws TskCoreException thrown if the query could not be run, or no
+	 * cursor was closed within CURSOR_WAIT_SECONDS
+	 */
+	private <T> CaseDbCursor<T> openCursor(String query, int fetchSize, CaseDbCursor.RowMapper<T> mapper) throws TskCoreException {
+		if (fetchSize <= 0) {
+			throw new IllegalArgumentException("Fetch size must be positive");
+		}
+		if (writeConnection == null) {
+			throw new TskCoreException("Case database is closed");
+		}
+		//wait before taking the case lock, the cursors being waited for need
+		//it to read. The wait is bounded since the caller may hold the lock,
+		//or the cursors, itself.
+		try {
+			if (!cursorPermits.tryAcquire(CURSOR_WAIT_SECONDS, TimeUnit.SECONDS)) {
+				throw new TskCoreException("Too many open cursors, " + MAX_OPEN_CURSORS + " are open and none was closed");
+			}
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new TskCoreException("Interrupted waiting for a cursor", ex);
+		}
+		boolean opened = false;
+		CaseDbConnection connection = null;
+		Statement statement = null;
+		acquireSharedLock();
+		try {
+			connection = new CaseDbConnection(dbPath);
+			statement = connection.createStatement();
+			statement.setFetchSize(fetchSize);
+			ResultSet rs = statement.executeQuery(query);
+			CaseDbCursor<T> cursor = new CaseDbCursor<T>(this, connection, statement, rs, fetchSize, mapper);
+			synchronized (openCursors) {
+				openCursors.add(cursor);
+			}
+			opened = true;
+			return cursor;
+		} catch (SQLException ex) {
+			if (statement != null) {
+				try {
+					statement.close();
+				} catch (SQLException e) {
+					logger.log(Level.WARNING, "Error closing statement of failed query", e);
+				}
+			}
+			if (connection != null) {
+				connection.close();
+			}
+			throw new TskCoreException("Error running query: " + query, ex);
+		} finally {
+			releaseSharedLock();
+			if (!opened) {
+				cursorPermits.release();
+			}
+		}
+	}
+
+	/**
+	 * Called by a cursor when it is closed
+	 *
+	 * @param cursor the closed cursor
+	 */
+	void cursorClosed(CaseDbCursor<?> cursor) {
+		synchronized (openCursors) {
+			if (!openCursors.remove(cursor)) {
+				return;
+			}
+		}
+		cursorPermits.release();
+	}
+
 	/**
 	 * Get count of blackboard artifacts for a given content
 	 *
@@ -555,11 +1196,12 @@ public class SleuthkitCase {
 	 */
 	public long getBlackboardArtifactsCount(long objId) throws TskCoreException {
 		ResultSet rs = null;
-		dbReadLock();
+		acquireSharedLock();
 		try {
 			long count = 0;
-			getBlackboardArtifactsContentCountSt.setLong(1, objId);
-			rs = getBlackboardArtifactsContentCountSt.executeQuery();
+			PreparedStatement statement = getReadConnection().getPreparedStatement(PREPARED_STATEMENT.COUNT_ARTIFACTS_FROM_SOURCE);
+			statement.setLong(1, objId);
+			rs = statement.executeQuery();
 
 			if (rs.next()) {
 				count = rs.getLong(1);
@@ -579,7 +1221,7 @@ public class SleuthkitCase {
 				}
 			}
 
-			dbReadUnlock();
+			releaseSharedLock();
 		}
 
 	}
@@ -594,11 +1236,12 @@ public class SleuthkitCase {
 	 */
 	public long getBlackboardArtifactsTypeCount(int artifactTypeID) throws TskCoreException {
 		ResultSet rs = null;
-		dbReadLock();
+		acquireSharedLock();
 		try {
 			long count = 0;
-			getBlackboardArtifactsTypeCountSt.setInt(1, artifactTypeID);
-			rs = getBlackboardArtifactsTypeCountSt.executeQuery();
+			PreparedStatement statement = getReadConnection().getPreparedStatement(PREPARED_STATEMENT.COUNT_ARTIFACTS_OF_TYPE);
+			statement.setInt(1, artifactTypeID);
+			rs = statement.executeQuery();
 
 			if (rs.next()) {
 				count = rs.getLong(1);
@@ -618,7 +1261,7 @@ public class SleuthkitCase {
 				}
 			}
 
-			dbReadUnlock();
+			releaseSharedLock();
 		}
 
 	}
@@ -626,7 +1269,7 @@ public class SleuthkitCase {
 	/**
 	 * Helper to iterate over blackboard artifacts result set containing all
 	 * columns and return a list of artifacts in the set. Must be enclosed in
-	 * dbReadLock. Result set and statement must be freed by the caller.
+	 * acquireSharedLock(). Result set and statement must be freed by the caller.
 	 *
 	 * @param rs existing, active result set (not closed by this method)
 	 * @return a list of blackboard artifacts in the result set
@@ -657,9 +1300,9 @@ public class SleuthkitCase {
 	 * within tsk core and artifacts could not be queried
 	 */
 	public List<BlackboardArtifact> getBlackboardArtifacts(BlackboardAttribute.ATTRIBUTE_TYPE attrType, String value) throws TskCoreException {
-		dbReadLock();
+		acquireSharedLock();
 		try {
-			Statement s = con.createStatement();
+			Statement s = getReadConnection().createStatement();
 			ResultSet rs = s.executeQuery("SELECT DISTINCT blackboard_artifacts.artifact_id, "
 					+ "blackboard_artifacts.obj_id, blackboard_artifacts.artifact_type_id "
 					+ "FROM blackboard_artifacts, blackboard_attributes "
@@ -675,7 +1318,7 @@ public class SleuthkitCase {
 		} catch (SQLException ex) {
 			throw new TskCoreException("Error getting blackboard artifacts by attribute. " + ex.getMessage(), ex);
 		} finally {
-			dbReadUnlock();
+			releaseSharedLock();
 		}
 	}
 
@@ -700,9 +1343,9 @@ public class SleuthkitCase {
 			subString = subString + "%";
 		}
 
-		dbReadLock();
+		acquireSharedLock();
 		try {
-			Statement s = con.createStatement();
+			Statement s = getReadConnection().createStatement();
 			ResultSet rs = s.executeQuery("SELECT DISTINCT blackboard_artifacts.artifact_id, "
 					+ "blackboard_artifacts.obj_id, blackboard_artifacts.artifact_type_id "
 					+ "FROM blackboard_artifacts, blackboard_attributes "
@@ -718,7 +1361,7 @@ public class SleuthkitCase {
 		} catch (SQLException ex) {
 			throw new TskCoreException("Error getting blackboard artifacts by attribute. " + ex.getMessage(), ex);
 		} finally {
-			dbReadUnlock();
+			releaseSharedLock();
 		}
 	}
 
@@ -734,9 +1377,9 @@ public class SleuthkitCase {
 	 * within tsk core and artifacts could not be queried
 	 */
 	public List<BlackboardArtifact> getBlackboardArtifacts(BlackboardAttribute.ATTRIBUTE_TYPE attrType, int value) throws TskCoreException {
-		dbReadLock();
+		acquireSharedLock();
 		try {
-			Statement s = con.createStatement();
+			Statement s = getReadConnection().createStatement();
 			ResultSet rs = s.executeQuery("SELECT DISTINCT blackboard_artifacts.artifact_id, "
 					+ "blackboard_artifacts.obj_id, blackboard_artifacts.artifact_type_id "
 					+ "FROM blackboard_artifacts, blackboard_attributes "
@@ -752,7 +1395,7 @@ public class SleuthkitCase {
 		} catch (SQLException ex) {
 			throw new TskCoreException("Error getting blackboard artifacts by attribute. " + ex.getMessage(), ex);
 		} finally {
-			dbReadUnlock();
+			releaseSharedLock();
 		}
 	}
 
@@ -768,9 +1411,9 @@ public class SleuthkitCase {
 	 * within tsk core and artifacts could not be queried
 	 */
 	public List<BlackboardArtifact> getBlackboardArtifacts(BlackboardAttribute.ATTRIBUTE_TYPE attrType, long value) throws TskCoreException {
-		dbReadLock();
+		acquireSharedLock();
 		try {
-			Statement s = con.createStatement();
+			Statement s = getReadConnection().createStatement();
 			ResultSet rs = s.executeQuery("SELECT DISTINCT blackboard_artifacts.artifact_id, "
 					+ "blackboard_artifacts.obj_id, blackboard_artifacts.artifact_type_id "
 					+ "FROM blackboard_artifacts, blackboard_attributes "
@@ -786,7 +1429,7 @@ public class SleuthkitCase {
 		} catch (SQLException ex) {
 			throw new TskCoreException("Error getting blackboard artifacts by attribute. " + ex.getMessage(), ex);
 		} finally {
-			dbReadUnlock();
+			releaseSharedLock();
 		}
 	}
 
@@ -802,9 +1445,9 @@ public class SleuthkitCase {
 	 * within tsk core and artifacts could not be queried
 	 */
 	public List<BlackboardArtifact> getBlackboardArtifacts(BlackboardAttribute.ATTRIBUTE_TYPE attrType, double value) throws TskCoreException {
-		dbReadLock();
+		acquireSharedLock();
 		try {
-			Statement s = con.createStatement();
+			Statement s = getReadConnection().createStatement();
 			ResultSet rs = s.executeQuery("SELECT DISTINCT blackboard_artifacts.artifact_id, "
 					+ "blackboard_artifacts.obj_id, blackboard_artifacts.artifact_type_id "
 					+ "FROM blackboard_artifacts, blackboard_attributes "
@@ -820,7 +1463,7 @@ public class SleuthkitCase {
 		} catch (SQLException ex) {
 			throw new TskCoreException("Error getting blackboard artifacts by attribute. " + ex.getMessage(), ex);
 		} finally {
-			dbReadUnlock();
+			releaseSharedLock();
 		}
 	}
 
@@ -836,9 +1479,9 @@ public class SleuthkitCase {
 	 * within tsk core and artifacts could not be queried
 	 */
 	public List<BlackboardArtifact> getBlackboardArtifacts(BlackboardAttribute.ATTRIBUTE_TYPE attrType, byte value) throws TskCoreException {
-		dbReadLock();
+		acquireSharedLock();
 		try {
-			Statement s = con.createStatement();
+			Statement s = getReadConnection().createStatement();
 			ResultSet rs = s.executeQuery("SELECT DISTINCT blackboard_artifacts.artifact_id, "
 					+ "blackboard_artifacts.obj_id, blackboard_artifacts.artifact_type_id "
 					+ "FROM blackboard_artifacts, blackboard_attributes "
@@ -854,7 +1497,7 @@ public class SleuthkitCase {
 		} catch (SQLException ex) {
 			throw new TskCoreException("Error getting blackboard artifacts by attribute. " + ex.getMessage(), ex);
 		} finally {
-			dbReadUnlock();
+			releaseSharedLock();
 		}
 	}
 
@@ -866,10 +1509,10 @@ public class SleuthkitCase {
 	 * within tsk core
 	 */
 	public ArrayList<BlackboardArtifact.ARTIFACT_TYPE> getBlackboardArtifactTypes() throws TskCoreException {
-		dbReadLock();
+		acquireSharedLock();
 		try {
 			ArrayList<BlackboardArtifact.ARTIFACT_TYPE> artifact_types = new ArrayList<BlackboardArtifact.ARTIFACT_TYPE>();
-			Statement s = con.createStatement();
+			Statement s = getReadConnection().createStatement();
 			ResultSet rs = s.executeQuery("SELECT artifact_type_id FROM blackboard_artifact_types");
 
 			while (rs.next()) {
@@ -881,7 +1524,7 @@ public class SleuthkitCase {
 		} catch (SQLException ex) {
 			throw new TskCoreException("Error getting artifact types. " + ex.getMessage(), ex);
 		} finally {
-			dbReadUnlock();
+			releaseSharedLock();
 		}
 
 	}
@@ -897,10 +1540,10 @@ public class SleuthkitCase {
 	 * within tsk core
 	 */
 	public ArrayList<BlackboardAttribute.ATTRIBUTE_TYPE> getBlackboardAttributeTypes() throws TskCoreException {
-		dbReadLock();
+		acquireSharedLock();
 		try {
 			ArrayList<BlackboardAttribute.ATTRIBUTE_TYPE> attribute_types = new ArrayList<BlackboardAttribute.ATTRIBUTE_TYPE>();
-			Statement s = con.createStatement();
+			Statement s = getReadConnection().createStatement();
 			ResultSet rs = s.executeQuery("SELECT type_name FROM blackboard_attribute_types");
 
 			while (rs.next()) {
@@ -912,7 +1555,7 @@ public class SleuthkitCase {
 		} catch (SQLException ex) {
 			throw new TskCoreException("Error getting attribute types. " + ex.getMessage(), ex);
 		} finally {
-			dbReadUnlock();
+			releaseSharedLock();
 		}
 	}
 
@@ -929,10 +1572,10 @@ public class SleuthkitCase {
 	public int getBlackboardAttributeTypesCount() throws TskCoreException {
 		ResultSet rs = null;
 		Statement s = null;
-		dbReadLock();
+		acquireSharedLock();
 		try {
 			int count = 0;
-			s = con.createStatement();
+			s = getReadConnection().createStatement();
 			rs = s.executeQuery("SELECT COUNT(*) FROM blackboard_attribute_types");
 
 			if (rs.next()) {
@@ -960,7 +1603,7 @@ public class SleuthkitCase {
 				}
 			}
 
-			dbReadUnlock();
+			releaseSharedLock();
 		}
 
 	}
@@ -977,13 +1620,14 @@ public class SleuthkitCase {
 	 * within tsk core
 	 */
 	private ArrayList<BlackboardArtifact> getArtifactsHelper(int artifactTypeID, String artifactTypeName, long obj_id) throws TskCoreException {
-		dbReadLock();
+		acquireSharedLock();
 		try {
 			ArrayList<BlackboardArtifact> artifacts = new ArrayList<BlackboardArtifact>();
 
-			getArtifactsHelper1St.setLong(1, obj_id);
-			getArtifactsHelper1St.setInt(1, artifactTypeID);
-			ResultSet rs = getArtifactsHelper1St.executeQuery();
+			PreparedStatement statement = getReadConnection().getPreparedStatement(PREPARED_STATEMENT.SELECT_ARTIFACTS_BY_SOURCE_AND_TYPE);
+			statement.setLong(1, obj_id);
+			statement.setInt(2, artifactTypeID);
+			ResultSet rs = statement.executeQuery();
 
 			while (rs.next()) {
 				artifacts.add(new BlackboardArtifact(this, rs.getLong(1), obj_id, artifactTypeID, artifactTypeName, this.getArtifactTypeDisplayName(artifactTypeID)));
@@ -994,7 +1638,7 @@ public class SleuthkitCase {
 		} catch (SQLException ex) {
 			throw new TskCoreException("Error getting or creating a blackboard artifact. " + ex.getMessage(), ex);
 		} finally {
-			dbReadUnlock();
+			releaseSharedLock();
 		}
 	}
 
@@ -1011,13 +1655,14 @@ public class SleuthkitCase {
 	 */
 	private long getArtifactsCountHelper(int artifactTypeID, long obj_id) throws TskCoreException {
 		ResultSet rs = null;
-		dbReadLock();
+		acquireSharedLock();
 		try {
 			long count = 0;
 
-			getArtifactsCountHelperSt.setLong(1, obj_id);
-			getArtifactsCountHelperSt.setInt(1, artifactTypeID);
-			rs = getArtifactsCountHelperSt.executeQuery();
+			PreparedStatement statement = getReadConnection().getPreparedStatement(PREPARED_STATEMENT.COUNT_ARTIFACTS_BY_SOURCE_AND_TYPE);
+			statement.setLong(1, obj_id);
+			statement.setInt(2, artifactTypeID);
+			rs = statement.executeQuery();
 
 			if (rs.next()) {
 				count = rs.getLong(1);
@@ -1036,7 +1681,7 @@ public class SleuthkitCase {
 					logger.log(Level.SEVERE, "Could not close the result set. ", ex);
 				}
 			}
-			dbReadUnlock();
+			releaseSharedLock();
 		}
 	}
 
@@ -1050,12 +1695,13 @@ public class SleuthkitCase {
 	 * within tsk core
 	 */
 	private ArrayList<BlackboardArtifact> getArtifactsHelper(int artifactTypeID, String artifactTypeName) throws TskCoreException {
-		dbReadLock();
+		acquireSharedLock();
 		try {
 			ArrayList<BlackboardArtifact> artifacts = new ArrayList<BlackboardArtifact>();
 
-			getArtifactsHelper2St.setInt(1, artifactTypeID);
-			ResultSet rs = getArtifactsHelper2St.executeQuery();
+			PreparedStatement statement = getReadConnection().getPreparedStatement(PREPARED_STATEMENT.SELECT_ARTIFACTS_BY_TYPE);
+			statement.setInt(1, artifactTypeID);
+			ResultSet rs = statement.executeQuery();
 
 			while (rs.next()) {
 				artifacts.add(new BlackboardArtifact(this, rs.getLong(1), rs.getLong(2), artifactTypeID, artifactTypeName, this.getArtifactTypeDisplayName(artifactTypeID)));
@@ -1066,7 +1712,7 @@ public class SleuthkitCase {
 		} catch (SQLException ex) {
 			throw new TskCoreException("Error getting or creating a blackboard artifact. " + ex.getMessage(), ex);
 		} finally {
-			dbReadUnlock();
+			releaseSharedLock();
 		}
 	}
 
@@ -1192,9 +1838,9 @@ public class SleuthkitCase {
 	 * within tsk core
 	 */
 	public List<BlackboardArtifact> getBlackboardArtifacts(ARTIFACT_TYPE artifactType, BlackboardAttribute.ATTRIBUTE_TYPE attrType, String value) throws TskCoreException {
-		dbReadLock();
+		acquireSharedLock();
 		try {
-			Statement s = con.createStatement();
+			Statement s = getReadConnection().createStatement();
 			ResultSet rs = s.executeQuery("SELECT DISTINCT blackboard_artifacts.artifact_id, "
 					+ "blackboard_artifacts.obj_id, blackboard_artifacts.artifact_type_id "
 					+ "FROM blackboard_artifacts, blackboard_attributes "
@@ -1211,7 +1857,7 @@ public class SleuthkitCase {
 		} catch (SQLException ex) {
 			throw new TskCoreException("Error getting blackboard artifacts by artifact type and attribute. " + ex.getMessage(), ex);
 		} finally {
-			dbReadUnlock();
+			releaseSharedLock();
 		}
 	}
 
@@ -1224,10 +1870,11 @@ public class SleuthkitCase {
 	 * within tsk core
 	 */
 	public BlackboardArtifact getBlackboardArtifact(long artifactID) throws TskCoreException {
-		dbReadLock();
+		acquireSharedLock();
 		try {
-			getBlackboardArtifactSt.setLong(1, artifactID);
-			ResultSet rs = getBlackboardArtifactSt.executeQuery();
+			PreparedStatement statement = getReadConnection().getPreparedStatement(PREPARED_STATEMENT.SELECT_ARTIFACT_BY_ID);
+			statement.setLong(1, artifactID);
+			ResultSet rs = statement.executeQuery();
 			long obj_id = rs.getLong(1);
 			int artifact_type_id = rs.getInt(2);
 			rs.close();
@@ -1236,10 +1883,20 @@ public class SleuthkitCase {
 		} catch (SQLException ex) {
 			throw new TskCoreException("Error getting a blackboard artifact. " + ex.getMessage(), ex);
 		} finally {
-			dbReadUnlock();
+			releaseSharedLock();
 		}
 	}
 
+	/**
+	 * Get the number of attribute writes so far, attributes read before a later
+	 * write may be out of date
+	 *
+	 * @return the number of attribute writes
+	 */
+	long getAttributeWrites() {
+		return attributeWrites;
+	}
+
 	/**
 	 * Add a blackboard attribute. All information for the attribute should be
 	 * in the given attribute
@@ -1250,47 +1907,177 @@ public class SleuthkitCase {
 	 * within tsk core
 	 */
 	public void addBlackboardAttribute(BlackboardAttribute attr) throws TskCoreException {
-		dbWriteLock();
+		acquireExclusiveLock();
 		try {
-			PreparedStatement ps = null;
-			switch (attr.getValueType()) {
-				case STRING:
-					addBlackboardAttributeStringSt.setString(6, escapeForBlackboard(attr.getValueString()));
-					ps = addBlackboardAttributeStringSt;
-					break;
-				case BYTE:
-					addBlackboardAttributeByteSt.setBytes(6, attr.getValueBytes());
-					ps = addBlackboardAttributeByteSt;
-					break;
-				case INTEGER:
-					addBlackboardAttributeIntegerSt.setInt(6, attr.getValueInt());
-					ps = addBlackboardAttributeIntegerSt;
-					break;
-				case LONG:
-					addBlackboardAttributeLongSt.setLong(6, attr.getValueLong());
-					ps = addBlackboardAttributeLongSt;
-					break;
-				case DOUBLE:
-					addBlackboardAttributeDoubleSt.setDouble(6, attr.getValueDouble());
-					ps = addBlackboardAttributeDoubleSt;
-					break;
-			} // end switch
-
-			//set common fields
-			ps.setLong(1, attr.getArtifactID());
-			ps.setString(2, attr.getModuleName());
-			ps.setString(3, attr.getContext());
-			ps.setInt(4, attr.getAttributeTypeID());
-			ps.setLong(5, attr.getValueType().getType());
-			ps.executeUpdate();
-			ps.clearParameters();
+			attributeWrites++;
+			bindAttribute(writeConnection.getPreparedStatement(getAttributeInsert(attr.getValueType())), attr).executeUpdate();
 		} catch (SQLException ex) {
 			throw new TskCoreException("Error getting or creating a blackboard artifact.", ex);
 		} finally {
-			dbWriteUnlock();
+			releaseExclusiveLock();
+		}
+	}
+
+	/**
+	 * Get the insert statement for attributes of a value type
+	 *
+	 * @param valueType value type of the attributes to insert
+	 * @return the insert statement
+	 * @throws SQLException thrown if the value type is unknown
+	 */
+	private static PREPARED_STATEMENT getAttributeInsert(TSK_BLACKBOARD_ATTRIBUTE_VALUE_TYPE valueType) throws SQLException {
+		switch (valueType) {
+			case STRING:
+				return PREPARED_STATEMENT.INSERT_STRING_ATTRIBUTE;
+			case BYTE:
+				return PREPARED_STATEMENT.INSERT_BYTE_ATTRIBUTE;
+			case INTEGER:
+				return PREPARED_STATEMENT.INSERT_INT_ATTRIBUTE;
+			case LONG:
+				return PREPARED_STATEMENT.INSERT_LONG_ATTRIBUTE;
+			case DOUBLE:
+				return PREPARED_STATEMENT.INSERT_DOUBLE_ATTRIBUTE;
+			default:
+				throw new SQLException("Unknown attribute value type " + valueType);
+		}
+	}
+
+	/**
+	 * Set the parameters of an insert statement from getAttributeInsert() to
+	 * the values of an attribute
+	 *
+	 * @param ps insert statement for the value type of the attribute
+	 * @param attr attribute to insert
+	 * @return the statement, ready to be executed or batched
+	 * @throws SQLException thrown if a parameter could not be set
+	 */
+	private static PreparedStatement bindAttribute(PreparedStatement ps, BlackboardAttribute attr) throws SQLException {
+		switch (attr.getValueType()) {
+			case STRING:
+				ps.setString(6, escapeForBlackboard(attr.getValueString()));
+				break;
+			case BYTE:
+				ps.setBytes(6, attr.getValueBytes());
+				break;
+			case INTEGER:
+				ps.setInt(6, attr.getValueInt());
+				break;
+			case LONG:
+				ps.setLong(6, attr.getValueLong());
+				break;
+			case DOUBLE:
+				ps.setDouble(6, attr.getValueDouble());
+				break;
+		}
+
+		//set common fields
+		ps.setLong(1, attr.getArtifactID());
+		ps.setString(2, attr.getModuleName());
+		ps.setString(3, attr.getContext());
+		ps.setInt(4, attr.getAttributeTypeID());
+		ps.setLong(5, attr.getValueType().getType());
+		return ps;
+	}
+
+	/**
+	 * Add artifacts and attributes in a single transaction, using batched
+	 * inserts. The artifacts must have ids from allocateArtifactId() and the
+	 * attributes must have their artifact id set. Either all rows are added,
+	 * or none.
+	 *
+	 * @param artifacts artifacts to add
+	 * @param attributes attributes to add
+	 * @throws TskCoreException exception thrown if the transaction failed
+	 */
+	void addBlackboardBatch(Collection<BlackboardArtifact> artifacts, Collection<BlackboardAttribute> attributes) throws TskCoreException {
+		acquireExclusiveLock();
+		try {
+			if (!attributes.isEmpty()) {
+				attributeWrites++;
+			}
+			final Connection connection = writeConnection.getConnection();
+			connection.setAutoCommit(false);
+			try {
+				if (!artifacts.isEmpty()) {
+					PreparedStatement statement = writeConnection.getBatchStatement(PREPARED_STATEMENT.INSERT_ARTIFACT);
+					for (BlackboardArtifact artifact : artifacts) {
+						statement.setLong(1, artifact.getArtifactID());
+						statement.setLong(2, artifact.getObjectID());
+						statement.setInt(3, artifact.getArtifactTypeID());
+						statement.addBatch();
+					}
+					statement.executeBatch();
+				}
+
+				//statements are per value type, all fetched before batching
+				//as fetching a statement again would clear its batch
+				Set<TSK_BLACKBOARD_ATTRIBUTE_VALUE_TYPE> valueTypes = EnumSet.noneOf(TSK_BLACKBOARD_ATTRIBUTE_VALUE_TYPE.class);
+				for (BlackboardAttribute attr : attributes) {
+					valueTypes.add(attr.getValueType());
+				}
+				Map<TSK_BLACKBOARD_ATTRIBUTE_VALUE_TYPE, PreparedStatement> inserts =
+						new EnumMap<TSK_BLACKBOARD_ATTRIBUTE_VALUE_TYPE, PreparedStatement>(TSK_BLACKBOARD_ATTRIBUTE_VALUE_TYPE.class);
+				for (TSK_BLACKBOARD_ATTRIBUTE_VALUE_TYPE valueType : valueTypes) {
+					inserts.put(valueType, writeConnection.getBatchStatement(getAttributeInsert(valueType)));
+				}
+				for (BlackboardAttribute attr : attributes) {
+					bindAttribute(inserts.get(attr.getValueType()), attr).addBatch();
+				}
+				for (PreparedStatement statement : inserts.values()) {
+					statement.executeBatch();
+				}
+
+				connection.commit();
+			} catch (SQLException ex) {
+				connection.rollback();
+				if (!artifacts.isEmpty()) {
+					discardArtifactIds();
+				}
+				throw ex;
+			} finally {
+				connection.setAutoCommit(true);
+			}
+		} catch (SQLException ex) {
+			throw new TskCoreException("Error adding a batch of blackboard artifacts and attributes.", ex);
+		} finally {
+			releaseExclusiveLock();
 		}
 	}
 
+	/**
+	 * Get the asynchronous blackboard writer of this case. The writer is
+	 * started on first use and stopped when the case is closed.
+	 *
+	 * @return the blackboard writer
+	 */
+	public synchronized BlackboardWriter getBlackboardWriter() {
+		if (blackboardWriter == null) {
+			blackboardWriter = new BlackboardWriter(this);
+		}
+		return blackboardWriter;
+	}
+
+	/**
+	 * Get the cache of the Content objects looked up by id, e.g. to read its
+	 * hit and miss counts
+	 *
+	 * @return the content cache of the case
+	 */
+	public ContentCache getContentCache() {
+		return contentCache;
+	}
+
+	/**
+	 * Replace the content cache of the case with an empty one
+	 *
+	 * @param maxSize maximum number of cached objects, 0 disables caching
+	 * @param referenceType how the cached objects are referenced, SOFT or WEAK
+	 * let the garbage collector reclaim them before the size bound is reached
+	 */
+	public void setContentCache(int maxSize, ContentCache.ReferenceType referenceType) {
+		contentCache = new ContentCache(maxSize, referenceType);
+	}
+
 	/**
 	 * Add a blackboard attributes in bulk. All information for the attribute
 	 * should be in the given attribute
@@ -1301,48 +2088,18 @@ public class SleuthkitCase {
 	 * within tsk core
 	 */
 	public void addBlackboardAttributes(Collection<BlackboardAttribute> attributes) throws TskCoreException {
-		dbWriteLock();
+		acquireExclusiveLock();
+		attributeWrites++;
 		try {
-			con.setAutoCommit(false);
+			writeConnection.getConnection().setAutoCommit(false);
 		} catch (SQLException ex) {
-			dbWriteUnlock();
+			releaseExclusiveLock();
 			throw new TskCoreException("Error creating transaction, no attributes created.", ex);
 		}
 
 		for (final BlackboardAttribute attr : attributes) {
-			PreparedStatement ps = null;
 			try {
-				switch (attr.getValueType()) {
-					case STRING:
-						addBlackboardAttributeStringSt.setString(6, escapeForBlackboard(attr.getValueString()));
-						ps = addBlackboardAttributeStringSt;
-						break;
-					case BYTE:
-						addBlackboardAttributeByteSt.setBytes(6, attr.getValueBytes());
-						ps = addBlackboardAttributeByteSt;
-						break;
-					case INTEGER:
-						addBlackboardAttributeIntegerSt.setInt(6, attr.getValueInt());
-						ps = addBlackboardAttributeIntegerSt;
-						break;
-					case LONG:
-						addBlackboardAttributeLongSt.setLong(6, attr.getValueLong());
-						ps = addBlackboardAttributeLongSt;
-						break;
-					case DOUBLE:
-						addBlackboardAttributeDoubleSt.setDouble(6, attr.getValueDouble());
-						ps = addBlackboardAttributeDoubleSt;
-						break;
-				}
-
-				//set commmon fields and exec. update
-				ps.setLong(1, attr.getArtifactID());
-				ps.setString(2, attr.getModuleName());
-				ps.setString(3, attr.getContext());
-				ps.setInt(4, attr.getAttributeTypeID());
-				ps.setLong(5, attr.getValueType().getType());
-				ps.executeUpdate();
-				ps.clearParameters();
+				bindAttribute(writeConnection.getPreparedStatement(getAttributeInsert(attr.getValueType())), attr).executeUpdate();
 
 			} catch (SQLException ex) {
 				logger.log(Level.WARNING, "Error adding attribute: " + attr.toString(), ex);
@@ -1352,16 +2109,16 @@ public class SleuthkitCase {
 
 		//commit transaction
 		try {
-			con.commit();
+			writeConnection.getConnection().commit();
 		} catch (SQLException ex) {
 			throw new TskCoreException("Error committing transaction, no attributes created.", ex);
 		} finally {
 			try {
-				con.setAutoCommit(true);
+				writeConnection.getConnection().setAutoCommit(true);
 			} catch (SQLException ex) {
 				throw new TskCoreException("Error setting autocommit and closing the transaction!", ex);
 			} finally {
-				dbWriteUnlock();
+				releaseExclusiveLock();
 			}
 		}
 
@@ -1377,13 +2134,16 @@ public class SleuthkitCase {
 	 * within tsk core
 	 */
 	public int addAttrType(String attrTypeString, String displayName) throws TskCoreException {
-		addAttrType(attrTypeString, displayName, attributeIDcounter);
-		int retval = attributeIDcounter;
-		attributeIDcounter++;
-		return retval;
-
+		acquireExclusiveLock();
+		try {
+			final int typeID = attributeIDcounter;
+			addAttrType(attrTypeString, displayName, typeID);
+			attributeIDcounter++;
+			return typeID;
+		} finally {
+			releaseExclusiveLock();
+		}
 	}
-
 	/**
 	 * helper method. add an attribute type with the given name and id
 	 *
@@ -1394,14 +2154,15 @@ public class SleuthkitCase {
 	 * within tsk core
 	 */
 	private void addAttrType(String attrTypeString, String displayName, int typeID) throws TskCoreException {
-		dbWriteLock();
+		acquireExclusiveLock();
 		try {
-			Statement s = con.createStatement();
+			Statement s = writeConnection.createStatement();
 			ResultSet rs = s.executeQuery("SELECT * from blackboard_attribute_types WHERE type_name = '" + attrTypeString + "'");
 			if (!rs.next()) {
 				s.executeUpdate("INSERT INTO blackboard_attribute_types (attribute_type_id, type_name, display_name) VALUES (" + typeID + ", '" + attrTypeString + "', '" + displayName + "')");
 				rs.close();
 				s.close();
+				attributeTypes.put(typeID, attrTypeString, displayName);
 			} else {
 				rs.close();
 				s.close();
@@ -1410,7 +2171,7 @@ public class SleuthkitCase {
 		} catch (SQLException ex) {
 			throw new TskCoreException("Error getting attribute type id.", ex);
 		} finally {
-			dbWriteUnlock();
+			releaseExclusiveLock();
 		}
 	}
 
@@ -1424,29 +2185,16 @@ public class SleuthkitCase {
 	 * within tsk core
 	 */
 	public int getAttrTypeID(String attrTypeString) throws TskCoreException {
-		dbReadLock();
-		try {
-			Statement s = con.createStatement();
-			ResultSet rs;
-
-			rs = s.executeQuery("SELECT attribute_type_id FROM blackboard_attribute_types WHERE type_name = '" + attrTypeString + "'");
-			if (rs.next()) {
-				int type = rs.getInt(1);
-				rs.close();
-				s.close();
-				return type;
-			} else {
-				rs.close();
-				s.close();
+		int type = attributeTypes.getId(attrTypeString);
+		if (type < 0) {
+			reloadTypes(ATTRIBUTE_TYPES_QUERY, attributeTypes);
+			type = attributeTypes.getId(attrTypeString);
+			if (type < 0) {
 				throw new TskCoreException("No id with that name");
 			}
-		} catch (SQLException ex) {
-			throw new TskCoreException("Error getting attribute type id.", ex);
-		} finally {
-			dbReadUnlock();
 		}
+		return type;
 	}
-
 	/**
 	 * Get the string associated with the given id. Will throw an error if that
 	 * id does not exist
@@ -1457,30 +2205,16 @@ public class SleuthkitCase {
 	 * within tsk core
 	 */
 	public String getAttrTypeString(int attrTypeID) throws TskCoreException {
-		dbReadLock();
-		try {
-			Statement s = con.createStatement();
-			ResultSet rs;
-
-			rs = s.executeQuery("SELECT type_name FROM blackboard_attribute_types WHERE attribute_type_id = " + attrTypeID);
-			if (rs.next()) {
-				String type = rs.getString(1);
-				rs.close();
-				s.close();
-				return type;
-			} else {
-				rs.close();
-				s.close();
+		String type = attributeTypes.getName(attrTypeID);
+		if (type == null) {
+			reloadTypes(ATTRIBUTE_TYPES_QUERY, attributeTypes);
+			type = attributeTypes.getName(attrTypeID);
+			if (type == null) {
 				throw new TskCoreException("No type with that id.");
 			}
-
-		} catch (SQLException ex) {
-			throw new TskCoreException("Error getting or creating a attribute type name.", ex);
-		} finally {
-			dbReadUnlock();
 		}
+		return type;
 	}
-
 	/**
 	 * Get the display name for the attribute with the given id. Will throw an
 	 * error if that id does not exist
@@ -1491,30 +2225,16 @@ public class SleuthkitCase {
 	 * within tsk core
 	 */
 	public String getAttrTypeDisplayName(int attrTypeID) throws TskCoreException {
-		dbReadLock();
-		try {
-			Statement s = con.createStatement();
-			ResultSet rs;
-
-			rs = s.executeQuery("SELECT display_name FROM blackboard_attribute_types WHERE attribute_type_id = " + attrTypeID);
-			if (rs.next()) {
-				String type = rs.getString(1);
-				rs.close();
-				s.close();
-				return type;
-			} else {
-				rs.close();
-				s.close();
+		String type = attributeTypes.getDisplayName(attrTypeID);
+		if (type == null) {
+			reloadTypes(ATTRIBUTE_TYPES_QUERY, attributeTypes);
+			type = attributeTypes.getDisplayName(attrTypeID);
+			if (type == null) {
 				throw new TskCoreException("No type with that id.");
 			}
-
-		} catch (SQLException ex) {
-			throw new TskCoreException("Error getting or creating a attribute type name.", ex);
-		} finally {
-			dbReadUnlock();
 		}
+		return type;
 	}
-
 	/**
 	 * Get artifact type id for the given string. Will throw an error if one
 	 * with that name does not exist.
@@ -1525,30 +2245,16 @@ public class SleuthkitCase {
 	 * within tsk core
 	 */
 	int getArtifactTypeID(String artifactTypeString) throws TskCoreException {
-		dbReadLock();
-		try {
-			Statement s = con.createStatement();
-			ResultSet rs;
-
-			rs = s.executeQuery("SELECT artifact_type_id FROM blackboard_artifact_types WHERE type_name = '" + artifactTypeString + "'");
-			if (rs.next()) {
-				int type = rs.getInt(1);
-				rs.close();
-				s.close();
-				return type;
-			} else {
-				rs.close();
-				s.close();
+		int type = artifactTypes.getId(artifactTypeString);
+		if (type < 0) {
+			reloadTypes(ARTIFACT_TYPES_QUERY, artifactTypes);
+			type = artifactTypes.getId(artifactTypeString);
+			if (type < 0) {
 				throw new TskCoreException("No artifact with that name exists");
-			}
-
-		} catch (SQLException ex) {
-			throw new TskCoreException("Error getting artifact type id." + ex.getMessage(), ex);
-		} finally {
-			dbReadUnlock();
+			}
 		}
+		return type;
 	}
-
 	/**
 	 * Get artifact type name for the given string. Will throw an error if that
 	 * artifact doesn't exist. Use addArtifactType(...) to create a new one.
@@ -1559,30 +2265,16 @@ public class SleuthkitCase {
 	 * within tsk core
 	 */
 	String getArtifactTypeString(int artifactTypeID) throws TskCoreException {
-		dbReadLock();
-		try {
-			Statement s = con.createStatement();
-			ResultSet rs;
-
-			rs = s.executeQuery("SELECT type_name FROM blackboard_artifact_types WHERE artifact_type_id = " + artifactTypeID);
-			if (rs.next()) {
-				String type = rs.getString(1);
-				rs.close();
-				s.close();
-				return type;
-			} else {
-				rs.close();
-				s.close();
+		String type = artifactTypes.getName(artifactTypeID);
+		if (type == null) {
+			reloadTypes(ARTIFACT_TYPES_QUERY, artifactTypes);
+			type = artifactTypes.getName(artifactTypeID);
+			if (type == null) {
 				throw new TskCoreException("Error: no artifact with that name in database");
 			}
-
-		} catch (SQLException ex) {
-			throw new TskCoreException("Error getting artifact type id.", ex);
-		} finally {
-			dbReadUnlock();
 		}
+		return type;
 	}
-
 	/**
 	 * Get artifact type display name for the given string. Will throw an error
 	 * if that artifact doesn't exist. Use addArtifactType(...) to create a new
@@ -1594,30 +2286,16 @@ public class SleuthkitCase {
 	 * within tsk core
 	 */
 	String getArtifactTypeDisplayName(int artifactTypeID) throws TskCoreException {
-		dbReadLock();
-		try {
-			Statement s = con.createStatement();
-			ResultSet rs;
-
-			rs = s.executeQuery("SELECT display_name FROM blackboard_artifact_types WHERE artifact_type_id = " + artifactTypeID);
-			if (rs.next()) {
-				String type = rs.getString(1);
-				rs.close();
-				s.close();
-				return type;
-			} else {
-				rs.close();
-				s.close();
+		String type = artifactTypes.getDisplayName(artifactTypeID);
+		if (type == null) {
+			reloadTypes(ARTIFACT_TYPES_QUERY, artifactTypes);
+			type = artifactTypes.getDisplayName(artifactTypeID);
+			if (type == null) {
 				throw new TskCoreException("Error: no artifact with that name in database");
 			}
-
-		} catch (SQLException ex) {
-			throw new TskCoreException("Error getting artifact type id.", ex);
-		} finally {
-			dbReadUnlock();
 		}
+		return type;
 	}
-
 	/**
 	 * Add an artifact type with the given name. Will return an id that can be
 	 * used to look that artifact type up.
@@ -1629,12 +2307,16 @@ public class SleuthkitCase {
 	 * within tsk core
 	 */
 	public int addArtifactType(String artifactTypeName, String displayName) throws TskCoreException {
-		addArtifactType(artifactTypeName, displayName, artifactIDcounter);
-		int retval = artifactIDcounter;
-		artifactIDcounter++;
-		return retval;
+		acquireExclusiveLock();
+		try {
+			final int typeID = artifactIDcounter;
+			addArtifactType(artifactTypeName, displayName, typeID);
+			artifactIDcounter++;
+			return typeID;
+		} finally {
+			releaseExclusiveLock();
+		}
 	}
-
 	/**
 	 * helper method. add an artifact with the given type and id
 	 *
@@ -1645,14 +2327,15 @@ public class SleuthkitCase {
 	 * within tsk core
 	 */
 	private void addArtifactType(String artifactTypeName, String displayName, int typeID) throws TskCoreException {
-		dbWriteLock();
+		acquireExclusiveLock();
 		try {
-			Statement s = con.createStatement();
+			Statement s = writeConnection.createStatement();
 			ResultSet rs = s.executeQuery("SELECT * FROM blackboard_artifact_types WHERE type_name = '" + artifactTypeName + "'");
 			if (!rs.next()) {
 				s.executeUpdate("INSERT INTO blackboard_artifact_types (artifact_type_id, type_name, display_name) VALUES (" + typeID + " , '" + artifactTypeName + "', '" + displayName + "')");
 				rs.close();
 				s.close();
+				artifactTypes.put(typeID, artifactTypeName, displayName);
 			} else {
 				rs.close();
 				s.close();
@@ -1661,7 +2344,7 @@ public class SleuthkitCase {
 		} catch (SQLException ex) {
 			throw new TskCoreException("Error adding artifact type.", ex);
 		} finally {
-			dbWriteUnlock();
+			releaseExclusiveLock();
 		}
 
 	}
@@ -1669,10 +2352,11 @@ public class SleuthkitCase {
 	public ArrayList<BlackboardAttribute> getBlackboardAttributes(final BlackboardArtifact artifact) throws TskCoreException {
 		final ArrayList<BlackboardAttribute> attributes = new ArrayList<BlackboardAttribute>();
 		ResultSet rs = null;
-		dbReadLock();
+		acquireSharedLock();
 		try {
-			getBlackboardAttributesSt.setLong(1, artifact.getArtifactID());
-			rs = getBlackboardAttributesSt.executeQuery();
+			PreparedStatement statement = getReadConnection().getPreparedStatement(PREPARED_STATEMENT.SELECT_ATTRIBUTES_OF_ARTIFACT);
+			statement.setLong(1, artifact.getArtifactID());
+			rs = statement.executeQuery();
 			while (rs.next()) {
 
 				final BlackboardAttribute attr = new BlackboardAttribute(
@@ -1695,7 +2379,7 @@ public class SleuthkitCase {
 		} catch (SQLException ex) {
 			throw new TskCoreException("Error getting attributes for artifact: " + artifact.getArtifactID(), ex);
 		} finally {
-			dbReadUnlock();
+			releaseSharedLock();
 		}
 	}
 
@@ -1711,11 +2395,11 @@ public class SleuthkitCase {
 	 */
 	public ArrayList<BlackboardAttribute> getMatchingAttributes(String whereClause) throws TskCoreException {
 		ArrayList<BlackboardAttribute> matches = new ArrayList<BlackboardAttribute>();
-		dbReadLock();
+		acquireSharedLock();
 		try {
 			Statement s;
 
-			s = con.createStatement();
+			s = getReadConnection().createStatement();
 
 			ResultSet rs = s.executeQuery("Select artifact_id, source, context, attribute_type_id, value_type, "
 					+ "value_byte, value_text, value_int32, value_int64, value_double FROM blackboard_attributes " + whereClause);
@@ -1733,7 +2417,7 @@ public class SleuthkitCase {
 		} catch (SQLException ex) {
 			throw new TskCoreException("Error getting attributes. using this where clause: " + whereClause, ex);
 		} finally {
-			dbReadUnlock();
+			releaseSharedLock();
 		}
 	}
 
@@ -1748,10 +2432,10 @@ public class SleuthkitCase {
 	 */
 	public ArrayList<BlackboardArtifact> getMatchingArtifacts(String whereClause) throws TskCoreException {
 		ArrayList<BlackboardArtifact> matches = new ArrayList<BlackboardArtifact>();
-		dbReadLock();
+		acquireSharedLock();
 		try {
 			Statement s;
-			s = con.createStatement();
+			s = getReadConnection().createStatement();
 
 			ResultSet rs = s.executeQuery("Select artifact_id, obj_id, artifact_type_id FROM blackboard_artifacts " + whereClause);
 
@@ -1765,7 +2449,7 @@ public class SleuthkitCase {
 		} catch (SQLException ex) {
 			throw new TskCoreException("Error getting attributes. using this where clause: " + whereClause, ex);
 		} finally {
-			dbReadUnlock();
+			releaseSharedLock();
 		}
 	}
 
@@ -1781,33 +2465,26 @@ public class SleuthkitCase {
 	 * within tsk core
 	 */
 	public BlackboardArtifact newBlackboardArtifact(int artifactTypeID, long obj_id) throws TskCoreException {
-		dbWriteLock();
+		acquireExclusiveLock();
 		try {
 			String artifactTypeName = this.getArtifactTypeString(artifactTypeID);
 			String artifactDisplayName = this.getArtifactTypeDisplayName(artifactTypeID);
 
-			long artifactID = -1;
-			addArtifactSt1.setLong(1, obj_id);
-			addArtifactSt1.setInt(2, artifactTypeID);
-			addArtifactSt1.executeUpdate();
-
-			getLastArtifactId.setLong(1, obj_id);
-			getLastArtifactId.setInt(2, artifactTypeID);
-
-			final ResultSet rs = getLastArtifactId.executeQuery();
-			artifactID = rs.getLong(1);
-			rs.close();
-
-			addArtifactSt1.clearParameters();
-			getLastArtifactId.clearParameters();
+			final long artifactID = allocateArtifactId();
+			PreparedStatement statement = writeConnection.getPreparedStatement(PREPARED_STATEMENT.INSERT_ARTIFACT);
+			statement.setLong(1, artifactID);
+			statement.setLong(2, obj_id);
+			statement.setInt(3, artifactTypeID);
+			statement.executeUpdate();
 
 			return new BlackboardArtifact(this, artifactID, obj_id, artifactTypeID,
 					artifactTypeName, artifactDisplayName);
 
 		} catch (SQLException ex) {
+			discardArtifactIds();
 			throw new TskCoreException("Error getting or creating a blackboard artifact. " + ex.getMessage(), ex);
 		} finally {
-			dbWriteUnlock();
+			releaseExclusiveLock();
 		}
 	}
 
@@ -1821,34 +2498,25 @@ public class SleuthkitCase {
 	 * within tsk core
 	 */
 	public BlackboardArtifact newBlackboardArtifact(ARTIFACT_TYPE artifactType, long obj_id) throws TskCoreException {
-		dbWriteLock();
+		acquireExclusiveLock();
 		try {
 			final int type = artifactType.getTypeID();
 
-			long artifactID = -1;
-			addArtifactSt1.setLong(1, obj_id);
-			addArtifactSt1.setInt(2, type);
-			addArtifactSt1.executeUpdate();
-
-			getLastArtifactId.setLong(1, obj_id);
-			getLastArtifactId.setInt(2, type);
-			final ResultSet rs = getLastArtifactId.executeQuery();
-			if (rs.next()) {
-				artifactID = rs.getLong(1);
-			}
-
-			rs.close();
-
-			addArtifactSt1.clearParameters();
-			getLastArtifactId.clearParameters();
+			final long artifactID = allocateArtifactId();
+			PreparedStatement statement = writeConnection.getPreparedStatement(PREPARED_STATEMENT.INSERT_ARTIFACT);
+			statement.setLong(1, artifactID);
+			statement.setLong(2, obj_id);
+			statement.setInt(3, type);
+			statement.executeUpdate();
 
 			return new BlackboardArtifact(this, artifactID, obj_id, type,
 					artifactType.getLabel(), artifactType.getDisplayName());
 
 		} catch (SQLException ex) {
+			discardArtifactIds();
 			throw new TskCoreException("Error getting or creating a blackboard artifact. " + ex.getMessage(), ex);
 		} finally {
-			dbWriteUnlock();
+			releaseExclusiveLock();
 		}
 	}
 
@@ -1887,13 +2555,14 @@ public class SleuthkitCase {
 
 		List<AbstractFile> children = new ArrayList<AbstractFile>();
 
-		dbReadLock();
+		acquireSharedLock();
 		try {
 
-			getAbstractFileChildren.setLong(1, parent.getId());
-			getAbstractFileChildren.setShort(2, type.getFileType());
+			PreparedStatement statement = getReadConnection().getPreparedStatement(PREPARED_STATEMENT.SELECT_FILE_CHILDREN);
+			statement.setLong(1, parent.getId());
+			statement.setShort(2, type.getFileType());
 
-			final ResultSet rs = getAbstractFileChildren.executeQuery();
+			final ResultSet rs = statement.executeQuery();
 
 			while (rs.next()) {
 				if (type == TSK_DB_FILES_TYPE_ENUM.FS) {
@@ -1919,7 +2588,7 @@ public class SleuthkitCase {
 		} catch (SQLException ex) {
 			throw new TskCoreException("Error getting AbstractFile children for Content.", ex);
 		} finally {
-			dbReadUnlock();
+			releaseSharedLock();
 		}
 		return children;
 	}
@@ -1927,13 +2596,14 @@ public class SleuthkitCase {
 	List<Long> getAbstractFileChildrenIds(Content parent, TSK_DB_FILES_TYPE_ENUM type) throws TskCoreException {
 		final List<Long> children = new ArrayList<Long>();
 
-		dbReadLock();
+		acquireSharedLock();
 		try {
 
-			getAbstractFileChildrenIds.setLong(1, parent.getId());
-			getAbstractFileChildrenIds.setShort(2, type.getFileType());
+			PreparedStatement statement = getReadConnection().getPreparedStatement(PREPARED_STATEMENT.SELECT_FILE_CHILDREN_IDS);
+			statement.setLong(1, parent.getId());
+			statement.setShort(2, type.getFileType());
 
-			ResultSet rs = getAbstractFileChildrenIds.executeQuery();
+			ResultSet rs = statement.executeQuery();
 
 			while (rs.next()) {
 				children.add(rs.getLong(1));
@@ -1942,7 +2612,7 @@ public class SleuthkitCase {
 		} catch (SQLException ex) {
 			throw new TskCoreException("Error getting AbstractFile children for Content.", ex);
 		} finally {
-			dbReadUnlock();
+			releaseSharedLock();
 		}
 		return children;
 	}
@@ -1970,9 +2640,9 @@ public class SleuthkitCase {
 	 * within tsk core
 	 */
 	Collection<ObjectInfo> getChildrenInfo(Content c) throws TskCoreException {
-		dbReadLock();
+		acquireSharedLock();
 		try {
-			Statement s = con.createStatement();
+			Statement s = getReadConnection().createStatement();
 			String query = "select tsk_objects.obj_id, tsk_objects.type ";
 			query += "from tsk_objects left join tsk_files ";
 			query += "on tsk_objects.obj_id=tsk_files.obj_id ";
@@ -1990,7 +2660,7 @@ public class SleuthkitCase {
 		} catch (SQLException ex) {
 			throw new TskCoreException("Error getting Children Info for Content.", ex);
 		} finally {
-			dbReadUnlock();
+			releaseSharedLock();
 		}
 	}
 
@@ -2003,9 +2673,9 @@ public class SleuthkitCase {
 	 * within tsk core
 	 */
 	ObjectInfo getParentInfo(Content c) throws TskCoreException {
-		dbReadLock();
+		acquireSharedLock();
 		try {
-			Statement s = con.createStatement();
+			Statement s = getReadConnection().createStatement();
 			ResultSet rs = s.executeQuery("SELECT parent.obj_id, parent.type "
 					+ "FROM tsk_objects AS parent JOIN tsk_objects AS child "
 					+ "ON child.par_obj_id = parent.obj_id "
@@ -2026,7 +2696,7 @@ public class SleuthkitCase {
 		} catch (SQLException ex) {
 			throw new TskCoreException("Error getting Parent Info for Content.", ex);
 		} finally {
-			dbReadUnlock();
+			releaseSharedLock();
 		}
 	}
 
@@ -2039,9 +2709,9 @@ public class SleuthkitCase {
 	 * within tsk core
 	 */
 	ObjectInfo getParentInfo(long contentId) throws TskCoreException {
-		dbReadLock();
+		acquireSharedLock();
 		try {
-			Statement s = con.createStatement();
+			Statement s = getReadConnection().createStatement();
 			ResultSet rs = s.executeQuery("SELECT parent.obj_id, parent.type "
 					+ "FROM tsk_objects AS parent JOIN tsk_objects AS child "
 					+ "ON child.par_obj_id = parent.obj_id "
@@ -2062,7 +2732,7 @@ public class SleuthkitCase {
 		} catch (SQLException ex) {
 			throw new TskCoreException("Error getting Parent Info for Content: " + contentId, ex);
 		} finally {
-			dbReadUnlock();
+			releaseSharedLock();
 		}
 	}
 
@@ -2102,11 +2772,16 @@ public class SleuthkitCase {
 	 * core
 	 */
 	public Content getContentById(long id) throws TskCoreException {
-		dbReadLock();
+		final ContentCache cache = contentCache;
+		Content cached = cache.get(id);
+		if (cached != null) {
+			return cached;
+		}
+		acquireSharedLock();
 		Statement s = null;
 		ResultSet contentRs = null;
 		try {
-			s = con.createStatement();
+			s = getReadConnection().createStatement();
 			contentRs = s.executeQuery("SELECT * FROM tsk_objects WHERE obj_id = " + id + " LIMIT  1");
 			if (!contentRs.next()) {
 				contentRs.close();
@@ -2136,6 +2811,7 @@ public class SleuthkitCase {
 				default:
 					throw new TskCoreException("Could not obtain Content object with ID: " + id);
 			}
+			cache.put(content);
 			return content;
 		} catch (SQLException ex) {
 			throw new TskCoreException("Error getting Content by ID.", ex);
@@ -2150,7 +2826,7 @@ public class SleuthkitCase {
 			} catch (SQLException ex) {
 				throw new TskCoreException("Error closing statement when getting Content by ID.", ex);
 			}
-			dbReadUnlock();
+			releaseSharedLock();
 		}
 	}
 
@@ -2163,14 +2839,21 @@ public class SleuthkitCase {
 	 * core and file could not be queried
 	 */
 	public AbstractFile getAbstractFileById(long id) throws TskCoreException {
+		final ContentCache cache = contentCache;
+		AbstractFile cached = cache.get(id, AbstractFile.class);
+		if (cached != null) {
+			return cached;
+		}
 		ResultSet rs = null;
-		dbReadLock();
+		acquireSharedLock();
 		try {
-			getAbstractFileById.setLong(1, id);
-			rs = getAbstractFileById.executeQuery();
+			PreparedStatement statement = getReadConnection().getPreparedStatement(PREPARED_STATEMENT.SELECT_FILE_BY_ID);
+			statement.setLong(1, id);
+			rs = statement.executeQuery();
 			
 			List<AbstractFile> results;
 			if ((results = resultSetToAbstractFiles(rs)).size() > 0) {
+				cache.put(results.get(0));
 				return results.get(0);
 			} else {
 				return null;
@@ -2185,7 +2868,7 @@ public class SleuthkitCase {
 					logger.log(Level.SEVERE, "Error closing result set after getting file by id.", ex);
 				}
 			}
-			dbReadUnlock();
+			releaseSharedLock();
 		}
 		
 	}
@@ -2198,17 +2881,18 @@ public class SleuthkitCase {
 	 * given fileName
 	 */
 	public List<FsContent> findFiles(Image image, String fileName) throws TskCoreException {
-		dbReadLock();
+		acquireSharedLock();
 
 		// set the file name in the PS
 		List<FsContent> fsContents = new ArrayList<FsContent>();
 		try {
 			for (FileSystem fileSystem : getFileSystems(image)) {
-				getFileSt.setString(1, fileName.toLowerCase());
-				getFileSt.setLong(2, fileSystem.getId());
+				PreparedStatement statement = getReadConnection().getPreparedStatement(PREPARED_STATEMENT.SELECT_FILES_BY_NAME_AND_FS);
+				statement.setString(1, fileName.toLowerCase());
+				statement.setLong(2, fileSystem.getId());
 
 				// get the result set
-				ResultSet rs = getFileSt.executeQuery();
+				ResultSet rs = statement.executeQuery();
 
 				// convert to FsConents
 				fsContents.addAll(resultSetToFsContents(rs));
@@ -2219,7 +2903,7 @@ public class SleuthkitCase {
 		} catch (Exception e) {
 			throw new TskCoreException(e.getMessage());
 		} finally {
-			dbReadUnlock();
+			releaseSharedLock();
 		}
 
 		return fsContents;
@@ -2235,22 +2919,23 @@ public class SleuthkitCase {
 	 * fileName and whose parent directory contains dirName.
 	 */
 	public List<FsContent> findFiles(Image image, String fileName, String dirName) throws TskCoreException {
-		dbReadLock();
+		acquireSharedLock();
 
 		ResultSet rs = null;
 		List<FsContent> fsContents = new ArrayList<FsContent>();
 		try {
 			for (FileSystem fileSystem : getFileSystems(image)) {
-				getFileWithParentSt.setString(1, fileName.toLowerCase());
+				PreparedStatement statement = getReadConnection().getPreparedStatement(PREPARED_STATEMENT.SELECT_FILES_BY_NAME_PARENT_AND_FS);
+				statement.setString(1, fileName.toLowerCase());
 
 				// set the parent directory name
-				getFileWithParentSt.setString(2, "%" + dirName.toLowerCase() + "%");
+				statement.setString(2, "%" + dirName.toLowerCase() + "%");
 
 				// set the image ID
-				getFileWithParentSt.setLong(3, fileSystem.getId());
+				statement.setLong(3, fileSystem.getId());
 
 				// get the result set
-				rs = getFileWithParentSt.executeQuery();
+				rs = statement.executeQuery();
 
 				// convert to FsConents
 				fsContents.addAll(resultSetToFsContents(rs));
@@ -2261,7 +2946,7 @@ public class SleuthkitCase {
 		} catch (Exception e) {
 			throw new TskCoreException(e.getMessage());
 		} finally {
-			dbReadUnlock();
+			releaseSharedLock();
 		}
 
 		return fsContents;
@@ -2287,17 +2972,52 @@ public class SleuthkitCase {
 	 */
 	public List<FsContent> findFilesWhere(String sqlWhereClause) throws TskCoreException {
 		Statement statement;
-		dbReadLock();
+		acquireSharedLock();
 		try {
-			statement = con.createStatement();
+			statement = getReadConnection().createStatement();
 			return resultSetToFsContents(statement.executeQuery("SELECT * FROM tsk_files WHERE " + sqlWhereClause));
 		} catch (SQLException e) {
 			throw new TskCoreException("SQLException thrown when calling 'SleuthkitCase.findFilesWhere().", e);
 		} finally {
-			dbReadUnlock();
+			releaseSharedLock();
 		}
 	}
 
+	/**
+	 * Get a cursor over the files that satisfy a WHERE clause. Unlike
+	 * findFilesWhere(), the rows are read as the cursor is iterated, so
+	 * memory use does not depend on the number of files.
+	 *
+	 * @param sqlWhereClause a SQL where clause appropriate for the desired
+	 * files (do not begin the WHERE clause with the word WHERE!)
+	 * @return cursor over the files of all types (file system files, virtual
+	 * directories and layout files), must be closed if not read to the end
+	 * @throws TskCoreException thrown if the query could not be run
+	 */
+	public CaseDbCursor<AbstractFile> streamFilesWhere(String sqlWhereClause) throws TskCoreException {
+		return streamFilesWhere(sqlWhereClause, CaseDbCursor.DEFAULT_FETCH_SIZE);
+	}
+
+	/**
+	 * Get a cursor over the files that satisfy a WHERE clause
+	 *
+	 * @param sqlWhereClause a SQL where clause appropriate for the desired
+	 * files (do not begin the WHERE clause with the word WHERE!)
+	 * @param fetchSize number of rows read at a time
+	 * @return cursor over the files of all types, must be closed if not read
+	 * to the end
+	 * @throws TskCoreException thrown if the query could not be run
+	 */
+	public CaseDbCursor<AbstractFile> streamFilesWhere(String sqlWhereClause, int fetchSize) throws TskCoreException {
+		return openCursor("SELECT * FROM tsk_files WHERE " + sqlWhereClause, fetchSize,
+				new CaseDbCursor.RowMapper<AbstractFile>() {
+					@Override
+					public AbstractFile map(ResultSet rs) throws SQLException {
+						return abstractFile(rs);
+					}
+				});
+	}
+
 	/**
 	 * @param image the image to search for the given file name
 	 * @param filePath The full path to the file(s) of interest. This can
@@ -2336,22 +3056,72 @@ public class SleuthkitCase {
 	 */
 	public List<TskFileRange> getFileRanges(long id) throws TskCoreException {
 		List<TskFileRange> ranges = new ArrayList<TskFileRange>();
-		dbReadLock();
+		acquireSharedLock();
 		try {
-			Statement s1 = con.createStatement();
-
-			ResultSet rs1 = s1.executeQuery("select * from tsk_file_layout where obj_id = " + id + " order by sequence");
-
-			while (rs1.next()) {
-				ranges.add(rsHelper.tskFileRange(rs1));
+			PreparedStatement statement = getReadConnection().getPreparedStatement(PREPARED_STATEMENT.SELECT_FILE_RANGES);
+			statement.setLong(1, id);
+			ResultSet rs1 = statement.executeQuery();
+			try {
+				while (rs1.next()) {
+					ranges.add(rsHelper.tskFileRange(rs1));
+				}
+			} finally {
+				rs1.close();
 			}
-			rs1.close();
-			s1.close();
 			return ranges;
 		} catch (SQLException ex) {
 			throw new TskCoreException("Error getting TskFileLayoutRanges by ID.", ex);
 		} finally {
-			dbReadUnlock();
+			releaseSharedLock();
+		}
+	}
+
+	/**
+	 * Get the start of the first layout range of files, as stored in
+	 * tsk_file_layout. For file system files it is a byte offset in the file
+	 * system, for layout files a byte offset in the image.
+	 *
+	 * @param ids ids of the files
+	 * @return the start of the first range by file id, files without ranges
+	 * are left out
+	 * @throws TskCoreException thrown if a critical error occurred within tsk
+	 * core
+	 */
+	Map<Long, Long> getFirstFileRangeStarts(List<Long> ids) throws TskCoreException {
+		//ids in an IN list, in batches below the limit of the query parameters
+		final int batchSize = 500;
+		Map<Long, Long> starts = new HashMap<Long, Long>();
+		acquireSharedLock();
+		try {
+			Statement s = getReadConnection().createStatement();
+			try {
+				for (int from = 0; from < ids.size(); from += batchSize) {
+					StringBuilder query = new StringBuilder("SELECT obj_id, byte_start FROM tsk_file_layout WHERE sequence = 0 AND obj_id IN (");
+					final int to = Math.min(ids.size(), from + batchSize);
+					for (int i = from; i < to; i++) {
+						if (i > from) {
+							query.append(',');
+						}
+						query.append(ids.get(i).longValue());
+					}
+					query.append(')');
+					ResultSet rs = s.executeQuery(query.toString());
+					try {
+						while (rs.next()) {
+							starts.put(rs.getLong(1), rs.getLong(2));
+						}
+					} finally {
+						rs.close();
+					}
+				}
+			} finally {
+				s.close();
+			}
+			return starts;
+		} catch (SQLException ex) {
+			throw new TskCoreException("Error getting the first file layout ranges.", ex);
+		} finally {
+			releaseSharedLock();
 		}
 	}
 
@@ -2364,16 +3134,16 @@ public class SleuthkitCase {
 	 * core
 	 */
 	public Image getImageById(long id) throws TskCoreException {
-		dbReadLock();
+		acquireSharedLock();
 		try {
-			Statement s1 = con.createStatement();
+			Statement s1 = getReadConnection().createStatement();
 
 			ResultSet rs1 = s1.executeQuery("select * from tsk_image_info where obj_id = " + id);
 
 			Image temp;
 			if (rs1.next()) {
 				long obj_id = rs1.getLong("obj_id");
-				Statement s2 = con.createStatement();
+				Statement s2 = getReadConnection().createStatement();
 				ResultSet rs2 = s2.executeQuery("select * from tsk_image_names where obj_id = " + obj_id);
 				List<String> imagePaths = new ArrayList<String>();
 				while (rs2.next()) {
@@ -2397,7 +3167,7 @@ public class SleuthkitCase {
 		} catch (SQLException ex) {
 			throw new TskCoreException("Error getting Image by ID.", ex);
 		} finally {
-			dbReadUnlock();
+			releaseSharedLock();
 		}
 	}
 
@@ -2411,9 +3181,9 @@ public class SleuthkitCase {
 	 * core
 	 */
 	VolumeSystem getVolumeSystemById(long id, Image parent) throws TskCoreException {
-		dbReadLock();
+		acquireSharedLock();
 		try {
-			Statement s = con.createStatement();
+			Statement s = getReadConnection().createStatement();
 
 			ResultSet rs = s.executeQuery("select * from tsk_vs_info "
 					+ "where obj_id = " + id);
@@ -2432,7 +3202,7 @@ public class SleuthkitCase {
 		} catch (SQLException ex) {
 			throw new TskCoreException("Error getting Volume System by ID.", ex);
 		} finally {
-			dbReadUnlock();
+			releaseSharedLock();
 		}
 	}
 	
@@ -2497,9 +3267,9 @@ public class SleuthkitCase {
 	 * core
 	 */
 	private FileSystem getFileSystemByIdHelper(long id, Content parent) throws TskCoreException {
-		dbReadLock();
+		acquireSharedLock();
 		try {
-			Statement s = con.createStatement();
+			Statement s = getReadConnection().createStatement();
 			FileSystem temp;
 
 			ResultSet rs = s.executeQuery("select * from tsk_fs_info "
@@ -2519,7 +3289,7 @@ public class SleuthkitCase {
 		} catch (SQLException ex) {
 			throw new TskCoreException("Error getting File System by ID.", ex);
 		} finally {
-			dbReadUnlock();
+			releaseSharedLock();
 		}
 	}
 
@@ -2533,9 +3303,9 @@ public class SleuthkitCase {
 	 * core
 	 */
 	Volume getVolumeById(long id, VolumeSystem parent) throws TskCoreException {
-		dbReadLock();
+		acquireSharedLock();
 		try {
-			Statement s = con.createStatement();
+			Statement s = getReadConnection().createStatement();
 			Volume temp;
 
 			ResultSet rs = s.executeQuery("select * from tsk_vs_parts "
@@ -2554,7 +3324,7 @@ public class SleuthkitCase {
 		} catch (SQLException ex) {
 			throw new TskCoreException("Error getting Volume by ID.", ex);
 		} finally {
-			dbReadUnlock();
+			releaseSharedLock();
 		}
 	}
 	
@@ -2580,9 +3350,14 @@ public class SleuthkitCase {
 	 * core
 	 */
 	Directory getDirectoryById(long id, FileSystem parentFs) throws TskCoreException {
-		dbReadLock();
+		final ContentCache cache = contentCache;
+		Directory cached = cache.get(id, Directory.class);
+		if (cached != null) {
+			return cached;
+		}
+		acquireSharedLock();
 		try {
-			Statement s = con.createStatement();
+			Statement s = getReadConnection().createStatement();
 			Directory temp = null;
 
 			ResultSet rs = s.executeQuery("SELECT * FROM tsk_files "
@@ -2606,101 +3381,103 @@ public class SleuthkitCase {
 			}
 			rs.close();
 			s.close();
+			cache.put(temp);
 			return temp;
 		} catch (SQLException ex) {
 			throw new TskCoreException("Error getting Directory by ID.", ex);
 		} finally {
-			dbReadUnlock();
+			releaseSharedLock();
 		}
 	}
 
 	/**
-	 * Helper to return FileSystems in an Image
+	 * Helper to return FileSystems in an Image. The file systems are found
+	 * with a single query on their ancestors. Their ids are cached per image
+	 * (the file systems of an image do not change once it is added) and the
+	 * FileSystem objects are taken from the content cache while it has them.
 	 *
 	 * @param image Image to lookup FileSystem for
 	 * @return Collection of FileSystems in the image
 	 */
 	public Collection<FileSystem> getFileSystems(Image image) {
+		final Long imageId = image.getId();
+		final ContentCache cache = contentCache;
+		long[] ids;
+		synchronized (imageFileSystemIds) {
+			ids = imageFileSystemIds.get(imageId);
+		}
+		if (ids != null) {
+			List<FileSystem> fileSystems = new ArrayList<FileSystem>(ids.length);
+			for (long id : ids) {
+				FileSystem fs = cache.get(id, FileSystem.class);
+				if (fs == null) {
+					break;
+				}
+				fileSystems.add(fs);
+			}
+			if (fileSystems.size() == ids.length) {
+				return Collections.unmodifiableList(fileSystems);
+			}
+		}
 
-		// create a query to get all file system objects
-		String allFsObjects = "SELECT * FROM tsk_fs_info";
-
-		// perform the query and create a list of FileSystem objects
-		List<FileSystem> allFileSystems = new ArrayList<FileSystem>();
-
-		dbReadLock();
-		Statement statement = null;
+		List<FileSystem> fileSystems = new ArrayList<FileSystem>();
+		acquireSharedLock();
 		ResultSet rs = null;
 		try {
-			statement = con.createStatement();
-			rs = statement.executeQuery(allFsObjects);
+			PreparedStatement statement = getReadConnection().getPreparedStatement(PREPARED_STATEMENT.SELECT_FILE_SYSTEMS_OF_IMAGE);
+			statement.setLong(1, imageId);
+			rs = statement.executeQuery();
 			while (rs.next()) {
-				allFileSystems.add(rsHelper.fileSystem(rs, null));
+				//reuse the objects still cached, they may hold an open handle
+				FileSystem fs = cache.get(rs.getLong("obj_id"), FileSystem.class);
+				if (fs == null) {
+					fs = rsHelper.fileSystem(rs, null);
+					fs.setParentId(rs.getLong("fs_par_obj_id"));
+					cache.put(fs);
+				}
+				fileSystems.add(fs);
 			}
 		} catch (SQLException ex) {
 			logger.log(Level.SEVERE, "There was a problem while trying to obtain this image's file systems.", ex);
+			//not cached, try again next time
+			return fileSystems;
 		} finally {
 			if (rs != null) {
 				try {
 					rs.close();
 				} catch (SQLException ex) {
-					logger.log(Level.SEVERE, "Cannot close result set after query of all fs objects", ex);
-				}
-			}
-			if (statement != null) {
-				try {
-					statement.close();
-				} catch (SQLException ex) {
-					logger.log(Level.SEVERE, "Cannot close statement after query of all fs objects", ex);
+					logger.log(Level.SEVERE, "Cannot close result set after query of the image's fs objects", ex);
 				}
 			}
-			dbReadUnlock();
+			releaseSharedLock();
 		}
 
-		// for each file system, find the image to which it belongs by iteratively
-		// climbing the tsk_ojbects hierarchy only taking those file systems
-		// that belong to this image.
-		List<FileSystem> fileSystems = new ArrayList<FileSystem>();
-		for (FileSystem fs : allFileSystems) {
-			Long imageID = null;
-			Long currentObjID = fs.getId();
-			while (imageID == null) {
-				dbReadLock();
-				try {
-					statement = con.createStatement();
-					rs = statement.executeQuery("SELECT * FROM tsk_objects WHERE tsk_objects.obj_id = " + currentObjID);
-					currentObjID = rs.getLong("par_obj_id");
-					if (rs.getInt("type") == TskData.ObjectType.IMG.getObjectType()) {
-						imageID = rs.getLong("obj_id");
-					}
-				} catch (SQLException ex) {
-					logger.log(Level.SEVERE, "There was a problem while trying to obtain this image's file systems.", ex);
-				} finally {
-					if (rs != null) {
-						try {
-							rs.close();
-						} catch (SQLException ex) {
-							logger.log(Level.SEVERE, "Cannot close result set after query of all fs objects for fs", ex);
-						}
-					}
-					if (statement != null) {
-						try {
-							statement.close();
-						} catch (SQLException ex) {
-							logger.log(Level.SEVERE, "Cannot close statement after query of all fs objects for fs", ex);
-						}
-					}
-					dbReadUnlock();
-				}
-			}
+		ids = new long[fileSystems.size()];
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = fileSystems.get(i).getId();
+		}
+		synchronized (imageFileSystemIds) {
+			imageFileSystemIds.put(imageId, ids);
+		}
+		return Collections.unmodifiableList(fileSystems);
+	}
 
-			// see if imageID is this image's ID
-			if (imageID == image.getId()) {
-				fileSystems.add(fs);
+	/**
+	 * Forget the file systems of an image, e.g. when the image is closed, so
+	 * that the next getFileSystems() queries them again
+	 *
+	 * @param imageId id of the image
+	 */
+	void invalidateFileSystems(long imageId) {
+		long[] ids;
+		synchronized (imageFileSystemIds) {
+			ids = imageFileSystemIds.remove(imageId);
+		}
+		if (ids != null) {
+			for (long id : ids) {
+				contentCache.invalidate(id);
 			}
 		}
-
-		return fileSystems;
 	}
 
 	/**
@@ -2967,15 +3744,15 @@ public class SleuthkitCase {
 	public Map<Long, List<String>> getImagePaths() throws TskCoreException {
 		Map<Long, List<String>> imgPaths = new LinkedHashMap<Long, List<String>>();
 
-		dbReadLock();
+		acquireSharedLock();
 		try {
-			Statement s1 = con.createStatement();
+			Statement s1 = getReadConnection().createStatement();
 
 			ResultSet rs1 = s1.executeQuery("select * from tsk_image_info");
 
 			while (rs1.next()) {
 				long obj_id = rs1.getLong("obj_id");
-				Statement s2 = con.createStatement();
+				Statement s2 = getReadConnection().createStatement();
 				ResultSet rs2 = s2.executeQuery("select * from tsk_image_names where obj_id = " + obj_id);
 				List<String> paths = new ArrayList<String>();
 				while (rs2.next()) {
@@ -2991,7 +3768,7 @@ public class SleuthkitCase {
 		} catch (SQLException ex) {
 			throw new TskCoreException("Error getting image paths.", ex);
 		} finally {
-			dbReadUnlock();
+			releaseSharedLock();
 		}
 
 
@@ -3004,10 +3781,10 @@ public class SleuthkitCase {
 	 * @throws TskCoreException
 	 */
 	public List<Image> getImages() throws TskCoreException {
-		dbReadLock();
+		acquireSharedLock();
 		Collection<Long> imageIDs = new ArrayList<Long>();
 		try {
-			ResultSet rs = con.createStatement().executeQuery("select * from tsk_image_info");
+			ResultSet rs = getReadConnection().createStatement().executeQuery("select * from tsk_image_info");
 			while (rs.next()) {
 				imageIDs.add(rs.getLong("obj_id"));
 			}
@@ -3015,7 +3792,7 @@ public class SleuthkitCase {
 		} catch (SQLException ex) {
 			throw new TskCoreException("Error retrieving images.", ex);
 		} finally {
-			dbReadUnlock();
+			releaseSharedLock();
 		}
 
 		List<Image> images = new ArrayList<Image>();
@@ -3036,9 +3813,9 @@ public class SleuthkitCase {
 	 */
 	public void setImagePaths(long obj_id, List<String> paths) throws TskCoreException {
 
-		dbWriteLock();
+		acquireExclusiveLock();
 		try {
-			Statement s1 = con.createStatement();
+			Statement s1 = writeConnection.createStatement();
 
 			s1.executeUpdate("delete from tsk_image_names where obj_id = " + obj_id);
 			for (int i = 0; i < paths.size(); i++) {
@@ -3046,10 +3823,11 @@ public class SleuthkitCase {
 			}
 
 			s1.close();
+			contentCache.invalidate(obj_id);
 		} catch (SQLException ex) {
 			throw new TskCoreException("Error updating image paths.", ex);
 		} finally {
-			dbWriteUnlock();
+			releaseExclusiveLock();
 		}
 
 	}
@@ -3067,38 +3845,46 @@ public class SleuthkitCase {
 	public List<AbstractFile> resultSetToAbstractFiles(ResultSet rs) throws SQLException {
 
 		ArrayList<AbstractFile> results = new ArrayList<AbstractFile>();
-		dbReadLock();
+		acquireSharedLock();
 		try {
 			while (rs.next()) {
-				final short type = rs.getShort("type");
-				if (type == TSK_DB_FILES_TYPE_ENUM.FS.getFileType()) {
-					FsContent result;
-					if (rs.getShort("meta_type") == TSK_FS_META_TYPE_ENUM.TSK_FS_META_TYPE_DIR.getValue()) {
-						result = rsHelper.directory(rs, null);
-					} else {
-						result = rsHelper.file(rs, null);
-					}
-					results.add(result);
-				} else if (type == TSK_DB_FILES_TYPE_ENUM.VIRTUAL_DIR.getFileType()) {
-					final VirtualDirectory virtDir = new VirtualDirectory(this, rs.getLong("obj_id"),
-							rs.getString("name"), rs.getLong("size"),
-							TSK_FS_META_TYPE_ENUM.ValueOf(rs.getShort("meta_type")), TSK_FS_NAME_TYPE_ENUM.valueOf(rs.getShort("dir_type")), TSK_FS_NAME_FLAG_ENUM.valueOf(rs.getShort("dir_flags")),
-							rs.getShort("meta_flags"), rs.getString("parent_path"));
-					results.add(virtDir);
-				} else {
-					LayoutFile lf = new LayoutFile(this, rs.getLong("obj_id"),
-							rs.getString("name"),
-							TskData.TSK_DB_FILES_TYPE_ENUM.valueOf(type));
-					results.add(lf);
-				}
+				results.add(abstractFile(rs));
 			}
 		} finally {
-			dbReadUnlock();
+			releaseSharedLock();
 		}
 
 		return results;
 	}
 
+	/**
+	 * Creates the file object of the current row of a result set on the
+	 * tsk_files table
+	 *
+	 * @param rs result set positioned at the row, not moved
+	 * @return file object of the row
+	 * @throws SQLException if the row could not be read
+	 */
+	private AbstractFile abstractFile(ResultSet rs) throws SQLException {
+		final short type = rs.getShort("type");
+		if (type == TSK_DB_FILES_TYPE_ENUM.FS.getFileType()) {
+			if (rs.getShort("meta_type") == TSK_FS_META_TYPE_ENUM.TSK_FS_META_TYPE_DIR.getValue()) {
+				return rsHelper.directory(rs, null);
+			} else {
+				return rsHelper.file(rs, null);
+			}
+		} else if (type == TSK_DB_FILES_TYPE_ENUM.VIRTUAL_DIR.getFileType()) {
+			return new VirtualDirectory(this, rs.getLong("obj_id"),
+					rs.getString("name"), rs.getLong("size"),
+					TSK_FS_META_TYPE_ENUM.ValueOf(rs.getShort("meta_type")), TSK_FS_NAME_TYPE_ENUM.valueOf(rs.getShort("dir_type")), TSK_FS_NAME_FLAG_ENUM.valueOf(rs.getShort("dir_flags")),
+					rs.getShort("meta_flags"), rs.getString("parent_path"));
+		} else {
+			return new LayoutFile(this, rs.getLong("obj_id"),
+					rs.getString("name"),
+					TskData.TSK_DB_FILES_TYPE_ENUM.valueOf(type));
+		}
+	}
+
 	/**
 	 * Creates FsContent objects from SQL query result set on tsk_files table
 	 *
@@ -3135,16 +3921,28 @@ public class SleuthkitCase {
 	 */
 	@Deprecated
 	public ResultSet runQuery(String query) throws SQLException {
-		Statement statement;
-		dbReadLock();
+		if (writeConnection == null) {
+			throw new SQLException("Case database is closed");
+		}
+		acquireSharedLock();
 		try {
-			statement = con.createStatement();
-			ResultSet rs = statement.executeQuery(query);
-			return rs;
+			//the open result pins a read snapshot of the database until it is
+			//closed, so it does not share a pooled connection with other
+			//readers. Its connection is closed by closeRunQuery(), or with
+			//the case if the caller never closes the result.
+			final CaseDbConnection connection = new CaseDbConnection(dbPath);
+			try {
+				ResultSet rs = connection.createStatement().executeQuery(query);
+				synchronized (queryConnections) {
+					queryConnections.put(rs, connection);
+				}
+				return rs;
+			} catch (SQLException ex) {
+				connection.close();
+				throw ex;
+			}
 		} finally {
-			//TODO unlock should be done in closeRunQuery()
-			//but currently not all code calls closeRunQuery - need to fix this
-			dbReadUnlock();
+			releaseSharedLock();
 		}
 	}
 
@@ -3157,104 +3955,102 @@ public class SleuthkitCase {
 	 */
 	@Deprecated
 	public void closeRunQuery(ResultSet resultSet) throws SQLException {
-		final Statement statement = resultSet.getStatement();
-		resultSet.close();
-		if (statement != null) {
-			statement.close();
-		}
-	}
-
-	@Override
-	public void finalize() throws Throwable{
-		try {
-			close();
+		final CaseDbConnection connection;
+		synchronized (queryConnections) {
+			connection = queryConnections.remove(resultSet);
 		}
-		finally {
-			super.finalize();
-		}
-	}
-
-	/**
-	 * Closes the database connection of this instance.
-	 */
-	private void closeConnection() {
-		SleuthkitCase.dbWriteLock();
 		try {
-			if (con != null) {
-				con.close();
-				con = null;
+			final Statement statement = resultSet.getStatement();
+			resultSet.close();
+			if (statement != null) {
+				statement.close();
 			}
-			closeStatements();
-
-		} catch (SQLException e) {
-			// connection close failed.
-			logger.log(Level.WARNING,
-					"Error closing connection.", e);
 		} finally {
-			SleuthkitCase.dbWriteUnlock();
+			if (connection != null) {
+				connection.close();
+			}
 		}
 	}
 
 	/**
 	 * Call to free resources when done with instance.
 	 */
+	@Override
 	public void close() {
 		System.err.println(this.hashCode() + " closed");
 		System.err.flush();
-		SleuthkitCase.dbWriteLock();
-		this.closeConnection();
+		synchronized (this) {
+			if (blackboardWriter != null) {
+				blackboardWriter.close();
+				blackboardWriter = null;
+			}
+		}
+		//cursors take the case lock to read, close them before taking it
+		List<CaseDbCursor<?>> cursors;
+		synchronized (openCursors) {
+			cursors = new ArrayList<CaseDbCursor<?>>(openCursors);
+		}
+		for (CaseDbCursor<?> cursor : cursors) {
+			cursor.close();
+		}
+		acquireExclusiveLock();
 		try {
-			if (this.caseHandle != null) {
-				this.caseHandle.free();
-				this.caseHandle = null;
-
-
+			writeConnection = null;
+			caseHandle = null;
+			resourceCleanup.clean();
+			synchronized (readConnections) {
+				idleReadConnections.clear();
 			}
-
-		} catch (TskCoreException ex) {
-			logger.log(Level.WARNING,
-					"Error freeing case handle.", ex);
 		} finally {
-			SleuthkitCase.dbWriteUnlock();
+			releaseExclusiveLock();
+		}
+		//drop the cached objects, so that their handles can be released
+		synchronized (imageFileSystemIds) {
+			imageFileSystemIds.clear();
 		}
+		contentCache.clear();
+		Metrics.caseClosed(this);
 	}
 
 	/**
 	 * Make a duplicate / backup copy of the current case database Makes a new
 	 * copy only, and continues to use the current db
 	 *
+	 * The copy is made with the online backup of sqlite, so it has all
+	 * committed data, including the pages that are still in the write-ahead
+	 * log. Writes wait until the copy is complete.
+	 *
 	 * @param newDBPath path to the copy to be created. File will be overwritten
 	 * if it exists
 	 * @throws IOException if copying fails
 	 */
 	public void copyCaseDB(String newDBPath) throws IOException {
-		InputStream in = null;
-		OutputStream out = null;
-		SleuthkitCase.dbReadLock();
+		if (newDBPath.indexOf('"') >= 0) {
+			throw new IOException("Unsupported character in case database copy path: " + newDBPath);
+		}
+		acquireExclusiveLock();
 		try {
-			InputStream inFile = new FileInputStream(this.dbPath);
-			in = new BufferedInputStream(inFile);
-			OutputStream outFile = new FileOutputStream(newDBPath);
-			out = new BufferedOutputStream(outFile);
-			int readBytes = 0;
-			while ((readBytes = in.read()) != -1) {
-				out.write(readBytes);
+			if (writeConnection == null) {
+				throw new IOException("Case database is closed");
 			}
-		} finally {
-			try {
-				if (in != null) {
-					in.close();
-				}
-				if (out != null) {
-					out.flush();
-					out.close();
-
-
+			//an old log next to the copy would be applied to it when opened
+			for (String suffix : new String[]{"", "-wal", "-shm", "-journal"}) {
+				final File old = new File(newDBPath + suffix);
+				if (old.exists() && !old.delete()) {
+					throw new IOException("Could not overwrite " + old.getPath());
 				}
-			} catch (IOException e) {
-				logger.log(Level.WARNING, "Could not close streams after db copy", e);
 			}
-			SleuthkitCase.dbReadUnlock();
+			final Statement statement = writeConnection.createStatement();
+			try {
+				//sqlite-jdbc runs this command with the sqlite backup API
+				statement.executeUpdate("backup to \"" + newDBPath + "\"");
+			} finally {
+				statement.close();
+			}
+		} catch (SQLException ex) {
+			throw new IOException("Error copying the case database to " + newDBPath, ex);
+		} finally {
+			releaseExclusiveLock();
 		}
 	}
 
@@ -3274,23 +4070,76 @@ public class SleuthkitCase {
 		if (currentKnown.compareTo(fileKnown) > 0) {
 			return false;
 		}
-		SleuthkitCase.dbWriteLock();
+		acquireExclusiveLock();
 		try {
-			Statement s = con.createStatement();
-			s.executeUpdate("UPDATE tsk_files "
-					+ "SET known='" + fileKnown.getFileKnownValue() + "' "
-					+ "WHERE obj_id=" + id);
-			s.close();
-			//update the object itself
+			PreparedStatement statement = writeConnection.getPreparedStatement(PREPARED_STATEMENT.UPDATE_FILE_KNOWN);
+			statement.setByte(1, fileKnown.getFileKnownValue());
+			statement.setLong(2, id);
+			statement.executeUpdate();
+			//update the object itself, a cached copy is now stale
 			fsContent.setKnown(fileKnown);
+			contentCache.invalidate(id);
 		} catch (SQLException ex) {
 			throw new TskCoreException("Error setting Known status.", ex);
 		} finally {
-			SleuthkitCase.dbWriteUnlock();
+			releaseExclusiveLock();
 		}
 		return true;
 	}
 
+	/**
+	 * Store the known status of several files in the database, in a single
+	 * transaction. As with setKnown(FsContent, FileKnown), the status of a
+	 * file is not downgraded (e.g. from 'Known Bad' to 'Known'). FsContent
+	 * objects are updated as well.
+	 *
+	 * @param fileKnowns known status of each file
+	 * @return number of files whose known status was updated
+	 * @throws TskCoreException thrown if a critical error occurred within tsk
+	 * core, in which case none of the statuses are stored
+	 */
+	public int setKnown(Map<? extends FsContent, FileKnown> fileKnowns) throws TskCoreException {
+		Map<FsContent, FileKnown> updates = new LinkedHashMap<FsContent, FileKnown>();
+		for (Map.Entry<? extends FsContent, FileKnown> entry : fileKnowns.entrySet()) {
+			if (entry.getKey().getKnown().compareTo(entry.getValue()) <= 0) {
+				updates.put(entry.getKey(), entry.getValue());
+			}
+		}
+		if (updates.isEmpty()) {
+			return 0;
+		}
+		acquireExclusiveLock();
+		try {
+			final Connection connection = writeConnection.getConnection();
+			connection.setAutoCommit(false);
+			try {
+				PreparedStatement statement = writeConnection.getBatchStatement(PREPARED_STATEMENT.UPDATE_FILE_KNOWN);
+				for (Map.Entry<FsContent, FileKnown> entry : updates.entrySet()) {
+					statement.setByte(1, entry.getValue().getFileKnownValue());
+					statement.setLong(2, entry.getKey().getId());
+					statement.addBatch();
+				}
+				statement.executeBatch();
+				connection.commit();
+			} catch (SQLException ex) {
+				connection.rollback();
+				throw ex;
+			} finally {
+				connection.setAutoCommit(true);
+			}
+			//update the objects themselves
+			for (Map.Entry<FsContent, FileKnown> entry : updates.entrySet()) {
+				entry.getKey().setKnown(entry.getValue());
+				contentCache.invalidate(entry.getKey().getId());
+			}
+		} catch (SQLException ex) {
+			throw new TskCoreException("Error setting Known statuses.", ex);
+		} finally {
+			releaseExclusiveLock();
+		}
+		return updates.size();
+	}
+
 	/**
 	 * Store the md5Hash for the FsContent in the database
 	 *
@@ -3301,17 +4150,64 @@ public class SleuthkitCase {
 	 */
 	void setMd5Hash(FsContent fsContent, String md5Hash) throws TskCoreException {
 		long id = fsContent.getId();
-		SleuthkitCase.dbWriteLock();
+		acquireExclusiveLock();
 		try {
-			updateMd5St.setString(1, md5Hash);
-			updateMd5St.setLong(2, id);
-			updateMd5St.executeUpdate();
-			//update the object itself
+			PreparedStatement statement = writeConnection.getPreparedStatement(PREPARED_STATEMENT.UPDATE_FILE_MD5);
+			statement.setString(1, md5Hash);
+			statement.setLong(2, id);
+			statement.executeUpdate();
+			//update the object itself, a cached copy is now stale
 			fsContent.setMd5Hash(md5Hash);
+			contentCache.invalidate(id);
 		} catch (SQLException ex) {
 			throw new TskCoreException("Error setting MD5 hash.", ex);
 		} finally {
-			SleuthkitCase.dbWriteUnlock();
+			releaseExclusiveLock();
+		}
+	}
+
+	/**
+	 * Store the md5 hashes of several files in the database, in a single
+	 * transaction. FsContent objects are updated as well.
+	 *
+	 * @param md5Hashes md5 hash of each file
+	 * @throws TskCoreException thrown if a critical error occurred within tsk
+	 * core, in which case none of the hashes are stored
+	 */
+	void setMd5Hashes(Map<? extends AbstractFile, String> md5Hashes) throws TskCoreException {
+		if (md5Hashes.isEmpty()) {
+			return;
+		}
+		acquireExclusiveLock();
+		try {
+			final Connection connection = writeConnection.getConnection();
+			connection.setAutoCommit(false);
+			try {
+				PreparedStatement statement = writeConnection.getBatchStatement(PREPARED_STATEMENT.UPDATE_FILE_MD5);
+				for (Map.Entry<? extends AbstractFile, String> entry : md5Hashes.entrySet()) {
+					statement.setString(1, entry.getValue());
+					statement.setLong(2, entry.getKey().getId());
+					statement.addBatch();
+				}
+				statement.executeBatch();
+				connection.commit();
+			} catch (SQLException ex) {
+				connection.rollback();
+				throw ex;
+			} finally {
+				connection.setAutoCommit(true);
+			}
+			//update the objects themselves
+			for (Map.Entry<? extends AbstractFile, String> entry : md5Hashes.entrySet()) {
+				if (entry.getKey() instanceof FsContent) {
+					((FsContent) entry.getKey()).setMd5Hash(entry.getValue());
+				}
+				contentCache.invalidate(entry.getKey().getId());
+			}
+		} catch (SQLException ex) {
+			throw new TskCoreException("Error setting MD5 hashes.", ex);
+		} finally {
+			releaseExclusiveLock();
 		}
 	}
 
@@ -3340,6 +4236,62 @@ public class SleuthkitCase {
 		return SleuthkitJNI.knownBadHashLookup(md5Hash, dbHandle);
 	}
 
+	/**
+	 * Look up several hashes in the NSRL database at once. If the database
+	 * was set with a filter, only the hashes that pass it are looked up in
+	 * the database.
+	 *
+	 * @param md5Hashes The hashes to look up, null elements are reported as
+	 * unknown
+	 * @return the status of each hash in the NSRL, in the same order
+	 * @throws TskCoreException thrown if a critical error occurred within tsk
+	 * core
+	 */
+	public TskData.FileKnown[] nsrlLookupMd5(String[] md5Hashes) throws TskCoreException {
+		final HashIndexFilter filter = nsrlFilter;
+		if (filter == null) {
+			return SleuthkitJNI.nsrlHashLookup(md5Hashes);
+		}
+		return SleuthkitJNI.nsrlHashLookup(filterHashes(md5Hashes, filter));
+	}
+
+	/**
+	 * Look up several hashes in a known bad database at once. If the database
+	 * was added with a filter, only the hashes that pass it are looked up in
+	 * the database.
+	 *
+	 * @param md5Hashes The hashes to look up, null elements are reported as
+	 * unknown
+	 * @param dbHandle The handle of the open database to look in
+	 * @return the status of each hash in the known bad database, in the same
+	 * order
+	 * @throws TskCoreException thrown if a critical error occurred within tsk
+	 * core
+	 */
+	public TskData.FileKnown[] knownBadLookupMd5(String[] md5Hashes, int dbHandle) throws TskCoreException {
+		final HashIndexFilter filter = knownBadFilters.get(dbHandle);
+		if (filter == null) {
+			return SleuthkitJNI.knownBadHashLookup(md5Hashes, dbHandle);
+		}
+		return SleuthkitJNI.knownBadHashLookup(filterHashes(md5Hashes, filter), dbHandle);
+	}
+
+	/**
+	 * Get the hashes that might be in a database
+	 *
+	 * @return hashes passing the filter, null elsewhere (null elements are
+	 * not looked up and reported as unknown)
+	 */
+	private static String[] filterHashes(String[] md5Hashes, HashIndexFilter filter) {
+		String[] candidates = new String[md5Hashes.length];
+		for (int i = 0; i < md5Hashes.length; i++) {
+			if (md5Hashes[i] != null && filter.mightContain(md5Hashes[i])) {
+				candidates[i] = md5Hashes[i];
+			}
+		}
+		return candidates;
+	}
+
 	/**
 	 * Return the number of objects in the database of a given file type.
 	 *
@@ -3351,9 +4303,9 @@ public class SleuthkitCase {
 	public int countFsContentType(TskData.TSK_FS_META_TYPE_ENUM contentType) throws TskCoreException {
 		int count = 0;
 		Short contentShort = contentType.getValue();
-		dbReadLock();
+		acquireSharedLock();
 		try {
-			Statement s = con.createStatement();
+			Statement s = getReadConnection().createStatement();
 			ResultSet rs = s.executeQuery("SELECT COUNT(*) FROM tsk_files WHERE meta_type = '" + contentShort.toString() + "'");
 			while (rs.next()) {
 				count = rs.getInt(1);
@@ -3363,7 +4315,7 @@ public class SleuthkitCase {
 		} catch (SQLException ex) {
 			throw new TskCoreException("Error getting number of objects.", ex);
 		} finally {
-			dbReadUnlock();
+			releaseSharedLock();
 		}
 		return count;
 	}
@@ -3391,9 +4343,9 @@ public class SleuthkitCase {
 	public List<FsContent> findFilesByMd5(String md5Hash) {
 		ResultSet rs = null;
 		Statement s = null;
-		dbReadLock();
+		acquireSharedLock();
 		try {
-			s = con.createStatement();
+			s = getReadConnection().createStatement();
 			rs = s.executeQuery("SELECT * FROM tsk_files "
 					+ "WHERE type = '" + TskData.TSK_DB_FILES_TYPE_ENUM.FS.getFileType() + "' "
 					+ "AND dir_type = '" + TskData.TSK_FS_NAME_TYPE_ENUM.REG.getValue() + "' "
@@ -3415,7 +4367,7 @@ public class SleuthkitCase {
 					logger.log(Level.WARNING, "Unable to close ResultSet and Statement.", ex);
 				}
 			}
-			dbReadUnlock();
+			releaseSharedLock();
 		}
 		return new ArrayList<FsContent>();
 	}
@@ -3429,9 +4381,9 @@ public class SleuthkitCase {
 	public boolean allFilesMd5Hashed() {
 		ResultSet rs = null;
 		Statement s = null;
-		dbReadLock();
+		acquireSharedLock();
 		try {
-			s = con.createStatement();
+			s = getReadConnection().createStatement();
 			rs = s.executeQuery("SELECT COUNT(*) FROM tsk_files "
 					+ "WHERE type = '" + TskData.TSK_DB_FILES_TYPE_ENUM.FS.getFileType() + "' "
 					+ "AND dir_type = '" + TskData.TSK_FS_NAME_TYPE_ENUM.REG.getValue() + "' "
@@ -3457,7 +4409,7 @@ public class SleuthkitCase {
 					logger.log(Level.WARNING, "Failed to close the result set.", ex);
 				}
 			}
-			dbReadUnlock();
+			releaseSharedLock();
 		}
 		return false;
 	}
@@ -3471,9 +4423,9 @@ public class SleuthkitCase {
 		ResultSet rs = null;
 		Statement s = null;
 		int count = 0;
-		dbReadLock();
+		acquireSharedLock();
 		try {
-			s = con.createStatement();
+			s = getReadConnection().createStatement();
 			rs = s.executeQuery("SELECT COUNT(*) FROM tsk_files "
 					+ "WHERE type = '" + TskData.TSK_DB_FILES_TYPE_ENUM.FS.getFileType() + "' "
 					+ "AND dir_type = '" + TskData.TSK_FS_NAME_TYPE_ENUM.REG.getValue() + "' "
@@ -3496,7 +4448,7 @@ public class SleuthkitCase {
 					logger.log(Level.WARNING, "Failed to close the result set.", ex);
 				}
 			}
-			dbReadUnlock();
+			releaseSharedLock();
 		}
 		return count;
 	}
@@ -18,11 +18,10 @@
  */
 package org.sleuthkit.datamodel;
 
+import java.nio.ByteBuffer;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.GregorianCalendar;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.TimeZone;
 import org.sleuthkit.datamodel.TskData.TSK_FS_ATTR_TYPE_ENUM;
 
@@ -62,6 +61,10 @@ public class SleuthkitJNI {
 
 	private static native int nsrlDbLookup(String hash) throws TskCoreException;
 
+	private static native int[] knownBadDbLookupBatch(String[] hashes, int dbHandle) throws TskCoreException;
+
+	private static native int[] nsrlDbLookupBatch(String[] hashes) throws TskCoreException;
+
 	private static native int getIndexSizeNat(String hashDbPath) throws TskCoreException;
 
 	//load image
@@ -76,19 +79,30 @@ public class SleuthkitJNI {
 	private static native long commitAddImgNat(long process) throws TskCoreException;
 
 	//open functions
-	private static native long openImgNat(String[] imgPath, int splits) throws TskCoreException;
+	static native long openImgNat(String[] imgPath, int splits) throws TskCoreException;
 
 	private static native long openVsNat(long imgHandle, long vsOffset) throws TskCoreException;
 
 	private static native long openVolNat(long vsHandle, long volId) throws TskCoreException;
 
-	private static native long openFsNat(long imgHandle, long fsId) throws TskCoreException;
+	static native long openFsNat(long imgHandle, long fsId) throws TskCoreException;
 
 	private static native long openFileNat(long fsHandle, long fileId, int attrType, int attrId) throws TskCoreException;
 
 	//read functions
 	private static native int readImgNat(long imgHandle, byte[] readBuffer, long offset, long len) throws TskCoreException;
 
+	private static native int readImgToArrayNat(long imgHandle, byte[] readBuffer, int bufOffset, long offset, long len) throws TskCoreException;
+
+	//vectored reads, one call for a list of runs
+	private static native int readImgVNat(long imgHandle, long[] offsets, int[] lengths, ByteBuffer readBuffer, int pos) throws TskCoreException;
+
+	private static native int readImgVArrayNat(long imgHandle, long[] offsets, int[] lengths, byte[] readBuffer, int pos) throws TskCoreException;
+
+	private static native int readFileVNat(long fileHandle, long[] offsets, int[] lengths, ByteBuffer readBuffer, int pos) throws TskCoreException;
+
+	private static native int readFileVArrayNat(long fileHandle, long[] offsets, int[] lengths, byte[] readBuffer, int pos) throws TskCoreException;
+
 	private static native int readVsNat(long vsHandle, byte[] readBuffer, long offset, long len) throws TskCoreException;
 
 	private static native int readVolNat(long volHandle, byte[] readBuffer, long offset, long len) throws TskCoreException;
@@ -97,15 +111,35 @@ public class SleuthkitJNI {
 
 	private static native int readFileNat(long fileHandle, byte[] readBuffer, long offset, long len) throws TskCoreException;
 
+	//read functions into direct buffers, starting at position pos of the buffer
+	private static native int readImgDirectNat(long imgHandle, ByteBuffer readBuffer, int pos, long offset, long len) throws TskCoreException;
+
+	private static native int readVsDirectNat(long vsHandle, ByteBuffer readBuffer, int pos, long offset, long len) throws TskCoreException;
+
+	private static native int readVolDirectNat(long volHandle, ByteBuffer readBuffer, int pos, long offset, long len) throws TskCoreException;
+
+	private static native int readFsDirectNat(long fsHandle, ByteBuffer readBuffer, int pos, long offset, long len) throws TskCoreException;
+
+	private static native int readFileDirectNat(long fileHandle, ByteBuffer readBuffer, int pos, long offset, long len) throws TskCoreException;
+
 	//close functions
-	private static native void closeImgNat(long imgHandle);
+	static native void closeImgNat(long imgHandle);
 
 	private static native void closeVsNat(long vsHandle);
 
-	private static native void closeFsNat(long fsHandle);
+	static native void closeFsNat(long fsHandle);
 
 	private static native void closeFileNat(long fileHandle);
 
+	//size of native structures
+	static native long getImgInfoSizeNat();
+
+	static native long getFsInfoSizeNat();
+
+	private static native long getFileHandleSizeNat(long fileHandle) throws TskCoreException;
+
+	private static native String[] getRawImgSegmentsNat(long imgHandle) throws TskCoreException;
+
 	//hash-lookup database functions
 	private static native void createLookupIndexNat(String dbPath) throws TskCoreException;
 
@@ -144,6 +178,14 @@ public class SleuthkitJNI {
 		}
 	}
 
+	//open file handles reused across FsContent reads
+	private static final FileHandlePool fileHandlePool = new FileHandlePool();
+	//open image and file system handles, shared and reference counted. Closes
+	//the pooled file handles of idle files as well.
+	private static final NativeHandleRegistry handles = new NativeHandleRegistry(fileHandlePool);
+	//shared cache of image blocks, used by the image reads
+	private static final ImageBlockCache blockCache = new ImageBlockCache(ImageBlockCache.DEFAULT_CAPACITY);
+
 	public SleuthkitJNI() {
 	}
 
@@ -153,10 +195,6 @@ public class SleuthkitJNI {
 	public static class CaseDbHandle {
 
 		private long caseDbPointer;
-		//map concat. image paths to cached image handle
-		private static final Map<String, Long> imageHandleCache = new HashMap<String, Long>();
-		//map image and offsets to cached fs handle
-		private static final Map<Long, Map<Long, Long>> fsHandleCache = new HashMap<Long, Map<Long, Long>>();
 
 		private CaseDbHandle(long pointer) {
 			this.caseDbPointer = pointer;
@@ -372,34 +410,17 @@ public class SleuthkitJNI {
 	}
 
 	/**
-	 * open the image and return the image info pointer
+	 * open the image and return the image info pointer. If the image is
+	 * already open, its handle is shared. Every call must be matched by a
+	 * call to closeImg().
 	 *
 	 * @param imageFiles the paths to the images
 	 * @return the image info pointer
 	 * @throws TskCoreException exception thrown if critical error occurs within
 	 * TSK
 	 */
-	public synchronized static long openImage(String[] imageFiles) throws TskCoreException {
-		long imageHandle = 0;
-
-		StringBuilder keyBuilder = new StringBuilder();
-		for (int i = 0; i < imageFiles.length; ++i) {
-			keyBuilder.append(imageFiles[i]);
-		}
-		final String imageKey = keyBuilder.toString();
-
-		if (CaseDbHandle.imageHandleCache.containsKey(imageKey)) //get from cache
-		{
-			imageHandle = CaseDbHandle.imageHandleCache.get(imageKey);
-		} else {
-			//open new handle and cache it
-			imageHandle = openImgNat(imageFiles, imageFiles.length);
-			CaseDbHandle.fsHandleCache.put(imageHandle, new HashMap<Long, Long>());
-			CaseDbHandle.imageHandleCache.put(imageKey, imageHandle);
-		}
-
-		return imageHandle;
-
+	public static long openImage(String[] imageFiles) throws TskCoreException {
+		return handles.openImage(imageFiles);
 	}
 
 	/**
@@ -412,7 +433,9 @@ public class SleuthkitJNI {
 	 * TSK
 	 */
 	public static long openVs(long imgHandle, long vsOffset) throws TskCoreException {
-		return openVsNat(imgHandle, vsOffset);
+		long vsHandle = openVsNat(imgHandle, vsOffset);
+		handles.addVolumeSystem(imgHandle, vsHandle);
+		return vsHandle;
 	}
 
 	//get pointers
@@ -431,8 +454,8 @@ public class SleuthkitJNI {
 	}
 
 	/**
-	 * Get file system Handle Opened handle is cached (transparently) so it does
-	 * not need be reopened next time for the duration of the application
+	 * Get file system Handle. If the file system is already open, its handle
+	 * is shared. Every call must be matched by a call to closeFs().
 	 *
 	 * @param imgHandle pointer to imgHandle in sleuthkit
 	 * @param fsOffset byte offset to the file system
@@ -440,18 +463,8 @@ public class SleuthkitJNI {
 	 * @throws TskCoreException exception thrown if critical error occurs within
 	 * TSK
 	 */
-	public synchronized static long openFs(long imgHandle, long fsOffset) throws TskCoreException {
-		long fsHandle = 0;
-		final Map<Long, Long> imgOffSetToFsHandle = CaseDbHandle.fsHandleCache.get(imgHandle);
-		if (imgOffSetToFsHandle.containsKey(fsOffset)) {
-			//return cached
-			fsHandle = imgOffSetToFsHandle.get(fsOffset);
-		} else {
-			fsHandle = openFsNat(imgHandle, fsOffset);
-			//cache it
-			imgOffSetToFsHandle.put(fsOffset, fsHandle);
-		}
-		return fsHandle;
+	public static long openFs(long imgHandle, long fsOffset) throws TskCoreException {
+		return handles.openFs(imgHandle, fsOffset);
 	}
 
 	/**
@@ -466,7 +479,9 @@ public class SleuthkitJNI {
 	 * TSK
 	 */
 	public static long openFile(long fsHandle, long fileId, TSK_FS_ATTR_TYPE_ENUM attrType, int attrId) throws TskCoreException {
-		return openFileNat(fsHandle, fileId, attrType.getValue(), attrId);
+		long fileHandle = openFileNat(fsHandle, fileId, attrType.getValue(), attrId);
+		handles.addFile(fsHandle, fileHandle);
+		return fileHandle;
 	}
 
 	//do reads
@@ -483,8 +498,42 @@ public class SleuthkitJNI {
 	 * TSK
 	 */
 	public static int readImg(long imgHandle, byte[] readBuffer, long offset, long len) throws TskCoreException {
+		final MappedRawImage mapped = handles.getMappedImage(imgHandle);
+		if (mapped != null && len <= readBuffer.length) {
+			return mapped.read(readBuffer, 0, offset, (int) len);
+		}
+		final long readHandle = handles.getReadImageHandle(imgHandle);
+		if (blockCache.isCached(len) && len <= readBuffer.length) {
+			return blockCache.read(imgHandle, readHandle, ByteBuffer.wrap(readBuffer, 0, (int) len), offset);
+		}
 		//returned byte[] is the data buffer
-		return readImgNat(imgHandle, readBuffer, offset, len);
+		return countRead("readImgNat", readImgNat(readHandle, readBuffer, offset, len));
+	}
+
+	/**
+	 * reads data from an image into a part of a buffer, without a temporary
+	 * array
+	 *
+	 * @param imgHandle pointer to an image structure in the sleuthkit
+	 * @param readBuffer buffer to read to
+	 * @param bufOffset where in the buffer to start
+	 * @param offset byte offset in the image to start at
+	 * @param len amount of data to read
+	 * @return the number of bytes read
+	 * @throws TskCoreException exception thrown if critical error occurs within
+	 * TSK, or the read does not fit in the buffer
+	 */
+	public static int readImg(long imgHandle, byte[] readBuffer, int bufOffset, long offset, long len) throws TskCoreException {
+		final boolean fits = bufOffset >= 0 && bufOffset + len <= readBuffer.length;
+		final MappedRawImage mapped = handles.getMappedImage(imgHandle);
+		if (mapped != null && fits) {
+			return mapped.read(readBuffer, bufOffset, offset, (int) len);
+		}
+		final long readHandle = handles.getReadImageHandle(imgHandle);
+		if (blockCache.isCached(len) && fits) {
+			return blockCache.read(imgHandle, readHandle, ByteBuffer.wrap(readBuffer, bufOffset, (int) len), offset);
+		}
+		return countRead("readImgToArrayNat", readImgToArrayNat(readHandle, readBuffer, bufOffset, offset, len));
 	}
 
 	/**
@@ -500,7 +549,7 @@ public class SleuthkitJNI {
 	 * TSK
 	 */
 	public static int readVs(long vsHandle, byte[] readBuffer, long offset, long len) throws TskCoreException {
-		return readVsNat(vsHandle, readBuffer, offset, len);
+		return countRead("readVsNat", readVsNat(vsHandle, readBuffer, offset, len));
 	}
 
 	/**
@@ -517,7 +566,7 @@ public class SleuthkitJNI {
 	 */
 	public static int readVsPart(long volHandle, byte[] readBuffer, long offset, long len) throws TskCoreException {
 		//returned byte[] is the data buffer
-		return readVolNat(volHandle, readBuffer, offset, len);
+		return countRead("readVolNat", readVolNat(volHandle, readBuffer, offset, len));
 	}
 
 	/**
@@ -534,7 +583,7 @@ public class SleuthkitJNI {
 	 */
 	public static int readFs(long fsHandle, byte[] readBuffer, long offset, long len) throws TskCoreException {
 		//returned byte[] is the data buffer
-		return readFsNat(fsHandle, readBuffer, offset, len);
+		return countRead("readFsNat", readFsNat(handles.getReadFsHandle(fsHandle), readBuffer, offset, len));
 	}
 
 	/**
@@ -550,20 +599,341 @@ public class SleuthkitJNI {
 	 * TSK
 	 */
 	public static int readFile(long fileHandle, byte[] readBuffer, long offset, long len) throws TskCoreException {
-		return readFileNat(fileHandle, readBuffer, offset, len);
+		return countRead("readFileNat", readFileNat(fileHandle, readBuffer, offset, len));
+	}
+
+	/**
+	 * reads data from an image into the remaining space of the buffer, starting
+	 * at its position. The position is advanced by the number of bytes read.
+	 * Direct buffers are read into by TSK without any copy, other buffers go
+	 * through a temporary array.
+	 *
+	 * @param imgHandle pointer to an image structure in the sleuthkit
+	 * @param dst buffer to read to
+	 * @param offset byte offset to start at
+	 * @return the number of bytes read, or -1 if the end of the stream has
+	 * been reached
+	 * @throws TskCoreException exception thrown if critical error occurs within
+	 * TSK
+	 */
+	public static int readImg(long imgHandle, ByteBuffer dst, long offset) throws TskCoreException {
+		final MappedRawImage mapped = handles.getMappedImage(imgHandle);
+		if (mapped != null) {
+			return mapped.read(dst, offset);
+		}
+		final long readHandle = handles.getReadImageHandle(imgHandle);
+		if (blockCache.isCached(dst.remaining())) {
+			return blockCache.read(imgHandle, readHandle, dst, offset);
+		}
+		return readImgUncached(readHandle, dst, offset);
+	}
+
+	/**
+	 * reads data from an image into the remaining space of the buffer,
+	 * bypassing the block cache. The position is advanced by the number of
+	 * bytes read.
+	 *
+	 * @param readHandle image handle of the calling thread
+	 * @param dst buffer to read to
+	 * @param offset byte offset to start at
+	 * @return the number of bytes read, or -1 if the end of the stream has
+	 * been reached
+	 * @throws TskCoreException exception thrown if critical error occurs within
+	 * TSK
+	 */
+	static int readImgUncached(long readHandle, ByteBuffer dst, long offset) throws TskCoreException {
+		if (dst.isDirect()) {
+			return advance(dst, countRead("readImgDirectNat", readImgDirectNat(readHandle, dst, dst.position(), offset, dst.remaining())));
+		}
+		byte[] readBuffer = new byte[dst.remaining()];
+		int bytesRead = countRead("readImgNat", readImgNat(readHandle, readBuffer, offset, readBuffer.length));
+		if (bytesRead > 0) {
+			dst.put(readBuffer, 0, bytesRead);
+		}
+		return bytesRead;
+	}
+
+	/**
+	 * reads data from a volume system into the remaining space of the buffer, starting
+	 * at its position. The position is advanced by the number of bytes read.
+	 * Direct buffers are read into by TSK without any copy, other buffers go
+	 * through a temporary array.
+	 *
+	 * @param vsHandle pointer to a volume system structure in the sleuthkit
+	 * @param dst buffer to read to
+	 * @param offset sector offset in the image to start at
+	 * @return the number of bytes read, or -1 if the end of the stream has
+	 * been reached
+	 * @throws TskCoreException exception thrown if critical error occurs within
+	 * TSK
+	 */
+	public static int readVs(long vsHandle, ByteBuffer dst, long offset) throws TskCoreException {
+		if (dst.isDirect()) {
+			return advance(dst, countRead("readVsDirectNat", readVsDirectNat(vsHandle, dst, dst.position(), offset, dst.remaining())));
+		}
+		byte[] readBuffer = new byte[dst.remaining()];
+		int bytesRead = countRead("readVsNat", readVsNat(vsHandle, readBuffer, offset, readBuffer.length));
+		if (bytesRead > 0) {
+			dst.put(readBuffer, 0, bytesRead);
+		}
+		return bytesRead;
+	}
+
+	/**
+	 * reads data from a volume into the remaining space of the buffer, starting
+	 * at its position. The position is advanced by the number of bytes read.
+	 * Direct buffers are read into by TSK without any copy, other buffers go
+	 * through a temporary array.
+	 *
+	 * @param volHandle pointer to a volume structure in the sleuthkit
+	 * @param dst buffer to read to
+	 * @param offset byte offset to start at
+	 * @return the number of bytes read, or -1 if the end of the stream has
+	 * been reached
+	 * @throws TskCoreException exception thrown if critical error occurs within
+	 * TSK
+	 */
+	public static int readVsPart(long volHandle, ByteBuffer dst, long offset) throws TskCoreException {
+		if (dst.isDirect()) {
+			return advance(dst, countRead("readVolDirectNat", readVolDirectNat(volHandle, dst, dst.position(), offset, dst.remaining())));
+		}
+		byte[] readBuffer = new byte[dst.remaining()];
+		int bytesRead = countRead("readVolNat", readVolNat(volHandle, readBuffer, offset, readBuffer.length));
+		if (bytesRead > 0) {
+			dst.put(readBuffer, 0, bytesRead);
+		}
+		return bytesRead;
+	}
+
+	/**
+	 * reads data from a file system into the remaining space of the buffer, starting
+	 * at its position. The position is advanced by the number of bytes read.
+	 * Direct buffers are read into by TSK without any copy, other buffers go
+	 * through a temporary array.
+	 *
+	 * @param fsHandle pointer to a file system structure in the sleuthkit
+	 * @param dst buffer to read to
+	 * @param offset byte offset to start at
+	 * @return the number of bytes read, or -1 if the end of the stream has
+	 * been reached
+	 * @throws TskCoreException exception thrown if critical error occurs within
+	 * TSK
+	 */
+	public static int readFs(long fsHandle, ByteBuffer dst, long offset) throws TskCoreException {
+		fsHandle = handles.getReadFsHandle(fsHandle);
+		if (dst.isDirect()) {
+			return advance(dst, countRead("readFsDirectNat", readFsDirectNat(fsHandle, dst, dst.position(), offset, dst.remaining())));
+		}
+		byte[] readBuffer = new byte[dst.remaining()];
+		int bytesRead = countRead("readFsNat", readFsNat(fsHandle, readBuffer, offset, readBuffer.length));
+		if (bytesRead > 0) {
+			dst.put(readBuffer, 0, bytesRead);
+		}
+		return bytesRead;
+	}
+
+	/**
+	 * reads data from a file into the remaining space of the buffer, starting
+	 * at its position. The position is advanced by the number of bytes read.
+	 * Direct buffers are read into by TSK without any copy, other buffers go
+	 * through a temporary array.
+	 *
+	 * @param fileHandle pointer to a file structure in the sleuthkit
+	 * @param dst buffer to read to
+	 * @param offset byte offset to start at
+	 * @return the number of bytes read, or -1 if the end of the stream has
+	 * been reached
+	 * @throws TskCoreException exception thrown if critical error occurs within
+	 * TSK
+	 */
+	public static int readFile(long fileHandle, ByteBuffer dst, long offset) throws TskCoreException {
+		if (dst.isDirect()) {
+			return advance(dst, countRead("readFileDirectNat", readFileDirectNat(fileHandle, dst, dst.position(), offset, dst.remaining())));
+		}
+		byte[] readBuffer = new byte[dst.remaining()];
+		int bytesRead = countRead("readFileNat", readFileNat(fileHandle, readBuffer, offset, readBuffer.length));
+		if (bytesRead > 0) {
+			dst.put(readBuffer, 0, bytesRead);
+		}
+		return bytesRead;
+	}
+
+	/**
+	 * reads runs of an image in a single call, back to back into the remaining
+	 * space of the buffer, starting at its position. The position is advanced
+	 * by the number of bytes read. Reading stops after a run that is cut short
+	 * by the end of the image. Direct buffers and array backed buffers are
+	 * read into without a temporary array.
+	 *
+	 * @param imgHandle pointer to an image structure in the sleuthkit
+	 * @param offsets byte offset in the image of each run
+	 * @param lengths length of each run
+	 * @param dst buffer to read to, with room for all runs
+	 * @return the number of bytes read
+	 * @throws TskCoreException exception thrown if critical error occurs within
+	 * TSK
+	 */
+	public static int readImgV(long imgHandle, long[] offsets, int[] lengths, ByteBuffer dst) throws TskCoreException {
+		final int total = checkRuns(offsets, lengths, dst);
+		final MappedRawImage mapped = handles.getMappedImage(imgHandle);
+		if (mapped != null) {
+			return readImgVMapped(mapped, offsets, lengths, dst);
+		}
+		final long readHandle = handles.getReadImageHandle(imgHandle);
+		if (blockCache.isCached(total)) {
+			return readImgVCached(imgHandle, readHandle, offsets, lengths, dst);
+		}
+		if (dst.isDirect()) {
+			return advance(dst, countRead("readImgVNat", readImgVNat(readHandle, offsets, lengths, dst, dst.position())));
+		}
+		if (dst.hasArray()) {
+			return advance(dst, countRead("readImgVArrayNat", readImgVArrayNat(readHandle, offsets, lengths, dst.array(), dst.arrayOffset() + dst.position())));
+		}
+		byte[] readBuffer = new byte[total];
+		int bytesRead = countRead("readImgVArrayNat", readImgVArrayNat(readHandle, offsets, lengths, readBuffer, 0));
+		if (bytesRead > 0) {
+			dst.put(readBuffer, 0, bytesRead);
+		}
+		return bytesRead;
+	}
+
+	/**
+	 * Read the runs one by one from a mapped raw image, stopping after a run
+	 * that is cut short like readImgVNat()
+	 */
+	private static int readImgVMapped(MappedRawImage mapped, long[] offsets, int[] lengths, ByteBuffer dst) throws TskCoreException {
+		final int limit = dst.limit();
+		int bytesRead = 0;
+		try {
+			for (int i = 0; i < offsets.length; i++) {
+				dst.limit(dst.position() + lengths[i]);
+				int runRead = mapped.read(dst, offsets[i]);
+				bytesRead += runRead;
+				if (runRead < lengths[i]) {
+					break;
+				}
+			}
+		} finally {
+			dst.limit(limit);
+		}
+		return bytesRead;
+	}
+
+	/**
+	 * Read small runs one by one through the block cache, stopping after a run
+	 * that is cut short like readImgVNat()
+	 */
+	private static int readImgVCached(long imgHandle, long readHandle, long[] offsets, int[] lengths, ByteBuffer dst) throws TskCoreException {
+		final int limit = dst.limit();
+		int bytesRead = 0;
+		try {
+			for (int i = 0; i < offsets.length; i++) {
+				dst.limit(dst.position() + lengths[i]);
+				int runRead = blockCache.read(imgHandle, readHandle, dst, offsets[i]);
+				if (runRead > 0) {
+					bytesRead += runRead;
+				}
+				if (runRead < lengths[i]) {
+					break;
+				}
+			}
+		} finally {
+			dst.limit(limit);
+		}
+		return bytesRead;
+	}
+
+	/**
+	 * reads runs of a file in a single call, back to back into the remaining
+	 * space of the buffer, starting at its position. The position is advanced
+	 * by the number of bytes read. Reading stops after a run that is cut short
+	 * by the end of the file.
+	 *
+	 * @param fileHandle pointer to a file structure in the sleuthkit
+	 * @param offsets byte offset in the file of each run
+	 * @param lengths length of each run
+	 * @param dst buffer to read to, with room for all runs
+	 * @return the number of bytes read
+	 * @throws TskCoreException exception thrown if critical error occurs within
+	 * TSK
+	 */
+	public static int readFileV(long fileHandle, long[] offsets, int[] lengths, ByteBuffer dst) throws TskCoreException {
+		final int total = checkRuns(offsets, lengths, dst);
+		if (dst.isDirect()) {
+			return advance(dst, countRead("readFileVNat", readFileVNat(fileHandle, offsets, lengths, dst, dst.position())));
+		}
+		if (dst.hasArray()) {
+			return advance(dst, countRead("readFileVArrayNat", readFileVArrayNat(fileHandle, offsets, lengths, dst.array(), dst.arrayOffset() + dst.position())));
+		}
+		byte[] readBuffer = new byte[total];
+		int bytesRead = countRead("readFileVArrayNat", readFileVArrayNat(fileHandle, offsets, lengths, readBuffer, 0));
+		if (bytesRead > 0) {
+			dst.put(readBuffer, 0, bytesRead);
+		}
+		return bytesRead;
+	}
+
+	/**
+	 * Check the runs of a vectored read
+	 *
+	 * @return total length of the runs
+	 */
+	static int checkRuns(long[] offsets, int[] lengths, ByteBuffer dst) {
+		if (offsets.length != lengths.length) {
+			throw new IllegalArgumentException("Number of run offsets and lengths differ");
+		}
+		long total = 0;
+		for (int length : lengths) {
+			if (length < 0) {
+				throw new IllegalArgumentException("Negative run length: " + length);
+			}
+			total += length;
+		}
+		if (total > dst.remaining()) {
+			throw new IllegalArgumentException("Runs of " + total + " bytes do not fit in the buffer");
+		}
+		return (int) total;
+	}
+
+	/**
+	 * Advance the position of a buffer after a direct read into it
+	 *
+	 * @param dst buffer read to
+	 * @param bytesRead bytes read, or -1
+	 * @return bytesRead
+	 */
+	private static int advance(ByteBuffer dst, int bytesRead) {
+		if (bytesRead > 0) {
+			dst.position(dst.position() + bytesRead);
+		}
+		return bytesRead;
+	}
+
+	/**
+	 * Count a call of a native read and the bytes it read, if metrics are
+	 * enabled
+	 *
+	 * @param nativeName name of the native method
+	 * @param bytesRead bytes read, or -1
+	 * @return bytesRead
+	 */
+	private static int countRead(String nativeName, int bytesRead) {
+		if (Metrics.isEnabled()) {
+			Metrics.nativeRead(nativeName, bytesRead);
+		}
+		return bytesRead;
 	}
 
 	//free pointers
 	/**
-	 * frees the imgHandle pointer currently does not close the image, until the
-	 * application terminates (image handle is cached)
+	 * Release the imgHandle pointer. The image is closed once it has no more
+	 * users (no open handles of it, its volume systems or file systems) and
+	 * has been idle for the idle timeout, or when too many images are idle.
 	 *
 	 * @param imgHandle to close the image
 	 */
 	public static void closeImg(long imgHandle) {
-		//@@@ TODO close the image handle when Case is closed instead
-		//currently the image handle is not being freed, it's cached for duration of the application
-		//closeImgNat(imgHandle); 
+		handles.releaseImage(imgHandle);
 	}
 
 	/**
@@ -572,19 +942,19 @@ public class SleuthkitJNI {
 	 * @param vsHandle pointer to volume system structure in sleuthkit
 	 */
 	public static void closeVs(long vsHandle) {
+		handles.removeVolumeSystem(vsHandle);
 		closeVsNat(vsHandle);
 	}
 
 	/**
-	 * frees the fsHandle pointer Currently does not do anything - preserves the
-	 * cached object for the duration of the application
+	 * Release the fsHandle pointer. The file system is closed once it has no
+	 * more users (no open handles of it or its files) and has been idle for
+	 * the idle timeout, or together with its image.
 	 *
 	 * @param fsHandle pointer to file system structure in sleuthkit
 	 */
 	public static void closeFs(long fsHandle) {
-		//@@@ TODO close the fs handle when Case is closed instead
-		//currently the fs handle is not being freed, it's cached for duration of the application
-		//closeFsNat(fsHandle);
+		handles.releaseFs(fsHandle);
 	}
 
 	/**
@@ -593,9 +963,279 @@ public class SleuthkitJNI {
 	 * @param fileHandle pointer to file structure in sleuthkit
 	 */
 	public static void closeFile(long fileHandle) {
+		closeFile(fileHandle, System.currentTimeMillis());
+	}
+
+	/**
+	 * frees the fileHandle pointer of a handle that was kept open, counting
+	 * its file system as used at the time the handle was last read through
+	 *
+	 * @param fileHandle pointer to file structure in sleuthkit
+	 * @param lastUsed time in milliseconds the handle was last used
+	 */
+	static void closeFile(long fileHandle, long lastUsed) {
+		handles.removeFile(fileHandle, lastUsed);
 		closeFileNat(fileHandle);
 	}
 
+	/**
+	 * Set the number of native handles the reads of each image and file system
+	 * are spread over. A native handle serializes its reads and has one read
+	 * cache, so threads reading the same image contend on it. With more than
+	 * one stripe, each thread reads through one of several handles of the
+	 * image, opened when first needed. Every stripe holds its own read cache
+	 * and file system structures.
+	 *
+	 * @param stripes number of handles per image, 1 (the default) to read
+	 * through a single handle
+	 */
+	public static void setReadStripes(int stripes) {
+		handles.setStripes(stripes);
+	}
+
+	/**
+	 * @return number of native handles the reads of each image are spread
+	 * over
+	 */
+	public static int getReadStripes() {
+		return handles.getStripes();
+	}
+
+	/**
+	 * Get the file system handle to open files through in the calling thread
+	 *
+	 * @param fsHandle handle returned by openFs()
+	 * @return the handle of the stripe of the thread
+	 * @throws TskCoreException exception thrown if the stripe could not be
+	 * opened
+	 */
+	static long getReadFsHandle(long fsHandle) throws TskCoreException {
+		return handles.getReadFsHandle(fsHandle);
+	}
+
+	/**
+	 * Get a file system handle and its open stripes
+	 *
+	 * @param fsHandle handle returned by openFs()
+	 * @return the handles
+	 */
+	static long[] getFsStripes(long fsHandle) {
+		return handles.getFsStripes(fsHandle);
+	}
+
+	/**
+	 * Set how long image and file system handles that are no longer used stay
+	 * open for reuse. Pooled file handles not read for the idle timeout are
+	 * closed as well.
+	 *
+	 * @param maxIdleImages number of unused images kept open, the least
+	 * recently used ones beyond it are closed
+	 * @param idleTimeoutMillis time in milliseconds after which unused handles
+	 * are closed
+	 */
+	public static void setHandleCacheLimits(int maxIdleImages, long idleTimeoutMillis) {
+		handles.setLimits(maxIdleImages, idleTimeoutMillis);
+	}
+
+	/**
+	 * Close all image and file system handles that are no longer used,
+	 * together with the pooled file handles of the files not being read
+	 */
+	public static void closeIdleHandles() {
+		handles.closeIdle();
+	}
+
+	/**
+	 * @return number of open image handles
+	 */
+	public static int getOpenImageHandleCount() {
+		return handles.getImageHandleCount();
+	}
+
+	/**
+	 * @return number of open volume system handles
+	 */
+	public static int getOpenVsHandleCount() {
+		return handles.getVsHandleCount();
+	}
+
+	/**
+	 * @return number of open file system handles
+	 */
+	public static int getOpenFsHandleCount() {
+		return handles.getFsHandleCount();
+	}
+
+	/**
+	 * @return number of open file handles
+	 */
+	public static int getOpenFileHandleCount() {
+		return handles.getFileHandleCount();
+	}
+
+	/**
+	 * Estimate the native memory held by the open image and file system
+	 * handles (the fixed size structures, including the image read caches)
+	 *
+	 * @return bytes held
+	 */
+	public static long getOpenHandleNativeBytes() {
+		return handles.getNativeBytes();
+	}
+
+	/**
+	 * Estimate the native memory held by an open file handle: the handle and
+	 * file structures, the loaded attributes and their runs
+	 *
+	 * @param fileHandle pointer to file structure in sleuthkit
+	 * @return bytes held
+	 * @throws TskCoreException exception thrown if the handle is invalid
+	 */
+	static long getFileHandleSize(long fileHandle) throws TskCoreException {
+		return getFileHandleSizeNat(fileHandle);
+	}
+
+	/**
+	 * Get the pool of the file handles used to read FsContent
+	 *
+	 * @return the pool
+	 */
+	static FileHandlePool getFileHandlePool() {
+		return fileHandlePool;
+	}
+
+	/**
+	 * Set the limits of the pool of the file handles used to read FsContent.
+	 * The least recently used handles beyond them are closed, and reopened
+	 * when their file is read again.
+	 *
+	 * @param maxHandles maximum number of open file handles
+	 * @param maxBytes maximum native memory of the open file handles, in bytes
+	 */
+	public static void setFileHandlePoolLimits(int maxHandles, long maxBytes) {
+		fileHandlePool.setLimits(maxHandles, maxBytes);
+	}
+
+	/**
+	 * Close the pooled file handles of all files not being read
+	 */
+	public static void clearFileHandlePool() {
+		fileHandlePool.clear();
+	}
+
+	/**
+	 * @return number of file handles in the pool
+	 */
+	public static int getPooledFileHandleCount() {
+		return fileHandlePool.size();
+	}
+
+	/**
+	 * @return estimated native memory of the pooled file handles, in bytes
+	 */
+	public static long getPooledFileHandleBytes() {
+		return fileHandlePool.getBytes();
+	}
+
+	/**
+	 * @return fraction of the FsContent reads that found the file handle in
+	 * the pool, 0 if there were none
+	 */
+	public static double getFileHandlePoolHitRatio() {
+		final long hits = fileHandlePool.getHitCount();
+		final long lookups = hits + fileHandlePool.getMissCount();
+		return lookups == 0 ? 0 : (double) hits / lookups;
+	}
+
+	/**
+	 * Get the files of a raw image, in the order they are read
+	 *
+	 * @param imgHandle pointer to an image structure in the sleuthkit
+	 * @return the files, null if the image is not a raw image of files
+	 * @throws TskCoreException exception thrown if the handle is invalid
+	 */
+	static String[] getRawImgSegments(long imgHandle) throws TskCoreException {
+		return getRawImgSegmentsNat(imgHandle);
+	}
+
+	/**
+	 * Set whether raw images are read from memory mapped files, rather than
+	 * through the sleuthkit. Applies to the images opened afterwards. Enabled
+	 * by default.
+	 *
+	 * @param enabled true to map raw images
+	 */
+	public static void setMappedRawReads(boolean enabled) {
+		handles.setMappedRawReads(enabled);
+	}
+
+	/**
+	 * @return true if raw images opened from now on are memory mapped
+	 */
+	public static boolean isMappedRawReads() {
+		return handles.isMappedRawReads();
+	}
+
+	/**
+	 * Set the size of the cache of image blocks shared by the image, volume and
+	 * layout file reads. Mapped raw images are read without it. The cached
+	 * blocks are dropped.
+	 *
+	 * @param bytes size of the cache in bytes, 0 to disable it
+	 */
+	public static void setBlockCacheSize(long bytes) {
+		blockCache.setCapacity(bytes);
+	}
+
+	/**
+	 * @return size of the cache of image blocks in bytes, 0 if disabled
+	 */
+	public static long getBlockCacheSize() {
+		return blockCache.getCapacity();
+	}
+
+	/**
+	 * Drop all cached image blocks
+	 */
+	public static void clearBlockCache() {
+		blockCache.clear();
+	}
+
+	/**
+	 * @return bytes of the cache of image blocks holding blocks
+	 */
+	public static long getBlockCacheUsedBytes() {
+		return blockCache.getUsedBytes();
+	}
+
+	/**
+	 * @return number of blocks evicted from the cache of image blocks to make
+	 * room for others
+	 */
+	public static long getBlockCacheEvictionCount() {
+		return blockCache.getEvictionCount();
+	}
+
+	/**
+	 * @return fraction of the image blocks read that were found in the cache,
+	 * 0 if there were none
+	 */
+	public static double getBlockCacheHitRatio() {
+		final long hits = blockCache.getHitCount();
+		final long lookups = hits + blockCache.getMissCount();
+		return lookups == 0 ? 0 : (double) hits / lookups;
+	}
+
+	/**
+	 * Drop the cached blocks of an image being closed, its handle can be
+	 * reused by the next image opened
+	 *
+	 * @param imgHandle handle of the image
+	 */
+	static void invalidateBlockCache(long imgHandle) {
+		blockCache.invalidate(imgHandle);
+	}
+
 	/**
 	 * Create an index for the given database path.
 	 *
@@ -672,6 +1312,39 @@ public class SleuthkitJNI {
 		return TskData.FileKnown.valueOf((byte) knownBadDbLookup(hash, dbHandle));
 	}
 
+	/**
+	 * Look up the given hashes in the NSRL database, with a single call into
+	 * TSK
+	 *
+	 * @param hashes hashes to look up, null elements are reported as unknown
+	 * @return the status of each hash in the NSRL
+	 * @throws TskCoreException if a critical error occurs within TSK core
+	 */
+	public static TskData.FileKnown[] nsrlHashLookup(String[] hashes) throws TskCoreException {
+		return toFileKnown(nsrlDbLookupBatch(hashes));
+	}
+
+	/**
+	 * Look up the given hashes in the known bad database, with a single call
+	 * into TSK
+	 *
+	 * @param hashes hashes to look up, null elements are reported as unknown
+	 * @param dbHandle previously opened hash db handle
+	 * @return the status of each hash in the known bad database
+	 * @throws TskCoreException if a critical error occurs within TSK core
+	 */
+	public static TskData.FileKnown[] knownBadHashLookup(String[] hashes, int dbHandle) throws TskCoreException {
+		return toFileKnown(knownBadDbLookupBatch(hashes, dbHandle));
+	}
+
+	private static TskData.FileKnown[] toFileKnown(int[] values) {
+		TskData.FileKnown[] known = new TskData.FileKnown[values.length];
+		for (int i = 0; i < values.length; i++) {
+			known[i] = TskData.FileKnown.valueOf((byte) values[i]);
+		}
+		return known;
+	}
+
 	/**
 	 * Get the size of the index of the given database
 	 *
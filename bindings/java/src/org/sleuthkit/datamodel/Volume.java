@@ -18,6 +18,7 @@
  */
 package org.sleuthkit.datamodel;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -33,7 +34,8 @@ public class Volume extends AbstractContent {
 	private long length; //in sectors
 	private long flags;
 	private String desc;
-	private long volumeHandle = 0;
+	private VolumeSystem parentVs;
+	private Image parentImage;
 
 	/**
 	 * Constructor to create the data object mapped from tsk_vs_parts entry
@@ -61,18 +63,50 @@ public class Volume extends AbstractContent {
 
 	@Override
 	public int read(byte[] buf, long offset, long len) throws TskCoreException {
-		synchronized (this) {
+		return SleuthkitJNI.readImg(getImageHandle(), buf, getImageOffset() + offset, len);
+	}
+
+	@Override
+	public int read(ByteBuffer dst, long offset) throws TskCoreException {
+		return SleuthkitJNI.readImg(getImageHandle(), dst, getImageOffset() + offset);
+	}
+
+	/**
+	 * Get the byte offset of the volume in its image. The volume is read from
+	 * the image at this offset, the same way the sleuthkit reads a volume, so
+	 * that the reads go through the image block cache.
+	 *
+	 * @return offset in bytes
+	 * @throws TskCoreException exception thrown if the volume system could not
+	 * be found
+	 */
+	private long getImageOffset() throws TskCoreException {
+		final VolumeSystem vs = getVolumeSystem();
+		return vs.getOffset() + start * vs.getBlockSize();
+	}
+
+	/**
+	 * @return handle of the image of the volume, kept open while the volume
+	 * is used
+	 * @throws TskCoreException exception thrown if the image could not be
+	 * opened
+	 */
+	private synchronized long getImageHandle() throws TskCoreException {
+		if (parentImage == null) {
+			parentImage = getVolumeSystem().getImage();
+		}
+		return parentImage.getImageHandle();
+	}
+
+	private synchronized VolumeSystem getVolumeSystem() throws TskCoreException {
+		if (parentVs == null) {
 			Content myParent = getParent();
 			if (!(myParent instanceof VolumeSystem)) {
 				throw new TskCoreException("This volume's parent should be a VolumeSystem, but it's not.");
 			}
-			VolumeSystem parentVs = (VolumeSystem)myParent;
-			// read from the volume
-			if (volumeHandle == 0) {
-				volumeHandle = SleuthkitJNI.openVsPart(parentVs.getVolumeSystemHandle(), addr);
-			}
+			parentVs = (VolumeSystem) myParent;
 		}
-		return SleuthkitJNI.readVsPart(volumeHandle, buf, offset, len);
+		return parentVs;
 	}
 
 	@Override
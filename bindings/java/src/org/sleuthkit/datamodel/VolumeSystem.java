@@ -18,15 +18,20 @@
  */
 package org.sleuthkit.datamodel;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 
 /**
  * Represents a volume system. Populated based on data in database.
+ *
+ * close() releases the internal volume system handle; a volume system that is
+ * not closed releases it once garbage collected.
  */
-public class VolumeSystem extends AbstractContent {
+public class VolumeSystem extends AbstractContent implements AutoCloseable {
 
 	private volatile long volumeSystemHandle = 0;
+	private ResourceCleaner.Cleanable handleCleanup;
 	private long type, imgOffset, blockSize;
 
 	/**
@@ -48,12 +53,12 @@ public class VolumeSystem extends AbstractContent {
 
 	@Override
 	public int read(byte[] readBuffer, long offset, long len) throws TskCoreException {
-		synchronized (this) {
-			if (volumeSystemHandle == 0) {
-				volumeSystemHandle = SleuthkitJNI.openVs(getImage().getImageHandle(), imgOffset);
-			}
-		}
-		return SleuthkitJNI.readVs(volumeSystemHandle, readBuffer, offset, len);
+		return SleuthkitJNI.readVs(getVolumeSystemHandle(), readBuffer, offset, len);
+	}
+
+	@Override
+	public int read(ByteBuffer dst, long offset) throws TskCoreException {
+		return SleuthkitJNI.readVs(getVolumeSystemHandle(), dst, offset);
 	}
 
 	@Override
@@ -98,21 +103,40 @@ public class VolumeSystem extends AbstractContent {
 	protected synchronized long getVolumeSystemHandle() throws TskCoreException {
 		if (volumeSystemHandle == 0) {
 			volumeSystemHandle = SleuthkitJNI.openVs(getImage().getImageHandle(), imgOffset);
+			handleCleanup = ResourceCleaner.register(this, new VsHandleRelease(volumeSystemHandle));
 		}
 
 		return volumeSystemHandle;
 	}
 
+	/**
+	 * Releases the volume system handle. The volume system can still be read
+	 * afterwards, the handle is opened again. Must not be called while the
+	 * volume system or its volumes are being read.
+	 */
 	@Override
-	public void finalize() throws Throwable {
-		try {
-			if (volumeSystemHandle != 0) {
-				SleuthkitJNI.closeVs(volumeSystemHandle);
-				volumeSystemHandle = 0;
-			}
+	public synchronized void close() {
+		if (handleCleanup != null) {
+			handleCleanup.clean();
+			handleCleanup = null;
+			volumeSystemHandle = 0;
 		}
-		finally {
-			super.finalize();
+	}
+
+	/**
+	 * Releases a volume system handle, without referring to the VolumeSystem
+	 */
+	private static class VsHandleRelease implements Runnable {
+
+		private final long vsHandle;
+
+		VsHandleRelease(long vsHandle) {
+			this.vsHandle = vsHandle;
+		}
+
+		@Override
+		public void run() {
+			SleuthkitJNI.closeVs(vsHandle);
 		}
 	}
 
@@ -0,0 +1,108 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2012 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sleuthkit.datamodel.BlackboardArtifact.ARTIFACT_TYPE;
+import static org.junit.Assert.*;
+
+/**
+ * Artifact ids of several case objects writing to one case database
+ */
+public class ArtifactIdTest {
+
+	@Rule
+	public TemporaryFolder testFolder = new TemporaryFolder();
+	private File db;
+	private SleuthkitCase sk;
+
+	@Before
+	public void openCase() throws Exception {
+		db = new File(testFolder.getRoot(), "case.db");
+		SyntheticCaseGenerator.createEmptyCase(db);
+		sk = SleuthkitCase.openCaseDatabase(db.getPath());
+	}
+
+	@After
+	public void closeCase() {
+		sk.close();
+	}
+
+	@Test
+	public void twoCaseObjectsHandOutDifferentIds() throws Exception {
+		SleuthkitCase other = SleuthkitCase.openCaseDatabase(db.getPath());
+		try {
+			Set<Long> ids = new HashSet<Long>();
+			final int rounds = 1500;
+			for (int i = 0; i < rounds; i++) {
+				assertTrue(ids.add(sk.newBlackboardArtifact(ARTIFACT_TYPE.TSK_GEN_INFO, i).getArtifactID()));
+				assertTrue(ids.add(other.newBlackboardArtifact(ARTIFACT_TYPE.TSK_GEN_INFO, i).getArtifactID()));
+			}
+			assertTrue(ids.add(sk.getBlackboardWriter().newArtifact(ARTIFACT_TYPE.TSK_GEN_INFO, 1,
+					Collections.<BlackboardAttribute>emptyList(), null).get().getArtifactID()));
+			assertTrue(ids.add(other.getBlackboardWriter().newArtifact(ARTIFACT_TYPE.TSK_GEN_INFO, 1,
+					Collections.<BlackboardAttribute>emptyList(), null).get().getArtifactID()));
+			assertEquals(2 * rounds + 2, sk.getBlackboardArtifactsTypeCount(ARTIFACT_TYPE.TSK_GEN_INFO.getTypeID()));
+		} finally {
+			other.close();
+		}
+	}
+
+	@Test
+	public void reopenedCaseContinuesAfterUsedIds() throws Exception {
+		long last = sk.newBlackboardArtifact(ARTIFACT_TYPE.TSK_GEN_INFO, 1).getArtifactID();
+		sk.close();
+		sk = SleuthkitCase.openCaseDatabase(db.getPath());
+		assertTrue(sk.newBlackboardArtifact(ARTIFACT_TYPE.TSK_GEN_INFO, 1).getArtifactID() > last);
+	}
+
+	@Test
+	public void idTakenByAnotherWriterIsSkippedAfterOneFailure() throws Exception {
+		long first = sk.newBlackboardArtifact(ARTIFACT_TYPE.TSK_GEN_INFO, 1).getArtifactID();
+		//a writer that does not reserve ids takes the next one
+		Connection connection = DriverManager.getConnection("jdbc:sqlite:" + db.getPath());
+		try {
+			Statement s = connection.createStatement();
+			s.executeUpdate("INSERT INTO blackboard_artifacts (artifact_id, obj_id, artifact_type_id) VALUES ("
+					+ (first + 1) + ", 1, " + ARTIFACT_TYPE.TSK_GEN_INFO.getTypeID() + ")");
+			s.close();
+		} finally {
+			connection.close();
+		}
+
+		try {
+			sk.newBlackboardArtifact(ARTIFACT_TYPE.TSK_GEN_INFO, 1);
+			fail("The id of the other writer was handed out again");
+		} catch (TskCoreException ex) {
+			//the reserved block is dropped
+		}
+		assertTrue(sk.newBlackboardArtifact(ARTIFACT_TYPE.TSK_GEN_INFO, 1).getArtifactID() > first + 1);
+	}
+}
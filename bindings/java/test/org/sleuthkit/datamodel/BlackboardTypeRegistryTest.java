@@ -0,0 +1,150 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2012 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ * BlackboardTypeRegistry snapshots, and the type lookups of a case
+ */
+public class BlackboardTypeRegistryTest {
+
+	@Rule
+	public TemporaryFolder testFolder = new TemporaryFolder();
+
+	@Test
+	public void emptyRegistryKnowsNoTypes() {
+		BlackboardTypeRegistry registry = new BlackboardTypeRegistry();
+		assertNull(registry.getName(0));
+		assertNull(registry.getDisplayName(-1));
+		assertEquals(-1, registry.getId("TSK_NAME"));
+		assertEquals(-1, registry.getMaxId());
+	}
+
+	@Test
+	public void typesAreLookedUpByIdAndName() {
+		BlackboardTypeRegistry registry = new BlackboardTypeRegistry();
+		registry.putAll(new int[]{1, 5}, new String[]{"ONE", "FIVE"}, new String[]{"One", "Five"});
+		registry.put(3, "THREE", "Three");
+		assertEquals("FIVE", registry.getName(5));
+		assertEquals("Three", registry.getDisplayName(3));
+		assertEquals(1, registry.getId("ONE"));
+		assertNull(registry.getName(2));
+		assertNull(registry.getDisplayName(2));
+		assertNull(registry.getName(6));
+		assertEquals(5, registry.getMaxId());
+	}
+
+	@Test
+	public void replacedTypeDropsItsOldName() {
+		BlackboardTypeRegistry registry = new BlackboardTypeRegistry();
+		registry.put(1, "OLD", "Old");
+		registry.put(1, "NEW", "New");
+		assertEquals(-1, registry.getId("OLD"));
+		assertEquals(1, registry.getId("NEW"));
+		assertEquals("New", registry.getDisplayName(1));
+	}
+
+	@Test
+	public void failedUpdateChangesNothing() {
+		BlackboardTypeRegistry registry = new BlackboardTypeRegistry();
+		registry.put(1, "ONE", "One");
+		try {
+			registry.putAll(new int[]{2, -1}, new String[]{"TWO", "BAD"}, new String[]{"Two", "Bad"});
+			fail("Negative type id accepted");
+		} catch (IllegalArgumentException ex) {
+			//rejected before the snapshot is replaced
+		}
+		assertNull(registry.getName(2));
+		assertEquals(-1, registry.getId("TWO"));
+		assertEquals(1, registry.getMaxId());
+	}
+
+	@Test
+	public void readersSeeConsistentTypesWhileTheyAreAdded() throws Exception {
+		final BlackboardTypeRegistry registry = new BlackboardTypeRegistry();
+		final int types = 2000;
+		final AtomicBoolean done = new AtomicBoolean(false);
+		final AtomicReference<String> failure = new AtomicReference<String>();
+		List<Thread> readers = new ArrayList<Thread>();
+		for (int t = 0; t < 4; t++) {
+			final Random random = new Random(t);
+			Thread reader = new Thread() {
+				@Override
+				public void run() {
+					while (!done.get() && failure.get() == null) {
+						int typeId = random.nextInt(types);
+						String name = registry.getName(typeId);
+						if (name == null) {
+							continue;
+						}
+						if (!name.equals("TYPE_" + typeId) || registry.getId(name) != typeId
+								|| !("Type " + typeId).equals(registry.getDisplayName(typeId))
+								|| registry.getMaxId() < typeId) {
+							failure.compareAndSet(null, "Inconsistent type " + typeId);
+						}
+					}
+				}
+			};
+			reader.start();
+			readers.add(reader);
+		}
+		for (int typeId = 0; typeId < types; typeId += 2) {
+			registry.putAll(new int[]{typeId, typeId + 1},
+					new String[]{"TYPE_" + typeId, "TYPE_" + (typeId + 1)},
+					new String[]{"Type " + typeId, "Type " + (typeId + 1)});
+		}
+		done.set(true);
+		for (Thread reader : readers) {
+			reader.join();
+		}
+		assertNull(failure.get());
+		assertEquals(types - 1, registry.getMaxId());
+	}
+
+	@Test
+	public void typeAddedByAnotherCaseIsFound() throws Exception {
+		File db = new File(testFolder.getRoot(), "case.db");
+		SyntheticCaseGenerator.createEmptyCase(db);
+		SleuthkitCase sk = SleuthkitCase.openCaseDatabase(db.getPath());
+		SleuthkitCase other = SleuthkitCase.openCaseDatabase(db.getPath());
+		try {
+			assertEquals("TSK_GEN_INFO", sk.getArtifactTypeString(BlackboardArtifact.ARTIFACT_TYPE.TSK_GEN_INFO.getTypeID()));
+			int artifactType = other.addArtifactType("TSK_REGISTRY_TEST", "Registry test");
+			int attributeType = other.addAttrType("TSK_REGISTRY_TEST_ATTR", "Registry test attribute");
+			//not in the registry of the case yet, read from the database
+			assertEquals(artifactType, sk.getArtifactTypeID("TSK_REGISTRY_TEST"));
+			assertEquals("Registry test", sk.getArtifactTypeDisplayName(artifactType));
+			assertEquals("TSK_REGISTRY_TEST_ATTR", sk.getAttrTypeString(attributeType));
+			assertEquals(attributeType, sk.getAttrTypeID("TSK_REGISTRY_TEST_ATTR"));
+		} finally {
+			other.close();
+			sk.close();
+		}
+	}
+}
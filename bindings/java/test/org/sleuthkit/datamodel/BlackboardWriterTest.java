@@ -0,0 +1,227 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2012 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sleuthkit.datamodel.BlackboardArtifact.ARTIFACT_TYPE;
+import org.sleuthkit.datamodel.BlackboardAttribute.ATTRIBUTE_TYPE;
+import org.sleuthkit.datamodel.BlackboardAttribute.TSK_BLACKBOARD_ATTRIBUTE_VALUE_TYPE;
+import static org.junit.Assert.*;
+
+/**
+ * Round trips through the BlackboardWriter, on an empty case database
+ */
+public class BlackboardWriterTest {
+
+	private static final int ATTRIBUTES_PER_TYPE = 5;
+	private static final String MODULE = "BlackboardWriterTest";
+	@Rule
+	public TemporaryFolder testFolder = new TemporaryFolder();
+	private SleuthkitCase sk;
+
+	@Before
+	public void openCase() throws Exception {
+		File db = new File(testFolder.getRoot(), "case.db");
+		SyntheticCaseGenerator.createEmptyCase(db);
+		sk = SleuthkitCase.openCaseDatabase(db.getPath());
+	}
+
+	@After
+	public void closeCase() {
+		sk.close();
+	}
+
+	/**
+	 * @return ATTRIBUTES_PER_TYPE attributes of each value type
+	 */
+	private static List<BlackboardAttribute> attributesOfEachType() {
+		List<BlackboardAttribute> attributes = new ArrayList<BlackboardAttribute>();
+		for (int i = 0; i < ATTRIBUTES_PER_TYPE; i++) {
+			attributes.add(new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_NAME.getTypeID(), MODULE, "name" + i));
+			attributes.add(new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_FLAG.getTypeID(), MODULE, i));
+			attributes.add(new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_DATETIME.getTypeID(), MODULE, 1000000000000L + i));
+			attributes.add(new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_GEO_LATITUDE.getTypeID(), MODULE, i + 0.5));
+			attributes.add(new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_HASH_MD5.getTypeID(), MODULE, "", new byte[]{(byte) i, 1, 2}));
+		}
+		return attributes;
+	}
+
+	private static int count(List<BlackboardAttribute> attributes, TSK_BLACKBOARD_ATTRIBUTE_VALUE_TYPE valueType) {
+		int count = 0;
+		for (BlackboardAttribute attr : attributes) {
+			if (attr.getValueType() == valueType) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	@Test
+	public void newArtifactWritesEveryAttribute() throws Exception {
+		BlackboardWriter writer = sk.getBlackboardWriter();
+		Future<BlackboardArtifact> future = writer.newArtifact(ARTIFACT_TYPE.TSK_GEN_INFO, 1, attributesOfEachType(), null);
+		writer.flush();
+		BlackboardArtifact artifact = future.get();
+
+		List<BlackboardAttribute> written = sk.getBlackboardAttributes(artifact);
+		assertEquals(ATTRIBUTES_PER_TYPE * TSK_BLACKBOARD_ATTRIBUTE_VALUE_TYPE.values().length, written.size());
+		for (TSK_BLACKBOARD_ATTRIBUTE_VALUE_TYPE valueType : TSK_BLACKBOARD_ATTRIBUTE_VALUE_TYPE.values()) {
+			assertEquals(valueType.getLabel(), ATTRIBUTES_PER_TYPE, count(written, valueType));
+		}
+	}
+
+	@Test
+	public void batchesOfManySubmissionsWriteEveryRow() throws Exception {
+		BlackboardWriter writer = sk.getBlackboardWriter();
+		final int artifacts = 50;
+		List<Future<BlackboardArtifact>> futures = new ArrayList<Future<BlackboardArtifact>>();
+		for (int i = 0; i < artifacts; i++) {
+			futures.add(writer.newArtifact(ARTIFACT_TYPE.TSK_KEYWORD_HIT, i, attributesOfEachType(), null));
+		}
+		//more attributes for an artifact that may not be written yet
+		BlackboardArtifact first = futures.get(0).get();
+		writer.addAttributes(first, attributesOfEachType(), null);
+		writer.flush();
+
+		assertEquals(artifacts, sk.getBlackboardArtifacts(ARTIFACT_TYPE.TSK_KEYWORD_HIT).size());
+		assertEquals(2 * ATTRIBUTES_PER_TYPE * TSK_BLACKBOARD_ATTRIBUTE_VALUE_TYPE.values().length,
+				sk.getBlackboardAttributes(first).size());
+		for (Future<BlackboardArtifact> future : futures.subList(1, artifacts)) {
+			assertEquals(ATTRIBUTES_PER_TYPE * TSK_BLACKBOARD_ATTRIBUTE_VALUE_TYPE.values().length,
+					sk.getBlackboardAttributes(future.get()).size());
+		}
+	}
+
+	@Test
+	public void singleInsertsWorkAfterABatch() throws Exception {
+		BlackboardWriter writer = sk.getBlackboardWriter();
+		BlackboardArtifact artifact = writer.newArtifact(ARTIFACT_TYPE.TSK_GEN_INFO, 1, attributesOfEachType(), null).get();
+		artifact.addAttribute(new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_NAME.getTypeID(), MODULE, "one more"));
+		sk.newBlackboardArtifact(ARTIFACT_TYPE.TSK_GEN_INFO, 1);
+		assertEquals(ATTRIBUTES_PER_TYPE * TSK_BLACKBOARD_ATTRIBUTE_VALUE_TYPE.values().length + 1,
+				sk.getBlackboardAttributes(artifact).size());
+		assertEquals(2, sk.getBlackboardArtifacts(ARTIFACT_TYPE.TSK_GEN_INFO).size());
+	}
+
+	@Test
+	public void attributesReadWithTheArtifactIncludeLaterWrites() throws Exception {
+		BlackboardWriter writer = sk.getBlackboardWriter();
+		final int perArtifact = ATTRIBUTES_PER_TYPE * TSK_BLACKBOARD_ATTRIBUTE_VALUE_TYPE.values().length;
+		writer.newArtifact(ARTIFACT_TYPE.TSK_GEN_INFO, 1, attributesOfEachType(), null).get();
+		List<BlackboardArtifact> read = sk.getArtifactsWithAttributes(ARTIFACT_TYPE.TSK_GEN_INFO);
+		assertEquals(perArtifact, read.get(0).getAttributes().size());
+
+		//through the writer
+		writer.addAttributes(read.get(0), attributesOfEachType(), null).get();
+		assertEquals(2 * perArtifact, read.get(0).getAttributes().size());
+
+		//through the case, to another object of the artifact
+		read = sk.getArtifactsWithAttributes(ARTIFACT_TYPE.TSK_GEN_INFO);
+		BlackboardArtifact other = sk.getBlackboardArtifact(read.get(0).getArtifactID());
+		other.addAttribute(new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_NAME.getTypeID(), MODULE, "one more"));
+		assertEquals(2 * perArtifact + 1, read.get(0).getAttributes().size());
+		BlackboardAttribute attr = new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_NAME.getTypeID(), MODULE, "and another");
+		attr.setArtifactID(other.getArtifactID());
+		sk.addBlackboardAttributes(Collections.singletonList(attr));
+		assertEquals(2 * perArtifact + 2, read.get(0).getAttributes().size());
+	}
+
+	@Test
+	public void valuesSurviveTheRoundTrip() throws Exception {
+		BlackboardWriter writer = sk.getBlackboardWriter();
+		List<BlackboardAttribute> attributes = new ArrayList<BlackboardAttribute>();
+		attributes.add(new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_NAME.getTypeID(), MODULE, "a name"));
+		attributes.add(new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_FLAG.getTypeID(), MODULE, 42));
+		attributes.add(new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_DATETIME.getTypeID(), MODULE, 1234567890123L));
+		BlackboardArtifact artifact = writer.newArtifact(ARTIFACT_TYPE.TSK_GEN_INFO, 7, attributes, null).get();
+
+		assertEquals(7, artifact.getObjectID());
+		for (BlackboardAttribute attr : sk.getBlackboardAttributes(artifact)) {
+			switch (attr.getValueType()) {
+				case STRING:
+					assertEquals("a name", attr.getValueString());
+					break;
+				case INTEGER:
+					assertEquals(42, attr.getValueInt());
+					break;
+				case LONG:
+					assertEquals(1234567890123L, attr.getValueLong());
+					break;
+				default:
+					fail("Unexpected value type " + attr.getValueType());
+			}
+		}
+	}
+
+	@Test
+	public void submissionsRacingCloseAllComplete() throws Exception {
+		final BlackboardWriter writer = new BlackboardWriter(sk, 4, 2);
+		final int threads = 8;
+		final CountDownLatch started = new CountDownLatch(threads);
+		final List<Future<BlackboardArtifact>> futures = Collections.synchronizedList(new ArrayList<Future<BlackboardArtifact>>());
+		List<Thread> submitters = new ArrayList<Thread>();
+		for (int t = 0; t < threads; t++) {
+			Thread submitter = new Thread() {
+				@Override
+				public void run() {
+					started.countDown();
+					try {
+						while (true) {
+							futures.add(writer.newArtifact(ARTIFACT_TYPE.TSK_GEN_INFO, 1, attributesOfEachType(), null));
+						}
+					} catch (TskCoreException ex) {
+						//closed
+					}
+				}
+			};
+			submitter.start();
+			submitters.add(submitter);
+		}
+		started.await();
+		writer.close();
+		for (Thread submitter : submitters) {
+			submitter.join(10000);
+			assertFalse(submitter.isAlive());
+		}
+
+		//every accepted submission is written or failed, none is left hanging
+		synchronized (futures) {
+			assertFalse(futures.isEmpty());
+			for (Future<BlackboardArtifact> future : futures) {
+				try {
+					future.get(10, TimeUnit.SECONDS);
+				} catch (ExecutionException ex) {
+					//failed as closed
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,157 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2012 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.lang.ref.Reference;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * ContentCache bounds, invalidation and reclaimed references
+ */
+public class ContentCacheTest {
+
+	/**
+	 * @return the reference of the cache to an object
+	 */
+	private static Reference<?> entry(ContentCache cache, long objId) throws Exception {
+		Field field = ContentCache.class.getDeclaredField("entries");
+		field.setAccessible(true);
+		return (Reference<?>) ((Map<?, ?>) field.get(cache)).get(objId);
+	}
+
+	/**
+	 * Clear a reference and queue it, as the garbage collector does when it
+	 * reclaims the object
+	 */
+	private static void reclaim(Reference<?> ref) {
+		ref.clear();
+		ref.enqueue();
+	}
+
+	@Test
+	public void leastRecentlyUsedIsEvicted() {
+		ContentCache cache = new ContentCache(3, ContentCache.ReferenceType.STRONG);
+		for (long id = 1; id <= 3; id++) {
+			cache.put(new MemoryContent(id));
+		}
+		assertNotNull(cache.get(1));
+		cache.put(new MemoryContent(4));
+		assertEquals(3, cache.size());
+		assertEquals(1, cache.getEvictionCount());
+		assertNull(cache.get(2));
+		assertNotNull(cache.get(1));
+		assertNotNull(cache.get(3));
+		assertNotNull(cache.get(4));
+	}
+
+	@Test
+	public void hitsAndMissesAreCounted() {
+		ContentCache cache = new ContentCache(10, ContentCache.ReferenceType.STRONG);
+		MemoryContent content = new MemoryContent(1);
+		cache.put(content);
+		assertSame(content, cache.get(1));
+		assertSame(content, cache.get(1, AbstractContent.class));
+		assertNull(cache.get(2));
+		//cached, but not of the class asked for
+		assertNull(cache.get(1, Image.class));
+		assertEquals(2, cache.getHitCount());
+		assertEquals(2, cache.getMissCount());
+		assertEquals(0.5, cache.getHitRatio(), 0.0);
+	}
+
+	@Test
+	public void invalidatedObjectsAreDropped() {
+		ContentCache cache = new ContentCache(10, ContentCache.ReferenceType.SOFT);
+		cache.put(new MemoryContent(1));
+		cache.put(new MemoryContent(2));
+		cache.invalidate(1);
+		assertNull(cache.get(1));
+		assertNotNull(cache.get(2));
+		cache.clear();
+		assertEquals(0, cache.size());
+		assertNull(cache.get(2));
+	}
+
+	@Test
+	public void newerObjectReplacesTheCachedOne() {
+		ContentCache cache = new ContentCache(10, ContentCache.ReferenceType.STRONG);
+		cache.put(new MemoryContent(1));
+		MemoryContent newer = new MemoryContent(1);
+		cache.put(newer);
+		assertSame(newer, cache.get(1));
+		assertEquals(1, cache.size());
+	}
+
+	@Test
+	public void zeroSizeCachesNothing() {
+		ContentCache cache = new ContentCache(0, ContentCache.ReferenceType.STRONG);
+		cache.put(new MemoryContent(1));
+		assertNull(cache.get(1));
+		assertEquals(0, cache.size());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void negativeSizeIsRejected() {
+		new ContentCache(-1, ContentCache.ReferenceType.STRONG);
+	}
+
+	@Test
+	public void reclaimedSoftReferencesArePurged() throws Exception {
+		ContentCache cache = new ContentCache(10, ContentCache.ReferenceType.SOFT);
+		MemoryContent kept = new MemoryContent(2);
+		cache.put(new MemoryContent(1));
+		cache.put(kept);
+		reclaim(entry(cache, 1));
+		assertEquals(1, cache.size());
+		assertNull(cache.get(1));
+		assertSame(kept, cache.get(2));
+	}
+
+	@Test
+	public void purgeKeepsAnObjectCachedAfterTheReclaimedOne() throws Exception {
+		ContentCache cache = new ContentCache(10, ContentCache.ReferenceType.SOFT);
+		cache.put(new MemoryContent(1));
+		Reference<?> old = entry(cache, 1);
+		MemoryContent newer = new MemoryContent(1);
+		cache.put(newer);
+		reclaim(old);
+		assertSame(newer, cache.get(1));
+	}
+
+	@Test
+	public void weakReferencesDoNotKeepObjects() {
+		ContentCache cache = new ContentCache(10, ContentCache.ReferenceType.WEAK);
+		MemoryContent kept = new MemoryContent(2);
+		cache.put(new MemoryContent(1));
+		cache.put(kept);
+		List<byte[]> pressure = new ArrayList<byte[]>();
+		for (int i = 0; i < 100 && cache.size() > 1; i++) {
+			System.gc();
+			pressure.add(new byte[1024]);
+		}
+		assertEquals(1, cache.size());
+		assertNull(cache.get(1));
+		assertSame(kept, cache.get(2));
+	}
+}
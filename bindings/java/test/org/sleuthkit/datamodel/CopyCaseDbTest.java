@@ -0,0 +1,110 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2012 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sleuthkit.datamodel.BlackboardArtifact.ARTIFACT_TYPE;
+import static org.junit.Assert.*;
+
+/**
+ * SleuthkitCase.copyCaseDB() of a case in write-ahead log mode
+ */
+public class CopyCaseDbTest {
+
+	@Rule
+	public TemporaryFolder testFolder = new TemporaryFolder();
+	private SleuthkitCase sk;
+
+	@Before
+	public void openCase() throws Exception {
+		File db = new File(testFolder.getRoot(), "case.db");
+		SyntheticCaseGenerator.createEmptyCase(db);
+		sk = SleuthkitCase.openCaseDatabase(db.getPath());
+	}
+
+	@After
+	public void closeCase() {
+		sk.close();
+	}
+
+	private static long countArtifacts(File db) throws Exception {
+		Connection connection = DriverManager.getConnection("jdbc:sqlite:" + db.getPath());
+		try {
+			Statement s = connection.createStatement();
+			ResultSet rs = s.executeQuery("SELECT COUNT(*) FROM blackboard_artifacts");
+			rs.next();
+			long count = rs.getLong(1);
+			s.close();
+			return count;
+		} finally {
+			connection.close();
+		}
+	}
+
+	@Test
+	public void copyHasWritesThatAreStillInTheLog() throws Exception {
+		for (int i = 0; i < 3; i++) {
+			sk.newBlackboardArtifact(ARTIFACT_TYPE.TSK_GEN_INFO, i);
+		}
+		//an open cursor keeps its snapshot, so the log cannot be checkpointed
+		CaseDbCursor<BlackboardArtifact> cursor = sk.streamArtifacts(ARTIFACT_TYPE.TSK_GEN_INFO.getTypeID(), 1);
+		try {
+			assertTrue(cursor.hasNext());
+			for (int i = 0; i < 50; i++) {
+				sk.newBlackboardArtifact(ARTIFACT_TYPE.TSK_GEN_INFO, i);
+			}
+			File copy = new File(testFolder.getRoot(), "copy.db");
+			sk.copyCaseDB(copy.getPath());
+			assertEquals(53, countArtifacts(copy));
+		} finally {
+			cursor.close();
+		}
+	}
+
+	@Test
+	public void copyReplacesAnExistingFile() throws Exception {
+		sk.newBlackboardArtifact(ARTIFACT_TYPE.TSK_GEN_INFO, 1);
+		File copy = new File(testFolder.getRoot(), "copy.db");
+		FileOutputStream out = new FileOutputStream(copy);
+		try {
+			out.write("not a database".getBytes("US-ASCII"));
+		} finally {
+			out.close();
+		}
+		sk.copyCaseDB(copy.getPath());
+		assertEquals(1, countArtifacts(copy));
+		//and the copy is a case that opens
+		SleuthkitCase copied = SleuthkitCase.openCaseDatabase(copy.getPath());
+		try {
+			assertEquals(1, copied.getBlackboardArtifactsTypeCount(ARTIFACT_TYPE.TSK_GEN_INFO.getTypeID()));
+		} finally {
+			copied.close();
+		}
+	}
+}
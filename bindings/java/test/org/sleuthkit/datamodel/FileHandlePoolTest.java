@@ -0,0 +1,117 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2012 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import org.junit.Before;
+import org.junit.Test;
+import org.sleuthkit.datamodel.TskData.TSK_FS_ATTR_TYPE_ENUM;
+import static org.junit.Assert.*;
+
+/**
+ * FileHandlePool over file handles that are only counted
+ */
+public class FileHandlePoolTest {
+
+	private static final TSK_FS_ATTR_TYPE_ENUM ATTR_TYPE = TSK_FS_ATTR_TYPE_ENUM.TSK_FS_ATTR_TYPE_DEFAULT;
+	private long nextHandle = 1;
+	//open handles, and the closed ones with the last use reported
+	private final Set<Long> open = new HashSet<Long>();
+	private final Map<Long, Long> closed = new HashMap<Long, Long>();
+	private FileHandlePool pool;
+
+	private final FileHandlePool.FileOpener opener = new FileHandlePool.FileOpener() {
+		@Override
+		public long open(long fsHandle, long metaAddr, TSK_FS_ATTR_TYPE_ENUM attrType, int attrId) {
+			open.add(nextHandle);
+			return nextHandle++;
+		}
+
+		@Override
+		public long getSize(long fileHandle) {
+			return 100;
+		}
+
+		@Override
+		public void close(long fileHandle, long lastUsed) {
+			assertTrue("Closed twice: " + fileHandle, open.remove(fileHandle));
+			closed.put(fileHandle, lastUsed);
+		}
+	};
+
+	@Before
+	public void createPool() {
+		pool = new FileHandlePool(opener);
+	}
+
+	private long read(long metaAddr) throws TskCoreException {
+		FileHandlePool.PooledHandle handle = pool.acquire(1, metaAddr, ATTR_TYPE, 0);
+		pool.release(handle);
+		return handle.getHandle();
+	}
+
+	private static void waitForClockTick() throws InterruptedException {
+		final long start = System.currentTimeMillis();
+		while (System.currentTimeMillis() == start) {
+			Thread.sleep(1);
+		}
+	}
+
+	@Test
+	public void handlesNotReadSinceTheGivenTimeAreClosed() throws Exception {
+		long before = System.currentTimeMillis();
+		long idle = read(1);
+		long after = System.currentTimeMillis();
+		FileHandlePool.PooledHandle leased = pool.acquire(1, 2, ATTR_TYPE, 0);
+		waitForClockTick();
+		long expired = System.currentTimeMillis() - 1;
+		waitForClockTick();
+		long recent = read(3);
+
+		pool.closeIdle(expired);
+		assertEquals(2, pool.size());
+		assertEquals(200, pool.getBytes());
+		assertTrue(closed.containsKey(idle));
+		long lastUsed = closed.get(idle);
+		assertTrue(lastUsed >= before && lastUsed <= after);
+		assertTrue(open.contains(leased.getHandle()));
+		assertTrue(open.contains(recent));
+
+		//read again, not reopened
+		assertEquals(recent, read(3));
+		pool.release(leased);
+		pool.closeIdle(Long.MAX_VALUE);
+		assertEquals(0, pool.size());
+		assertTrue(open.isEmpty());
+		assertEquals(0, pool.getEvictionCount());
+	}
+
+	@Test
+	public void aClosedFileIsOpenedAgain() throws Exception {
+		long first = read(1);
+		pool.closeIdle(Long.MAX_VALUE);
+		long second = read(1);
+		assertTrue(first != second);
+		assertEquals(2, pool.getMissCount());
+		assertEquals(0, pool.getHitCount());
+	}
+}
@@ -0,0 +1,94 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2012 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.io.File;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ * SleuthkitCase.getFileSystems(Image) on a synthetic case, which has one file
+ * system in its image
+ */
+public class FileSystemsOfImageTest {
+
+	@Rule
+	public TemporaryFolder testFolder = new TemporaryFolder();
+	private SleuthkitCase sk;
+	private Image image;
+
+	@Before
+	public void openCase() throws Exception {
+		SyntheticCaseGenerator.main(new String[]{testFolder.getRoot().getPath(), "files=20", "artifacts=0", "sparse=true"});
+		sk = SleuthkitCase.openCaseDatabase(new File(testFolder.getRoot(), SyntheticCaseGenerator.DB_NAME).getPath());
+		image = sk.getImages().get(0);
+	}
+
+	@After
+	public void closeCase() {
+		sk.close();
+	}
+
+	@Test
+	public void fileSystemsAreFoundAndReused() throws Exception {
+		Collection<FileSystem> first = sk.getFileSystems(image);
+		assertEquals(1, first.size());
+		Collection<FileSystem> second = sk.getFileSystems(image);
+		assertSame(first.iterator().next(), second.iterator().next());
+		assertEquals(first.iterator().next(), sk.getContentById(first.iterator().next().getId()));
+	}
+
+	@Test
+	public void fileSystemsAreNotHeldOutsideTheContentCache() throws Exception {
+		sk.setContentCache(100, ContentCache.ReferenceType.WEAK);
+		WeakReference<FileSystem> collected = new WeakReference<FileSystem>(sk.getFileSystems(image).iterator().next());
+		List<byte[]> pressure = new ArrayList<byte[]>();
+		for (int i = 0; i < 100 && collected.get() != null; i++) {
+			System.gc();
+			pressure.add(new byte[1024]);
+		}
+		assertNull("The case keeps the file system reachable", collected.get());
+		assertEquals(1, sk.getFileSystems(image).size());
+	}
+
+	@Test
+	public void closingTheImageDropsItsFileSystems() throws Exception {
+		FileSystem before = sk.getFileSystems(image).iterator().next();
+		image.close();
+		FileSystem after = sk.getFileSystems(image).iterator().next();
+		assertNotSame(before, after);
+		assertEquals(before.getId(), after.getId());
+	}
+
+	@Test
+	public void closingTheCaseEmptiesTheContentCache() throws Exception {
+		sk.getFileSystems(image);
+		assertTrue(sk.getContentCache().size() > 0);
+		sk.close();
+		assertEquals(0, sk.getContentCache().size());
+	}
+}
@@ -0,0 +1,84 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2012 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sleuthkit.datamodel.TskData.FileKnown;
+import static org.junit.Assert.*;
+
+/**
+ * Updates of the columns of files, in batches and one at a time, on a
+ * synthetic case database
+ */
+public class FileUpdateTest {
+
+	@Rule
+	public TemporaryFolder testFolder = new TemporaryFolder();
+	private SleuthkitCase sk;
+	private List<FsContent> files;
+
+	@Before
+	public void openCase() throws Exception {
+		SyntheticCaseGenerator.main(new String[]{testFolder.getRoot().getPath(), "files=20", "artifacts=0", "sparse=true"});
+		sk = SleuthkitCase.openCaseDatabase(new File(testFolder.getRoot(), SyntheticCaseGenerator.DB_NAME).getPath());
+		files = sk.findFilesWhere("1 = 1");
+		assertTrue(files.size() > 2);
+	}
+
+	@After
+	public void closeCase() {
+		sk.close();
+	}
+
+	@Test
+	public void md5HashesSetInABatchAndThenOneAtATime() throws Exception {
+		Map<FsContent, String> hashes = new LinkedHashMap<FsContent, String>();
+		for (FsContent file : files.subList(1, files.size())) {
+			hashes.put(file, "batch" + file.getId());
+		}
+		sk.setMd5Hashes(hashes);
+		sk.setMd5Hash(files.get(0), "single");
+
+		for (FsContent file : sk.findFilesWhere("1 = 1")) {
+			assertEquals(file.getId() == files.get(0).getId() ? "single" : "batch" + file.getId(), file.getMd5Hash());
+		}
+	}
+
+	@Test
+	public void knownStatusesSetInABatchAndThenOneAtATime() throws Exception {
+		Map<FsContent, FileKnown> knowns = new LinkedHashMap<FsContent, FileKnown>();
+		for (FsContent file : files.subList(1, files.size())) {
+			knowns.put(file, FileKnown.KNOWN);
+		}
+		assertEquals(files.size() - 1, sk.setKnown(knowns));
+		assertTrue(sk.setKnown(files.get(0), FileKnown.BAD));
+
+		for (FsContent file : sk.findFilesWhere("1 = 1")) {
+			assertEquals(file.getId() == files.get(0).getId() ? FileKnown.BAD : FileKnown.KNOWN, file.getKnown());
+		}
+	}
+}
@@ -0,0 +1,129 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2012 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ * HashIndexFilter built from a generated md5 index
+ */
+public class HashIndexFilterTest {
+
+	private static final int HASHES = 20000;
+	@Rule
+	public TemporaryFolder testFolder = new TemporaryFolder();
+	private final Random random = new Random(0);
+	private final List<String> hashes = new ArrayList<String>();
+	private File db;
+
+	private String randomMd5() {
+		StringBuilder md5 = new StringBuilder();
+		for (int i = 0; i < 32; i++) {
+			md5.append(Character.toUpperCase(Character.forDigit(random.nextInt(16), 16)));
+		}
+		return md5.toString();
+	}
+
+	/**
+	 * Write a sorted index with header lines, like TSK does next to the
+	 * database
+	 */
+	@Before
+	public void writeIndex() throws Exception {
+		for (int i = 0; i < HASHES; i++) {
+			hashes.add(randomMd5());
+		}
+		Collections.sort(hashes);
+		db = new File(testFolder.getRoot(), "known.txt");
+		OutputStream out = new FileOutputStream(HashIndexFilter.getIndexPath(db.getPath()));
+		try {
+			out.write("00000000000000000000000000000000000000000|md5sum\n".getBytes("US-ASCII"));
+			out.write("00000000000000000000000000000000000000001|known.txt\n".getBytes("US-ASCII"));
+			for (int i = 0; i < hashes.size(); i++) {
+				out.write(String.format("%s|%016d\n", hashes.get(i), i * 40L).getBytes("US-ASCII"));
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	@Test
+	public void everyIndexedHashMightBeContained() throws Exception {
+		HashIndexFilter filter = HashIndexFilter.load(db.getPath(), HashIndexFilter.DEFAULT_BITS_PER_ENTRY);
+		assertEquals(HASHES, filter.getEntries());
+		for (String md5 : hashes) {
+			assertTrue(md5, filter.mightContain(md5));
+			assertTrue(md5, filter.mightContain(md5.toLowerCase(Locale.US)));
+		}
+	}
+
+	@Test
+	public void noFalseNegativesWithFewBitsPerEntry() throws Exception {
+		HashIndexFilter filter = HashIndexFilter.load(db.getPath(), 1);
+		for (String md5 : hashes) {
+			assertTrue(md5, filter.mightContain(md5));
+		}
+	}
+
+	@Test
+	public void mostOtherHashesAreRuledOut() throws Exception {
+		HashIndexFilter filter = HashIndexFilter.load(db.getPath(), HashIndexFilter.DEFAULT_BITS_PER_ENTRY);
+		int falsePositives = 0;
+		final int lookups = 10000;
+		for (int i = 0; i < lookups; i++) {
+			String md5 = randomMd5();
+			if (Collections.binarySearch(hashes, md5) < 0 && filter.mightContain(md5)) {
+				falsePositives++;
+			}
+		}
+		//about 1% expected
+		assertTrue("False positives: " + falsePositives, falsePositives < lookups / 20);
+	}
+
+	@Test
+	public void valuesThatAreNotMd5HashesAreLookedUp() throws Exception {
+		HashIndexFilter filter = HashIndexFilter.load(db.getPath(), HashIndexFilter.DEFAULT_BITS_PER_ENTRY);
+		assertTrue(filter.mightContain(null));
+		assertTrue(filter.mightContain("1234"));
+		assertTrue(filter.mightContain("XYZ" + hashes.get(0).substring(3)));
+	}
+
+	@Test
+	public void indexOnlyDatabasesAreTheirOwnIndex() {
+		assertEquals("nsrl.txt-md5.idx", HashIndexFilter.getIndexPath("nsrl.txt"));
+		assertEquals("nsrl-md5.IDX", HashIndexFilter.getIndexPath("nsrl-md5.IDX"));
+	}
+
+	@Test(expected = TskCoreException.class)
+	public void missingIndexFails() throws Exception {
+		HashIndexFilter.load(new File(testFolder.getRoot(), "other.txt").getPath(), HashIndexFilter.DEFAULT_BITS_PER_ENTRY);
+	}
+}
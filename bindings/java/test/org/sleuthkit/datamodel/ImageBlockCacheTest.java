@@ -0,0 +1,154 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2012 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * ImageBlockCache over images held in memory
+ */
+public class ImageBlockCacheTest {
+
+	private static final int BLOCK = ImageBlockCache.BLOCK_SIZE;
+	//two full blocks and a short last block
+	private static final int IMAGE_SIZE = 2 * BLOCK + 1000;
+	private final Map<Long, byte[]> images = new HashMap<Long, byte[]>();
+	private int imageReads;
+	private ImageBlockCache cache;
+
+	/**
+	 * Reads like TSK: an offset past the end of the image is an error
+	 */
+	private final ImageBlockCache.ImageReader reader = new ImageBlockCache.ImageReader() {
+		@Override
+		public int read(long readHandle, ByteBuffer dst, long offset) throws TskCoreException {
+			imageReads++;
+			byte[] image = images.get(readHandle);
+			if (offset >= image.length) {
+				throw new TskCoreException("Read past the end of image " + readHandle);
+			}
+			int n = (int) Math.min(dst.remaining(), image.length - offset);
+			dst.put(image, (int) offset, n);
+			return n;
+		}
+	};
+
+	private static byte[] image(long seed, int size) {
+		byte[] image = new byte[size];
+		new Random(seed).nextBytes(image);
+		return image;
+	}
+
+	@Before
+	public void createCache() {
+		images.put(1L, image(1, IMAGE_SIZE));
+		images.put(2L, image(2, IMAGE_SIZE));
+		cache = new ImageBlockCache(ImageBlockCache.DEFAULT_CAPACITY, reader);
+	}
+
+	private byte[] read(long handle, long offset, int len) throws TskCoreException {
+		ByteBuffer dst = ByteBuffer.allocate(len);
+		int n = cache.read(handle, handle, dst, offset);
+		assertEquals(n, dst.position());
+		return Arrays.copyOf(dst.array(), n);
+	}
+
+	private byte[] expected(long handle, long offset, int len) {
+		byte[] image = images.get(handle);
+		return Arrays.copyOfRange(image, (int) offset, (int) Math.min(image.length, offset + len));
+	}
+
+	@Test
+	public void readsMatchTheImage() throws Exception {
+		Random random = new Random(0);
+		for (int i = 0; i < 500; i++) {
+			int len = 1 + random.nextInt(ImageBlockCache.MAX_CACHED_READ);
+			long offset = random.nextInt(IMAGE_SIZE);
+			assertArrayEquals("offset " + offset + " length " + len, expected(1, offset, len), read(1, offset, len));
+		}
+	}
+
+	@Test
+	public void cachedBlocksAreNotReadAgain() throws Exception {
+		read(1, 0, IMAGE_SIZE);
+		final int reads = imageReads;
+		assertArrayEquals(expected(1, 100, 2 * BLOCK), read(1, 100, 2 * BLOCK));
+		assertEquals(reads, imageReads);
+	}
+
+	@Test
+	public void readPastTheEndReturnsTheRest() throws Exception {
+		assertArrayEquals(expected(1, IMAGE_SIZE - 10, 100), read(1, IMAGE_SIZE - 10, 100));
+		//and again from the cached last block
+		assertArrayEquals(expected(1, IMAGE_SIZE - 10, 100), read(1, IMAGE_SIZE - 10, 100));
+	}
+
+	@Test
+	public void offsetInTheLastBlockPastTheEndFails() throws Exception {
+		for (int pass = 0; pass < 2; pass++) {
+			try {
+				read(1, IMAGE_SIZE + 10, 100);
+				fail("Read past the end of the image on pass " + pass);
+			} catch (TskCoreException ex) {
+				//the second pass has the last block cached
+			}
+			read(1, IMAGE_SIZE - 1, 1);
+		}
+	}
+
+	@Test
+	public void offsetPastTheLastBlockFails() throws Exception {
+		try {
+			read(1, 4 * BLOCK, 100);
+			fail("Read past the end of the image");
+		} catch (TskCoreException ex) {
+			//not in the image
+		}
+	}
+
+	@Test
+	public void invalidationDropsTheBlocksOfOneImage() throws Exception {
+		read(1, 0, 100);
+		read(2, 0, 100);
+		cache.invalidate(1);
+		//the handle is reused by another image
+		images.put(1L, image(3, IMAGE_SIZE));
+		int reads = imageReads;
+		assertArrayEquals(expected(1, 0, 100), read(1, 0, 100));
+		assertEquals(reads + 1, imageReads);
+		reads = imageReads;
+		assertArrayEquals(expected(2, 0, 100), read(2, 0, 100));
+		assertEquals(reads, imageReads);
+	}
+
+	@Test
+	public void disabledCacheReadsTheImage() throws Exception {
+		cache.setCapacity(0);
+		assertFalse(cache.isCached(100));
+		assertArrayEquals(expected(1, 5, 100), read(1, 5, 100));
+		assertEquals(0, cache.getUsedBytes());
+	}
+}
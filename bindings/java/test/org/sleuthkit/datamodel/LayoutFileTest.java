@@ -0,0 +1,124 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2012 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ * LayoutFile range lookups, with ranges read from an empty case database
+ */
+public class LayoutFileTest {
+
+	@Rule
+	public TemporaryFolder testFolder = new TemporaryFolder();
+	private File db;
+	private SleuthkitCase sk;
+
+	@Before
+	public void openCase() throws Exception {
+		db = new File(testFolder.getRoot(), "case.db");
+		SyntheticCaseGenerator.createEmptyCase(db);
+		//file 1: an empty range at the start, between and after the others
+		//file 2: only empty ranges, file 3: no ranges
+		long[][] layout = {
+			{1, 7000, 0, 0},
+			{1, 1000, 100, 1},
+			{1, 5000, 0, 2},
+			{1, 6000, 0, 3},
+			{1, 9000, 50, 4},
+			{1, 20000, 0, 5},
+			{2, 1000, 0, 0},
+			{2, 2000, 0, 1}};
+		Connection connection = DriverManager.getConnection("jdbc:sqlite:" + db.getPath());
+		try {
+			PreparedStatement insert = connection.prepareStatement("INSERT INTO tsk_file_layout (obj_id, byte_start, byte_len, sequence) VALUES (?, ?, ?, ?)");
+			for (long[] range : layout) {
+				for (int i = 0; i < range.length; i++) {
+					insert.setLong(i + 1, range[i]);
+				}
+				insert.executeUpdate();
+			}
+			insert.close();
+		} finally {
+			connection.close();
+		}
+		sk = SleuthkitCase.openCaseDatabase(db.getPath());
+	}
+
+	@After
+	public void closeCase() {
+		sk.close();
+	}
+
+	private LayoutFile layoutFile(long objId) {
+		return new LayoutFile(sk, objId, "layout" + objId, TskData.TSK_DB_FILES_TYPE_ENUM.UNALLOC_BLOCKS);
+	}
+
+	@Test
+	public void findRangeSkipsEmptyRanges() {
+		//ranges of 0, 0, 10, 0, 10 and 0 bytes
+		long[] fileStarts = {0, 0, 0, 10, 10, 20, 20};
+		assertEquals(2, LayoutFile.findRange(fileStarts, 0));
+		assertEquals(2, LayoutFile.findRange(fileStarts, 9));
+		assertEquals(4, LayoutFile.findRange(fileStarts, 10));
+		assertEquals(4, LayoutFile.findRange(fileStarts, 19));
+		assertEquals(-1, LayoutFile.findRange(fileStarts, 20));
+		assertEquals(-1, LayoutFile.findRange(fileStarts, -1));
+	}
+
+	@Test
+	public void findRangeOfEmptyFiles() {
+		assertEquals(-1, LayoutFile.findRange(new long[]{0}, 0));
+		assertEquals(-1, LayoutFile.findRange(new long[]{0, 0, 0}, 0));
+	}
+
+	@Test
+	public void offsetsAreConvertedPastEmptyRanges() throws Exception {
+		LayoutFile file = layoutFile(1);
+		assertEquals(6, file.getNumParts());
+		assertEquals(150, file.getSize());
+		assertEquals(1000, file.convertToImgOffset(0));
+		assertEquals(1099, file.convertToImgOffset(99));
+		assertEquals(9000, file.convertToImgOffset(100));
+		assertEquals(9049, file.convertToImgOffset(149));
+		assertEquals(-1, file.convertToImgOffset(150));
+		assertEquals(-1, file.convertToImgOffset(-1));
+	}
+
+	@Test
+	public void filesWithoutDataHaveNoImageOffsets() throws Exception {
+		for (long objId = 2; objId <= 3; objId++) {
+			LayoutFile file = layoutFile(objId);
+			assertEquals(0, file.getSize());
+			assertEquals(-1, file.convertToImgOffset(0));
+			assertEquals(0, file.read(new byte[10], 0, 10));
+		}
+		assertEquals(2, layoutFile(2).getNumParts());
+		assertEquals(0, layoutFile(3).getNumParts());
+	}
+}
@@ -0,0 +1,124 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2012 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Measures the garbage collection cost of creating and reading the file
+ * objects of a case: every pass creates an object for each file in the case
+ * and reads its first bytes, so that its native handles are opened. Prints
+ * per pass the time, the collections and the time spent in them, the bytes
+ * allocated and the objects waiting for finalization. Run against builds
+ * with and without finalizers to compare them.
+ *
+ * Usage: LifecycleBenchmark caseDbPath [passes] [close]
+ *
+ * With "close" each file is closed after it is read, instead of being left to
+ * the garbage collector.
+ */
+public class LifecycleBenchmark {
+
+	private static final int DEFAULT_PASSES = 3;
+
+	/**
+	 * Runs the passes over the files of a case and prints their measurements
+	 * @param args case database path, optional number of passes and "close"
+	 */
+	public static void main(String[] args) throws Exception {
+		if (args.length < 1) {
+			System.err.println("Usage: LifecycleBenchmark caseDbPath [passes] [close]");
+			System.exit(1);
+		}
+		int passes = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_PASSES;
+		boolean close = args.length > 2 && args[2].equals("close");
+
+		SleuthkitCase sk = SleuthkitCase.openCase(args[0]);
+		try {
+			System.out.println("pass\tfiles\tseconds\tgcs\tgc ms\talloc MB\tpending finalization");
+			for (int pass = 1; pass <= passes; pass++) {
+				long gcCount = gcCount();
+				long gcTime = gcTime();
+				long allocated = allocatedBytes();
+				long start = System.nanoTime();
+				long files = run(sk, close);
+				double seconds = (System.nanoTime() - start) / 1e9;
+				System.out.println(String.format("%d\t%d\t%.3f\t%d\t%d\t%.1f\t%d",
+						pass, files, seconds, gcCount() - gcCount, gcTime() - gcTime,
+						(allocatedBytes() - allocated) / (1024.0 * 1024.0),
+						ManagementFactory.getMemoryMXBean().getObjectPendingFinalizationCount()));
+			}
+		} finally {
+			sk.close();
+		}
+	}
+
+	private static long run(SleuthkitCase sk, boolean close) throws TskCoreException {
+		byte[] buf = new byte[512];
+		long files = 0;
+		CaseDbCursor<AbstractFile> cursor = sk.streamFilesWhere("size > 0");
+		try {
+			while (cursor.hasNext()) {
+				AbstractFile file = cursor.next();
+				try {
+					file.read(buf, 0, Math.min(buf.length, file.getSize()));
+				} catch (TskCoreException ex) {
+					//unreadable files still count, the object was created
+				}
+				if (close && file instanceof FsContent) {
+					((FsContent) file).close();
+				}
+				files++;
+			}
+		} finally {
+			cursor.close();
+		}
+		return files;
+	}
+
+	private static long gcCount() {
+		long count = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			count += Math.max(0, gc.getCollectionCount());
+		}
+		return count;
+	}
+
+	private static long gcTime() {
+		long time = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			time += Math.max(0, gc.getCollectionTime());
+		}
+		return time;
+	}
+
+	/**
+	 * @return bytes allocated by the calling thread, or 0 if the VM does not
+	 * measure it
+	 */
+	private static long allocatedBytes() {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if (threads instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return 0;
+	}
+}
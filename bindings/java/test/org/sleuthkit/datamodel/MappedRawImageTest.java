@@ -0,0 +1,143 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2012 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ * MappedRawImage of a split image, mapped in small chunks so that reads cross
+ * chunk and segment boundaries
+ */
+public class MappedRawImageTest {
+
+	private static final int CHUNK = 256;
+	//a segment of whole chunks, one with a short last chunk and a tiny one
+	private static final int[] SEGMENT_SIZES = {4 * CHUNK, 2 * CHUNK + 100, 1, 3 * CHUNK - 1};
+	@Rule
+	public TemporaryFolder testFolder = new TemporaryFolder();
+	private byte[] image;
+	private MappedRawImage mapped;
+
+	@Before
+	public void writeSegments() throws Exception {
+		int size = 0;
+		for (int segmentSize : SEGMENT_SIZES) {
+			size += segmentSize;
+		}
+		image = new byte[size];
+		new Random(0).nextBytes(image);
+		String[] segments = new String[SEGMENT_SIZES.length];
+		int start = 0;
+		for (int i = 0; i < segments.length; i++) {
+			File segment = new File(testFolder.getRoot(), String.format("image.%03d", i + 1));
+			FileOutputStream out = new FileOutputStream(segment);
+			try {
+				out.write(image, start, SEGMENT_SIZES[i]);
+			} finally {
+				out.close();
+			}
+			segments[i] = segment.getPath();
+			start += SEGMENT_SIZES[i];
+		}
+		mapped = MappedRawImage.map(segments, CHUNK);
+		assertNotNull(mapped);
+	}
+
+	private byte[] expected(long offset, int len) {
+		return Arrays.copyOfRange(image, (int) offset, (int) Math.min(image.length, offset + len));
+	}
+
+	@Test
+	public void sizeIsTheSumOfTheSegments() {
+		assertEquals(image.length, mapped.getSize());
+	}
+
+	@Test
+	public void readsAcrossBoundariesMatchTheImage() throws Exception {
+		Random random = new Random(1);
+		for (int i = 0; i < 2000; i++) {
+			long offset = random.nextInt(image.length);
+			int len = 1 + random.nextInt(3 * CHUNK);
+			byte[] buf = new byte[len + 10];
+			int n = mapped.read(buf, 10, offset, len);
+			assertArrayEquals("offset " + offset + " length " + len, expected(offset, len), Arrays.copyOfRange(buf, 10, 10 + n));
+
+			ByteBuffer dst = (i % 2 == 0) ? ByteBuffer.allocate(len) : ByteBuffer.allocateDirect(len);
+			assertEquals(n, mapped.read(dst, offset));
+			assertEquals(n, dst.position());
+			byte[] fromBuffer = new byte[n];
+			dst.flip();
+			dst.get(fromBuffer);
+			assertArrayEquals(expected(offset, len), fromBuffer);
+		}
+	}
+
+	@Test
+	public void everyBoundaryIsReadAcross() throws Exception {
+		int segmentStart = 0;
+		for (int segmentSize : SEGMENT_SIZES) {
+			for (int chunkStart = segmentStart; chunkStart < segmentStart + segmentSize; chunkStart += CHUNK) {
+				for (long offset = Math.max(0, chunkStart - 2); offset <= chunkStart; offset++) {
+					byte[] buf = new byte[4];
+					int n = mapped.read(buf, 0, offset, buf.length);
+					assertArrayEquals("offset " + offset, expected(offset, buf.length), Arrays.copyOf(buf, n));
+				}
+			}
+			segmentStart += segmentSize;
+		}
+	}
+
+	@Test
+	public void wholeImageInOneRead() throws Exception {
+		byte[] buf = new byte[image.length + 100];
+		assertEquals(image.length, mapped.read(buf, 0, 0, buf.length));
+		assertArrayEquals(image, Arrays.copyOf(buf, image.length));
+	}
+
+	@Test
+	public void readsAreCutAtTheEndOfTheImage() throws Exception {
+		assertEquals(1, mapped.read(new byte[10], 0, image.length - 1, 10));
+		try {
+			mapped.read(new byte[10], 0, image.length, 10);
+			fail("Read past the end of the image");
+		} catch (TskCoreException ex) {
+			//like tsk_img_read()
+		}
+		try {
+			mapped.read(ByteBuffer.allocate(10), -1);
+			fail("Read before the start of the image");
+		} catch (TskCoreException ex) {
+			//like tsk_img_read()
+		}
+	}
+
+	@Test
+	public void missingSegmentIsNotMapped() {
+		assertNull(MappedRawImage.map(new String[]{new File(testFolder.getRoot(), "missing").getPath()}, CHUNK));
+	}
+}
@@ -0,0 +1,76 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2012 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Content backed by an array, for the unit tests. Counts the reads.
+ */
+class MemoryContent extends AbstractContent {
+
+	private final byte[] data;
+	int reads;
+
+	MemoryContent(long objId, byte[] data) {
+		super(null, objId, "memory" + objId);
+		this.data = data;
+	}
+
+	MemoryContent(long objId) {
+		this(objId, new byte[0]);
+	}
+
+	@Override
+	public int read(byte[] buf, long offset, long len) throws TskCoreException {
+		reads++;
+		if (offset >= data.length) {
+			return -1;
+		}
+		int n = (int) Math.min(len, data.length - offset);
+		System.arraycopy(data, (int) offset, buf, 0, n);
+		return n;
+	}
+
+	@Override
+	public long getSize() {
+		return data.length;
+	}
+
+	@Override
+	public <T> T accept(ContentVisitor<T> v) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public <T> T accept(SleuthkitItemVisitor<T> v) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public List<Content> getChildren() throws TskCoreException {
+		return Collections.emptyList();
+	}
+
+	@Override
+	public List<Long> getChildrenIds() throws TskCoreException {
+		return Collections.emptyList();
+	}
+}
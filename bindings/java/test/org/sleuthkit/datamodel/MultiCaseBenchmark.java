@@ -0,0 +1,120 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2012 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.sleuthkit.datamodel.BlackboardArtifact.ARTIFACT_TYPE;
+import org.sleuthkit.datamodel.BlackboardAttribute.ATTRIBUTE_TYPE;
+
+/**
+ * Measures blackboard throughput when several cases are used at the same
+ * time, one thread per case. With per-case locking the aggregate throughput
+ * should grow close to linearly with the number of cases.
+ *
+ * Usage: MultiCaseBenchmark [maxCases] [artifactsPerCase]
+ */
+public class MultiCaseBenchmark {
+
+	private static final int DEFAULT_MAX_CASES = 4;
+	private static final int DEFAULT_ARTIFACTS = 2000;
+
+	/**
+	 * Runs the benchmark for 1..maxCases concurrent cases and prints the
+	 * throughput of each run
+	 * @param args optional maximum number of cases and artifacts per case
+	 */
+	public static void main(String[] args) throws Exception {
+		int maxCases = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_MAX_CASES;
+		int artifacts = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_ARTIFACTS;
+		java.io.File tempDir = new java.io.File(System.getProperty("java.io.tmpdir"));
+
+		double baseline = 0;
+		System.out.println("cases\tops\tseconds\tops/s\tscaling");
+		for (int n = 1; n <= maxCases; n++) {
+			List<SleuthkitCase> cases = new ArrayList<SleuthkitCase>();
+			List<java.io.File> dbFiles = new ArrayList<java.io.File>();
+			for (int i = 0; i < n; i++) {
+				java.io.File dbFile = new java.io.File(tempDir, "multicase-bench-" + i + ".db");
+				delete(dbFile);
+				dbFiles.add(dbFile);
+				cases.add(SleuthkitCase.newCase(dbFile.getPath()));
+			}
+
+			long ops = (long) n * artifacts * 3;
+			double seconds = run(cases, artifacts);
+			double opsPerSec = ops / seconds;
+			if (n == 1) {
+				baseline = opsPerSec;
+			}
+			System.out.println(String.format("%d\t%d\t%.3f\t%.0f\t%.2f",
+					n, ops, seconds, opsPerSec, opsPerSec / baseline));
+
+			for (SleuthkitCase sk : cases) {
+				sk.close();
+			}
+			for (java.io.File dbFile : dbFiles) {
+				delete(dbFile);
+			}
+		}
+	}
+
+	/**
+	 * Works on every case in its own thread: creates artifacts with an
+	 * attribute each and reads them back
+	 * @return elapsed time in seconds
+	 */
+	private static double run(List<SleuthkitCase> cases, final int artifacts) throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(cases.size());
+		try {
+			List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+			for (final SleuthkitCase sk : cases) {
+				tasks.add(new Callable<Void>() {
+					@Override
+					public Void call() throws TskCoreException {
+						for (int i = 0; i < artifacts; i++) {
+							BlackboardArtifact artifact = sk.newBlackboardArtifact(ARTIFACT_TYPE.TSK_GEN_INFO, i);
+							artifact.addAttribute(new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_COMMENT.getTypeID(),
+									"MultiCaseBenchmark", "comment " + i));
+							sk.getBlackboardArtifacts(ARTIFACT_TYPE.TSK_GEN_INFO, i);
+						}
+						return null;
+					}
+				});
+			}
+			long start = System.nanoTime();
+			for (Future<Void> result : executor.invokeAll(tasks)) {
+				result.get();
+			}
+			return (System.nanoTime() - start) / 1e9;
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	private static void delete(java.io.File dbFile) {
+		dbFile.delete();
+		new java.io.File(dbFile.getPath() + "-wal").delete();
+		new java.io.File(dbFile.getPath() + "-shm").delete();
+	}
+}
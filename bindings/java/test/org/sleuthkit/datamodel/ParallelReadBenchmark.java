@@ -0,0 +1,141 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2012 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Measures the read throughput of the files of a case when read by several
+ * threads at once, with a single native handle per image and with one handle
+ * stripe per thread. With striping the throughput should grow with the number
+ * of threads until the storage is the limit.
+ *
+ * The files are read once before measuring, so that all runs read from the
+ * operating system cache.
+ *
+ * Usage: ParallelReadBenchmark caseDbPath [maxThreads]
+ */
+public class ParallelReadBenchmark {
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * Reads the files of a case with 1..maxThreads threads, unstriped and
+	 * striped, and prints the throughput of each run
+	 * @param args case database path and optional maximum number of threads
+	 */
+	public static void main(String[] args) throws Exception {
+		if (args.length < 1) {
+			System.err.println("Usage: ParallelReadBenchmark caseDbPath [maxThreads]");
+			System.exit(1);
+		}
+		int maxThreads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+		SleuthkitCase sk = SleuthkitCase.openCase(args[0]);
+		try {
+			List<AbstractFile> files = new ArrayList<AbstractFile>();
+			CaseDbCursor<AbstractFile> cursor = sk.streamFilesWhere("size > 0");
+			try {
+				while (cursor.hasNext()) {
+					files.add(cursor.next());
+				}
+			} finally {
+				cursor.close();
+			}
+
+			//warm the operating system cache
+			run(files, 1);
+
+			double baseline = 0;
+			System.out.println("stripes\tthreads\tMB\tseconds\tMB/s\tscaling");
+			for (int stripes : new int[]{1, maxThreads}) {
+				for (int threads = 1; threads <= maxThreads; threads *= 2) {
+					SleuthkitJNI.setReadStripes(stripes);
+					//start every run with cold native caches
+					SleuthkitJNI.clearFileHandlePool();
+					long start = System.nanoTime();
+					long bytes = run(files, threads);
+					double seconds = (System.nanoTime() - start) / 1e9;
+					double mb = bytes / (1024.0 * 1024.0);
+					if (baseline == 0) {
+						baseline = mb / seconds;
+					}
+					System.out.println(String.format("%d\t%d\t%.1f\t%.3f\t%.1f\t%.2f",
+							stripes, threads, mb, seconds, mb / seconds, (mb / seconds) / baseline));
+				}
+			}
+		} finally {
+			SleuthkitJNI.setReadStripes(1);
+			sk.close();
+		}
+	}
+
+	/**
+	 * Read all files completely, the threads taking the next unread file
+	 *
+	 * @return number of bytes read
+	 */
+	private static long run(final List<AbstractFile> files, int threads) throws Exception {
+		final AtomicInteger next = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<Long>> results = new ArrayList<Future<Long>>();
+			for (int i = 0; i < threads; i++) {
+				results.add(executor.submit(new Callable<Long>() {
+					@Override
+					public Long call() {
+						byte[] buf = new byte[BUFFER_SIZE];
+						long bytes = 0;
+						int index;
+						while ((index = next.getAndIncrement()) < files.size()) {
+							AbstractFile file = files.get(index);
+							long offset = 0;
+							try {
+								while (offset < file.getSize()) {
+									int read = file.read(buf, offset, Math.min(buf.length, file.getSize() - offset));
+									if (read <= 0) {
+										break;
+									}
+									offset += read;
+								}
+							} catch (TskCoreException ex) {
+								//count what could be read
+							}
+							bytes += offset;
+						}
+						return bytes;
+					}
+				}));
+			}
+			long bytes = 0;
+			for (Future<Long> result : results) {
+				bytes += result.get();
+			}
+			return bytes;
+		} finally {
+			executor.shutdown();
+		}
+	}
+}
@@ -0,0 +1,197 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2012 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.io.File;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sleuthkit.datamodel.BlackboardArtifact.ARTIFACT_TYPE;
+import static org.junit.Assert.*;
+
+/**
+ * The read connections of a case, used by short-lived reader threads
+ */
+public class ReadConnectionPoolTest {
+
+	@Rule
+	public TemporaryFolder testFolder = new TemporaryFolder();
+	private SleuthkitCase sk;
+
+	@Before
+	public void openCase() throws Exception {
+		File db = new File(testFolder.getRoot(), "case.db");
+		SyntheticCaseGenerator.createEmptyCase(db);
+		sk = SleuthkitCase.openCaseDatabase(db.getPath());
+		sk.newBlackboardArtifact(ARTIFACT_TYPE.TSK_GEN_INFO, 1);
+	}
+
+	@After
+	public void closeCase() {
+		sk.close();
+	}
+
+	/**
+	 * Start threads that each read from the case a few times and exit
+	 *
+	 * @param threads number of threads
+	 * @param concurrent start them together, or one after another
+	 */
+	private void readInThreads(int threads, boolean concurrent) throws Exception {
+		final CountDownLatch start = new CountDownLatch(concurrent ? 1 : 0);
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		List<Thread> readers = new ArrayList<Thread>();
+		for (int t = 0; t < threads; t++) {
+			Thread reader = new Thread() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+						for (int i = 0; i < 5; i++) {
+							assertEquals(1, sk.getBlackboardArtifactsTypeCount(ARTIFACT_TYPE.TSK_GEN_INFO.getTypeID()));
+						}
+					} catch (Throwable ex) {
+						failure.compareAndSet(null, ex);
+					}
+				}
+			};
+			reader.start();
+			if (!concurrent) {
+				reader.join();
+			}
+			readers.add(reader);
+		}
+		start.countDown();
+		for (Thread reader : readers) {
+			reader.join(30000);
+			assertFalse(reader.isAlive());
+		}
+		if (failure.get() != null) {
+			throw new AssertionError(failure.get());
+		}
+	}
+
+	@Test
+	public void threadsOneAfterAnotherShareOneConnection() throws Exception {
+		readInThreads(50, false);
+		assertEquals(1, sk.getReadConnectionCount());
+	}
+
+	@Test
+	public void concurrentThreadsOpenAtMostTheMaximum() throws Exception {
+		readInThreads(4 * SleuthkitCase.MAX_READ_CONNECTIONS, true);
+		assertTrue(sk.getReadConnectionCount() <= SleuthkitCase.MAX_READ_CONNECTIONS);
+		//and the connections are returned
+		readInThreads(2 * SleuthkitCase.MAX_READ_CONNECTIONS, true);
+		assertTrue(sk.getReadConnectionCount() <= SleuthkitCase.MAX_READ_CONNECTIONS);
+	}
+
+	@Test
+	public void nestedLocksKeepOneConnection() throws Exception {
+		sk.acquireExclusiveLock();
+		try {
+			sk.getBlackboardArtifactsTypeCount(ARTIFACT_TYPE.TSK_GEN_INFO.getTypeID());
+			sk.getBlackboardArtifactsTypeCount(ARTIFACT_TYPE.TSK_GEN_INFO.getTypeID());
+		} finally {
+			sk.releaseExclusiveLock();
+		}
+		readInThreads(1, false);
+		assertEquals(1, sk.getReadConnectionCount());
+	}
+
+	@Test
+	@SuppressWarnings("deprecation")
+	public void openQueryResultsDoNotHoldPooledConnections() throws Exception {
+		final int type = ARTIFACT_TYPE.TSK_GEN_INFO.getTypeID();
+		ResultSet rs = sk.runQuery("SELECT artifact_id FROM blackboard_artifacts");
+		try {
+			assertTrue(rs.next());
+			//a reader sees the writes made while the result is open
+			sk.newBlackboardArtifact(ARTIFACT_TYPE.TSK_GEN_INFO, 1);
+			assertEquals(2, sk.getBlackboardArtifactsTypeCount(type));
+			assertEquals(1, sk.getReadConnectionCount());
+		} finally {
+			sk.closeRunQuery(rs);
+		}
+		assertEquals(2, sk.getBlackboardArtifactsTypeCount(type));
+	}
+
+	@Test
+	@SuppressWarnings("deprecation")
+	public void closingTheCaseClosesUnclosedQueryResults() throws Exception {
+		ResultSet rs = sk.runQuery("SELECT artifact_id FROM blackboard_artifacts");
+		sk.close();
+		assertTrue(rs.getStatement().getConnection().isClosed());
+	}
+
+	@Test
+	public void openingMoreCursorsWaitsForOneToBeClosed() throws Exception {
+		final int type = ARTIFACT_TYPE.TSK_GEN_INFO.getTypeID();
+		List<CaseDbCursor<BlackboardArtifact>> cursors = new ArrayList<CaseDbCursor<BlackboardArtifact>>();
+		for (int i = 0; i < SleuthkitCase.MAX_OPEN_CURSORS; i++) {
+			cursors.add(sk.streamArtifacts(type));
+		}
+		final CountDownLatch opened = new CountDownLatch(1);
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		Thread opener = new Thread() {
+			@Override
+			public void run() {
+				try {
+					CaseDbCursor<BlackboardArtifact> cursor = sk.streamArtifacts(type);
+					opened.countDown();
+					cursor.close();
+				} catch (Throwable ex) {
+					failure.set(ex);
+				}
+			}
+		};
+		opener.start();
+		assertFalse(opened.await(500, TimeUnit.MILLISECONDS));
+		//the open cursors do not keep the case from being read
+		assertEquals(1, sk.getBlackboardArtifactsTypeCount(type));
+		cursors.remove(0).close();
+		opener.join(10000);
+		assertNull(failure.get());
+		assertEquals(0, opened.getCount());
+		for (CaseDbCursor<BlackboardArtifact> cursor : cursors) {
+			cursor.close();
+		}
+	}
+
+	@Test
+	public void closingTheCaseClosesTheConnections() throws Exception {
+		readInThreads(8, true);
+		sk.close();
+		assertEquals(0, sk.getReadConnectionCount());
+		try {
+			sk.getBlackboardArtifactsTypeCount(ARTIFACT_TYPE.TSK_GEN_INFO.getTypeID());
+			fail("Read from a closed case");
+		} catch (TskCoreException ex) {
+			//closed
+		}
+	}
+}
@@ -0,0 +1,158 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2012 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * ReadContentInputStream over content held in memory, compared with a
+ * ByteArrayInputStream of the same bytes
+ */
+public class ReadContentInputStreamTest {
+
+	private static final int WINDOW = 1024;
+	private static final int BLOCK = 512;
+
+	private static byte[] data(int size) {
+		byte[] data = new byte[size];
+		new Random(size).nextBytes(data);
+		return data;
+	}
+
+	private static byte[] readFully(InputStream in, int len) throws Exception {
+		byte[] b = new byte[len];
+		int total = 0;
+		while (total < len) {
+			int n = in.read(b, total, len - total);
+			if (n < 0) {
+				break;
+			}
+			total += n;
+		}
+		return Arrays.copyOf(b, total);
+	}
+
+	@Test
+	public void resetReturnsToAMarkInAnEarlierWindow() throws Exception {
+		byte[] data = data(10 * WINDOW);
+		InputStream in = new ReadContentInputStream(new MemoryContent(1, data), WINDOW, BLOCK);
+		readFully(in, 100);
+		in.mark(0);
+		byte[] first = readFully(in, 3 * WINDOW + 7);
+		in.reset();
+		assertArrayEquals(first, readFully(in, 3 * WINDOW + 7));
+		assertArrayEquals(Arrays.copyOfRange(data, 100, 100 + 3 * WINDOW + 7), first);
+	}
+
+	@Test
+	public void skipMovesAcrossWindows() throws Exception {
+		byte[] data = data(10 * WINDOW);
+		InputStream in = new ReadContentInputStream(new MemoryContent(1, data), WINDOW, BLOCK);
+		assertEquals(10, in.read(new byte[10]));
+		assertEquals(5 * WINDOW + 3, in.skip(5 * WINDOW + 3));
+		assertEquals(data[10 + 5 * WINDOW + 3] & 0xFF, in.read());
+		assertArrayEquals(Arrays.copyOfRange(data, 14 + 5 * WINDOW, 14 + 5 * WINDOW + 50), readFully(in, 50));
+	}
+
+	@Test
+	public void skipStopsAtTheEnd() throws Exception {
+		byte[] data = data(3 * WINDOW + 5);
+		InputStream in = new ReadContentInputStream(new MemoryContent(1, data), WINDOW, BLOCK);
+		in.mark(0);
+		assertEquals(data.length, in.skip(10 * WINDOW));
+		assertEquals(0, in.skip(1));
+		assertEquals(-1, in.read());
+		assertEquals(0, in.available());
+		in.reset();
+		assertEquals(data.length, in.available());
+		assertArrayEquals(data, readFully(in, data.length + 10));
+	}
+
+	@Test
+	public void smallReadsWithinAWindowReadTheContentOnce() throws Exception {
+		MemoryContent content = new MemoryContent(1, data(4 * WINDOW));
+		InputStream in = new ReadContentInputStream(content, WINDOW, BLOCK);
+		in.mark(0);
+		for (int i = 0; i < WINDOW; i++) {
+			in.read();
+		}
+		in.reset();
+		in.read(new byte[10]);
+		assertEquals(1, content.reads);
+		in.skip(WINDOW);
+		in.read();
+		assertEquals(2, content.reads);
+	}
+
+	@Test
+	public void windowStartsAtTheBlockOfThePosition() throws Exception {
+		byte[] data = data(4 * WINDOW);
+		MemoryContent content = new MemoryContent(1, data);
+		InputStream in = new ReadContentInputStream(content, WINDOW, BLOCK);
+		in.skip(BLOCK + 10);
+		in.mark(0);
+		assertEquals(data[BLOCK + 10] & 0xFF, in.read());
+		//the window is BLOCK to BLOCK + WINDOW
+		in.skip(WINDOW - 12);
+		assertEquals(data[BLOCK + WINDOW - 1] & 0xFF, in.read());
+		in.reset();
+		assertEquals(data[BLOCK + 10] & 0xFF, in.read());
+		assertEquals(1, content.reads);
+		in.skip(WINDOW - 11);
+		assertEquals(data[BLOCK + WINDOW] & 0xFF, in.read());
+		assertEquals(2, content.reads);
+	}
+
+	@Test
+	public void randomOperationsMatchAByteArrayStream() throws Exception {
+		Random random = new Random(1);
+		byte[] data = data(20 * WINDOW + 123);
+		InputStream actual = new ReadContentInputStream(new MemoryContent(1, data), WINDOW, BLOCK);
+		InputStream expected = new ByteArrayInputStream(data);
+		for (int i = 0; i < 2000; i++) {
+			switch (random.nextInt(5)) {
+				case 0:
+					assertEquals(expected.read(), actual.read());
+					break;
+				case 1:
+					int len = 1 + random.nextInt(3 * WINDOW);
+					assertArrayEquals(readFully(expected, len), readFully(actual, len));
+					break;
+				case 2:
+					long n = random.nextInt(4 * WINDOW);
+					assertEquals(expected.skip(n), actual.skip(n));
+					break;
+				case 3:
+					expected.mark(Integer.MAX_VALUE);
+					actual.mark(0);
+					break;
+				default:
+					expected.reset();
+					actual.reset();
+					break;
+			}
+			assertEquals(expected.available(), actual.available());
+		}
+	}
+}
@@ -0,0 +1,644 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2012 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.sleuthkit.datamodel.BlackboardArtifact.ARTIFACT_TYPE;
+import org.sleuthkit.datamodel.BlackboardAttribute.ATTRIBUTE_TYPE;
+import org.sleuthkit.datamodel.BlackboardAttribute.TSK_BLACKBOARD_ATTRIBUTE_VALUE_TYPE;
+import org.sleuthkit.datamodel.TskData.TSK_DB_FILES_TYPE_ENUM;
+import org.sleuthkit.datamodel.TskData.TSK_FS_META_TYPE_ENUM;
+import org.sleuthkit.datamodel.TskData.TSK_FS_NAME_TYPE_ENUM;
+
+/**
+ * Generates a case database of any size, with a raw image that matches it,
+ * without adding a real image. The database is written with JDBC in the
+ * schema of tsk3/auto/db_sqlite.cpp, so it opens with SleuthkitCase.openCase()
+ * like a case made by the sleuthkit.
+ *
+ * The case is one image holding one file system with a directory tree. Each
+ * directory gets a random earlier directory as parent, which gives the skewed
+ * fan-out of real trees; a directory deeper than the maximum depth goes to an
+ * ancestor instead. The files are spread over the directories and written
+ * directory by directory, as the sleuthkit does. File sizes are log-normal.
+ * The content of each file is a run of blocks in the image, or several runs
+ * with unallocated blocks between them for fragmented files, recorded in
+ * tsk_file_layout. Artifacts are spread over the files with a skew towards
+ * the first ones (skew 1 is uniform), with types in the given proportions.
+ *
+ * Regular files are file system files by default. The image holds no file
+ * system, so their content can be read through their layout only (image
+ * reads, ReadScheduler, LayoutFile); with layoutFiles=true they are carved
+ * files instead, which Content.read() reads from the image.
+ *
+ * The same shape and seed give the same case.
+ *
+ * Usage: SyntheticCaseGenerator outputDir [key=value ...]
+ *
+ * Keys (defaults in brackets):
+ * files [1000000] number of files, directories included
+ * fanout [25] average number of entries per directory
+ * depth [12] maximum directory depth
+ * meanSize [8192] mean size of a regular file
+ * maxSize [67108864] largest regular file
+ * fragmented [0.1] share of files stored in more than one run
+ * maxFragments [16] largest number of runs of a file
+ * layoutFiles [false] store regular files as carved layout files
+ * artifacts [0.1] blackboard artifacts per regular file
+ * attributes [4] mean number of attributes per artifact
+ * skew [2] skew of the artifacts towards the first files
+ * artifactTypes [TSK_KEYWORD_HIT:70,TSK_HASHSET_HIT:10,TSK_WEB_HISTORY:15,TSK_INTERESTING_FILE_HIT:5]
+ * sparse [false] leave the image sparse (zeros) instead of writing random data
+ * seed [1] seed of the random generator
+ */
+public class SyntheticCaseGenerator {
+
+	static final String DB_NAME = "synthetic.db";
+	static final String IMAGE_NAME = "synthetic.img";
+	private static final int BLOCK_SIZE = 4096;
+	private static final int BATCH_SIZE = 10000;
+	private static final int COMMIT_ROWS = 200000;
+	private static final int SCHEMA_VERSION = 2;
+	private static final int TSK_VERSION = 0x040001ff;
+	private static final long ROOT_INUM = 5;
+	private static final String MODULE = "SyntheticCaseGenerator";
+	//2005-01-01 to 2012-01-01
+	private static final long FIRST_TIME = 1104537600L;
+	private static final long TIME_SPAN = 220924800L;
+	private static final double SIZE_SIGMA = 2.0;
+	private static final String[] EXTENSIONS = {"txt", "doc", "pdf", "jpg", "png", "html", "exe", "dll", "zip", "dat"};
+	private static final int WORDS = 1000;
+	//attribute types the artifacts get, with their value types
+	private static final ATTRIBUTE_TYPE[] ATTRIBUTES = {ATTRIBUTE_TYPE.TSK_KEYWORD, ATTRIBUTE_TYPE.TSK_KEYWORD_PREVIEW,
+		ATTRIBUTE_TYPE.TSK_SET_NAME, ATTRIBUTE_TYPE.TSK_URL, ATTRIBUTE_TYPE.TSK_DOMAIN, ATTRIBUTE_TYPE.TSK_PROG_NAME,
+		ATTRIBUTE_TYPE.TSK_DATETIME, ATTRIBUTE_TYPE.TSK_DATETIME_ACCESSED};
+	private static final TSK_BLACKBOARD_ATTRIBUTE_VALUE_TYPE[] ATTRIBUTE_VALUE_TYPES = {TSK_BLACKBOARD_ATTRIBUTE_VALUE_TYPE.STRING,
+		TSK_BLACKBOARD_ATTRIBUTE_VALUE_TYPE.STRING, TSK_BLACKBOARD_ATTRIBUTE_VALUE_TYPE.STRING, TSK_BLACKBOARD_ATTRIBUTE_VALUE_TYPE.STRING,
+		TSK_BLACKBOARD_ATTRIBUTE_VALUE_TYPE.STRING, TSK_BLACKBOARD_ATTRIBUTE_VALUE_TYPE.STRING, TSK_BLACKBOARD_ATTRIBUTE_VALUE_TYPE.LONG,
+		TSK_BLACKBOARD_ATTRIBUTE_VALUE_TYPE.LONG};
+	//shape of the case
+	private long files = 1000000;
+	private int fanout = 25;
+	private int depth = 12;
+	private long meanSize = 8192;
+	private long maxSize = 64L * 1024 * 1024;
+	private double fragmented = 0.1;
+	private int maxFragments = 16;
+	private boolean layoutFiles = false;
+	private double artifacts = 0.1;
+	private double attributes = 4;
+	private double skew = 2;
+	private final Map<ARTIFACT_TYPE, Integer> artifactTypes = new LinkedHashMap<ARTIFACT_TYPE, Integer>();
+	private boolean sparse = false;
+	private long seed = 1;
+	private Random random;
+	private Connection db;
+	private long rows = 0;
+	//next free block of the image
+	private long nextBlock = 0;
+
+	/**
+	 * Generates a case and its image in a directory
+	 * @param args output directory, then key=value pairs of the shape
+	 */
+	public static void main(String[] args) throws Exception {
+		if (args.length < 1) {
+			System.err.println("Usage: SyntheticCaseGenerator outputDir [key=value ...]");
+			System.exit(1);
+		}
+		SyntheticCaseGenerator generator = new SyntheticCaseGenerator();
+		generator.artifactTypes.put(ARTIFACT_TYPE.TSK_KEYWORD_HIT, 70);
+		generator.artifactTypes.put(ARTIFACT_TYPE.TSK_HASHSET_HIT, 10);
+		generator.artifactTypes.put(ARTIFACT_TYPE.TSK_WEB_HISTORY, 15);
+		generator.artifactTypes.put(ARTIFACT_TYPE.TSK_INTERESTING_FILE_HIT, 5);
+		for (int i = 1; i < args.length; i++) {
+			generator.set(args[i]);
+		}
+		File dir = new File(args[0]);
+		if (!dir.isDirectory() && !dir.mkdirs()) {
+			throw new IOException("Could not create output directory " + dir);
+		}
+		long start = System.currentTimeMillis();
+		generator.generate(new File(dir, DB_NAME), new File(dir, IMAGE_NAME));
+		System.out.println("Generated in " + (System.currentTimeMillis() - start) / 1000 + " s");
+	}
+
+	/**
+	 * Set a parameter of the shape
+	 *
+	 * @param arg key=value
+	 */
+	private void set(String arg) {
+		final int eq = arg.indexOf('=');
+		if (eq < 0) {
+			throw new IllegalArgumentException("Expected key=value: " + arg);
+		}
+		final String key = arg.substring(0, eq);
+		final String value = arg.substring(eq + 1);
+		if (key.equals("files")) {
+			files = Long.parseLong(value);
+		} else if (key.equals("fanout")) {
+			fanout = Integer.parseInt(value);
+		} else if (key.equals("depth")) {
+			depth = Integer.parseInt(value);
+		} else if (key.equals("meanSize")) {
+			meanSize = Long.parseLong(value);
+		} else if (key.equals("maxSize")) {
+			maxSize = Long.parseLong(value);
+		} else if (key.equals("fragmented")) {
+			fragmented = Double.parseDouble(value);
+		} else if (key.equals("maxFragments")) {
+			maxFragments = Integer.parseInt(value);
+		} else if (key.equals("layoutFiles")) {
+			layoutFiles = Boolean.parseBoolean(value);
+		} else if (key.equals("artifacts")) {
+			artifacts = Double.parseDouble(value);
+		} else if (key.equals("attributes")) {
+			attributes = Double.parseDouble(value);
+		} else if (key.equals("skew")) {
+			skew = Double.parseDouble(value);
+		} else if (key.equals("artifactTypes")) {
+			artifactTypes.clear();
+			for (String type : value.split(",")) {
+				String[] weight = type.split(":");
+				artifactTypes.put(ARTIFACT_TYPE.valueOf(weight[0]), weight.length > 1 ? Integer.parseInt(weight[1]) : 1);
+			}
+		} else if (key.equals("sparse")) {
+			sparse = Boolean.parseBoolean(value);
+		} else if (key.equals("seed")) {
+			seed = Long.parseLong(value);
+		} else {
+			throw new IllegalArgumentException("Unknown key: " + key);
+		}
+	}
+
+	/**
+	 * Write the case database and the image, replacing existing ones
+	 */
+	private void generate(File dbFile, File imageFile) throws Exception {
+		if (files < 1 || fanout < 1 || depth < 1 || maxFragments < 1 || artifactTypes.isEmpty()) {
+			throw new IllegalArgumentException("Invalid shape");
+		}
+		random = new Random(seed);
+		if (dbFile.exists() && !dbFile.delete()) {
+			throw new IOException("Could not replace " + dbFile);
+		}
+		Class.forName("org.sqlite.JDBC");
+		db = DriverManager.getConnection("jdbc:sqlite:" + dbFile.getPath());
+		try {
+			Statement s = db.createStatement();
+			try {
+				//the page size must be set before the tables are created
+				s.execute("PRAGMA page_size = 4096");
+				s.execute("PRAGMA encoding = \"UTF-8\"");
+				s.execute("PRAGMA synchronous = OFF");
+				s.execute("PRAGMA journal_mode = OFF");
+				createTables(s);
+				db.setAutoCommit(false);
+				addTypes(db);
+
+				final long[] regularFiles = addFiles(imageFile);
+				System.out.println(regularFiles.length + " regular files, " + (files - regularFiles.length) + " directories");
+				addArtifacts(regularFiles);
+				db.commit();
+
+				System.out.println("Creating indexes");
+				db.setAutoCommit(true);
+				createIndexes(s);
+				s.execute("ANALYZE");
+			} finally {
+				s.close();
+			}
+		} finally {
+			db.close();
+		}
+		writeImage(imageFile, nextBlock * BLOCK_SIZE);
+	}
+
+	/**
+	 * Create an empty case database, with the tables, indexes and blackboard
+	 * types but no image, for tests that need a case without the native
+	 * library
+	 *
+	 * @param dbFile database to create, must not exist
+	 * @throws SQLException thrown if the database could not be created
+	 * @throws ClassNotFoundException thrown if the driver could not be loaded
+	 */
+	static void createEmptyCase(File dbFile) throws SQLException, ClassNotFoundException {
+		Class.forName("org.sqlite.JDBC");
+		Connection db = DriverManager.getConnection("jdbc:sqlite:" + dbFile.getPath());
+		try {
+			Statement s = db.createStatement();
+			try {
+				createTables(s);
+				createIndexes(s);
+				addTypes(db);
+			} finally {
+				s.close();
+			}
+		} finally {
+			db.close();
+		}
+	}
+
+	/**
+	 * Create the tables as TskDbSqlite::initialize() does
+	 */
+	private static void createTables(Statement s) throws SQLException {
+		s.execute("CREATE TABLE tsk_db_info (schema_ver INTEGER, tsk_ver INTEGER)");
+		s.execute("INSERT INTO tsk_db_info (schema_ver, tsk_ver) VALUES (" + SCHEMA_VERSION + ", " + TSK_VERSION + ")");
+		s.execute("CREATE TABLE tsk_objects (obj_id INTEGER PRIMARY KEY, par_obj_id INTEGER, type INTEGER NOT NULL)");
+		s.execute("CREATE TABLE tsk_image_info (obj_id INTEGER PRIMARY KEY, type INTEGER, ssize INTEGER, tzone TEXT)");
+		s.execute("CREATE TABLE tsk_image_names (obj_id INTEGER NOT NULL, name TEXT NOT NULL, sequence INTEGER NOT NULL)");
+		s.execute("CREATE TABLE tsk_vs_info (obj_id INTEGER PRIMARY KEY, vs_type INTEGER NOT NULL, img_offset INTEGER NOT NULL, block_size INTEGER NOT NULL)");
+		s.execute("CREATE TABLE tsk_vs_parts (obj_id INTEGER PRIMARY KEY, addr INTEGER NOT NULL, start INTEGER NOT NULL, length INTEGER NOT NULL, desc TEXT, flags INTEGER NOT NULL)");
+		s.execute("CREATE TABLE tsk_fs_info (obj_id INTEGER PRIMARY KEY, img_offset INTEGER NOT NULL, fs_type INTEGER NOT NULL, block_size INTEGER NOT NULL, block_count INTEGER NOT NULL, root_inum INTEGER NOT NULL, first_inum INTEGER NOT NULL, last_inum INTEGER NOT NULL)");
+		s.execute("CREATE TABLE tsk_files (obj_id INTEGER PRIMARY KEY, fs_obj_id INTEGER, attr_type INTEGER, attr_id INTEGER, name TEXT NOT NULL, meta_addr INTEGER, type INTEGER, has_layout INTEGER, has_path INTEGER, dir_type INTEGER, meta_type INTEGER, dir_flags INTEGER, meta_flags INTEGER, size INTEGER, ctime INTEGER, crtime INTEGER, atime INTEGER, mtime INTEGER, mode INTEGER, uid INTEGER, gid INTEGER, md5 TEXT, known INTEGER, parent_path TEXT)");
+		s.execute("CREATE TABLE tsk_files_path (obj_id INTEGER PRIMARY KEY, path TEXT NOT NULL)");
+		s.execute("CREATE TABLE tsk_files_derived (obj_id INTEGER PRIMARY KEY, derived_id INTEGER NOT NULL, rederive TEXT)");
+		s.execute("CREATE TABLE tsk_files_derived_method (derived_id INTEGER PRIMARY KEY, tool_name TEXT NOT NULL, tool_version TEXT NOT NULL, other TEXT)");
+		s.execute("CREATE TABLE blackboard_artifacts (artifact_id INTEGER PRIMARY KEY, obj_id INTEGER NOT NULL, artifact_type_id INTEGER NOT NULL)");
+		s.execute("CREATE TABLE blackboard_attributes (artifact_id INTEGER NOT NULL, source TEXT, context TEXT, attribute_type_id INTEGER NOT NULL, value_type INTEGER NOT NULL, "
+				+ "value_byte BLOB, value_text TEXT, value_int32 INTEGER, value_int64 INTEGER, value_double NUMERIC(20, 10))");
+		s.execute("CREATE TABLE blackboard_artifact_types (artifact_type_id INTEGER PRIMARY KEY, type_name TEXT NOT NULL, display_name TEXT)");
+		s.execute("CREATE TABLE blackboard_attribute_types (attribute_type_id INTEGER PRIMARY KEY, type_name TEXT NOT NULL, display_name TEXT)");
+		s.execute("CREATE TABLE tsk_file_layout (obj_id INTEGER NOT NULL, byte_start INTEGER NOT NULL, byte_len INTEGER NOT NULL, sequence INTEGER NOT NULL)");
+	}
+
+	/**
+	 * Create the indexes as TskDbSqlite::createIndexes() does, after the rows
+	 * are in, which is faster
+	 */
+	private static void createIndexes(Statement s) throws SQLException {
+		s.execute("CREATE INDEX parObjId ON tsk_objects(par_obj_id)");
+		s.execute("CREATE INDEX artifact_objID ON blackboard_artifacts(obj_id)");
+		s.execute("CREATE INDEX layout_objID ON tsk_file_layout(obj_id)");
+		s.execute("CREATE INDEX artifactID ON blackboard_artifacts(artifact_id)");
+		s.execute("CREATE INDEX attrsArtifactID ON blackboard_attributes(artifact_id)");
+	}
+
+	private static void addTypes(Connection db) throws SQLException {
+		PreparedStatement artifactType = db.prepareStatement("INSERT INTO blackboard_artifact_types (artifact_type_id, type_name, display_name) VALUES (?, ?, ?)");
+		for (ARTIFACT_TYPE type : ARTIFACT_TYPE.values()) {
+			artifactType.setInt(1, type.getTypeID());
+			artifactType.setString(2, type.getLabel());
+			artifactType.setString(3, type.getDisplayName());
+			artifactType.executeUpdate();
+		}
+		artifactType.close();
+		PreparedStatement attributeType = db.prepareStatement("INSERT INTO blackboard_attribute_types (attribute_type_id, type_name, display_name) VALUES (?, ?, ?)");
+		for (ATTRIBUTE_TYPE type : ATTRIBUTE_TYPE.values()) {
+			attributeType.setInt(1, type.getTypeID());
+			attributeType.setString(2, type.getLabel());
+			attributeType.setString(3, type.getDisplayName());
+			attributeType.executeUpdate();
+		}
+		attributeType.close();
+	}
+
+	/**
+	 * Add the image, the file system and the files
+	 *
+	 * @return object ids of the regular files
+	 */
+	private long[] addFiles(File imageFile) throws SQLException {
+		final int dirs = (int) Math.max(1, Math.min(Integer.MAX_VALUE - 8, files / fanout));
+		final int regular = (int) Math.min(Integer.MAX_VALUE - 8, files - dirs);
+
+		//the tree, directory 0 is the root
+		int[] parents = new int[dirs];
+		byte[] depths = new byte[dirs];
+		for (int d = 1; d < dirs; d++) {
+			int parent = random.nextInt(d);
+			while (depths[parent] >= depth) {
+				parent = parents[parent];
+			}
+			parents[d] = parent;
+			depths[d] = (byte) (depths[parent] + 1);
+		}
+		//the directory of each file, sorted so that a directory's files are added together
+		int[] fileDirs = new int[regular];
+		for (int i = 0; i < regular; i++) {
+			fileDirs[i] = random.nextInt(dirs);
+		}
+		Arrays.sort(fileDirs);
+
+		final long imageId = 1;
+		final long fsId = 2;
+		PreparedStatement object = db.prepareStatement("INSERT INTO tsk_objects (obj_id, par_obj_id, type) VALUES (?, ?, ?)");
+		PreparedStatement file = db.prepareStatement("INSERT INTO tsk_files (obj_id, fs_obj_id, attr_type, attr_id, name, meta_addr, type, has_layout, "
+				+ "dir_type, meta_type, dir_flags, meta_flags, size, ctime, crtime, atime, mtime, mode, uid, gid, md5, known, parent_path) "
+				+ "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, NULL, 0, ?)");
+		PreparedStatement layout = db.prepareStatement("INSERT INTO tsk_file_layout (obj_id, byte_start, byte_len, sequence) VALUES (?, ?, ?, ?)");
+		List<PreparedStatement> statements = Arrays.asList(object, file, layout);
+
+		Statement s = db.createStatement();
+		s.execute("INSERT INTO tsk_objects (obj_id, par_obj_id, type) VALUES (" + imageId + ", NULL, " + TskData.ObjectType.IMG.getObjectType() + ")");
+		s.execute("INSERT INTO tsk_image_info (obj_id, type, ssize, tzone) VALUES (" + imageId + ", "
+				+ TskData.TSK_IMG_TYPE_ENUM.TSK_IMG_TYPE_RAW_SING.getImageType() + ", 512, '')");
+		s.execute("INSERT INTO tsk_image_names (obj_id, name, sequence) VALUES (" + imageId + ", '"
+				+ imageFile.getAbsolutePath().replace("'", "''") + "', 0)");
+		s.execute("INSERT INTO tsk_objects (obj_id, par_obj_id, type) VALUES (" + fsId + ", " + imageId + ", " + TskData.ObjectType.FS.getObjectType() + ")");
+		s.close();
+
+		long[] dirIds = new long[dirs];
+		String[] dirPaths = new String[dirs];
+		long[] regularIds = new long[regular];
+		long objId = fsId + 1;
+		int nextFile = 0;
+		for (int d = 0; d < dirs; d++) {
+			dirIds[d] = objId++;
+			final String name = d == 0 ? "" : "dir" + d;
+			dirPaths[d] = d == 0 ? "/" : dirPaths[parents[d]] + name + "/";
+			addObject(object, dirIds[d], d == 0 ? fsId : dirIds[parents[d]]);
+			addFile(file, dirIds[d], fsId, name, ROOT_INUM + dirIds[d] - dirIds[0], TSK_DB_FILES_TYPE_ENUM.FS,
+					TSK_FS_NAME_TYPE_ENUM.DIR, TSK_FS_META_TYPE_ENUM.TSK_FS_META_TYPE_DIR, BLOCK_SIZE,
+					d == 0 ? "/" : dirPaths[parents[d]]);
+			addRuns(layout, dirIds[d], BLOCK_SIZE, false);
+			rowsAdded(statements, 3);
+
+			for (; nextFile < regular && fileDirs[nextFile] == d; nextFile++) {
+				final long id = objId++;
+				regularIds[nextFile] = id;
+				final long size = fileSize();
+				addObject(object, id, dirIds[d]);
+				final String fileName = "file" + nextFile + "." + EXTENSIONS[random.nextInt(EXTENSIONS.length)];
+				if (layoutFiles) {
+					addFile(file, id, fsId, fileName, -1, TSK_DB_FILES_TYPE_ENUM.CARVED, TSK_FS_NAME_TYPE_ENUM.REG,
+							TSK_FS_META_TYPE_ENUM.TSK_FS_META_TYPE_REG, size, dirPaths[d]);
+				} else {
+					addFile(file, id, fsId, fileName, ROOT_INUM + id - dirIds[0], TSK_DB_FILES_TYPE_ENUM.FS, TSK_FS_NAME_TYPE_ENUM.REG,
+							TSK_FS_META_TYPE_ENUM.TSK_FS_META_TYPE_REG, size, dirPaths[d]);
+				}
+				rowsAdded(statements, 2 + addRuns(layout, id, size, layoutFiles));
+			}
+		}
+		flush(statements);
+
+		s = db.createStatement();
+		s.execute("INSERT INTO tsk_fs_info (obj_id, img_offset, fs_type, block_size, block_count, root_inum, first_inum, last_inum) VALUES ("
+				+ fsId + ", 0, " + TskData.TSK_FS_TYPE_ENUM.TSK_FS_TYPE_NTFS.getValue() + ", " + BLOCK_SIZE + ", " + nextBlock + ", "
+				+ ROOT_INUM + ", 0, " + (ROOT_INUM + objId - dirIds[0]) + ")");
+		s.close();
+		for (PreparedStatement statement : statements) {
+			statement.close();
+		}
+		return regularIds;
+	}
+
+	private void addObject(PreparedStatement object, long objId, long parentId) throws SQLException {
+		object.setLong(1, objId);
+		object.setLong(2, parentId);
+		object.setInt(3, TskData.ObjectType.ABSTRACTFILE.getObjectType());
+		object.addBatch();
+	}
+
+	/**
+	 * Add a tsk_files row like TskDbSqlite::addFile() or, for a layout file,
+	 * TskDbSqlite::addLayoutFileInfo()
+	 *
+	 * @param metaAddr metadata address, ignored for layout files
+	 */
+	private void addFile(PreparedStatement file, long objId, long fsId, String name, long metaAddr, TSK_DB_FILES_TYPE_ENUM type,
+			TSK_FS_NAME_TYPE_ENUM nameType, TSK_FS_META_TYPE_ENUM metaType, long size, String parentPath) throws SQLException {
+		final boolean fs = type == TSK_DB_FILES_TYPE_ENUM.FS;
+		final long created = FIRST_TIME + (long) (random.nextDouble() * TIME_SPAN);
+		final long modified = created + (long) (random.nextDouble() * (FIRST_TIME + TIME_SPAN - created));
+		final long accessed = modified + (long) (random.nextDouble() * (FIRST_TIME + TIME_SPAN - modified));
+		file.setLong(1, objId);
+		file.setLong(2, fsId);
+		setNullable(file, 3, fs, TskData.TSK_FS_ATTR_TYPE_ENUM.TSK_FS_ATTR_TYPE_DEFAULT.getValue());
+		setNullable(file, 4, fs, 0);
+		file.setString(5, name);
+		setNullable(file, 6, fs, metaAddr);
+		file.setInt(7, type.getFileType());
+		setNullable(file, 8, !fs, 1);
+		file.setInt(9, nameType.getValue());
+		file.setInt(10, metaType.getValue());
+		file.setInt(11, fs ? TskData.TSK_FS_NAME_FLAG_ENUM.ALLOC.getValue() : TskData.TSK_FS_NAME_FLAG_ENUM.UNALLOC.getValue());
+		file.setInt(12, fs ? TskData.TSK_FS_META_FLAG_ENUM.ALLOC.getValue() | TskData.TSK_FS_META_FLAG_ENUM.USED.getValue()
+				: TskData.TSK_FS_META_FLAG_ENUM.UNALLOC.getValue());
+		file.setLong(13, size);
+		setNullable(file, 14, fs, modified);
+		setNullable(file, 15, fs, created);
+		setNullable(file, 16, fs, accessed);
+		setNullable(file, 17, fs, modified);
+		setNullable(file, 18, fs, metaType == TSK_FS_META_TYPE_ENUM.TSK_FS_META_TYPE_DIR ? 0755 : 0644);
+		setNullable(file, 19, fs, 0);
+		setNullable(file, 20, fs, 0);
+		file.setString(21, parentPath);
+		file.addBatch();
+	}
+
+	private static void setNullable(PreparedStatement statement, int index, boolean set, long value) throws SQLException {
+		if (set) {
+			statement.setLong(index, value);
+		} else {
+			statement.setNull(index, Types.INTEGER);
+		}
+	}
+
+	/**
+	 * Allocate the blocks of a file and add its layout. Fragmented files get
+	 * unallocated blocks between their runs.
+	 *
+	 * @param exact whether the runs end at the file size, as for layout files,
+	 * or at the end of the last block, as for file system files
+	 * @return number of runs
+	 */
+	private int addRuns(PreparedStatement layout, long objId, long size, boolean exact) throws SQLException {
+		final long blocks = (size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+		if (blocks == 0) {
+			return 0;
+		}
+		int runs = 1;
+		if (blocks > 1 && random.nextDouble() < fragmented) {
+			//geometric, most fragmented files have few runs
+			while (runs < maxFragments && runs < blocks && (runs == 1 || random.nextBoolean())) {
+				runs++;
+			}
+		}
+		long left = blocks;
+		for (int run = 0; run < runs; run++) {
+			final long length = run == runs - 1 ? left : 1 + (long) (random.nextDouble() * (left - (runs - run)));
+			if (run > 0) {
+				nextBlock += 1 + random.nextInt(64);
+			}
+			final long bytes = exact && run == runs - 1 ? size - (blocks - length) * BLOCK_SIZE : length * BLOCK_SIZE;
+			layout.setLong(1, objId);
+			layout.setLong(2, nextBlock * BLOCK_SIZE);
+			layout.setLong(3, bytes);
+			layout.setInt(4, run);
+			layout.addBatch();
+			nextBlock += length;
+			left -= length;
+		}
+		return runs;
+	}
+
+	/**
+	 * @return a log-normal file size with the mean size
+	 */
+	private long fileSize() {
+		final double mu = Math.log(meanSize) - SIZE_SIGMA * SIZE_SIGMA / 2;
+		return Math.min(maxSize, (long) Math.exp(mu + SIZE_SIGMA * random.nextGaussian()));
+	}
+
+	/**
+	 * Add the artifacts and their attributes
+	 *
+	 * @param regularFiles object ids of the files the artifacts are about
+	 */
+	private void addArtifacts(long[] regularFiles) throws SQLException {
+		if (regularFiles.length == 0) {
+			return;
+		}
+		final long count = (long) (regularFiles.length * artifacts);
+		ARTIFACT_TYPE[] types = artifactTypes.keySet().toArray(new ARTIFACT_TYPE[artifactTypes.size()]);
+		int[] cumulative = new int[types.length];
+		int total = 0;
+		for (int i = 0; i < types.length; i++) {
+			total += artifactTypes.get(types[i]);
+			cumulative[i] = total;
+		}
+		PreparedStatement artifact = db.prepareStatement("INSERT INTO blackboard_artifacts (artifact_id, obj_id, artifact_type_id) VALUES (?, ?, ?)");
+		PreparedStatement attribute = db.prepareStatement("INSERT INTO blackboard_attributes (artifact_id, source, context, attribute_type_id, value_type, "
+				+ "value_byte, value_text, value_int32, value_int64, value_double) VALUES (?, ?, '', ?, ?, NULL, ?, 0, ?, 0)");
+		List<PreparedStatement> statements = new ArrayList<PreparedStatement>(Arrays.asList(artifact, attribute));
+		for (long artifactId = 1; artifactId <= count; artifactId++) {
+			final int file = (int) (regularFiles.length * Math.pow(random.nextDouble(), skew));
+			final int pick = random.nextInt(total);
+			int type = 0;
+			while (cumulative[type] <= pick) {
+				type++;
+			}
+			artifact.setLong(1, artifactId);
+			artifact.setLong(2, regularFiles[file]);
+			artifact.setInt(3, types[type].getTypeID());
+			artifact.addBatch();
+
+			final int attributeCount = 1 + random.nextInt(Math.max(1, (int) Math.round(2 * attributes - 1)));
+			for (int i = 0; i < attributeCount; i++) {
+				final int a = random.nextInt(ATTRIBUTES.length);
+				attribute.setLong(1, artifactId);
+				attribute.setString(2, MODULE);
+				attribute.setInt(3, ATTRIBUTES[a].getTypeID());
+				attribute.setLong(4, ATTRIBUTE_VALUE_TYPES[a].getType());
+				if (ATTRIBUTE_VALUE_TYPES[a] == TSK_BLACKBOARD_ATTRIBUTE_VALUE_TYPE.STRING) {
+					attribute.setString(5, attributeText(ATTRIBUTES[a]));
+					attribute.setLong(6, 0);
+				} else {
+					attribute.setNull(5, Types.VARCHAR);
+					attribute.setLong(6, FIRST_TIME + (long) (random.nextDouble() * TIME_SPAN));
+				}
+				attribute.addBatch();
+			}
+			rowsAdded(statements, 1 + attributeCount);
+		}
+		flush(statements);
+		artifact.close();
+		attribute.close();
+		System.out.println(count + " artifacts");
+	}
+
+	/**
+	 * @return a text value, words are picked with a skew so that some are
+	 * common, as keywords are
+	 */
+	private String attributeText(ATTRIBUTE_TYPE type) {
+		final String word = "word" + (int) (WORDS * Math.pow(random.nextDouble(), 3));
+		switch (type) {
+			case TSK_URL:
+				return "http://www." + word + ".com/" + random.nextInt(1000);
+			case TSK_DOMAIN:
+				return "www." + word + ".com";
+			case TSK_KEYWORD_PREVIEW:
+				return "text before " + word + " and after";
+			default:
+				return word;
+		}
+	}
+
+	/**
+	 * Count added rows, running the batches and committing from time to time
+	 */
+	private void rowsAdded(List<PreparedStatement> statements, int added) throws SQLException {
+		final long before = rows;
+		rows += added;
+		if (rows / BATCH_SIZE != before / BATCH_SIZE) {
+			for (PreparedStatement statement : statements) {
+				statement.executeBatch();
+			}
+		}
+		if (rows / COMMIT_ROWS != before / COMMIT_ROWS) {
+			db.commit();
+			System.out.println(rows + " rows");
+		}
+	}
+
+	private static void flush(List<PreparedStatement> statements) throws SQLException {
+		for (PreparedStatement statement : statements) {
+			statement.executeBatch();
+		}
+	}
+
+	/**
+	 * Write the image: random data, or a sparse file of zeros
+	 */
+	private void writeImage(File imageFile, long size) throws IOException {
+		System.out.println("Writing " + size / (1024 * 1024) + " MB image");
+		if (sparse) {
+			RandomAccessFile image = new RandomAccessFile(imageFile, "rw");
+			try {
+				image.setLength(0);
+				image.setLength(size);
+			} finally {
+				image.close();
+			}
+			return;
+		}
+		OutputStream out = new BufferedOutputStream(new FileOutputStream(imageFile), 1024 * 1024);
+		try {
+			byte[] block = new byte[BLOCK_SIZE];
+			for (long written = 0; written < size; written += BLOCK_SIZE) {
+				random.nextBytes(block);
+				out.write(block);
+			}
+		} finally {
+			out.close();
+		}
+	}
+}